@@ -0,0 +1,77 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ASTCacheTest {
+
+    private static final String SOURCE = "class Foo {\n  int bar(int a) {\n    int b = a;\n    return b;\n  }\n}\n";
+
+    private ASTCache cache;
+    private LanguageVersion java;
+
+    @Before
+    public void setUp() {
+        cache = new ASTCache(2);
+        java = LanguageRegistry.getLanguage(JavaLanguageModule.NAME).getDefaultVersion();
+    }
+
+    @Test
+    public void testAVersionIsParsedOnce() {
+        Object document = new Object();
+        ASTCache.Entry entry = cache.get(document, 1, SOURCE, java);
+
+        Assert.assertSame(entry, cache.get(document, 1, SOURCE, java));
+        Assert.assertSame(entry.getRoot(), entry.withSymbols());
+        Assert.assertSame(entry.getRoot(), entry.withTypes());
+    }
+
+    @Test
+    public void testANewVersionIsParsedAgain() {
+        Object document = new Object();
+        ASTCache.Entry entry = cache.get(document, 1, SOURCE, java);
+
+        Assert.assertNotSame(entry, cache.get(document, 2, SOURCE, java));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testDocumentsWithoutStampsAreComparedByText() {
+        Object document = new Object();
+        long unknown = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+        ASTCache.Entry entry = cache.get(document, unknown, SOURCE, java);
+
+        Assert.assertSame(entry, cache.get(document, unknown, new String(SOURCE), java));
+        Assert.assertNotSame(entry, cache.get(document, unknown, SOURCE + "\n", java));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDocumentIsEvicted() {
+        Object first = new Object();
+        Object second = new Object();
+        ASTCache.Entry firstEntry = cache.get(first, 1, SOURCE, java);
+        ASTCache.Entry secondEntry = cache.get(second, 1, SOURCE, java);
+        cache.get(first, 1, SOURCE, java);
+        cache.get(new Object(), 1, SOURCE, java);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertSame(firstEntry, cache.get(first, 1, SOURCE, java));
+        Assert.assertNotSame(secondEntry, cache.get(second, 1, SOURCE, java));
+    }
+
+    @Test
+    public void testDataFlowPassBuildsTheMethodGraphs() {
+        ASTCache.Entry entry = cache.get(new Object(), 1, SOURCE, java);
+        ASTMethodDeclaration method = entry.withDataFlow().getFirstDescendantOfType(ASTMethodDeclaration.class);
+
+        Assert.assertNotNull(method.getDataFlowNode());
+        Assert.assertFalse(method.getDataFlowNode().getFlow().isEmpty());
+    }
+}
@@ -0,0 +1,176 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import name.herlin.command.CommandException;
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnalysisBrokerTest {
+
+    private AnalysisBroker broker;
+    private IFile file;
+    private IProject testProject;
+
+    @Before
+    public void setUp() {
+        // long enough for nothing to be dispatched during the test
+        broker = new AnalysisBroker(60000);
+        file = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path("/AnalysisBrokerTest/src/A.java"));
+    }
+
+    @After
+    public void tearDown() throws CoreException {
+        broker.shutdown();
+        if (testProject != null && testProject.exists()) {
+            testProject.delete(true, true, null);
+        }
+    }
+
+    @Test
+    public void testRequestsForAFileAreCoalesced() {
+        broker.review(file, CommandPriority.IDLE);
+        broker.review(file, CommandPriority.EDITOR);
+        broker.review(file, CommandPriority.BUILD);
+
+        Assert.assertEquals(1, broker.getPendingCount());
+    }
+
+    @Test
+    public void testNothingIsAcceptedAfterShutdown() {
+        broker.shutdown();
+        broker.review(file, CommandPriority.USER);
+
+        Assert.assertEquals(0, broker.getPendingCount());
+    }
+
+    @Test
+    public void testRequestForTheVersionInFlightIsDropped() throws Exception {
+        RecordingBroker recording = startRecording();
+        recording.review(file, CommandPriority.EDITOR);
+        AbstractDefaultCommand first = recording.awaitCommand(0);
+
+        recording.review(file, CommandPriority.EDITOR);
+        awaitNoPendingRequest(recording);
+
+        Assert.assertEquals(1, recording.commandCount());
+        Assert.assertFalse(first.getMonitor().isCanceled());
+    }
+
+    @Test
+    public void testSecondRequestForAFileInFlightWaitsForIt() throws Exception {
+        RecordingBroker recording = startRecording();
+        recording.review(file, CommandPriority.EDITOR);
+        AbstractDefaultCommand first = recording.awaitCommand(0);
+
+        change(file);
+        recording.review(file, CommandPriority.EDITOR);
+        Thread.sleep(200);
+        Assert.assertEquals(1, recording.commandCount());
+        Assert.assertEquals(1, recording.getPendingCount());
+
+        first.finished();
+        recording.awaitCommand(1);
+        Assert.assertEquals(0, recording.getPendingCount());
+    }
+
+    @Test
+    public void testFlightMadeStaleByANewerVersionIsCancelled() throws Exception {
+        RecordingBroker recording = startRecording();
+        recording.review(file, CommandPriority.EDITOR);
+        AbstractDefaultCommand first = recording.awaitCommand(0);
+
+        change(file);
+        recording.review(file, CommandPriority.EDITOR);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!first.getMonitor().isCanceled() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(first.getMonitor().isCanceled());
+    }
+
+    @Test
+    public void testReviewCoveringAFileCancelsItsFlight() throws Exception {
+        RecordingBroker recording = startRecording();
+        recording.review(file, CommandPriority.EDITOR);
+        AbstractDefaultCommand first = recording.awaitCommand(0);
+
+        ReviewCodeCmd covering = new ReviewCodeCmd();
+        covering.addResource(testProject);
+        recording.review(covering);
+
+        Assert.assertTrue(first.getMonitor().isCanceled());
+    }
+
+    private RecordingBroker startRecording() throws Exception {
+        broker.shutdown();
+        testProject = EclipseUtils.createProject("PMDAnalysisBrokerProject");
+        file = testProject.getFile("A.java");
+        file.create(new ByteArrayInputStream("class A {}".getBytes("UTF-8")), true, null);
+        RecordingBroker recording = new RecordingBroker();
+        broker = recording;
+        return recording;
+    }
+
+    private static void change(IFile file) throws Exception {
+        file.setContents(new ByteArrayInputStream("class A { }".getBytes("UTF-8")), true, false, null);
+    }
+
+    private static void awaitNoPendingRequest(AnalysisBroker broker) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (broker.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, broker.getPendingCount());
+    }
+
+    /**
+     * Records the commands instead of running them; a test finishes them.
+     */
+    private static class RecordingBroker extends AnalysisBroker {
+        private final List<AbstractDefaultCommand> commands = new ArrayList<AbstractDefaultCommand>();
+
+        RecordingBroker() {
+            super(10);
+        }
+
+        @Override
+        protected void run(AbstractDefaultCommand command) throws CommandException {
+            command.setMonitor(new NullProgressMonitor());
+            synchronized (commands) {
+                commands.add(command);
+                commands.notifyAll();
+            }
+        }
+
+        int commandCount() {
+            synchronized (commands) {
+                return commands.size();
+            }
+        }
+
+        AbstractDefaultCommand awaitCommand(int index) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            synchronized (commands) {
+                while (commands.size() <= index && System.currentTimeMillis() < deadline) {
+                    commands.wait(100);
+                }
+                Assert.assertTrue("command " + index + " was not run", commands.size() > index);
+                return commands.get(index);
+            }
+        }
+    }
+}
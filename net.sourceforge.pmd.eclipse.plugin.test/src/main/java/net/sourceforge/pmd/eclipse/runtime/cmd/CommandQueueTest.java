@@ -0,0 +1,62 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommandQueueTest {
+
+    @Test
+    public void testMoreUrgentClassesStartFirst() {
+        CommandQueue<String> queue = new CommandQueue<String>();
+        queue.add("idle", CommandPriority.IDLE, "a");
+        queue.add("build", CommandPriority.BUILD, "a");
+        queue.add("user", CommandPriority.USER, "a");
+        queue.add("editor", CommandPriority.EDITOR, "a");
+
+        Assert.assertEquals("user", queue.poll(0, 4));
+        Assert.assertEquals("editor", queue.poll(0, 4));
+        Assert.assertEquals("build", queue.poll(0, 4));
+        Assert.assertEquals("idle", queue.poll(0, 4));
+        Assert.assertNull(queue.poll(0, 4));
+    }
+
+    @Test
+    public void testProjectsTakeTurnsWithinAClass() {
+        CommandQueue<String> queue = new CommandQueue<String>();
+        queue.add("a1", CommandPriority.BUILD, "a");
+        queue.add("a2", CommandPriority.BUILD, "a");
+        queue.add("a3", CommandPriority.BUILD, "a");
+        queue.add("b1", CommandPriority.BUILD, "b");
+        queue.add("c1", CommandPriority.BUILD, null);
+
+        Assert.assertEquals("a1", queue.poll(0, 1));
+        Assert.assertEquals("b1", queue.poll(0, 1));
+        Assert.assertEquals("c1", queue.poll(0, 1));
+        Assert.assertEquals("a2", queue.poll(0, 1));
+        Assert.assertEquals("a3", queue.poll(0, 1));
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testForegroundClassesUseTheKeptSlot() {
+        CommandQueue<String> queue = new CommandQueue<String>();
+        queue.add("build", CommandPriority.BUILD, "a");
+        Assert.assertNull(queue.poll(2, 2));
+
+        queue.add("user", CommandPriority.USER, "a");
+        Assert.assertTrue(queue.contains("user"));
+        Assert.assertEquals("user", queue.poll(2, 2));
+        Assert.assertFalse(queue.contains("user"));
+        Assert.assertNull(queue.poll(3, 2));
+        Assert.assertEquals("build", queue.poll(1, 2));
+    }
+
+    @Test
+    public void testLimitFollowsProcessorsAndLoad() {
+        Assert.assertEquals(4, CommandQueue.concurrencyLimit(4, -1, 0));
+        Assert.assertEquals(4, CommandQueue.concurrencyLimit(4, 2.0, 2));
+        Assert.assertEquals(2, CommandQueue.concurrencyLimit(4, 2.0, 0));
+        Assert.assertEquals(1, CommandQueue.concurrencyLimit(4, 12.0, 1));
+        Assert.assertEquals(1, CommandQueue.concurrencyLimit(0, -1, 0));
+    }
+}
@@ -0,0 +1,85 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.List;
+
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LiveReviewTest {
+
+    private static final String SOURCE = "class Foo {\n  void bar(int a) {\n    if (a == 1) {\n    }\n  }\n}\n";
+
+    private static final String REVIEWED_SOURCE = "class Foo {\n  void bar(int a) {\n"
+            + "    // @PMD:REVIEWED:EmptyIfStmt: by someone on 01/05/05 18:36\n"
+            + "    if (a == 1) {\n    }\n  }\n}\n";
+
+    private IProject testProject;
+    private IFile testFile;
+
+    @Before
+    public void setUp() throws Exception {
+        testProject = EclipseUtils.createJavaProject("PMDLiveReviewTestProject");
+        Assert.assertTrue("A test project cannot be created; the tests cannot be performed.",
+                testProject != null && testProject.exists() && testProject.isAccessible());
+        testFile = EclipseUtils.createTestSourceFile(testProject, "/src/Foo.java", "class Foo {}");
+
+        IProjectProperties properties = PMDPlugin.getDefault().getPropertiesManager().loadProjectProperties(testProject);
+        properties.setPmdEnabled(true);
+        properties.setProjectRuleSet(new RuleSetFactory().createRuleSet("rulesets/java/empty.xml"));
+        properties.sync();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (testProject != null && testProject.exists() && testProject.isAccessible()) {
+            EclipseUtils.removePMDNature(testProject);
+            testProject.refreshLocal(IResource.DEPTH_INFINITE, null);
+            testProject.delete(true, true, null);
+        }
+    }
+
+    @Test
+    public void testUnsavedTextIsReviewed() {
+        List<RuleViolation> violations = new LiveReview().review(testFile, SOURCE, 60000, new NullProgressMonitor());
+
+        Assert.assertNotNull(violations);
+        Assert.assertEquals(1, violations.size());
+        Assert.assertEquals("EmptyIfStmt", violations.get(0).getRule().getName());
+        Assert.assertEquals(3, violations.get(0).getBeginLine());
+    }
+
+    @Test
+    public void testReviewedViolationsAreLeftOut() {
+        List<RuleViolation> violations = new LiveReview().review(testFile, REVIEWED_SOURCE, 60000,
+                new NullProgressMonitor());
+
+        Assert.assertNotNull(violations);
+        Assert.assertTrue(violations.isEmpty());
+    }
+
+    @Test
+    public void testCancelledReviewHasNoResult() {
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+
+        Assert.assertNull(new LiveReview().review(testFile, SOURCE, 60000, monitor));
+    }
+
+    @Test
+    public void testIncompleteTextHasNoResult() {
+        Assert.assertNull(new LiveReview().review(testFile, "class Foo {\n  void bar(", 60000,
+                new NullProgressMonitor()));
+    }
+}
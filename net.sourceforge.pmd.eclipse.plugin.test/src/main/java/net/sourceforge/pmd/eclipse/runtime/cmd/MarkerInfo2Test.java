@@ -0,0 +1,55 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.Arrays;
+
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+
+import org.eclipse.core.resources.IMarker;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MarkerInfo2Test {
+
+    @Test
+    public void testValuesFollowTheSharedNames() {
+        MarkerInfo2 info = new MarkerInfo2(PMDRuntimeConstants.PMD_MARKER_3, "UnusedLocalVariable", "Avoid unused",
+                12, 14, 3, IMarker.SEVERITY_WARNING, IMarker.PRIORITY_HIGH);
+
+        String[] names = info.attributeNames();
+        Object[] values = info.attributeValues();
+        Assert.assertEquals(names.length, values.length);
+        Assert.assertSame(names, new MarkerInfo2(PMDRuntimeConstants.PMD_MARKER_1, "Other", "m", 1, 1, 1,
+                IMarker.SEVERITY_ERROR, IMarker.PRIORITY_HIGH).attributeNames());
+        for (int i = 0; i < names.length; i++) {
+            if (IMarker.LINE_NUMBER.equals(names[i])) {
+                Assert.assertEquals(Integer.valueOf(12), values[i]);
+            } else if (PMDRuntimeConstants.KEY_MARKERATT_LINE2.equals(names[i])) {
+                Assert.assertEquals(Integer.valueOf(14), values[i]);
+            } else if (IMarker.PRIORITY.equals(names[i])) {
+                Assert.assertEquals(Integer.valueOf(IMarker.PRIORITY_HIGH), values[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testTaskPriorityIsOnlySetWhenGiven() {
+        MarkerInfo2 info = new MarkerInfo2(PMDRuntimeConstants.PMD_MARKER_5, "Rule", "message", 1, 1, 5,
+                IMarker.SEVERITY_INFO, MarkerInfo2.NO_PRIORITY);
+
+        Assert.assertFalse(Arrays.asList(info.attributeNames()).contains(IMarker.PRIORITY));
+        Assert.assertEquals(info.attributeNames().length, info.attributeValues().length);
+    }
+
+    @Test
+    public void testRecordsWithTheSameAttributesHaveTheSameSignature() {
+        MarkerInfo2 a = new MarkerInfo2(PMDRuntimeConstants.PMD_MARKER_3, new String("Rule"), "message", 3, 4, 3,
+                IMarker.SEVERITY_WARNING, IMarker.PRIORITY_HIGH);
+        MarkerInfo2 b = new MarkerInfo2(PMDRuntimeConstants.PMD_MARKER_3, new String("Rule"), "message", 3, 4, 3,
+                IMarker.SEVERITY_WARNING, IMarker.PRIORITY_HIGH);
+        MarkerInfo2 moved = new MarkerInfo2(PMDRuntimeConstants.PMD_MARKER_3, "Rule", "message", 5, 6, 3,
+                IMarker.SEVERITY_WARNING, IMarker.PRIORITY_HIGH);
+
+        Assert.assertEquals(a.signature(), b.signature());
+        Assert.assertFalse(a.signature().equals(moved.signature()));
+    }
+}
@@ -0,0 +1,182 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
+import net.sourceforge.pmd.eclipse.runtime.metrics.RuntimeMetrics;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MarkerStreamTest {
+
+    private static final int MARKERS_PER_FILE = 2;
+
+    private IProject testProject;
+    private final List<IFile> files = new ArrayList<IFile>();
+
+    @Before
+    public void setUp() throws Exception {
+        testProject = EclipseUtils.createJavaProject("PMDMarkerStreamTestProject");
+        Assert.assertTrue("A test project cannot be created; the tests cannot be performed.",
+                testProject != null && testProject.exists() && testProject.isAccessible());
+        for (int i = 0; i < 9; i++) {
+            files.add(EclipseUtils.createTestSourceFile(testProject, "/src/F" + i + ".java", "class F" + i + " {}"));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (testProject != null && testProject.exists() && testProject.isAccessible()) {
+            testProject.refreshLocal(IResource.DEPTH_INFINITE, null);
+            testProject.delete(true, true, null);
+        }
+    }
+
+    /**
+     * Pending files are applied once a batch is full, a batch at most per
+     * workspace operation, in the order they were handed over.
+     */
+    @Test
+    public void testFilesAreAppliedInBatches() throws Exception {
+        RecordingStream stream = new RecordingStream(3);
+
+        stream.offer(files.get(0), markers());
+        stream.offer(files.get(1), markers());
+        stream.flushIfDue(new NullProgressMonitor());
+        Assert.assertTrue("Flushed before a batch was full", stream.batches.isEmpty());
+
+        for (int i = 2; i < 7; i++) {
+            stream.offer(files.get(i), markers());
+        }
+        stream.flushIfDue(new NullProgressMonitor());
+
+        Assert.assertEquals(Arrays.asList(files.subList(0, 3), files.subList(3, 6), files.subList(6, 7)),
+                stream.batches);
+        assertAppliedOnce(stream, files.subList(0, 7));
+    }
+
+    /**
+     * A worker handing over files while a few batches are pending waits
+     * until the command thread flushes.
+     */
+    @Test
+    public void testWorkersWaitWhileTheQueueIsFull() throws Exception {
+        final RecordingStream stream = new RecordingStream(2);
+        final int maxPending = 2 * 4;
+        final AtomicInteger offered = new AtomicInteger();
+        Thread worker = new Thread("PMD marker stream test worker") {
+            @Override
+            public void run() {
+                for (IFile file : files) {
+                    stream.offer(file, markers());
+                    offered.incrementAndGet();
+                }
+            }
+        };
+        worker.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (offered.get() < maxPending && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(500);
+        Assert.assertEquals("The worker was not held back", maxPending, offered.get());
+        Assert.assertTrue(worker.isAlive());
+
+        stream.flush(new NullProgressMonitor());
+        worker.join(5000);
+        Assert.assertFalse("The worker was not released", worker.isAlive());
+        Assert.assertEquals(files.size(), offered.get());
+        stream.flush(new NullProgressMonitor());
+
+        for (List<IFile> batch : stream.batches) {
+            Assert.assertTrue("Batch of " + batch.size() + " files", batch.size() <= 2);
+        }
+        assertAppliedOnce(stream, files);
+    }
+
+    /**
+     * Each batch is recorded once, with the markers it applied and the time
+     * it held its scheduling rule.
+     */
+    @Test
+    public void testEveryBatchIsMeasured() throws Exception {
+        RuntimeMetrics metrics = PMDPlugin.getDefault().getRuntimeMetrics();
+        long applicationsBefore = metrics.getMarkerApplications();
+        long markersBefore = metrics.getMarkersApplied();
+        long holdsBefore = metrics.getMarkerRuleHolds();
+
+        RecordingStream stream = new RecordingStream(2);
+        for (int i = 0; i < 5; i++) {
+            stream.offer(files.get(i), markers());
+        }
+        stream.flush(new NullProgressMonitor());
+
+        Assert.assertEquals(3, stream.batches.size());
+        Assert.assertEquals(3, metrics.getMarkerApplications() - applicationsBefore);
+        Assert.assertEquals(5 * MARKERS_PER_FILE, metrics.getMarkersApplied() - markersBefore);
+        Assert.assertEquals(3, metrics.getMarkerRuleHolds() - holdsBefore);
+    }
+
+    /**
+     * Every file is part of exactly one batch, and carries its markers once.
+     */
+    private static void assertAppliedOnce(RecordingStream stream, List<IFile> expected) throws Exception {
+        List<IFile> applied = new ArrayList<IFile>();
+        for (List<IFile> batch : stream.batches) {
+            applied.addAll(batch);
+        }
+        Assert.assertEquals(expected.size(), applied.size());
+        Assert.assertEquals(new HashSet<IFile>(expected), new HashSet<IFile>(applied));
+        Assert.assertEquals(new HashSet<IFile>(expected), stream.getFlushedFiles());
+        Assert.assertEquals(expected.size() * MARKERS_PER_FILE, stream.getMarkerCount());
+        for (IFile file : expected) {
+            IMarker[] markers = MarkerUtil.findMarkers(file, PMDRuntimeConstants.RULE_MARKER_TYPES);
+            Assert.assertEquals(file.getName(), MARKERS_PER_FILE, markers.length);
+        }
+    }
+
+    private static Set<MarkerInfo2> markers() {
+        Set<MarkerInfo2> markers = new HashSet<MarkerInfo2>();
+        for (int line = 1; line <= MARKERS_PER_FILE; line++) {
+            markers.add(new MarkerInfo2(PMDRuntimeConstants.PMD_MARKER_3, "Rule", "message", line, line, 3,
+                    IMarker.SEVERITY_WARNING, MarkerInfo2.NO_PRIORITY));
+        }
+        return markers;
+    }
+
+    /**
+     * Remembers the files of every batch it applies.
+     */
+    private static class RecordingStream extends MarkerStream {
+        final List<List<IFile>> batches = new ArrayList<List<IFile>>();
+
+        RecordingStream(int batchSize) {
+            super(batchSize, 60000);
+        }
+
+        @Override
+        protected void apply(Map<IFile, Set<MarkerInfo2>> batch, IProgressMonitor monitor) {
+            batches.add(new ArrayList<IFile>(batch.keySet()));
+            super.apply(batch, monitor);
+        }
+    }
+}
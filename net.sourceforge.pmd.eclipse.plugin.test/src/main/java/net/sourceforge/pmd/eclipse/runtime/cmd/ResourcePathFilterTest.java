@@ -0,0 +1,53 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResourcePathFilterTest {
+
+    @Test
+    public void testNoPatternsAcceptsEverything() {
+        ResourcePathFilter filter = ResourcePathFilter.compile(Collections.<String>emptyList(),
+                Collections.<String>emptyList());
+        Assert.assertSame(ResourcePathFilter.ACCEPT_ALL, filter);
+        Assert.assertTrue(filter.accepts(new File("/ws/p/src/A.java")));
+    }
+
+    @Test
+    public void testLiteralPrefixesAreExcluded() {
+        ResourcePathFilter filter = ResourcePathFilter.compile(Collections.<String>emptyList(),
+                Arrays.asList("/ws/p/src/generated/.*", "/ws/p/src/Exact"));
+        Assert.assertFalse(filter.accepts(new File("/ws/p/src/generated/A.java")));
+        Assert.assertFalse(filter.accepts(new File("/ws/p/src/Exact")));
+        Assert.assertTrue(filter.accepts(new File("/ws/p/src/Exact2")));
+        Assert.assertTrue(filter.accepts(new File("/ws/p/src/main/A.java")));
+    }
+
+    @Test
+    public void testRegularExpressionsAreExcluded() {
+        ResourcePathFilter filter = ResourcePathFilter.compile(Collections.<String>emptyList(),
+                Arrays.asList(".*/test/.*", ".*Generated\\.java"));
+        Assert.assertFalse(filter.accepts(new File("/ws/p/src/test/A.java")));
+        Assert.assertFalse(filter.accepts(new File("/ws/p/src/FooGenerated.java")));
+        Assert.assertTrue(filter.accepts(new File("/ws/p/src/main/A.java")));
+    }
+
+    @Test
+    public void testIncludeOverridesExclude() {
+        ResourcePathFilter filter = ResourcePathFilter.compile(Arrays.asList(".*/Keep\\.java"),
+                Arrays.asList("/ws/p/src/generated/.*"));
+        Assert.assertTrue(filter.accepts(new File("/ws/p/src/generated/Keep.java")));
+        Assert.assertFalse(filter.accepts(new File("/ws/p/src/generated/Drop.java")));
+    }
+
+    @Test
+    public void testLiteralDetection() {
+        Assert.assertEquals("/ws/p/src/", ResourcePathFilter.literalOf("/ws/p/src/"));
+        Assert.assertNull(ResourcePathFilter.literalOf("/ws/p/src/A.java"));
+        Assert.assertNull(ResourcePathFilter.literalOf(".*"));
+    }
+}
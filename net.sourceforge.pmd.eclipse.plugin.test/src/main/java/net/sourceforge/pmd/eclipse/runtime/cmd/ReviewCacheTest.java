@@ -0,0 +1,107 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReviewCacheTest {
+
+    private File cacheFile;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFile = File.createTempFile("review-cache", ".bin");
+        cacheFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        cacheFile.delete();
+    }
+
+    @Test
+    public void testLookupNeedsMatchingKey() {
+        ReviewCache cache = new ReviewCache(cacheFile, ReviewCache.DEFAULT_MAX_BYTES);
+        cache.store("/p/A.java", 42L, "java 1.8", "rules", violations());
+
+        Assert.assertNotNull(cache.lookup("/p/A.java", 42L, "java 1.8", "rules"));
+        Assert.assertNull(cache.lookup("/p/A.java", 43L, "java 1.8", "rules"));
+        Assert.assertNull(cache.lookup("/p/A.java", 42L, "java 1.7", "rules"));
+        Assert.assertNull(cache.lookup("/p/A.java", 42L, "java 1.8", "other rules"));
+        Assert.assertNull(cache.lookup("/p/B.java", 42L, "java 1.8", "rules"));
+    }
+
+    @Test
+    public void testSavedCacheCanBeReloaded() {
+        ReviewCache cache = new ReviewCache(cacheFile, ReviewCache.DEFAULT_MAX_BYTES);
+        cache.store("/p/A.java", 42L, "java 1.8", "rules", violations());
+        cache.store("/p/B.java", -7L, "java 1.8", "rules", Collections.<ReviewCache.Violation>emptyList());
+        cache.save();
+
+        ReviewCache reloaded = new ReviewCache(cacheFile, ReviewCache.DEFAULT_MAX_BYTES);
+        Assert.assertEquals(2, reloaded.size());
+        Assert.assertEquals(0, reloaded.lookup("/p/B.java", -7L, "java 1.8", "rules").size());
+
+        List<ReviewCache.Violation> restored = reloaded.lookup("/p/A.java", 42L, "java 1.8", "rules");
+        Assert.assertEquals(2, restored.size());
+        ReviewCache.Violation second = restored.get(1);
+        Assert.assertEquals("UnusedLocalVariable", second.getRuleName());
+        Assert.assertEquals("Avoid unused local variables such as 'x'.", second.getMessage());
+        Assert.assertEquals(300, second.getBeginLine());
+        Assert.assertEquals(305, second.getEndLine());
+        Assert.assertEquals(3, second.getPriority());
+    }
+
+    @Test
+    public void testMessagesLongerThan64KCanBeSaved() {
+        StringBuilder message = new StringBuilder();
+        while (message.length() < 70000) {
+            message.append("Avoid long messages \u00e9 ");
+        }
+        ReviewCache cache = new ReviewCache(cacheFile, ReviewCache.DEFAULT_MAX_BYTES);
+        cache.store("/p/A.java", 42L, "java 1.8", "rules",
+                Arrays.asList(new ReviewCache.Violation("LongRule", message.toString(), 1, 1, 3)));
+        cache.save();
+
+        ReviewCache reloaded = new ReviewCache(cacheFile, ReviewCache.DEFAULT_MAX_BYTES);
+        List<ReviewCache.Violation> restored = reloaded.lookup("/p/A.java", 42L, "java 1.8", "rules");
+        Assert.assertNotNull(restored);
+        Assert.assertEquals(message.toString(), restored.get(0).getMessage());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() {
+        ReviewCache cache = new ReviewCache(cacheFile, 800);
+        cache.store("/p/A.java", 1L, "java 1.8", "rules", violations());
+        cache.store("/p/B.java", 2L, "java 1.8", "rules", violations());
+        cache.lookup("/p/A.java", 1L, "java 1.8", "rules");
+        cache.store("/p/C.java", 3L, "java 1.8", "rules", violations());
+
+        Assert.assertNotNull(cache.lookup("/p/A.java", 1L, "java 1.8", "rules"));
+        Assert.assertNull(cache.lookup("/p/B.java", 2L, "java 1.8", "rules"));
+        Assert.assertNotNull(cache.lookup("/p/C.java", 3L, "java 1.8", "rules"));
+    }
+
+    @Test
+    public void testUnreadableCacheStartsEmpty() throws Exception {
+        FileOutputStream out = new FileOutputStream(cacheFile);
+        out.write(new byte[] { 1, 2, 3 });
+        out.close();
+
+        ReviewCache cache = new ReviewCache(cacheFile, ReviewCache.DEFAULT_MAX_BYTES);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    private static List<ReviewCache.Violation> violations() {
+        return Arrays.asList(new ReviewCache.Violation("EmptyCatchBlock", "Avoid empty catch blocks", 12, 12, 3),
+                new ReviewCache.Violation("UnusedLocalVariable", "Avoid unused local variables such as 'x'.", 300,
+                        305, 3));
+    }
+}
@@ -34,6 +34,10 @@
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -43,11 +47,17 @@ import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.eclipse.EclipseUtils;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
 import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IMarkerDelta;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jdt.core.JavaCore;
@@ -126,6 +136,52 @@ public class ReviewCmdTest {
     Assert.assertTrue("Report size = " + markers.size(), markers.size() > 0);
   }
 
+  /**
+   * Reviewing a file that has not changed must leave its markers alone
+   */
+  @Test
+  public void testReviewUnchangedFileGivesNoMarkerDelta() throws Exception {
+    ReviewCodeCmd cmd = new ReviewCodeCmd();
+    cmd.addResource(this.testProject);
+    cmd.performExecute();
+    cmd.join();
+    final Set<Long> idsBefore = markerIdsIn(this.testProject);
+    Assert.assertFalse("The first review found no violation", idsBefore.isEmpty());
+
+    final List<IMarkerDelta> deltas = new ArrayList<IMarkerDelta>();
+    IResourceChangeListener listener = new IResourceChangeListener() {
+      public void resourceChanged(IResourceChangeEvent event) {
+        synchronized (deltas) {
+          for (String markerType : PMDRuntimeConstants.ALL_MARKER_TYPES) {
+            deltas.addAll(Arrays.asList(event.findMarkerDeltas(markerType, false)));
+          }
+        }
+      }
+    };
+    this.testProject.getWorkspace().addResourceChangeListener(listener, IResourceChangeEvent.POST_CHANGE);
+    try {
+      cmd = new ReviewCodeCmd();
+      cmd.addResource(this.testProject);
+      cmd.performExecute();
+      cmd.join();
+    } finally {
+      this.testProject.getWorkspace().removeResourceChangeListener(listener);
+    }
+
+    synchronized (deltas) {
+      Assert.assertTrue("Markers were added or removed: " + deltas.size(), deltas.isEmpty());
+    }
+    Assert.assertEquals(idsBefore, markerIdsIn(this.testProject));
+  }
+
+  private static Set<Long> markerIdsIn(IResource resource) throws CoreException {
+    Set<Long> ids = new HashSet<Long>();
+    for (IMarker marker : MarkerUtil.findAllMarkers(resource)) {
+      ids.add(Long.valueOf(marker.getId()));
+    }
+    return ids;
+  }
+
   /**
    * https://sourceforge.net/p/pmd/bugs/1145/
    */
@@ -0,0 +1,49 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.nio.ByteBuffer;
+
+import net.sourceforge.pmd.eclipse.util.SourceBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReviewIndexTest {
+
+    @Test
+    public void testReviewAppliesToNextCodeLine() throws Exception {
+        ReviewIndex index = indexOf("class A {\r\n"
+                + "    // @PMD:REVIEWED:EmptyCatchBlock: by someone on 01/05/05 18:36\r\n"
+                + "    // @PMD:REVIEWED:AvoidCatchingThrowable: by someone on 01/05/05 18:37\r\n"
+                + "\r\n"
+                + "    // a plain comment\r\n"
+                + "    void m() { try { } catch (Throwable t) { } }\r\n"
+                + "}\r\n");
+
+        Assert.assertTrue(index.hasReviewTokens());
+        Assert.assertTrue(index.isReviewed("EmptyCatchBlock", 6));
+        Assert.assertTrue(index.isReviewed("AvoidCatchingThrowable", 6));
+        Assert.assertFalse(index.isReviewed("EmptyCatchBlock", 5));
+        Assert.assertFalse(index.isReviewed("UnusedLocalVariable", 6));
+    }
+
+    @Test
+    public void testReviewsInBlockCommentsAreIgnored() throws Exception {
+        ReviewIndex index = indexOf("/*\n"
+                + "// @PMD:REVIEWED:EmptyCatchBlock: by someone on 01/05/05 18:36\n"
+                + "*/\n"
+                + "class A { }\n");
+
+        Assert.assertTrue(index.hasReviewTokens());
+        Assert.assertFalse(index.isReviewed("EmptyCatchBlock", 4));
+    }
+
+    @Test
+    public void testNopmdIsAReviewToken() throws Exception {
+        Assert.assertTrue(indexOf("int x; // NOPMD\n").hasReviewTokens());
+        Assert.assertSame(ReviewIndex.EMPTY, indexOf("class A { }\n"));
+    }
+
+    private static ReviewIndex indexOf(String content) throws Exception {
+        return ReviewIndex.of(SourceBuffer.decode(ByteBuffer.wrap(content.getBytes("UTF-8")), "UTF-8"));
+    }
+}
@@ -0,0 +1,76 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReviewProfileTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("review-profile", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static ReviewProfile.Entry measure(String name, long wallMillis) {
+        ReviewProfile.Entry entry = new ReviewProfile.Entry(name);
+        entry.add(wallMillis * 1000000, 0, 100);
+        return entry;
+    }
+
+    @Test
+    public void testMeasuresAreSummedAndSaved() {
+        ReviewProfile profile = new ReviewProfile(file, 10);
+        profile.record("/p/A.java", measure("/p/A.java", 5), Arrays.asList(measure("Rule1", 2), measure("Rule2", 3)));
+        profile.record("/p/A.java", measure("/p/A.java", 7), Arrays.asList(measure("Rule1", 4)));
+        profile.save();
+
+        List<ReviewProfile.Entry> files = new ReviewProfile(file, 10).getFiles();
+        Assert.assertEquals(1, files.size());
+        Assert.assertEquals(2, files.get(0).getCount());
+        Assert.assertEquals(12, files.get(0).getWallMillis());
+        Assert.assertEquals(200, files.get(0).getAllocatedBytes());
+        Assert.assertEquals(6.0, files.get(0).getAverageWallMillis(), 0.001);
+        Assert.assertEquals(2, new ReviewProfile(file, 10).getRules().size());
+    }
+
+    @Test
+    public void testLeastRecentlyUpdatedEntriesAreDropped() {
+        ReviewProfile profile = new ReviewProfile(file, 2);
+        List<ReviewProfile.Entry> none = Collections.emptyList();
+        profile.record("a", measure("a", 1), none);
+        profile.record("b", measure("b", 1), none);
+        profile.record("a", measure("a", 1), none);
+        profile.record("c", measure("c", 1), none);
+
+        List<ReviewProfile.Entry> files = profile.getFiles();
+        Assert.assertEquals(2, files.size());
+        Assert.assertEquals("a", files.get(0).getName());
+        Assert.assertEquals("c", files.get(1).getName());
+    }
+
+    @Test
+    public void testCsvQuotesNamesWithCommas() {
+        StringWriter out = new StringWriter();
+        ReviewProfile.writeCsv(Arrays.asList(measure("a,\"b\"", 1)), out);
+
+        String[] lines = out.toString().split("\r?\n");
+        Assert.assertEquals(2, lines.length);
+        Assert.assertTrue(lines[1].startsWith("\"a,\"\"b\"\"\",1,1,0,100,"));
+    }
+}
@@ -0,0 +1,85 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReviewProgressTest {
+
+    @Test
+    public void testSequentialReviewAdvancesByTheExpectedShare() {
+        RecordingMonitor monitor = new RecordingMonitor();
+        ReviewProgress progress = new ReviewProgress(monitor);
+        progress.expect(4);
+
+        // one worker: each file is accepted right before it is finished
+        progress.accepted();
+        progress.finished();
+        Assert.assertEquals(ReviewProgress.TOTAL_WORK / 4, monitor.work);
+        Assert.assertEquals("1 of 4 files", progress.describe());
+
+        progress.accepted();
+        progress.finished();
+        Assert.assertEquals(ReviewProgress.TOTAL_WORK / 2, monitor.work);
+    }
+
+    @Test
+    public void testWithoutExpectationTheAcceptedFilesAreTheTotal() {
+        RecordingMonitor monitor = new RecordingMonitor();
+        ReviewProgress progress = new ReviewProgress(monitor);
+        for (int i = 0; i < 4; i++) {
+            progress.accepted();
+        }
+        progress.finished();
+
+        Assert.assertEquals(ReviewProgress.TOTAL_WORK / 4, monitor.work);
+    }
+
+    @Test
+    public void testFilesBeyondTheExpectationRaiseTheTotal() {
+        RecordingMonitor monitor = new RecordingMonitor();
+        ReviewProgress progress = new ReviewProgress(monitor);
+        progress.expect(1);
+        for (int i = 0; i < 4; i++) {
+            progress.accepted();
+            progress.finished();
+        }
+
+        Assert.assertEquals(ReviewProgress.TOTAL_WORK, monitor.work);
+        Assert.assertEquals("4 of 4 files", progress.describe());
+    }
+
+    @Test
+    public void testExpectationsOverlap() {
+        ReviewProgress progress = new ReviewProgress(null);
+        progress.expect(4);
+        progress.accepted();
+        progress.accepted();
+        progress.expect(1);
+        Assert.assertEquals("0 of 4 files", progress.describe());
+
+        progress.expect(3);
+        Assert.assertEquals("0 of 5 files", progress.describe());
+    }
+
+    @Test
+    public void testPreviousCountIsRememberedPerResource() {
+        IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject("PMDReviewProgressProject");
+        IProject other = ResourcesPlugin.getWorkspace().getRoot().getProject("PMDReviewProgressOtherProject");
+        ReviewProgress.rememberCount(project, 12);
+
+        Assert.assertEquals(12, ReviewProgress.previousCount(project));
+        Assert.assertEquals(0, ReviewProgress.previousCount(other));
+    }
+
+    private static class RecordingMonitor extends NullProgressMonitor {
+        int work;
+
+        @Override
+        public void worked(int amount) {
+            work += amount;
+        }
+    }
+}
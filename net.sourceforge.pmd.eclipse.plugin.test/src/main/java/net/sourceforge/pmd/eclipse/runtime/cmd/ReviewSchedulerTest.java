@@ -0,0 +1,44 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReviewSchedulerTest {
+
+    @Test
+    public void testMarkedFilesThenCheapestFilesFitInTheBudget() {
+        List<ReviewScheduler.Task<String>> tasks = Arrays.asList(new ReviewScheduler.Task<String>("big", 900, false),
+                new ReviewScheduler.Task<String>("small", 100, false),
+                new ReviewScheduler.Task<String>("marked", 600, true),
+                new ReviewScheduler.Task<String>("medium", 400, false));
+
+        ReviewScheduler.Plan<String> plan = new ReviewScheduler<String>(1000, 1).plan(tasks);
+
+        Assert.assertEquals(Arrays.asList("marked", "small"), plan.getImmediate());
+        Assert.assertEquals(Arrays.asList("medium", "big"), plan.getDeferred());
+        Assert.assertEquals(700, plan.getImmediateMillis());
+        Assert.assertEquals(1300, plan.getDeferredMillis());
+    }
+
+    @Test
+    public void testWorkersShareTheBudget() {
+        List<ReviewScheduler.Task<String>> tasks = Arrays.asList(new ReviewScheduler.Task<String>("a", 600, false),
+                new ReviewScheduler.Task<String>("b", 600, false));
+
+        Assert.assertEquals(1, new ReviewScheduler<String>(1000, 1).plan(tasks).getImmediate().size());
+        Assert.assertEquals(2, new ReviewScheduler<String>(1000, 2).plan(tasks).getImmediate().size());
+    }
+
+    @Test
+    public void testFirstFileIsAlwaysReviewed() {
+        List<ReviewScheduler.Task<String>> tasks = Arrays.asList(new ReviewScheduler.Task<String>("huge", 5000, false));
+
+        ReviewScheduler.Plan<String> plan = new ReviewScheduler<String>(0, 1).plan(tasks);
+
+        Assert.assertEquals(Arrays.asList("huge"), plan.getImmediate());
+        Assert.assertTrue(plan.getDeferred().isEmpty());
+    }
+}
@@ -0,0 +1,146 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
+import net.sourceforge.pmd.lang.rule.AbstractDelegateRule;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReviewWorkerPoolTest {
+
+    private static final int FILE_COUNT = 12;
+
+    private IProject testProject;
+
+    @Before
+    public void setUp() throws Exception {
+        testProject = EclipseUtils.createJavaProject("PMDWorkerPoolTestProject");
+        Assert.assertTrue("A test project cannot be created; the tests cannot be performed.",
+                testProject != null && testProject.exists() && testProject.isAccessible());
+        for (int i = 0; i < FILE_COUNT; i++) {
+            EclipseUtils.createTestSourceFile(testProject, "/src/C" + i + ".java", "class C" + i + " {\n"
+                    + "  private int unused" + i + ";\n"
+                    + "  void m(int a) {\n"
+                    + "    if (a == " + i + ") {\n"
+                    + "    }\n"
+                    + "    try { m(a); } catch (Exception e) { }\n"
+                    + "  }\n"
+                    + "}\n");
+        }
+
+        IProjectProperties properties = PMDPlugin.getDefault().getPropertiesManager().loadProjectProperties(testProject);
+        properties.setPmdEnabled(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (testProject != null && testProject.exists() && testProject.isAccessible()) {
+            EclipseUtils.removePMDNature(testProject);
+            testProject.refreshLocal(IResource.DEPTH_INFINITE, null);
+            testProject.delete(true, true, null);
+        }
+    }
+
+    /**
+     * Reviewing with several workers must give the markers a single worker
+     * gives.
+     */
+    @Test
+    public void testWorkersFindTheViolationsOfASingleWorker() throws Exception {
+        IPreferences preferences = PMDPlugin.getDefault().getPreferencesManager().loadPreferences();
+        int oldWorkerCount = preferences.getReviewWorkerCount();
+        try {
+            preferences.setReviewWorkerCount(1);
+            Map<String, Set<String>> sequential = review();
+            preferences.setReviewWorkerCount(4);
+            Map<String, Set<String>> concurrent = review();
+
+            Assert.assertFalse("The review found no violation", sequential.isEmpty());
+            Assert.assertEquals(sequential, concurrent);
+        } finally {
+            preferences.setReviewWorkerCount(oldWorkerCount);
+        }
+    }
+
+    /**
+     * Every worker applies its own instances of the rules, never those of
+     * the shared rule set nor those of another worker.
+     */
+    @Test
+    public void testCopiesDoNotShareRules() throws Exception {
+        final RuleSet shared = new RuleSetFactory().createRuleSet("rulesets/java/basic.xml");
+        final ReviewWorkerPool pool = new ReviewWorkerPool(2);
+        Assert.assertTrue(pool.canCopy(shared));
+
+        RuleSet ownCopy = pool.ruleSetFor(shared);
+        Assert.assertSame("A thread keeps its copy", ownCopy, pool.ruleSetFor(shared));
+
+        final RuleSet[] workerCopy = new RuleSet[1];
+        pool.execute(new Runnable() {
+            public void run() {
+                workerCopy[0] = pool.ruleSetFor(shared);
+            }
+        });
+        pool.shutdownAndWait(null);
+
+        Assert.assertNotNull(ownCopy);
+        Assert.assertNotNull(workerCopy[0]);
+        Assert.assertEquals(shared.size(), ownCopy.size());
+        Assert.assertEquals(shared.size(), workerCopy[0].size());
+        for (Rule rule : shared.getRules()) {
+            Rule own = implementationOf(ownCopy.getRuleByName(rule.getName()));
+            Rule worker = implementationOf(workerCopy[0].getRuleByName(rule.getName()));
+            Assert.assertNotSame(rule.getName(), implementationOf(rule), own);
+            Assert.assertNotSame(rule.getName(), implementationOf(rule), worker);
+            Assert.assertNotSame(rule.getName(), own, worker);
+        }
+    }
+
+    /**
+     * Review the whole project without help from the review cache.
+     *
+     * @return the signatures of the markers, by file
+     */
+    private Map<String, Set<String>> review() throws Exception {
+        PMDPlugin.getDefault().getReviewCache().clear();
+        ReviewCodeCmd cmd = new ReviewCodeCmd();
+        cmd.addResource(testProject);
+        cmd.performExecute();
+        cmd.join();
+
+        Map<String, Set<String>> signatures = new HashMap<String, Set<String>>();
+        for (Map.Entry<IFile, Set<MarkerInfo2>> entry : cmd.getMarkers().entrySet()) {
+            Set<String> fileSignatures = new TreeSet<String>();
+            for (Iterator<MarkerInfo2> i = entry.getValue().iterator(); i.hasNext();) {
+                fileSignatures.add(i.next().signature());
+            }
+            signatures.put(entry.getKey().getFullPath().toString(), fileSignatures);
+        }
+        return signatures;
+    }
+
+    private static Rule implementationOf(Rule rule) {
+        Assert.assertNotNull(rule);
+        while (rule instanceof AbstractDelegateRule) {
+            rule = ((AbstractDelegateRule) rule).getRule();
+        }
+        return rule;
+    }
+}
@@ -0,0 +1,99 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ViolationIndexTest {
+
+    private IProject testProject;
+    private IFile first;
+    private IFile second;
+    private ViolationIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        testProject = EclipseUtils.createProject("PMDViolationIndexProject");
+        first = EclipseUtils.createTestSourceFile(testProject, "First.java", "class First {}");
+        second = EclipseUtils.createTestSourceFile(testProject, "Second.java", "class Second {}");
+
+        addMarker(first, PMDRuntimeConstants.PMD_MARKER_1, "EmptyCatchBlock", 1);
+        addMarker(first, PMDRuntimeConstants.PMD_MARKER_3, "UnusedLocalVariable", 3);
+        addMarker(first, PMDRuntimeConstants.PMD_MARKER_3, "UnusedLocalVariable", 3);
+        addMarker(second, PMDRuntimeConstants.PMD_MARKER_3, "UnusedLocalVariable", 3);
+
+        index = new ViolationIndex();
+        index.start(testProject.getWorkspace());
+        for (int tries = 0; tries < 10 && !index.isReady(); tries++) {
+            index.join();
+        }
+        Assert.assertTrue("The index was not built", index.isReady());
+    }
+
+    @After
+    public void tearDown() throws CoreException {
+        index.stop();
+        if (testProject != null && testProject.exists()) {
+            testProject.delete(true, true, null);
+        }
+    }
+
+    @Test
+    public void testCountsByPriorityIncludeTheMembers() {
+        Assert.assertTrue(Arrays.equals(new int[] { 3, 1, 0, 2, 0, 0 }, index.countsOf(first)));
+        Assert.assertTrue(Arrays.equals(new int[] { 4, 1, 0, 3, 0, 0 }, index.countsOf(testProject)));
+        Assert.assertEquals(1, index.highestPriorityOf(testProject));
+        Assert.assertEquals(3, index.highestPriorityOf(second));
+    }
+
+    @Test
+    public void testMarkedResourcesAreListedByRule() {
+        Assert.assertEquals(2, index.countOf(first, "UnusedLocalVariable"));
+        Assert.assertEquals(Arrays.asList(first), index.resourcesMarkedFor("EmptyCatchBlock", testProject));
+        Assert.assertEquals(2, index.resourcesMarkedFor("UnusedLocalVariable", null).size());
+        Assert.assertTrue(index.resourcesMarkedFor("UnknownRule", null).isEmpty());
+        Assert.assertEquals(2, index.resourcesMarkedIn(testProject).size());
+    }
+
+    @Test
+    public void testRuleNamesAreThoseOfTheMarkers() throws Exception {
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("EmptyCatchBlock", "UnusedLocalVariable")),
+                index.ruleNames());
+
+        first.deleteMarkers(PMDRuntimeConstants.PMD_MARKER_1, false, IResource.DEPTH_ZERO);
+        for (int tries = 0; tries < 100 && index.ruleNames().contains("EmptyCatchBlock"); tries++) {
+            Thread.sleep(50);
+        }
+        Assert.assertFalse(index.ruleNames().contains("EmptyCatchBlock"));
+    }
+
+    @Test
+    public void testDeletedMarkersAreForgotten() throws Exception {
+        first.deleteMarkers(PMDRuntimeConstants.PMD_MARKER_1, false, IResource.DEPTH_ZERO);
+
+        for (int tries = 0; tries < 100 && index.highestPriorityOf(testProject) == 1; tries++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(3, index.highestPriorityOf(testProject));
+        Assert.assertEquals(0, index.countOf(first, "EmptyCatchBlock"));
+        Assert.assertTrue(index.resourcesMarkedFor("EmptyCatchBlock", null).isEmpty());
+    }
+
+    private static void addMarker(IFile file, String markerType, String ruleName, int priority) throws CoreException {
+        IMarker marker = file.createMarker(markerType);
+        marker.setAttribute(PMDRuntimeConstants.KEY_MARKERATT_RULENAME, ruleName);
+        marker.setAttribute(PMDRuntimeConstants.KEY_MARKERATT_PRIORITY, priority);
+    }
+}
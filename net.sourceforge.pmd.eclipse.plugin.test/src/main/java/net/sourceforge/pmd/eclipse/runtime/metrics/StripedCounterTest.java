@@ -0,0 +1,49 @@
+package net.sourceforge.pmd.eclipse.runtime.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StripedCounterTest {
+
+    @Test
+    public void testConcurrentIncrementsAreAllCounted() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counter.increment();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(80000, counter.sum());
+    }
+
+    @Test
+    public void testSumThenResetStartsAgainFromZero() {
+        StripedCounter counter = new StripedCounter();
+        counter.add(5);
+
+        Assert.assertEquals(5, counter.sumThenReset());
+        Assert.assertEquals(0, counter.sum());
+    }
+
+    @Test
+    public void testLatencyKeepsMeanAndMax() {
+        LatencyRecorder latency = new LatencyRecorder();
+        latency.record(1000000);
+        latency.record(3000000);
+
+        Assert.assertEquals(2, latency.getCount());
+        Assert.assertEquals(2.0, latency.getMeanMillis(), 0.001);
+        Assert.assertEquals(3.0, latency.getMaxMillis(), 0.001);
+    }
+}
@@ -0,0 +1,87 @@
+package net.sourceforge.pmd.eclipse.util;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SourceBufferTest {
+
+    private static final String TEXT = "class Caf\u00e9 {}\n";
+
+    private IProject testProject;
+
+    @After
+    public void tearDown() throws CoreException {
+        if (testProject != null && testProject.exists()) {
+            testProject.delete(true, true, null);
+        }
+    }
+
+    @Test
+    public void testContentIsDecodedWithTheGivenCharset() throws Exception {
+        Assert.assertEquals(TEXT, decode(TEXT.getBytes("UTF-8"), "UTF-8").asString());
+        Assert.assertEquals(TEXT, decode(TEXT.getBytes("ISO-8859-1"), "ISO-8859-1").asString());
+        Assert.assertFalse(TEXT.equals(decode(TEXT.getBytes("UTF-8"), "ISO-8859-1").asString()));
+    }
+
+    @Test
+    public void testByteOrderMarkIsDropped() throws Exception {
+        byte[] bom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+        SourceBuffer utf8 = decode(concat(bom, TEXT.getBytes("UTF-8")), "UTF-8");
+        Assert.assertEquals(TEXT, utf8.asString());
+        Assert.assertEquals(TEXT.length(), utf8.length());
+
+        Assert.assertEquals(TEXT, decode(TEXT.getBytes("UTF-16"), "UTF-16").asString());
+        Assert.assertEquals(TEXT, decode(concat(new byte[] { (byte) 0xFF, (byte) 0xFE }, TEXT.getBytes("UTF-16LE")),
+                "UTF-16LE").asString());
+    }
+
+    @Test
+    public void testFileIsReadWithItsDeclaredCharset() throws Exception {
+        testProject = EclipseUtils.createProject("PMDSourceBufferProject");
+        IFile file = testProject.getFile("Cafe.java");
+        file.create(new ByteArrayInputStream(TEXT.getBytes("ISO-8859-1")), true, null);
+        file.setCharset("ISO-8859-1", null);
+
+        SourceBuffer source = SourceBuffer.read(file);
+
+        Assert.assertEquals("ISO-8859-1", source.getCharset());
+        Assert.assertEquals(TEXT, source.asString());
+        Assert.assertEquals(file.getModificationStamp(), source.getModificationStamp());
+    }
+
+    @Test
+    public void testHashOnlyDependsOnTheCharacters() throws Exception {
+        SourceBuffer utf8 = decode(TEXT.getBytes("UTF-8"), "UTF-8");
+        SourceBuffer latin1 = decode(TEXT.getBytes("ISO-8859-1"), "ISO-8859-1");
+
+        Assert.assertEquals(utf8.contentHash(), utf8.contentHash());
+        Assert.assertEquals(utf8.contentHash(), latin1.contentHash());
+        Assert.assertFalse(utf8.contentHash() == decode((TEXT + " ").getBytes("UTF-8"), "UTF-8").contentHash());
+    }
+
+    @Test
+    public void testHashIsStableAcrossReleases() throws Exception {
+        // the review cache keeps these hashes on disk; this is FNV-1a of "a"
+        Assert.assertEquals(0xaf63dc4c8601ec8cL, decode("a".getBytes("UTF-8"), "UTF-8").contentHash());
+    }
+
+    private static SourceBuffer decode(byte[] bytes, String charset) {
+        return SourceBuffer.decode(ByteBuffer.wrap(bytes), charset);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = new byte[first.length + second.length];
+        System.arraycopy(first, 0, bytes, 0, first.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+}
@@ -3,9 +3,9 @@ package net.sourceforge.pmd.eclipse.plugin;
 import java.util.HashSet;
 import java.util.Set;
 
-import name.herlin.command.CommandException;
 import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
-import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewCodeCmd;
+import net.sourceforge.pmd.eclipse.runtime.cmd.AnalysisBroker;
+import net.sourceforge.pmd.eclipse.runtime.cmd.CommandPriority;
 
 import org.apache.log4j.Logger;
 import org.eclipse.core.resources.IFile;
@@ -17,7 +17,6 @@ import org.eclipse.core.resources.IWorkspaceDescription;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
 /**
@@ -89,17 +88,10 @@ public class FileChangeReviewer implements IResourceChangeListener {
         if (itemsChanged.isEmpty())
             return;
 
-        ReviewCodeCmd cmd = new ReviewCodeCmd(); // separate one for each thread
-        cmd.reset();
-
+        // the broker debounces and runs the reviews; never wait for them here
+        AnalysisBroker broker = PMDPlugin.getDefault().getAnalysisBroker();
         for (ResourceChange chg : itemsChanged)
-            cmd.addResource(chg.file);
-
-        try {
-            cmd.performExecute();
-        } catch (CommandException e) {
-            PMDPlugin.getDefault().log(IStatus.ERROR, "Error processing code review upon file changes", e);
-        }
+            broker.review(chg.file, CommandPriority.EDITOR);
     }
 
     private void changed(Set<ResourceChange> itemsChanged, IResourceDelta delta, IProgressMonitor monitor) {
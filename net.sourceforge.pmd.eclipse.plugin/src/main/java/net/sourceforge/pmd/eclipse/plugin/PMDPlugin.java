@@ -17,7 +17,15 @@ import net.sourceforge.pmd.RuleSetNotFoundException;
 import net.sourceforge.pmd.eclipse.core.IRuleSetManager;
 import net.sourceforge.pmd.eclipse.core.ext.RuleSetsExtensionProcessor;
 import net.sourceforge.pmd.eclipse.core.impl.RuleSetManagerImpl;
-import net.sourceforge.pmd.eclipse.runtime.cmd.JavaProjectClassLoader;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ASTCache;
+import net.sourceforge.pmd.eclipse.runtime.cmd.AnalysisBroker;
+import net.sourceforge.pmd.eclipse.runtime.cmd.EffectiveRuleSets;
+import net.sourceforge.pmd.eclipse.runtime.cmd.JavaProjectClassLoaderPool;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewCache;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewCostModel;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewProfile;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ViolationIndex;
+import net.sourceforge.pmd.eclipse.runtime.metrics.RuntimeMetrics;
 import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences;
 import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferencesFactory;
 import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferencesManager;
@@ -32,6 +40,7 @@ import net.sourceforge.pmd.eclipse.runtime.writer.IRuleSetWriter;
 import net.sourceforge.pmd.eclipse.runtime.writer.impl.WriterFactoryImpl;
 import net.sourceforge.pmd.eclipse.ui.RuleLabelDecorator;
 import net.sourceforge.pmd.eclipse.ui.ShapePainter;
+import net.sourceforge.pmd.eclipse.ui.editors.LiveAnalysisManager;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 import net.sourceforge.pmd.eclipse.ui.nls.StringTable;
 import net.sourceforge.pmd.eclipse.util.ResourceManager;
@@ -58,6 +67,7 @@ import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.jdt.core.ElementChangedEvent;
 import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
@@ -83,6 +93,8 @@ public class PMDPlugin extends AbstractUIPlugin {
 
     private FileChangeReviewer changeReviewer;
 
+    private LiveAnalysisManager liveAnalysisManager;
+
     private Map<RGB, Color> coloursByRGB = new HashMap<RGB, Color>();
 
     public static final String PLUGIN_ID = "net.sourceforge.pmd.eclipse.plugin";
@@ -103,11 +115,31 @@ public class PMDPlugin extends AbstractUIPlugin {
 
     public static final String ROOT_LOG_ID = "net.sourceforge.pmd";
     private static final String PMD_ECLIPSE_APPENDER_NAME = "PMDEclipseAppender";
+    private static final String REVIEW_CACHE_FILE = "review-cache.bin";
+    private static final String REVIEW_PROFILE_FILE = "review-profile.bin";
     private IPreferencesFactory preferencesFactory = new PreferencesFactoryImpl();
     private IPropertiesFactory propertiesFactory = new PropertiesFactoryImpl();
 
     private final IRuleSetManager ruleSetManager = new RuleSetManagerImpl(); // NOPMD:SingularField
 
+    private final JavaProjectClassLoaderPool classLoaderPool = new JavaProjectClassLoaderPool();
+
+    private final EffectiveRuleSets effectiveRuleSets = new EffectiveRuleSets();
+
+    private ReviewCache reviewCache;
+
+    private ReviewProfile reviewProfile;
+
+    private final ReviewCostModel reviewCostModel = new ReviewCostModel();
+
+    private final RuntimeMetrics runtimeMetrics = new RuntimeMetrics();
+
+    private final AnalysisBroker analysisBroker = new AnalysisBroker(AnalysisBroker.DEFAULT_DEBOUNCE_MILLIS);
+
+    private final ASTCache astCache = new ASTCache(ASTCache.DEFAULT_MAX_ENTRIES);
+
+    private final ViolationIndex violationIndex = new ViolationIndex();
+
     /**
      * The constructor
      */
@@ -126,16 +158,125 @@ public class PMDPlugin extends AbstractUIPlugin {
         return color;
     }
 
-    public static void setJavaClassLoader(PMDConfiguration config, IProject project) {
+    /**
+     * Set the class loader of the project build path on the configuration,
+     * when the preferences ask for it. The loader is leased from the pool and
+     * must be handed back with {@link #releaseJavaClassLoader(ClassLoader)}.
+     *
+     * @return the leased loader, or null if the configuration was left alone
+     */
+    public static ClassLoader setJavaClassLoader(PMDConfiguration config, IProject project) {
 
         IPreferences preferences = getDefault().loadPreferences();
         try {
             if (preferences.isProjectBuildPathEnabled() && project.hasNature(JavaCore.NATURE_ID)) {
-                config.setClassLoader(new JavaProjectClassLoader(config.getClass().getClassLoader(), project));
+                ClassLoader loader = getDefault().classLoaderPool.classLoaderFor(project, config.getClass().getClassLoader());
+                config.setClassLoader(loader);
+                return loader;
             }
         } catch (CoreException e) {
             throw new RuntimeException(e);
         }
+        return null;
+    }
+
+    /**
+     * Same as {@link #setJavaClassLoader(PMDConfiguration, IProject)}, but
+     * leaves the configuration alone if none of the rules uses type
+     * resolution, as the class loader would never be consulted.
+     *
+     * @return the leased loader, or null if the configuration was left alone
+     */
+    public static ClassLoader setJavaClassLoader(PMDConfiguration config, IProject project, RuleSet ruleSet) {
+
+        if (JavaProjectClassLoaderPool.needsClassLoader(ruleSet)) {
+            return setJavaClassLoader(config, project);
+        }
+        return null;
+    }
+
+    /**
+     * Hand back a loader leased by one of the setJavaClassLoader methods.
+     *
+     * @param loader
+     *            the leased loader, may be null
+     */
+    public static void releaseJavaClassLoader(ClassLoader loader) {
+        PMDPlugin plugin = getDefault();
+        if (plugin != null) {
+            plugin.classLoaderPool.release(loader);
+        }
+    }
+
+    /**
+     * @return the pool of project class loaders used for type resolution
+     */
+    public JavaProjectClassLoaderPool getClassLoaderPool() {
+        return classLoaderPool;
+    }
+
+    /**
+     * @return the effective rule sets of the projects
+     */
+    public EffectiveRuleSets getEffectiveRuleSets() {
+        return effectiveRuleSets;
+    }
+
+    /**
+     * @return the review times recorded during this session
+     */
+    public ReviewCostModel getReviewCostModel() {
+        return reviewCostModel;
+    }
+
+    /**
+     * @return the counters of what the plugin did since it started
+     */
+    public RuntimeMetrics getRuntimeMetrics() {
+        return runtimeMetrics;
+    }
+
+    /**
+     * @return the broker that file changes and views submit analyses to
+     */
+    public AnalysisBroker getAnalysisBroker() {
+        return analysisBroker;
+    }
+
+    /**
+     * @return the ASTs of the documents shown in the AST and Dataflow views
+     */
+    public ASTCache getASTCache() {
+        return astCache;
+    }
+
+    /**
+     * @return the PMD markers of the workspace, counted by resource,
+     *         priority and rule
+     */
+    public ViolationIndex getViolationIndex() {
+        return violationIndex;
+    }
+
+    /**
+     * @return the cache of review results, kept in the plugin state location
+     */
+    public synchronized ReviewCache getReviewCache() {
+        if (reviewCache == null) {
+            reviewCache = new ReviewCache(getStateLocation().append(REVIEW_CACHE_FILE).toFile(), ReviewCache.DEFAULT_MAX_BYTES);
+        }
+        return reviewCache;
+    }
+
+    /**
+     * @return the time spent on each rule and file, kept in the plugin state
+     *         location
+     */
+    public synchronized ReviewProfile getReviewProfile() {
+        if (reviewProfile == null) {
+            reviewProfile = new ReviewProfile(getStateLocation().append(REVIEW_PROFILE_FILE).toFile(), ReviewProfile.DEFAULT_MAX_ENTRIES);
+        }
+        return reviewProfile;
     }
 
     /**
@@ -228,6 +369,14 @@ public class PMDPlugin extends AbstractUIPlugin {
         configureLogs(prefs);
         registerAdditionalRuleSets();
         fileChangeListenerEnabled(prefs.isCheckAfterSaveEnabled());
+        liveAnalysisEnabled(prefs.isLiveAnalysisEnabled());
+
+        // drop pooled class loaders whenever a classpath or the compiled classes change
+        JavaCore.addElementChangedListener(classLoaderPool, ElementChangedEvent.POST_CHANGE);
+        JavaCore.addElementChangedListener(effectiveRuleSets, ElementChangedEvent.POST_CHANGE);
+
+        runtimeMetrics.register();
+        violationIndex.start(ResourcesPlugin.getWorkspace());
 
         // if a project is deleted, remove the cached project properties
         ResourcesPlugin.getWorkspace().addResourceChangeListener(new IResourceChangeListener() {
@@ -258,6 +407,21 @@ public class PMDPlugin extends AbstractUIPlugin {
         }
     }
 
+    public void liveAnalysisEnabled(boolean flag) {
+
+        if (flag) {
+            if (liveAnalysisManager == null) {
+                liveAnalysisManager = new LiveAnalysisManager();
+                liveAnalysisManager.start();
+            }
+        } else {
+            if (liveAnalysisManager != null) {
+                liveAnalysisManager.stop();
+                liveAnalysisManager = null;
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -268,6 +432,22 @@ public class PMDPlugin extends AbstractUIPlugin {
     public void stop(BundleContext context) throws Exception {
 
         fileChangeListenerEnabled(false);
+        liveAnalysisEnabled(false);
+        analysisBroker.shutdown();
+        violationIndex.stop();
+
+        JavaCore.removeElementChangedListener(classLoaderPool);
+        JavaCore.removeElementChangedListener(effectiveRuleSets);
+        runtimeMetrics.unregister();
+        classLoaderPool.clear();
+        synchronized (this) {
+            if (reviewCache != null) {
+                reviewCache.save();
+            }
+            if (reviewProfile != null) {
+                reviewProfile.save();
+            }
+        }
 
         plugin = null;
         disposeResources();
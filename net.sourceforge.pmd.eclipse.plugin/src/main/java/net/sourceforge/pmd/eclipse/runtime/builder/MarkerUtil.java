@@ -1,8 +1,11 @@
 package net.sourceforge.pmd.eclipse.runtime.builder;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -11,6 +14,8 @@ import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.cmd.MarkerInfo2;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ViolationIndex;
 import net.sourceforge.pmd.eclipse.ui.PMDUiConstants;
 import net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord;
 import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
@@ -131,7 +136,7 @@ public class MarkerUtil {
     public static int deleteViolationsOf(String ruleName, IResource resource) {
     	
     	try {
-	    	IMarker[] markers = findAllMarkers(resource);
+	    	IMarker[] markers = findAllMarkersOf(ruleName, resource);
 	    	if (markers.length == 0) return 0;
 	    	
 	    	List<IMarker> matches = new ArrayList<IMarker>(markers.length);
@@ -153,6 +158,23 @@ public class MarkerUtil {
     	}
     }
     
+    /**
+     * Finds the markers of the resources the violation index knows to be
+     * marked for the rule, or all markers of the resource while the index
+     * is being built.
+     */
+    private static IMarker[] findAllMarkersOf(String ruleName, IResource resource) throws CoreException {
+    	
+    	ViolationIndex index = PMDPlugin.getDefault().getViolationIndex();
+    	if (!index.isReady()) return findAllMarkers(resource);
+    	
+    	List<IMarker> markers = new ArrayList<IMarker>();
+    	for (IResource marked : index.resourcesMarkedFor(ruleName, resource)) {
+    		markers.addAll(Arrays.asList(findMarkers(marked, PMDRuntimeConstants.ALL_MARKER_TYPES, IResource.DEPTH_ZERO)));
+    	}
+    	return markers.toArray(new IMarker[markers.size()]);
+    }
+    
 	public static List<IMarkerDelta> markerDeltasIn(IResourceChangeEvent event) {
 		
 		List<IMarkerDelta> deltas = new ArrayList<IMarkerDelta>();
@@ -212,6 +234,55 @@ public class MarkerUtil {
 		PMDPlugin.getDefault().removedMarkersIn(resource);
 	}
 
+	/**
+	 * Bring the PMD markers of a file in line with a new set of markers,
+	 * deleting only those that vanished and creating only those that are new.
+	 * Markers are matched on their type, rule, lines, message, priority and
+	 * severity, so reviewing an unchanged file changes no marker at all.
+	 *
+	 * @param file the reviewed file
+	 * @param markers the markers the file should have
+	 * @return the number of markers created
+	 * @throws CoreException
+	 */
+	public static int updateMarkersIn(IFile file, Collection<MarkerInfo2> markers) throws CoreException {
+
+		Map<String, List<IMarker>> existingBySignature = new HashMap<String, List<IMarker>>();
+		for (IMarker marker : new LinkedHashSet<IMarker>(Arrays.asList(findAllMarkers(file)))) {
+			String signature = MarkerInfo2.signatureOf(marker);
+			List<IMarker> same = existingBySignature.get(signature);
+			if (same == null) {
+				same = new ArrayList<IMarker>(1);
+				existingBySignature.put(signature, same);
+			}
+			same.add(marker);
+		}
+
+		List<MarkerInfo2> added = new ArrayList<MarkerInfo2>();
+		for (MarkerInfo2 info : markers) {
+			List<IMarker> same = existingBySignature.get(info.signature());
+			if (same == null || same.isEmpty()) {
+				added.add(info);
+			} else {
+				same.remove(same.size() - 1);
+			}
+		}
+
+		List<IMarker> vanished = new ArrayList<IMarker>();
+		for (List<IMarker> remaining : existingBySignature.values()) {
+			vanished.addAll(remaining);
+		}
+		if (!vanished.isEmpty()) {
+			file.getWorkspace().deleteMarkers(vanished.toArray(new IMarker[vanished.size()]));
+			PMDPlugin.getDefault().removedMarkersIn(file);
+		}
+
+		for (MarkerInfo2 info : added) {
+			info.addAsMarkerTo(file);
+		}
+		return added.size();
+	}
+
 	public static IMarker[] findAllMarkers(IResource resource) throws CoreException {
 		return findMarkers(resource, PMDRuntimeConstants.ALL_MARKER_TYPES);
 	}
@@ -221,11 +292,15 @@ public class MarkerUtil {
 	}
 
 	public static IMarker[] findMarkers(IResource resource, String[] markerTypes) throws CoreException { 
+		return findMarkers(resource, markerTypes, IResource.DEPTH_INFINITE);
+	}
+
+	public static IMarker[] findMarkers(IResource resource, String[] markerTypes, int depth) throws CoreException { 
 		
 		List<IMarker> markerList = new ArrayList<IMarker>();
 		
 		for (String markerType : markerTypes) {
-	    	for (IMarker marker : resource.findMarkers(markerType, true, IResource.DEPTH_INFINITE)) {
+	    	for (IMarker marker : resource.findMarkers(markerType, true, depth)) {
 	    		markerList.add(marker);
 	    	}
 		}
@@ -272,10 +347,20 @@ public class MarkerUtil {
 	
 	public static Set<IFile> allMarkedFiles(RootRecord root) {
 		
-		gatherRuleNames();
-		
 		Set<IFile> files = new HashSet<IFile>();
 		
+		ViolationIndex index = PMDPlugin.getDefault().getViolationIndex();
+		if (index.isReady()) {
+			// the index knows the rules that have markers
+			for (String ruleName : index.ruleNames()) {
+				if (StringUtil.isEmpty(ruleName)) continue;
+				files.addAll(ViolationIndex.filesAmong(index.resourcesMarkedFor(ruleName, root.getResource())));
+			}
+			return files;
+		}
+		
+		gatherRuleNames();
+		
 		for (AbstractPMDRecord projectRecord : root.getChildren()) {
 			for (AbstractPMDRecord packageRecord : projectRecord.getChildren()) {
 				for (AbstractPMDRecord fileRecord : packageRecord.getChildren()) {
@@ -90,7 +90,7 @@ public class PMDBuilder extends IncrementalProjectBuilder {
                 cmd.setResourceDelta(resourceDelta);
                 cmd.setTaskMarker(false);
                 cmd.setMonitor(monitor);
-                cmd.performExecute(); // a builder is always asynchronous; execute a command synchronously whatever its processor
+                PMDPlugin.getDefault().getAnalysisBroker().review(cmd); // a builder is always asynchronous; the review runs synchronously whatever its processor
             } else {
                 log.info("No change reported. Performing no build");
             }
@@ -107,8 +107,9 @@ public class PMDBuilder extends IncrementalProjectBuilder {
         ReviewCodeCmd cmd = new ReviewCodeCmd();
         cmd.addResource(project);
         cmd.setTaskMarker(false);
+        cmd.setStreamMarkers(true);
         cmd.setMonitor(monitor);
-        cmd.performExecute(); // a builder is always asynchronous; execute a command synchronously whatever its processor
+        PMDPlugin.getDefault().getAnalysisBroker().review(cmd); // a builder is always asynchronous; the review runs synchronously whatever its processor
     }
 
 }
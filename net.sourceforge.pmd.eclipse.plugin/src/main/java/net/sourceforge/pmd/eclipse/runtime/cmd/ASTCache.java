@@ -0,0 +1,258 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.StringReader;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.Parser;
+import net.sourceforge.pmd.lang.ast.Node;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+
+/**
+ * Keeps the ASTs of the documents shown in the AST and Dataflow views, so
+ * that the method list, the AST, the XPath queries and the dataflow
+ * anomalies of one version of a document share a single parse.
+ *
+ * An AST is keyed by the document it was parsed from and the modification
+ * stamp of that document; a document without stamps is compared by its
+ * text. Parsing is done on first use of the AST, and the symbol table,
+ * dataflow and type resolution passes are only run once a caller asks for
+ * them.
+ *
+ * The cache holds the most recently used documents only, and the ASTs are
+ * softly referenced: the VM clears them, least recently used first, when
+ * memory gets short, and they are parsed again when needed.
+ */
+public class ASTCache {
+
+    /** The default number of documents whose ASTs are kept. */
+    public static final int DEFAULT_MAX_ENTRIES = 8;
+
+    private final int maxEntries;
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+
+    /**
+     * @param maxEntries
+     *            the number of documents whose ASTs are kept
+     */
+    public ASTCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param document
+     *            the document to parse
+     * @param languageVersion
+     *            the language version to parse it with
+     * @return the AST of the current text of the document
+     */
+    public Entry get(IDocument document, LanguageVersion languageVersion) {
+        long stamp = document instanceof IDocumentExtension4 ? ((IDocumentExtension4) document)
+                .getModificationStamp() : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+        return get(document, stamp, document.get(), languageVersion);
+    }
+
+    /**
+     * @param owner
+     *            what the source belongs to, compared by identity
+     * @param stamp
+     *            the version of the source, or
+     *            {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP}
+     * @param source
+     *            the source
+     * @param languageVersion
+     *            the language version to parse it with
+     * @return the AST of the source
+     */
+    public synchronized Entry get(Object owner, long stamp, String source, LanguageVersion languageVersion) {
+        Object key = new IdentityKey(owner);
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.matches(stamp, source, languageVersion)) {
+            entry = new Entry(stamp, source, languageVersion);
+            entries.put(key, entry);
+            evict();
+        }
+        return entry;
+    }
+
+    private void evict() {
+        Iterator<Entry> i = entries.values().iterator();
+        while (i.hasNext()) {
+            Entry entry = i.next();
+            if (entries.size() > maxEntries || entry.isCleared()) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * @param source
+     *            the source
+     * @param languageVersion
+     *            the language version to parse it with
+     * @return an entry for a source that is parsed once and not kept, such
+     *         as a file visited by a search
+     */
+    public static Entry parse(String source, LanguageVersion languageVersion) {
+        return new Entry(IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP, source, languageVersion);
+    }
+
+    /**
+     * Forget the AST of a document.
+     *
+     * @param owner
+     *            the document
+     */
+    public synchronized void remove(Object owner) {
+        entries.remove(new IdentityKey(owner));
+    }
+
+    /**
+     * @return the number of documents whose ASTs are kept
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * One version of a document and its AST.
+     *
+     * The passes change the nodes of the AST; they are run under the lock of
+     * the entry, and each only once.
+     */
+    public static final class Entry {
+
+        private final long stamp;
+        private final String source;
+        private final LanguageVersion languageVersion;
+        private final LanguageVersionHandler handler;
+
+        // read without the lock, so that looking at the cache never waits for a parse
+        private volatile SoftReference<Tree> tree;
+
+        Entry(long stamp, String source, LanguageVersion languageVersion) {
+            this.stamp = stamp;
+            this.source = source;
+            this.languageVersion = languageVersion;
+            handler = languageVersion.getLanguageVersionHandler();
+        }
+
+        boolean matches(long otherStamp, String otherSource, LanguageVersion otherVersion) {
+            if (languageVersion != otherVersion || stamp != otherStamp) {
+                return false;
+            }
+            return stamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP || source.equals(otherSource);
+        }
+
+        boolean isCleared() {
+            SoftReference<Tree> t = tree;
+            return t != null && t.get() == null;
+        }
+
+        public LanguageVersion getLanguageVersion() {
+            return languageVersion;
+        }
+
+        /**
+         * @return the text the AST is parsed from
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * @return the parsed AST, without any pass run
+         * @throws net.sourceforge.pmd.lang.ast.ParseException
+         *             if the source cannot be parsed
+         */
+        public synchronized Node getRoot() {
+            return tree().root;
+        }
+
+        /**
+         * @return the AST with its symbol table
+         */
+        public synchronized Node withSymbols() {
+            Tree t = tree();
+            if (!t.symbols) {
+                handler.getSymbolFacade().start(t.root);
+                t.symbols = true;
+            }
+            return t.root;
+        }
+
+        /**
+         * @return the AST with its symbol table and dataflow graphs
+         */
+        public synchronized Node withDataFlow() {
+            Tree t = tree();
+            withSymbols();
+            if (!t.dataFlow) {
+                handler.getDataFlowFacade().start(t.root);
+                t.dataFlow = true;
+            }
+            return t.root;
+        }
+
+        /**
+         * @return the AST with its symbol table and resolved types
+         */
+        public synchronized Node withTypes() {
+            Tree t = tree();
+            withSymbols();
+            if (!t.types) {
+                handler.getTypeResolutionFacade(null).start(t.root);
+                t.types = true;
+            }
+            return t.root;
+        }
+
+        private Tree tree() {
+            Tree t = tree == null ? null : tree.get();
+            if (t == null) {
+                Parser parser = handler.getParser(handler.getDefaultParserOptions());
+                t = new Tree(parser.parse(null, new StringReader(source)));
+                tree = new SoftReference<Tree>(t);
+            }
+            return t;
+        }
+    }
+
+    /**
+     * An AST and the passes run on it, dropped together when memory gets
+     * short.
+     */
+    private static final class Tree {
+        final Node root;
+        boolean symbols;
+        boolean dataFlow;
+        boolean types;
+
+        Tree(Node root) {
+            this.root = root;
+        }
+    }
+
+    private static final class IdentityKey {
+        private final Object owner;
+
+        IdentityKey(Object owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(owner);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof IdentityKey && ((IdentityKey) other).owner == owner;
+        }
+    }
+}
@@ -62,6 +62,9 @@ public abstract class AbstractDefaultCommand extends AbstractProcessableCommand
     private IProgressMonitor monitor;
     private int stepCount;
     private boolean userInitiated;
+    private CommandPriority priority;
+    private volatile boolean canceled;
+    private Runnable finishedCallback;
 
     protected AbstractDefaultCommand(String theName, String theDescription) {
         name = theName;
@@ -183,6 +186,32 @@ public abstract class AbstractDefaultCommand extends AbstractProcessableCommand
         this.userInitiated = userInitiated;
     }
 
+    /**
+     * @return the class the command is scheduled in; unless set, USER for
+     *         commands the user initiated and BUILD for the others
+     */
+    public CommandPriority getPriority() {
+        if (priority != null) {
+            return priority;
+        }
+        return userInitiated ? CommandPriority.USER : CommandPriority.BUILD;
+    }
+
+    /**
+     * @param priority The priority to set.
+     */
+    public void setPriority(CommandPriority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * @return the name of the project the command works on, so that the
+     *         commands of different projects take turns; null if unknown
+     */
+    public String getProjectName() {
+        return null;
+    }
+
     /**
      * @return Returns the monitor.
      */
@@ -195,6 +224,39 @@ public abstract class AbstractDefaultCommand extends AbstractProcessableCommand
      */
     public void setMonitor(final IProgressMonitor monitor) {
         this.monitor = monitor;
+        if (canceled && monitor != null) {
+            monitor.setCanceled(true);
+        }
+    }
+
+    /**
+     * Ask the command to stop as soon as possible, whether it already runs
+     * or not.
+     */
+    public void cancel() {
+        canceled = true;
+        IProgressMonitor currentMonitor = monitor;
+        if (currentMonitor != null) {
+            currentMonitor.setCanceled(true);
+        }
+    }
+
+    /**
+     * @param callback
+     *            run once the command is finished, successfully or not, by
+     *            the processors that run commands asynchronously
+     */
+    public void setFinishedCallback(Runnable callback) {
+        finishedCallback = callback;
+    }
+
+    /**
+     * Tell the command it is finished. Called by the processor that ran it.
+     */
+    public void finished() {
+        if (finishedCallback != null) {
+            finishedCallback.run();
+        }
     }
 
     /**
@@ -236,7 +298,7 @@ public abstract class AbstractDefaultCommand extends AbstractProcessableCommand
      * @see org.eclipse.core.runtime.IProgressMonitor#isCanceled
      */
     protected boolean isCanceled() {
-        return monitor == null ? false : monitor.isCanceled();
+        return canceled || monitor != null && monitor.isCanceled();
     }
 
     /**
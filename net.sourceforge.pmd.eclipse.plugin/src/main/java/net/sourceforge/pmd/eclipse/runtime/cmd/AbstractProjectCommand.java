@@ -42,6 +42,14 @@ public abstract class AbstractProjectCommand extends AbstractDefaultCommand {
     protected IProject project() {
     	return project;
     }
+
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.cmd.AbstractDefaultCommand#getProjectName()
+     */
+    @Override
+    public String getProjectName() {
+        return project == null ? null : project.getName();
+    }
     
     protected void visitProjectResourcesWith(IResourceVisitor visitor) throws CoreException {
     	project.accept(visitor);
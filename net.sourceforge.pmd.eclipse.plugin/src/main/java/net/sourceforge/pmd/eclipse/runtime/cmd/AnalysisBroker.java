@@ -0,0 +1,389 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import name.herlin.command.CommandException;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * The single entry point for marker reviews, whether triggered by changes of
+ * a file, such as saving it, or run by a user action or a build.
+ *
+ * A request waits until its file has not been requested again for the
+ * debounce delay; requests for a file made meanwhile are merged into one,
+ * which keeps the most urgent priority. Requests due at the same time are
+ * reviewed by one command per priority and project.
+ *
+ * At most one review of a file runs at a time. A request for the content
+ * version already being reviewed, identified by the modification stamp of
+ * the file, is dropped. A request for a newer version marks the running
+ * review stale and waits for it to end; a command whose files are all stale
+ * is cancelled.
+ *
+ * Reviews whose resources are chosen by the caller, such as the ones of user
+ * actions and builds, go through {@link #review(ReviewCodeCmd)}. They run at
+ * once, and while they run they cover their resources: marker reviews of
+ * these files that are running are marked stale, requests made before the
+ * covering review started are dropped, and later ones wait for it.
+ *
+ * Requesting the review of a file only records the request, so resource
+ * change listeners may request reviews without ever waiting for one.
+ */
+public class AnalysisBroker {
+
+    private static final Logger log = Logger.getLogger(AnalysisBroker.class);
+
+    /** The default time a file must stay unchanged before it is reviewed. */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 400;
+
+    private final long debounceMillis;
+    private final Map<IFile, Request> pending = new LinkedHashMap<IFile, Request>();
+    private final Map<IFile, Flight> inFlight = new HashMap<IFile, Flight>();
+    private final List<Coverage> coverages = new ArrayList<Coverage>();
+    private final Job dispatcher = new Job("PMD analysis requests") {
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            dispatchDueRequests();
+            return Status.OK_STATUS;
+        }
+    };
+    private boolean shutdown;
+
+    public AnalysisBroker(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+        dispatcher.setSystem(true);
+        dispatcher.setPriority(Job.SHORT);
+    }
+
+    /**
+     * Request a review of the file that updates its markers.
+     *
+     * @param file
+     *            the file to review
+     * @param priority
+     *            the class the review is scheduled in
+     */
+    public void review(IFile file, CommandPriority priority) {
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            Request previous = pending.remove(file);
+            if (previous != null && previous.priority.compareTo(priority) < 0) {
+                priority = previous.priority;
+            }
+            long now = System.nanoTime();
+            pending.put(file, new Request(file, priority, now, now + debounceMillis * 1000000));
+        }
+        wakeDispatcher(debounceMillis);
+    }
+
+    /**
+     * Run a review whose resources the caller chose, at once. Marker reviews
+     * of the same files are kept from running alongside it.
+     *
+     * @param command
+     *            the review, ready to execute
+     * @throws CommandException
+     *             if the review cannot be started
+     */
+    public void review(ReviewCodeCmd command) throws CommandException {
+        final Coverage coverage = cover(command.getReviewedResources());
+        command.setFinishedCallback(new Runnable() {
+            public void run() {
+                uncover(coverage);
+            }
+        });
+        boolean started = false;
+        try {
+            run(command);
+            started = true;
+        } finally {
+            // commands run by a synchronous processor are not called back
+            if (!started || command.isTerminated()) {
+                uncover(coverage);
+            }
+        }
+    }
+
+    private Coverage cover(Collection<IResource> resources) {
+        Coverage coverage = new Coverage(resources, System.nanoTime());
+        List<AbstractDefaultCommand> toCancel = new ArrayList<AbstractDefaultCommand>();
+        synchronized (this) {
+            coverages.add(coverage);
+            for (Map.Entry<IFile, Flight> entry : inFlight.entrySet()) {
+                IFile file = entry.getKey();
+                if (coverage.covers(file) && entry.getValue().markStale(file)) {
+                    toCancel.add(entry.getValue().command);
+                }
+            }
+        }
+        for (AbstractDefaultCommand command : toCancel) {
+            command.cancel();
+        }
+        return coverage;
+    }
+
+    private void uncover(Coverage coverage) {
+        synchronized (this) {
+            if (!coverages.remove(coverage) || pending.isEmpty()) {
+                return;
+            }
+        }
+        wakeDispatcher(0);
+    }
+
+    private void wakeDispatcher(long delayMillis) {
+        // a running dispatcher is rescheduled once done, a waiting one looks at every pending request
+        int state = dispatcher.getState();
+        if (state != Job.SLEEPING && state != Job.WAITING) {
+            dispatcher.schedule(delayMillis);
+        }
+    }
+
+    /**
+     * Drop the pending requests and cancel the running reviews.
+     */
+    public void shutdown() {
+        List<Flight> flights;
+        synchronized (this) {
+            shutdown = true;
+            pending.clear();
+            flights = new ArrayList<Flight>(inFlight.values());
+            inFlight.clear();
+        }
+        dispatcher.cancel();
+        for (Flight flight : flights) {
+            flight.command.cancel();
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for their debounce delay
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private void dispatchDueRequests() {
+        List<Flight> toRun = new ArrayList<Flight>();
+        List<AbstractDefaultCommand> toCancel = new ArrayList<AbstractDefaultCommand>();
+        long nextDue = -1;
+        synchronized (this) {
+            long now = System.nanoTime();
+            Map<String, Flight> reviews = new HashMap<String, Flight>();
+            Iterator<Request> i = pending.values().iterator();
+            while (i.hasNext()) {
+                Request request = i.next();
+                if (request.dueNanos - now > 0) {
+                    if (nextDue < 0 || request.dueNanos - nextDue < 0) {
+                        nextDue = request.dueNanos;
+                    }
+                    continue;
+                }
+                if (dispatch(request, reviews, toRun, toCancel)) {
+                    i.remove();
+                }
+            }
+        }
+
+        for (AbstractDefaultCommand command : toCancel) {
+            command.cancel();
+        }
+        for (Flight flight : toRun) {
+            try {
+                run(flight.command);
+                if (flight.command.isTerminated()) {
+                    flightFinished(flight);
+                }
+            } catch (CommandException e) {
+                PMDPlugin.getDefault().logError("Error running the review " + flight.command.getName(), e);
+                flightFinished(flight);
+            }
+        }
+        if (nextDue >= 0) {
+            wakeDispatcher(Math.max(0, (nextDue - System.nanoTime()) / 1000000));
+        }
+    }
+
+    /**
+     * Start or join the review a due request asks for. Must be called
+     * holding the broker.
+     *
+     * @return false if the request must stay pending until a running
+     *         review of its file is done
+     */
+    private boolean dispatch(Request request, Map<String, Flight> reviews, List<Flight> toRun,
+            List<AbstractDefaultCommand> toCancel) {
+        IFile file = request.file;
+        if (!file.exists()) {
+            return true;
+        }
+        Coverage coverage = coverageOf(file);
+        if (coverage != null) {
+            if (request.submittedNanos - coverage.startNanos > 0) {
+                // changed while it is being reviewed
+                return false;
+            }
+            log.debug(file.getName() + " is already being reviewed");
+            return true;
+        }
+        long stamp = file.getModificationStamp();
+        Flight running = inFlight.get(file);
+        if (running != null) {
+            if (running.stampOf(file) == stamp) {
+                log.debug("Already reviewing this version of " + file.getName());
+                return true;
+            }
+            if (running.markStale(file)) {
+                toCancel.add(running.command);
+            }
+            return false;
+        }
+
+        String group = request.priority.name() + '/' + projectName(file);
+        Flight flight = reviews.get(group);
+        if (flight == null) {
+            ReviewCodeCmd review = new ReviewCodeCmd();
+            review.setPriority(request.priority);
+            flight = new Flight(review);
+            reviews.put(group, flight);
+            toRun.add(flight);
+        }
+        flight.command.addResource(file);
+        flight.add(file, stamp);
+        inFlight.put(file, flight);
+        return true;
+    }
+
+    private Coverage coverageOf(IFile file) {
+        for (int i = coverages.size() - 1; i >= 0; i--) {
+            if (coverages.get(i).covers(file)) {
+                return coverages.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Start a command. Tests override it to run commands the way they want.
+     *
+     * @param command
+     *            the command to start
+     * @throws CommandException
+     *             if the command cannot be started
+     */
+    protected void run(AbstractDefaultCommand command) throws CommandException {
+        command.performExecute();
+    }
+
+    private static String projectName(IFile file) {
+        IProject project = file.getProject();
+        return project == null ? "" : project.getName();
+    }
+
+    private void flightFinished(Flight flight) {
+        synchronized (this) {
+            for (IFile file : flight.stamps.keySet()) {
+                if (inFlight.get(file) == flight) {
+                    inFlight.remove(file);
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+        }
+        // requests for newer versions waited for this flight
+        wakeDispatcher(0);
+    }
+
+    /**
+     * A request waiting for its debounce delay.
+     */
+    private static final class Request {
+        final IFile file;
+        final CommandPriority priority;
+        final long submittedNanos;
+        final long dueNanos;
+
+        Request(IFile file, CommandPriority priority, long submittedNanos, long dueNanos) {
+            this.file = file;
+            this.priority = priority;
+            this.submittedNanos = submittedNanos;
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    /**
+     * The resources a review run by a caller covers.
+     */
+    private static final class Coverage {
+        final Collection<IResource> resources;
+        final long startNanos;
+
+        Coverage(Collection<IResource> resources, long startNanos) {
+            this.resources = resources;
+            this.startNanos = startNanos;
+        }
+
+        boolean covers(IFile file) {
+            for (IResource resource : resources) {
+                if (resource.getFullPath().isPrefixOf(file.getFullPath())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A running review and the versions of the files it reviews.
+     */
+    private final class Flight implements Runnable {
+        final ReviewCodeCmd command;
+        final Map<IFile, Long> stamps = new HashMap<IFile, Long>();
+        private final Set<IFile> stale = new HashSet<IFile>();
+
+        Flight(ReviewCodeCmd command) {
+            this.command = command;
+            command.setFinishedCallback(this);
+        }
+
+        void add(IFile file, long stamp) {
+            stamps.put(file, Long.valueOf(stamp));
+        }
+
+        long stampOf(IFile file) {
+            Long stamp = stamps.get(file);
+            return stamp == null ? IFile.NULL_STAMP : stamp.longValue();
+        }
+
+        /**
+         * @return whether this made the last reviewed version stale
+         */
+        boolean markStale(IFile file) {
+            return stale.add(file) && stale.size() == stamps.size();
+        }
+
+        public void run() {
+            flightFinished(this);
+        }
+    }
+}
@@ -22,30 +22,30 @@
  */
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
 import org.apache.log4j.Logger;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.ui.IWorkingSet;
-import org.eclipse.ui.ResourceWorkingSetFilter;
 
 import name.herlin.command.Timer;
 import net.sourceforge.pmd.PMD;
@@ -65,13 +65,13 @@ import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
 import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
 import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
 import net.sourceforge.pmd.eclipse.util.IOUtil;
+import net.sourceforge.pmd.eclipse.util.SourceBuffer;
 import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
 import net.sourceforge.pmd.lang.java.JavaLanguageModule;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.util.NumericConstants;
-import net.sourceforge.pmd.util.StringUtil;
 import net.sourceforge.pmd.util.datasource.DataSource;
 import net.sourceforge.pmd.util.datasource.ReaderDataSource;
 
@@ -88,10 +88,23 @@ public class BaseVisitor {
     private Map<IFile, Set<MarkerInfo2>> accumulator;
 //    private PMDEngine pmdEngine;
     private RuleSet ruleSet;
+    private EffectiveRuleSet effectiveRuleSet;
     private int fileCount;
     private long pmdDuration;
     private IProjectProperties projectProperties;
-    protected RuleSet hiddenRules;
+    private ReviewWorkerPool workerPool;
+    private ReviewProgress progress;
+    private ReviewProfile profile;
+    private MarkerStream markerStream;
+    private final Map<String, LanguageVersion> languageVersionsByExtension = new HashMap<String, LanguageVersion>();
+    private List<IPath> workingSetPaths;
+    private boolean workingSetResolved;
+    private String ruleSetFingerprint;
+    private boolean ruleSetFingerprinted;
+    private int cacheHits;
+    private int cacheMisses;
+    private final List<Runnable> handedBack = new ArrayList<Runnable>();
+    private final Map<ClassLoader, String> classpathFingerprints = new IdentityHashMap<ClassLoader, String>();
 
     private PMDConfiguration configuration;
 
@@ -101,8 +114,6 @@ public class BaseVisitor {
      */
     protected BaseVisitor() {
         super();
-
-        hiddenRules = new RuleSet();
     }
 
     protected PMDConfiguration configuration() {
@@ -178,8 +189,11 @@ public class BaseVisitor {
      *            the task name
      */
     public void subTask(final String name) {
-        if (getMonitor() != null) {
-            getMonitor().subTask(name);
+        IProgressMonitor progressMonitor = getMonitor();
+        if (progressMonitor != null) {
+            synchronized (progressMonitor) {
+                progressMonitor.subTask(name);
+            }
         }
     }
 
@@ -189,8 +203,11 @@ public class BaseVisitor {
      * @param work
      */
     public void worked(final int work) {
-        if (getMonitor() != null) {
-            getMonitor().worked(work);
+        IProgressMonitor progressMonitor = getMonitor();
+        if (progressMonitor != null) {
+            synchronized (progressMonitor) {
+                progressMonitor.worked(work);
+            }
         }
     }
 
@@ -221,35 +238,141 @@ public class BaseVisitor {
      *            The ruleSet to set.
      */
     public void setRuleSet(final RuleSet ruleSet) {
-        ruleSet.addRuleSet(hiddenRules);
         this.ruleSet = ruleSet;
+        this.effectiveRuleSet = null;
+        synchronized (this) {
+            ruleSetFingerprinted = false;
+        }
+    }
+
+    /**
+     * Use the effective rule set of a project. Each file is then only given
+     * the rules of its own language, and the fingerprint that was computed
+     * when the rule set was built.
+     *
+     * @param effectiveRuleSet
+     *            the effective rule set; it is shared and is not modified
+     */
+    public void setEffectiveRuleSet(final EffectiveRuleSet effectiveRuleSet) {
+        this.ruleSet = effectiveRuleSet.getRuleSet();
+        this.effectiveRuleSet = effectiveRuleSet;
+        synchronized (this) {
+            ruleSetFingerprint = effectiveRuleSet.getFingerprint();
+            ruleSetFingerprinted = true;
+        }
+    }
+
+    /**
+     * Set the pool that reviews files in the background. When no pool is set,
+     * files are reviewed one after the other on the visiting thread.
+     *
+     * @param workerPool
+     *            the worker pool, may be null
+     */
+    public void setWorkerPool(ReviewWorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Set the stream through which markers are applied while visiting. When
+     * a stream is set, markers go there instead of the accumulator, and the
+     * visiting thread flushes it whenever a batch is due.
+     *
+     * @param markerStream
+     *            the marker stream, may be null
+     */
+    public void setMarkerStream(MarkerStream markerStream) {
+        this.markerStream = markerStream;
     }
 
     /**
      * @return the number of files that has been processed
      */
-    public int getProcessedFilesCount() {
+    public synchronized int getProcessedFilesCount() {
         return fileCount;
     }
 
     /**
      * @return actual PMD duration
      */
-    public long getActualPmdDuration() {
+    public synchronized long getActualPmdDuration() {
         return pmdDuration;
     }
 
+    /**
+     * @return the number of files whose markers were restored from the review
+     *         cache
+     */
+    public synchronized int getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return the number of files that had to be analyzed because the review
+     *         cache had no matching entry
+     */
+    public synchronized int getCacheMisses() {
+        return cacheMisses;
+    }
+
     /**
      * Set the project properties (note that visitor is expected to be called one project at a time
      */
     public void setProjectProperties(IProjectProperties projectProperties) {
         this.projectProperties = projectProperties;
+        this.languageVersionsByExtension.clear();
+        this.workingSetResolved = false;
+        this.workingSetPaths = null;
     }
 
-    private boolean isIncluded(IFile file) throws PropertiesException {
-    	return projectProperties.isIncludeDerivedFiles() || !projectProperties.isIncludeDerivedFiles() && !file.isDerived();
+    /**
+     * Set the progress shared by all the visitors of a command. Without it,
+     * the monitor is advanced by one for each reviewed file.
+     *
+     * @param progress
+     *            the progress of the command, may be null
+     */
+    public void setProgress(ReviewProgress progress) {
+        this.progress = progress;
     }
-    
+
+    /**
+     * Set the profile in which the time spent on each rule and file is
+     * recorded.
+     *
+     * @param profile
+     *            the profile, or null not to measure reviews
+     */
+    public void setProfile(ReviewProfile profile) {
+        this.profile = profile;
+    }
+
+    private boolean isIncluded(boolean derived) throws PropertiesException {
+    	return projectProperties.isIncludeDerivedFiles() || !derived;
+    }
+
+    /**
+     * Return the language version of a file. The answer only depends on the
+     * extension, so it is looked up once per extension and project.
+     */
+    private LanguageVersion languageVersionFor(IFile file) {
+    	String extension = file.getFileExtension();
+    	if (languageVersionsByExtension.containsKey(extension)) {
+    		return languageVersionsByExtension.get(extension);
+    	}
+
+    	LanguageVersionDiscoverer languageDiscoverer = new LanguageVersionDiscoverer();
+    	LanguageVersion languageVersion = languageDiscoverer.getDefaultLanguageVersionForFile(file.getName());
+    	// in case it is java, select the correct java version
+    	if (languageVersion != null && languageVersion.getLanguage() == LanguageRegistry.getLanguage(JavaLanguageModule.NAME)) {
+    	    languageVersion = PMDPlugin.javaVersionFor(file.getProject());
+    	}
+    	log.debug("discovered language for ." + extension + " files: " + languageVersion);
+
+    	languageVersionsByExtension.put(extension, languageVersion);
+    	return languageVersion;
+    }
+
     /**
      * Run PMD against a resource
      *
@@ -258,93 +381,362 @@ public class BaseVisitor {
      */
     protected final void reviewResource(IResource resource) {
 
-    	IFile file = (IFile) resource.getAdapter(IFile.class);
+    	final IFile file = (IFile) resource.getAdapter(IFile.class);
+    	if (file != null) {
+    		reviewResource(file, file.isDerived());
+    	}
+    }
+
+    /**
+     * Classify a resource and, if it passes every filter, run PMD against it.
+     * The cheap checks come first: derived status, then language, working set
+     * and path patterns.
+     *
+     * @param resource
+     *            the resource to process
+     * @param derived
+     *            whether the resource is derived
+     */
+    protected final void reviewResource(IResource resource, boolean derived) {
+
+    	final IFile file = (IFile) resource.getAdapter(IFile.class);
     	if (file == null || file.getFileExtension() == null) return;
 
-    	Reader input = null;
+    	boolean reviewed = false;
     	try {
-    		boolean included = isIncluded(file);
-    		log.debug("Derived files included: " + projectProperties.isIncludeDerivedFiles());
-    		log.debug("file " + file.getName() + " is derived: " + file.isDerived());
-    		log.debug("file checked: " + included);
-
     		prepareMarkerAccumulator(file);
 
-    		LanguageVersionDiscoverer languageDiscoverer = new LanguageVersionDiscoverer();
-    		LanguageVersion languageVersion = languageDiscoverer.getDefaultLanguageVersionForFile(file.getName());
-    		// in case it is java, select the correct java version
-    		if (languageVersion != null && languageVersion.getLanguage() == LanguageRegistry.getLanguage(JavaLanguageModule.NAME)) {
-    		    languageVersion = PMDPlugin.javaVersionFor(file.getProject());
+    		if (!isIncluded(derived)) {
+    			log.debug("The file " + file.getName() + " is derived and derived files are not included");
+    			return;
     		}
-    		if (languageVersion != null) {
-    		    configuration().setDefaultLanguageVersion(languageVersion);
+
+    		LanguageVersion languageVersion = languageVersionFor(file);
+    		if (languageVersion == null) {
+    			log.debug("The language of " + file.getName() + " is not supported");
+    			return;
     		}
-    		log.debug("discovered language: " + languageVersion);
 
-		    PMDPlugin.setJavaClassLoader(configuration(), resource.getProject());
+    		if (!isFileInWorkingSet(file)) {
+    			log.debug("The file " + file.getName() + " is not in the working set");
+    			return;
+    		}
 
     		final File sourceCodeFile = file.getRawLocation().toFile();
-    		if (included && getRuleSet().applies(sourceCodeFile) && isFileInWorkingSet(file) && languageVersion != null) {
-    			subTask("PMD checking: " + file.getName());
-
-
-    			Timer timer = new Timer();
-
-    			RuleContext context = PMD.newRuleContext(file.getName(), sourceCodeFile);
-    			context.setLanguageVersion(languageVersion);
-
-    			input = new InputStreamReader(file.getContents(), file.getCharset());
-    			//                    getPmdEngine().processFile(input, getRuleSet(), context);
-    			//                    getPmdEngine().processFile(sourceCodeFile, getRuleSet(), context);
-
-    			DataSource dataSource = new ReaderDataSource(input, file.getName());
-    			RuleSetFactory ruleSetFactory = new RuleSetFactory() {
-    			    @Override
-    			    public synchronized RuleSets createRuleSets(String referenceString)
-    			            throws RuleSetNotFoundException {
-    			        return new RuleSets(getRuleSet());
-    			    }
-    			};
-    			configuration().setThreads(0); // need to disable multi threading, as the ruleset is not recreated and shared between threads...
-    			// but as we anyway have only one file to process, it won't hurt here.
-    			PMD.processFiles(configuration(), ruleSetFactory, Arrays.asList(dataSource), context, Collections.<Renderer>emptyList());
-
-    			timer.stop();
-    			pmdDuration += timer.getDuration();
-
-    			if (context.getReport().hasErrors()) {
-    			    StringBuilder message = new StringBuilder("There were processing errors!\n");
-    			    Iterator<ProcessingError> errors = context.getReport().errors();
-                    while (errors.hasNext()) {
-    			        ProcessingError error = errors.next();
-                        message.append(error.getFile()).append(": ").append(error.getMsg()).append("\n");
-    			    }
-    			    PMDPlugin.getDefault().logWarn(message.toString());
-    			    throw new PMDException(message.toString());
-    			}
+    		if (!applies(sourceCodeFile)) {
+    			log.debug("The file " + file.getName() + " is excluded by the rule set patterns");
+    			return;
+    		}
 
-    			updateMarkers(file, context, isUseTaskMarker());
+    		RuleSet rules = ruleSetFor(languageVersion);
+    		if (rules == null) {
+    			log.debug("No rule applies to the language of " + file.getName());
+    			return;
+    		}
 
-    			worked(1);
-    			fileCount++;
+    		if (progress != null) {
+    			progress.accepted();
+    		}
+    		reviewed = true;
+    		if (workerPool == null) {
+    			review(file, languageVersion, rules, configuration());
     		} else {
-    			log.debug("The file " + file.getName() + " is not in the working set");
+    			submitReview(file, languageVersion, rules);
+    		}
+
+    	} catch (PropertiesException e) {
+    		log.error("Properties exception visiting " + file.getName(), e); // TODO:	// complete message
+    	} catch (IllegalArgumentException e) {
+    	    log.error("Illegal argument", e);
+    	} finally {
+    		reviewHandedBack();
+    		if (markerStream != null) {
+    			if (!reviewed) {
+    				// files that are no longer reviewed lose their markers
+    				markerStream.offer(file, new HashSet<MarkerInfo2>());
+    			}
+    			markerStream.flushIfDue(getMonitor());
+    		}
+    	}
+    }
+
+    /**
+     * Tell whether the include and exclude patterns let a file be reviewed
+     */
+    private boolean applies(File sourceCodeFile) {
+    	return effectiveRuleSet == null ? getRuleSet().applies(sourceCodeFile) : effectiveRuleSet.getPathFilter().accepts(sourceCodeFile);
+    }
+
+    /**
+     * @return the rules to run against a file of that language version, or
+     *         null if none applies
+     */
+    private RuleSet ruleSetFor(LanguageVersion languageVersion) {
+    	return effectiveRuleSet == null ? getRuleSet() : effectiveRuleSet.ruleSetFor(languageVersion.getLanguage());
+    }
+
+    /**
+     * Hand the review of a file to the worker pool. The worker runs against
+     * its own copy of the rule set and its own PMD configuration. A rule set
+     * the workers cannot copy is applied on the visiting thread instead, as
+     * the shared instance must not be used by two threads.
+     */
+    private void submitReview(final IFile file, final LanguageVersion languageVersion, final RuleSet sharedRuleSet) {
+    	if (!workerPool.canCopy(sharedRuleSet)) {
+    		review(file, languageVersion, sharedRuleSet, configuration());
+    		return;
+    	}
+    	workerPool.execute(new Runnable() {
+    		public void run() {
+    			if (isCanceled()) return;
+    			RuleSet rules = workerPool.ruleSetFor(sharedRuleSet);
+    			if (rules == null) {
+    				handBack(file, languageVersion, sharedRuleSet);
+    			} else {
+    				review(file, languageVersion, rules, new PMDConfiguration());
+    			}
     		}
+    	});
+    }
+
+    /**
+     * Leave the review of a file to the visiting thread, for a worker that
+     * could not copy the rule set.
+     */
+    private void handBack(final IFile file, final LanguageVersion languageVersion, final RuleSet sharedRuleSet) {
+    	synchronized (handedBack) {
+    		handedBack.add(new Runnable() {
+    			public void run() {
+    				review(file, languageVersion, sharedRuleSet, configuration());
+    			}
+    		});
+    	}
+    }
+
+    /**
+     * Review, on the calling thread, the files the workers handed back. The
+     * visiting thread calls this while visiting, and once more after the
+     * worker pool has finished.
+     */
+    public void reviewHandedBack() {
+    	List<Runnable> reviews;
+    	synchronized (handedBack) {
+    		if (handedBack.isEmpty()) return;
+    		reviews = new ArrayList<Runnable>(handedBack);
+    		handedBack.clear();
+    	}
+    	for (Runnable review : reviews) {
+    		if (isCanceled()) return;
+    		review.run();
+    	}
+    }
+
+    /**
+     * Run PMD against a file that has passed all the filters, unless the
+     * review cache already knows the violations of its current content
+     *
+     * @param file
+     *            the file to process
+     * @param languageVersion
+     *            the language version of that file
+     * @param rules
+     *            the rule set to apply; must not be in use by another thread
+     * @param config
+     *            the PMD configuration; must not be in use by another thread
+     */
+    private void review(IFile file, LanguageVersion languageVersion, final RuleSet rules, PMDConfiguration config) {
+
+    	Reader input = null;
+    	ClassLoader leasedLoader = null;
+    	try {
+    		config.setDefaultLanguageVersion(languageVersion);
+    		leasedLoader = PMDPlugin.setJavaClassLoader(config, file.getProject(), rules);
+
+    		subTask("PMD checking: " + file.getName() + (progress == null ? "" : " (" + progress.describe() + ")"));
+
+    		SourceBuffer source = SourceBuffer.read(file);
+    		ReviewCache cache = PMDPlugin.getDefault().getReviewCache();
+    		String path = file.getFullPath().toString();
+    		String fingerprint = fingerprintFor(config);
+    		if (fingerprint != null) {
+    		    List<ReviewCache.Violation> cached = cache.lookup(path, source.contentHash(), languageVersion.getTerseName(), fingerprint);
+    		    if (cached != null) {
+    		        log.debug("Restoring the violations of " + file.getName() + " from the review cache");
+    		        cacheHit();
+    		        addMarkers(file, cached);
+    		        fileProcessed();
+    		        return;
+    		    }
+    		    cacheMiss();
+    		}
+
+    		Timer timer = new Timer();
+    		final ProfilingRuleSet profilingRules = profile == null ? null : new ProfilingRuleSet(rules);
+    		final RuleSet appliedRules = profilingRules == null ? rules : profilingRules.getRuleSet();
+    		long startNanos = System.nanoTime();
+    		long startCpuNanos = ThreadClock.cpuNanos();
+    		long startAllocatedBytes = ThreadClock.allocatedBytes();
+
+    		final File sourceCodeFile = file.getRawLocation().toFile();
+    		RuleContext context = PMD.newRuleContext(file.getName(), sourceCodeFile);
+    		context.setLanguageVersion(languageVersion);
+
+    		input = source.newReader();
+    		//                    getPmdEngine().processFile(input, getRuleSet(), context);
+    		//                    getPmdEngine().processFile(sourceCodeFile, getRuleSet(), context);
+
+    		DataSource dataSource = new ReaderDataSource(input, file.getName());
+    		RuleSetFactory ruleSetFactory = new RuleSetFactory() {
+    		    @Override
+    		    public synchronized RuleSets createRuleSets(String referenceString)
+    		            throws RuleSetNotFoundException {
+    		        return new RuleSets(appliedRules);
+    		    }
+    		};
+    		config.setThreads(0); // need to disable multi threading, as the ruleset is not recreated and shared between threads...
+    		// but as we anyway have only one file to process, it won't hurt here.
+    		PMD.processFiles(config, ruleSetFactory, Arrays.asList(dataSource), context, Collections.<Renderer>emptyList());
+
+    		timer.stop();
+    		addPmdDuration(timer.getDuration());
+    		PMDPlugin.getDefault().getReviewCostModel().record(path, sourceCodeFile.length(), timer.getDuration());
+    		if (profilingRules != null) {
+    		    ReviewProfile.Entry measure = new ReviewProfile.Entry(path);
+    		    measure.add(System.nanoTime() - startNanos, ThreadClock.cpuNanos() - startCpuNanos,
+    		            ThreadClock.allocatedBytes() - startAllocatedBytes);
+    		    profile.record(path, measure, profilingRules.getMeasures());
+    		}
+
+    		if (context.getReport().hasErrors()) {
+    		    StringBuilder message = new StringBuilder("There were processing errors!\n");
+    		    Iterator<ProcessingError> errors = context.getReport().errors();
+    		    while (errors.hasNext()) {
+    		        ProcessingError error = errors.next();
+    		        message.append(error.getFile()).append(": ").append(error.getMsg()).append("\n");
+    		    }
+    		    PMDPlugin.getDefault().logWarn(message.toString());
+    		    throw new PMDException(message.toString());
+    		}
+
+    		List<ReviewCache.Violation> violations = retainedViolations(file, source, context);
+    		if (fingerprint != null) {
+    		    cache.store(path, source.contentHash(), languageVersion.getTerseName(), fingerprint, violations);
+    		}
+    		addMarkers(file, violations);
+
+    		fileProcessed();
 
     	} catch (CoreException e) {
-    		log.error("Core exception visiting " + file.getName(), e); // TODO:		// complete message
+    		reviewFailed("Core exception visiting " + file.getName(), e); // TODO:		// complete message
     	} catch (PMDException e) {
-    		log.error("PMD exception visiting " + file.getName(), e); // TODO: 		// complete message
+    		reviewFailed("PMD exception visiting " + file.getName(), e); // TODO: 		// complete message
     	} catch (IOException e) {
-    		log.error("IO exception visiting " + file.getName(), e); // TODO: 		// complete message
+    		reviewFailed("IO exception visiting " + file.getName(), e); // TODO: 		// complete message
     	} catch (PropertiesException e) {
-    		log.error("Properties exception visiting " + file.getName(), e); // TODO:	// complete message
+    		reviewFailed("Properties exception visiting " + file.getName(), e); // TODO:	// complete message
     	} catch (IllegalArgumentException e) {
-    	    log.error("Illegal argument", e);
+    	    reviewFailed("Illegal argument", e);
     	} finally {
     		IOUtil.closeQuietly(input);
+    		if (leasedLoader != null) {
+    			// the configuration is reused for the next file
+    			config.setClassLoader(PMDConfiguration.class.getClassLoader());
+    			PMDPlugin.releaseJavaClassLoader(leasedLoader);
+    		}
+    		if (progress == null) {
+    			worked(1);
+    		} else {
+    			progress.finished();
+    		}
+    	}
+    }
+
+    private synchronized void addPmdDuration(long duration) {
+    	pmdDuration += duration;
+    }
+
+    private synchronized void fileProcessed() {
+    	fileCount++;
+    	PMDPlugin.getDefault().getRuntimeMetrics().fileReviewed();
+    }
+
+    private synchronized void cacheHit() {
+    	cacheHits++;
+    	PMDPlugin.getDefault().getRuntimeMetrics().reviewCacheHit();
+    }
+
+    private synchronized void cacheMiss() {
+    	cacheMisses++;
+    	PMDPlugin.getDefault().getRuntimeMetrics().reviewCacheMiss();
+    }
+
+    private void reviewFailed(String message, Exception e) {
+    	log.error(message, e);
+    	PMDPlugin.getDefault().getRuntimeMetrics().analysisFailed();
+    }
+
+    /**
+     * The key under which results are cached: the rules, plus the classpath
+     * and a stamp of its content when the rules resolve types against it.
+     *
+     * @return the fingerprint, or null if results must not be cached
+     */
+    private String fingerprintFor(PMDConfiguration config) {
+    	String rules = getRuleSetFingerprint();
+    	if (rules == null) {
+    		return null;
+    	}
+    	ClassLoader loader = config.getClassLoader();
+    	if (loader instanceof JavaProjectClassLoader) {
+    		return rules + ':' + classpathFingerprintFor((JavaProjectClassLoader) loader);
     	}
+    	return rules;
+    }
 
+    /**
+     * The classpath content is stamped once per loader and visitor, as
+     * walking the output folders for every file would cost more than the
+     * cache saves.
+     */
+    private synchronized String classpathFingerprintFor(JavaProjectClassLoader loader) {
+    	String fingerprint = classpathFingerprints.get(loader);
+    	if (fingerprint == null) {
+    		String classpath = loader.getClasspathFingerprint() + loader.getContentStamp();
+    		fingerprint = Integer.toHexString(classpath.hashCode());
+    		classpathFingerprints.put(loader, fingerprint);
+    	}
+    	return fingerprint;
+    }
+
+    private synchronized String getRuleSetFingerprint() {
+    	if (!ruleSetFingerprinted) {
+    		ruleSetFingerprint = ReviewCache.fingerprintOf(getRuleSet());
+    		ruleSetFingerprinted = true;
+    	}
+    	return ruleSetFingerprint;
+    }
+
+    /**
+     * Return the paths of the resources of the project working set, resolved
+     * once per visitor.
+     *
+     * @return the paths, or null if there is no working set
+     */
+    private List<IPath> workingSetPaths() throws PropertiesException {
+        if (!workingSetResolved) {
+            IWorkingSet workingSet = projectProperties.getProjectWorkingSet();
+            if (workingSet != null) {
+                workingSetPaths = new ArrayList<IPath>();
+                for (IAdaptable element : workingSet.getElements()) {
+                    IResource resource = (IResource) element.getAdapter(IResource.class);
+                    if (resource != null) {
+                        workingSetPaths.add(resource.getFullPath());
+                    }
+                }
+            }
+            workingSetResolved = true;
+        }
+        return workingSetPaths;
     }
 
     /**
@@ -354,30 +746,49 @@ public class BaseVisitor {
      * @return true if the file should be checked
      */
     private boolean isFileInWorkingSet(final IFile file) throws PropertiesException {
-        boolean fileInWorkingSet = true;
-        IWorkingSet workingSet = projectProperties.getProjectWorkingSet();
-        if (workingSet != null) {
-            ResourceWorkingSetFilter filter = new ResourceWorkingSetFilter();
-            filter.setWorkingSet(workingSet);
-            fileInWorkingSet = filter.select(null, null, file);
+        List<IPath> paths = workingSetPaths();
+        if (paths == null) {
+            return true;
         }
 
-        return fileInWorkingSet;
+        IPath filePath = file.getFullPath();
+        for (IPath path : paths) {
+            if (path.isPrefixOf(filePath)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Update markers list for the specified file
+     * Tell whether a container may hold files of the PMD working set, so that
+     * containers outside of it need not be walked.
      *
-     * @param file
-     *            the file for which markers are to be updated
-     * @param context
-     *            a PMD context
-     * @param fTask
-     *            indicate if a task marker should be created
-     * @param accumulator
-     *            a map that contains impacted file and marker informations
+     * @param proxy
+     *            a container
+     * @return true if the container is in the working set or encloses part
+     *         of it
      */
-    
+    protected final boolean isInWorkingSetScope(IResourceProxy proxy) {
+        try {
+            List<IPath> paths = workingSetPaths();
+            if (paths == null) {
+                return true;
+            }
+
+            IPath containerPath = proxy.requestFullPath();
+            for (IPath path : paths) {
+                if (path.isPrefixOf(containerPath) || containerPath.isPrefixOf(path)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (PropertiesException e) {
+            log.error("Properties exception visiting " + proxy.getName(), e);
+            return true;
+        }
+    }
+
     private int maxAllowableViolationsFor(Rule rule) {
     	 
          return rule.hasDescriptor(PMDRuntimeConstants.MAX_VIOLATIONS_DESCRIPTOR) ?
@@ -387,7 +798,10 @@ public class BaseVisitor {
     
     public static String markerTypeFor(RuleViolation violation) {
 
-    	int priorityId = violation.getRule().getPriority().getPriority();
+    	return markerTypeFor(violation.getRule().getPriority().getPriority());
+    }
+
+    private static String markerTypeFor(int priorityId) {
 
     	switch (priorityId) {
 	    	case 1: return PMDRuntimeConstants.PMD_MARKER_1;
@@ -401,18 +815,29 @@ public class BaseVisitor {
 
     private void prepareMarkerAccumulator(IFile file) {
         Map<IFile, Set<MarkerInfo2>> accumulator = getAccumulator();
-        if (accumulator != null) {
-            accumulator.put(file, new HashSet<MarkerInfo2>());
+        if (accumulator != null && markerStream == null) {
+            synchronized (accumulator) {
+                accumulator.put(file, new HashSet<MarkerInfo2>());
+            }
         }
     }
 
-    private void updateMarkers(IFile file, RuleContext context, boolean fTask)
-            throws CoreException, PropertiesException {
+    /**
+     * Select the violations of the report that become markers: those that are
+     * not reviewed and within the maximum count per rule
+     *
+     * @param file
+     *            the reviewed file
+     * @param source
+     *            the content the report was computed from
+     * @param context
+     *            a PMD context
+     * @return the retained violations
+     */
+    private List<ReviewCache.Violation> retainedViolations(IFile file, SourceBuffer source, RuleContext context) {
     	
-        Map<IFile, Set<MarkerInfo2>> accumulator = getAccumulator();
-        Set<MarkerInfo2> markerSet = new HashSet<MarkerInfo2>();
-        List<Review> reviewsList = findReviewedViolations(file);
-        Review review = new Review();
+        List<ReviewCache.Violation> retained = new ArrayList<ReviewCache.Violation>();
+        ReviewIndex reviews = ReviewIndex.forFile(file, source);
         Iterator<RuleViolation> iter = context.getReport().iterator();
 //        final IPreferences preferences = PMDPlugin.getDefault().loadPreferences();
 //        final int maxViolationsPerFilePerRule = preferences.getMaxViolationsPerFilePerRule();
@@ -422,10 +847,7 @@ public class BaseVisitor {
         while (iter.hasNext()) {
             RuleViolation violation = iter.next();
             rule = violation.getRule();
-            review.ruleName = rule.getName();
-            review.lineNumber = violation.getBeginLine();
-
-            if (reviewsList.contains(review)) {
+            if (reviews.isReviewed(rule.getName(), violation.getBeginLine())) {
                 log.debug("Ignoring violation of rule " + rule.getName() + " at line " + violation.getBeginLine() + " because of a review.");
                 continue;
             	}
@@ -441,9 +863,8 @@ public class BaseVisitor {
             if (count.intValue() < maxViolations) {
              	// Ryan Gustafson 02/16/2008 - Always use PMD_MARKER, as people get confused as to why PMD problems don't always show up on Problems view like they do when you do build.
                 // markerSet.add(getMarkerInfo(violation, fTask ? PMDRuntimeConstants.PMD_TASKMARKER : PMDRuntimeConstants.PMD_MARKER));
-                markerSet.add(
-                		getMarkerInfo(violation, markerTypeFor(violation))
-                		);
+                retained.add(new ReviewCache.Violation(rule.getName(), violation.getDescription(),
+                		violation.getBeginLine(), violation.getEndLine(), rule.getPriority().getPriority()));
                    /*
                    if (isDfaEnabled && violation.getRule().usesDFA()) {
                        markerSet.add(getMarkerInfo(violation, PMDRuntimeConstants.PMD_DFA_MARKER));
@@ -460,135 +881,66 @@ public class BaseVisitor {
                 }
         }
 
-        if (accumulator != null) {
-            log.debug("Adding markerSet to accumulator for file " + file.getName());
-            accumulator.put(file, markerSet);
-        }
+        return retained;
     }
 
     /**
-     * Search for reviewed violations in that file
+     * Update markers list for the specified file
      *
      * @param file
+     *            the file for which markers are to be updated
+     * @param violations
+     *            the violations to turn into markers
      */
-    private List<Review> findReviewedViolations(final IFile file) {
-        final List<Review> reviews = new ArrayList<Review>();
-        BufferedReader reader = null;
-        try {
-            int lineNumber = 0;
-            boolean findLine = false;
-            boolean comment = false;
-            final Stack<String> pendingReviews = new Stack<String>();
-            reader = new BufferedReader(new InputStreamReader(file.getContents()));
-            while (reader.ready()) {
-                String line = reader.readLine();
-                if (line != null) {
-                    line = line.trim();
-                    lineNumber++;
-                    if (line.startsWith("/*")) {
-                        comment = line.indexOf("*/") == -1;
-                    } else if (comment && line.indexOf("*/") != -1) {
-                        comment = false;
-                    } else if (!comment && line.startsWith(PMDRuntimeConstants.PLUGIN_STYLE_REVIEW_COMMENT)) {
-                        final String tail = line.substring(PMDRuntimeConstants.PLUGIN_STYLE_REVIEW_COMMENT.length());
-                        final String ruleName = tail.substring(0, tail.indexOf(':'));
-                        pendingReviews.push(ruleName);
-                        findLine = true;
-                    } else if (!comment && findLine && StringUtil.isNotEmpty(line) && !line.startsWith("//")) {
-                        findLine = false;
-                        while (!pendingReviews.empty()) {
-                            // @PMD:REVIEWED:AvoidInstantiatingObjectsInLoops:
-                            // by Herlin on 01/05/05 18:36
-                            final Review review = new Review();
-                            review.ruleName = pendingReviews.pop();
-                            review.lineNumber = lineNumber;
-                            reviews.add(review);
-                        }
-                    }
-                }
-            }
+    private void addMarkers(IFile file, List<ReviewCache.Violation> violations) throws PropertiesException {
 
-            // if (log.isDebugEnabled()) {
-            // for (int i = 0; i < reviewsList.size(); i++) {
-            // final Review review = (Review) reviewsList.get(i);
-            // log.debug("Review : rule " + review.ruleName + ", line " +
-            // review.lineNumber);
-            // }
-            // }
-
-        } catch (CoreException e) {
-            PMDPlugin.getDefault().logError("Core Exception when searching reviewed violations", e);
-        } catch (IOException e) {
-            PMDPlugin.getDefault().logError("IO Exception when searching reviewed violations", e);
-        } finally {
-        	IOUtil.closeQuietly(reader);
+        Map<IFile, Set<MarkerInfo2>> accumulator = getAccumulator();
+        Set<MarkerInfo2> markerSet = new HashSet<MarkerInfo2>();
+        for (ReviewCache.Violation violation : violations) {
+            markerSet.add(getMarkerInfo(violation));
         }
 
-        return reviews;
+        if (markerStream != null) {
+            markerStream.offer(file, markerSet);
+        } else if (accumulator != null) {
+            log.debug("Adding markerSet to accumulator for file " + file.getName());
+            synchronized (accumulator) {
+                accumulator.put(file, markerSet);
+            }
+        }
     }
 
-    private MarkerInfo2 getMarkerInfo(RuleViolation violation, String type) throws PropertiesException {
-        
-    	Rule rule = violation.getRule();
-    	
-    	MarkerInfo2 info = new MarkerInfo2(type, 7);
-
-    	info.add(IMarker.MESSAGE, violation.getDescription());
-    	info.add(IMarker.LINE_NUMBER, violation.getBeginLine());
-    	info.add(PMDRuntimeConstants.KEY_MARKERATT_LINE2, violation.getEndLine());
-    	info.add(PMDRuntimeConstants.KEY_MARKERATT_RULENAME, rule.getName());
-    	info.add(PMDRuntimeConstants.KEY_MARKERATT_PRIORITY ,rule.getPriority().getPriority());
+    private MarkerInfo2 getMarkerInfo(ReviewCache.Violation violation) throws PropertiesException {
 
-        switch (rule.getPriority().getPriority()) {
+        int severity;
+        int priority = MarkerInfo2.NO_PRIORITY;
+        switch (violation.getPriority()) {
         case 1:
-        	info.add(IMarker.PRIORITY, IMarker.PRIORITY_HIGH);
-        	info.add(IMarker.SEVERITY, projectProperties.violationsAsErrors() ? IMarker.SEVERITY_ERROR : IMarker.SEVERITY_WARNING);
+        	priority = IMarker.PRIORITY_HIGH;
+        	severity = projectProperties.violationsAsErrors() ? IMarker.SEVERITY_ERROR : IMarker.SEVERITY_WARNING;
             break;
         case 2:           
             if (projectProperties.violationsAsErrors()) {
-            	info.add(IMarker.SEVERITY, IMarker.SEVERITY_ERROR);
+            	severity = IMarker.SEVERITY_ERROR;
             } else {
-            	info.add(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);                
-            	info.add(IMarker.PRIORITY, IMarker.PRIORITY_HIGH);
+            	severity = IMarker.SEVERITY_WARNING;
+            	priority = IMarker.PRIORITY_HIGH;
             }
             break;
 
         case 5:
-        	info.add(IMarker.SEVERITY, IMarker.SEVERITY_INFO);
+        	severity = IMarker.SEVERITY_INFO;
             break;
 
         case 3:
-        	info.add(IMarker.PRIORITY, IMarker.PRIORITY_HIGH);
+        	priority = IMarker.PRIORITY_HIGH;
         case 4:
         default:
-        	info.add(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
+        	severity = IMarker.SEVERITY_WARNING;
             break;
         }
-        
-        return info;
-    }
-    
-    /**
-     * Private inner type to handle reviews
-     */
-    private class Review {
-        public String ruleName;
-        public int lineNumber;
-
-        @Override
-        public boolean equals(final Object obj) {
-            boolean result = false;
-            if (obj instanceof Review) {
-                Review reviewObj = (Review) obj;
-                result = ruleName.equals(reviewObj.ruleName) && lineNumber == reviewObj.lineNumber;
-            }
-            return result;
-        }
-
-        @Override
-        public int hashCode() {
-            return ruleName.hashCode() + lineNumber * lineNumber;
-        }
 
+        return new MarkerInfo2(markerTypeFor(violation.getPriority()), violation.getRuleName(), violation.getMessage(),
+                violation.getBeginLine(), violation.getEndLine(), violation.getPriority(), severity, priority);
     }
 }
@@ -0,0 +1,43 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * The classes of work the {@link JobCommandProcessor} runs, most urgent
+ * first. Queued commands of a class only start once no command of a more
+ * urgent class is waiting.
+ */
+public enum CommandPriority {
+
+    /** Commands the user asked for, such as "Check code". */
+    USER(Job.INTERACTIVE, true),
+    /** Reviews of the files the user just saved. */
+    EDITOR(Job.SHORT, true),
+    /** Reviews run by the project builder. */
+    BUILD(Job.LONG, false),
+    /** Background reviews of the files a build left over. */
+    IDLE(Job.DECORATE, false);
+
+    private final int jobPriority;
+    private final boolean foreground;
+
+    private CommandPriority(int jobPriority, boolean foreground) {
+        this.jobPriority = jobPriority;
+        this.foreground = foreground;
+    }
+
+    /**
+     * @return the priority of the job running a command of this class
+     */
+    public int getJobPriority() {
+        return jobPriority;
+    }
+
+    /**
+     * @return whether the user waits for commands of this class, which may
+     *         then use the slot kept free of background work
+     */
+    public boolean isForeground() {
+        return foreground;
+    }
+}
@@ -0,0 +1,139 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The commands waiting for the {@link JobCommandProcessor} to start them.
+ *
+ * Commands are taken by priority class, the most urgent class first. Within
+ * a class, the projects the commands belong to take turns, so that a large
+ * build of one project does not hold back the commands of the others; the
+ * commands of a project keep their order. Background classes only use the
+ * concurrency limit, foreground classes may use one slot more, so that a
+ * command the user waits for never queues behind builds alone.
+ *
+ * Adding, taking and looking up a command take constant time. The queue is
+ * not thread-safe.
+ *
+ * @param <T> the type of the queued commands
+ */
+public final class CommandQueue<T> {
+
+    /** The number of slots beyond the limit that only foreground classes may use. */
+    public static final int FOREGROUND_SLOTS = 1;
+
+    private static final String NO_PROJECT = "";
+
+    private final Map<CommandPriority, LinkedHashMap<String, LinkedList<T>>> classes = new EnumMap<CommandPriority, LinkedHashMap<String, LinkedList<T>>>(
+            CommandPriority.class);
+    private final Set<T> queued = new HashSet<T>();
+
+    public CommandQueue() {
+        for (CommandPriority priority : CommandPriority.values()) {
+            classes.put(priority, new LinkedHashMap<String, LinkedList<T>>());
+        }
+    }
+
+    /**
+     * @param command
+     *            the command to queue
+     * @param priority
+     *            its class
+     * @param project
+     *            the name of the project it belongs to, or null
+     */
+    public void add(T command, CommandPriority priority, String project) {
+        String key = project == null ? NO_PROJECT : project;
+        LinkedHashMap<String, LinkedList<T>> projects = classes.get(priority);
+        LinkedList<T> commands = projects.get(key);
+        if (commands == null) {
+            commands = new LinkedList<T>();
+            projects.put(key, commands);
+        }
+        commands.add(command);
+        queued.add(command);
+    }
+
+    /**
+     * Take the next command that may start.
+     *
+     * @param running
+     *            the number of running commands
+     * @param limit
+     *            the number of commands that may run at once
+     * @return the command to start, or null if none may start now
+     */
+    public T poll(int running, int limit) {
+        for (Map.Entry<CommandPriority, LinkedHashMap<String, LinkedList<T>>> entry : classes.entrySet()) {
+            LinkedHashMap<String, LinkedList<T>> projects = entry.getValue();
+            if (projects.isEmpty()) {
+                continue;
+            }
+            int slots = entry.getKey().isForeground() ? limit + FOREGROUND_SLOTS : limit;
+            if (running >= slots) {
+                // less urgent classes may not use more slots
+                return null;
+            }
+            return pollNextProject(projects);
+        }
+        return null;
+    }
+
+    private T pollNextProject(LinkedHashMap<String, LinkedList<T>> projects) {
+        Iterator<Map.Entry<String, LinkedList<T>>> i = projects.entrySet().iterator();
+        Map.Entry<String, LinkedList<T>> first = i.next();
+        LinkedList<T> commands = first.getValue();
+        T command = commands.removeFirst();
+        i.remove();
+        if (!commands.isEmpty()) {
+            // the project goes last in turn
+            projects.put(first.getKey(), commands);
+        }
+        queued.remove(command);
+        return command;
+    }
+
+    /**
+     * @param command
+     *            a command
+     * @return whether the command waits in the queue
+     */
+    public boolean contains(T command) {
+        return queued.contains(command);
+    }
+
+    /**
+     * @return the number of queued commands
+     */
+    public int size() {
+        return queued.size();
+    }
+
+    /**
+     * The number of commands that may run at once: one per processor, less
+     * the processors kept busy by other work. The load average counts the
+     * threads ready to run, ours included, so the running commands are not
+     * counted as other work.
+     *
+     * @param processors
+     *            the number of available processors
+     * @param loadAverage
+     *            the system load average, negative if unknown
+     * @param running
+     *            the number of running commands
+     * @return the limit, at least one
+     */
+    public static int concurrencyLimit(int processors, double loadAverage, int running) {
+        if (loadAverage < 0) {
+            return Math.max(1, processors);
+        }
+        double otherLoad = Math.max(0, loadAverage - running);
+        return (int) Math.max(1, Math.round(processors - otherLoad));
+    }
+}
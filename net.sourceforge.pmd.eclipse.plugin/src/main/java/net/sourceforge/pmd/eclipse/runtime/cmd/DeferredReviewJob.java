@@ -0,0 +1,150 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import name.herlin.command.CommandException;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Reviews, at a low priority, the files an automatic build left out because
+ * they did not fit in its latency budget.
+ *
+ * There is at most one pending job per project: the files of later builds
+ * are merged into it until it starts. A job that starts while an earlier one
+ * of the same project is still running waits for it, so deferred reviews of
+ * a project never overlap. The jobs are not given the project as scheduling
+ * rule, as that would block saving its files for the whole review; they
+ * belong to the family of their project instead.
+ */
+public class DeferredReviewJob extends Job {
+
+    private static final Map<IProject, DeferredReviewJob> pendingJobs = new HashMap<IProject, DeferredReviewJob>();
+    private static final Map<IProject, DeferredReviewJob> runningJobs = new HashMap<IProject, DeferredReviewJob>();
+
+    private final IProject project;
+    private final Set<IFile> files = new LinkedHashSet<IFile>();
+    private final boolean taskMarker;
+
+    private DeferredReviewJob(IProject project, boolean taskMarker) {
+        super("PMD checking remaining files");
+        this.project = project;
+        this.taskMarker = taskMarker;
+        setPriority(DECORATE);
+    }
+
+    /**
+     * Schedule the review of files, merging them into the pending job of
+     * their project if there is one.
+     *
+     * @param files
+     *            the files to review, in the order they should be reviewed
+     * @param taskMarker
+     *            whether violations are also reported as tasks
+     */
+    public static void scheduleFor(List<IFile> files, boolean taskMarker) {
+        Map<IProject, List<IFile>> filesByProject = new LinkedHashMap<IProject, List<IFile>>();
+        for (IFile file : files) {
+            List<IFile> projectFiles = filesByProject.get(file.getProject());
+            if (projectFiles == null) {
+                projectFiles = new ArrayList<IFile>();
+                filesByProject.put(file.getProject(), projectFiles);
+            }
+            projectFiles.add(file);
+        }
+
+        synchronized (pendingJobs) {
+            for (Map.Entry<IProject, List<IFile>> entry : filesByProject.entrySet()) {
+                DeferredReviewJob job = pendingJobs.get(entry.getKey());
+                // a pending job that got cancelled before it ran never removes itself
+                boolean merged = job != null && job.taskMarker == taskMarker && job.getState() != NONE;
+                if (!merged) {
+                    job = new DeferredReviewJob(entry.getKey(), taskMarker);
+                    pendingJobs.put(entry.getKey(), job);
+                }
+                job.files.addAll(entry.getValue());
+                job.setName("PMD checking " + job.files.size() + " remaining files");
+                if (!merged) {
+                    job.schedule();
+                }
+            }
+        }
+    }
+
+    /**
+     * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+     */
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        List<IFile> toReview;
+        DeferredReviewJob previous;
+        synchronized (pendingJobs) {
+            if (pendingJobs.get(project) == this) {
+                pendingJobs.remove(project);
+            }
+            toReview = new ArrayList<IFile>(files);
+            previous = runningJobs.put(project, this);
+        }
+
+        try {
+            if (previous != null) {
+                previous.join();
+            }
+            return review(toReview, monitor);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Status.CANCEL_STATUS;
+        } finally {
+            synchronized (pendingJobs) {
+                if (runningJobs.get(project) == this) {
+                    runningJobs.remove(project);
+                }
+            }
+        }
+    }
+
+    private IStatus review(List<IFile> toReview, IProgressMonitor monitor) {
+        ReviewCodeCmd cmd = new ReviewCodeCmd();
+        for (IFile file : toReview) {
+            if (file.exists()) {
+                cmd.addResource(file);
+            }
+        }
+        if (!cmd.isReadyToExecute() || monitor.isCanceled()) {
+            return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+        }
+
+        cmd.setTaskMarker(taskMarker);
+        cmd.setDeferred(true);
+        cmd.setMonitor(monitor);
+        try {
+            // run on this job rather than through the command processor, which
+            // would return at once and leave the review out of reach of the
+            // overlap guard and of the cancellation of this job
+            cmd.execute();
+        } catch (CommandException e) {
+            PMDPlugin.getDefault().logError("Error reviewing the files left by an automatic build", e);
+        }
+        return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+    }
+
+    /**
+     * @see org.eclipse.core.runtime.jobs.Job#belongsTo(java.lang.Object)
+     */
+    @Override
+    public boolean belongsTo(Object family) {
+        return family == DeferredReviewJob.class || project.equals(family);
+    }
+}
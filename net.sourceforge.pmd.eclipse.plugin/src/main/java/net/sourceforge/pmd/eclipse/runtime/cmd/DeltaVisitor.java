@@ -17,6 +17,9 @@ public class DeltaVisitor extends BaseVisitor implements IResourceDeltaVisitor {
 
     private static final Logger log = Logger.getLogger(DeltaVisitor.class);
 
+    /** Delta flags telling that what a file contains may have changed; marker or sync changes alone do not count. */
+    static final int CONTENT_CHANGES = IResourceDelta.CONTENT | IResourceDelta.REPLACED | IResourceDelta.ENCODING;
+
     /**
      * Default constructor
      */
@@ -46,6 +49,10 @@ public class DeltaVisitor extends BaseVisitor implements IResourceDeltaVisitor {
 	    		break;
 	    	}	
 	    	case IResourceDelta.CHANGED : {
+	    		if (delta.getResource().getType() == IResource.FILE && (delta.getFlags() & CONTENT_CHANGES) == 0) {
+	    			log.debug("Resource " + delta.getResource().getName() + " not visited, its content is unchanged.");
+	    			break;
+	    		}
 	    		log.debug("Visiting changed resource " + delta.getResource().getName());
 	    		visitChanged(delta.getResource());
 	    		break;
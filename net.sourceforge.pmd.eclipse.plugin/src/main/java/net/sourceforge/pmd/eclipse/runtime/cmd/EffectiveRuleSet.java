@@ -0,0 +1,103 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.lang.Language;
+
+/**
+ * The rules that actually run against the files of a project: the project
+ * rule set, narrowed to the active rules when global rule management is on,
+ * with the include and exclude patterns of the preferences and of the build
+ * path added.
+ *
+ * The rules are also split by language so that a file is only handed the
+ * rules that can apply to it. The patterns are compiled into a
+ * {@link ResourcePathFilter} that is consulted before a file is read, so the
+ * per-language rule sets carry no patterns of their own. The fingerprint
+ * identifies the content of the rule set and changes whenever a rule, a
+ * property, a priority or a pattern changes.
+ *
+ * Instances are built by {@link EffectiveRuleSets} and must not be modified.
+ */
+public final class EffectiveRuleSet {
+
+    private final RuleSet ruleSet;
+    private final Map<Language, RuleSet> ruleSetsByLanguage;
+    private final ResourcePathFilter pathFilter;
+    private final String fingerprint;
+    private final int configuredRuleCount;
+
+    EffectiveRuleSet(RuleSet ruleSet, String fingerprint, int configuredRuleCount) {
+        this.ruleSet = ruleSet;
+        this.fingerprint = fingerprint;
+        this.configuredRuleCount = configuredRuleCount;
+        this.ruleSetsByLanguage = Collections.unmodifiableMap(partition(ruleSet));
+        this.pathFilter = ResourcePathFilter.compile(ruleSet.getIncludePatterns(), ruleSet.getExcludePatterns());
+    }
+
+    private static Map<Language, RuleSet> partition(RuleSet ruleSet) {
+        Map<Language, RuleSet> ruleSetsByLanguage = new LinkedHashMap<Language, RuleSet>();
+        for (Rule rule : ruleSet.getRules()) {
+            RuleSet part = ruleSetsByLanguage.get(rule.getLanguage());
+            if (part == null) {
+                part = new RuleSet();
+                part.setName(ruleSet.getName());
+                part.setDescription(ruleSet.getDescription());
+                part.setFileName(ruleSet.getFileName());
+                ruleSetsByLanguage.put(rule.getLanguage(), part);
+            }
+            part.addRule(rule);
+        }
+        return ruleSetsByLanguage;
+    }
+
+    /**
+     * @return all the rules, for every language
+     */
+    public RuleSet getRuleSet() {
+        return ruleSet;
+    }
+
+    /**
+     * @param language
+     *            the language of a file
+     * @return the rules for that language, or null if there are none
+     */
+    public RuleSet ruleSetFor(Language language) {
+        return ruleSetsByLanguage.get(language);
+    }
+
+    /**
+     * @return the compiled include and exclude patterns
+     */
+    public ResourcePathFilter getPathFilter() {
+        return pathFilter;
+    }
+
+    /**
+     * @return the fingerprint of the rule set, or null if it could not be
+     *         computed
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the number of rules that run
+     */
+    public int getRuleCount() {
+        return ruleSet.size();
+    }
+
+    /**
+     * @return the number of rules of the project rule set, before the active
+     *         rule filter was applied
+     */
+    public int getConfiguredRuleCount() {
+        return configuredRuleCount;
+    }
+}
@@ -0,0 +1,133 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
+import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
+import net.sourceforge.pmd.eclipse.ui.actions.RuleSetUtil;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+
+/**
+ * Keeps the {@link EffectiveRuleSet} of each project, so that it is built
+ * once rather than for every resource that gets reviewed.
+ *
+ * Entries are dropped when what they were built from changes: storing the
+ * preferences or the workspace rule set drops them all, while setting the
+ * rule set of a project or storing its properties drops that project only.
+ * A classpath change drops the project too, and has its build path patterns
+ * determined again before the next rule set is built.
+ */
+public class EffectiveRuleSets implements IElementChangedListener {
+
+    private static final Logger log = Logger.getLogger(EffectiveRuleSets.class);
+
+    private static final int CLASSPATH_CHANGED = IJavaElementDelta.F_CLASSPATH_CHANGED
+            | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED;
+
+    private final Map<String, EffectiveRuleSet> ruleSetsByProject = new HashMap<String, EffectiveRuleSet>();
+    private final Set<String> classpathChangedProjects = new HashSet<String>();
+
+    /**
+     * Return the effective rule set of a project, building it if needed.
+     *
+     * @param properties
+     *            the properties of the project
+     * @return its effective rule set
+     * @throws PropertiesException
+     *             if the project rule set cannot be read
+     */
+    public synchronized EffectiveRuleSet ruleSetFor(IProjectProperties properties) throws PropertiesException {
+        String name = properties.getProject().getName();
+        if (classpathChangedProjects.remove(name)) {
+            properties.refreshBuildPathPatterns();
+        }
+        EffectiveRuleSet effective = ruleSetsByProject.get(name);
+        if (effective == null) {
+            effective = build(properties);
+            ruleSetsByProject.put(name, effective);
+        }
+        return effective;
+    }
+
+    private static EffectiveRuleSet build(IProjectProperties properties) throws PropertiesException {
+        log.debug("Building the effective rule set of " + properties.getProject().getName());
+
+        final RuleSet ruleSet = properties.getProjectRuleSet();
+        IPreferences preferences = PMDPlugin.getDefault().getPreferencesManager().loadPreferences();
+        Set<String> onlyActiveRuleNames = preferences.getActiveRuleNames();
+
+        RuleSet filteredRuleSet = RuleSetUtil.newCopyOf(ruleSet);
+        int rulesBefore = filteredRuleSet.size();
+        if (preferences.getGlobalRuleManagement()) {
+            RuleSetUtil.retainOnly(filteredRuleSet, onlyActiveRuleNames);
+            int rulesAfter = filteredRuleSet.size();
+
+            if (rulesAfter < rulesBefore) {
+                PMDPlugin.getDefault().logWarn(
+                        "Ruleset has been filtered as Global Rule Management is active. " + rulesAfter + " of "
+                                + rulesBefore + " rules are active and are used. " + (rulesBefore - rulesAfter)
+                                + " rules will be ignored.");
+            }
+        }
+        filteredRuleSet.addExcludePatterns(preferences.activeExclusionPatterns());
+        filteredRuleSet.addIncludePatterns(preferences.activeInclusionPatterns());
+        filteredRuleSet.addExcludePatterns(properties.getBuildPathExcludePatterns());
+        filteredRuleSet.addIncludePatterns(properties.getBuildPathIncludePatterns());
+
+        return new EffectiveRuleSet(filteredRuleSet, ReviewCache.fingerprintOf(filteredRuleSet), ruleSet.size());
+    }
+
+    /**
+     * Drop the effective rule set of a project.
+     *
+     * @param project
+     *            a project whose rules or properties have changed
+     */
+    public synchronized void invalidate(IProject project) {
+        if (ruleSetsByProject.remove(project.getName()) != null) {
+            log.debug("Effective rule set of " + project.getName() + " invalidated");
+        }
+    }
+
+    /**
+     * @see org.eclipse.jdt.core.IElementChangedListener#elementChanged(org.eclipse.jdt.core.ElementChangedEvent)
+     */
+    public void elementChanged(ElementChangedEvent event) {
+        if (event.getType() != ElementChangedEvent.POST_CHANGE) {
+            return;
+        }
+
+        for (IJavaElementDelta delta : event.getDelta().getAffectedChildren()) {
+            IJavaElement element = delta.getElement();
+            if (element.getElementType() == IJavaElement.JAVA_PROJECT && (delta.getFlags() & CLASSPATH_CHANGED) != 0) {
+                IProject project = element.getJavaProject().getProject();
+                synchronized (this) {
+                    classpathChangedProjects.add(project.getName());
+                }
+                invalidate(project);
+            }
+        }
+    }
+
+    /**
+     * Drop the effective rule sets of all projects.
+     */
+    public synchronized void invalidateAll() {
+        if (!ruleSetsByProject.isEmpty()) {
+            log.debug("All effective rule sets invalidated");
+            ruleSetsByProject.clear();
+        }
+    }
+}
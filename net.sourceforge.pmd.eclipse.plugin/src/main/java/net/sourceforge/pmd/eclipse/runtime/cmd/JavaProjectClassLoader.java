@@ -1,8 +1,11 @@
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
+import java.io.File;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -24,6 +27,7 @@ public class JavaProjectClassLoader extends URLClassLoader {
 
 	private Set<IJavaProject> javaProjects = new HashSet<IJavaProject>();
 	private IWorkspaceRoot workspaceRoot;
+	private final Set<String> projectNames = new HashSet<String>();
 
 	public JavaProjectClassLoader(ClassLoader parent, IProject project) {
 		super(new URL[0], parent);
@@ -39,11 +43,83 @@ public class JavaProjectClassLoader extends URLClassLoader {
 		IJavaProject javaProject = JavaCore.create(project);
 		addURLs(javaProject, false);
 
+		for (IJavaProject visited : javaProjects) {
+			projectNames.add(visited.getElementName());
+		}
+
 		// No longer need these things, drop references
 		javaProjects = null;
 		workspaceRoot = null;
 	}
 
+	/**
+	 * @return the names of the project and of every project it pulls onto its classpath
+	 */
+	public Set<String> getProjectNames() {
+		return Collections.unmodifiableSet(projectNames);
+	}
+
+	/**
+	 * Two loaders with the same fingerprint see the same classpath entries, in the same order.
+	 *
+	 * @return a fingerprint of the resolved classpath
+	 */
+	public String getClasspathFingerprint() {
+		StringBuilder sb = new StringBuilder();
+		for (URL url : getURLs()) {
+			sb.append(url.toExternalForm()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Stamp the content of the classpath: the length and modification time of every
+	 * archive, and the number of files and newest modification time found in every
+	 * folder. Folders are walked, so callers should not ask for it once per class.
+	 *
+	 * @return a stamp that changes when a classpath entry is rebuilt or replaced
+	 */
+	public String getContentStamp() {
+		StringBuilder sb = new StringBuilder();
+		for (URL url : getURLs()) {
+			File entry;
+			try {
+				entry = new File(url.toURI());
+			} catch (URISyntaxException e) {
+				sb.append('?').append('\n');
+				continue;
+			} catch (IllegalArgumentException e) {
+				sb.append('?').append('\n');
+				continue;
+			}
+			if (entry.isDirectory()) {
+				long[] stamp = new long[2];
+				stampFolder(entry, stamp);
+				sb.append(stamp[0]).append('/').append(stamp[1]);
+			} else {
+				sb.append(entry.length()).append('/').append(entry.lastModified());
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Count the files of a folder tree and keep the newest modification time.
+	 */
+	private static void stampFolder(File folder, long[] stamp) {
+		File[] children = folder.listFiles();
+		if (children == null) return;
+		for (File child : children) {
+			if (child.isDirectory()) {
+				stampFolder(child, stamp);
+			} else {
+				stamp[0]++;
+				stamp[1] = Math.max(stamp[1], child.lastModified());
+			}
+		}
+	}
+
 	private static IProject projectFor(IJavaProject javaProject, IClasspathEntry classpathEntry) {
 		return javaProject.getProject().getWorkspace().getRoot().getProject(classpathEntry.getPath().toString());
 	}
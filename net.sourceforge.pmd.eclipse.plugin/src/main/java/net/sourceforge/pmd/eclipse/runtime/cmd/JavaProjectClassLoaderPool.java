@@ -0,0 +1,259 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.util.IOUtil;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+
+/**
+ * Keeps one {@link JavaProjectClassLoader} per project so the classpath is
+ * resolved once rather than for every file that gets reviewed.
+ *
+ * Entries are dropped when JDT reports that something they depend on has
+ * changed:
+ * <ul>
+ * <li>a classpath change marks every entry as suspect; the next request
+ * resolves the classpath again and only replaces the loader if the
+ * fingerprint differs,</li>
+ * <li>a change to compiled or source content in a project evicts every loader
+ * that has that project on its classpath, as the classes it already loaded
+ * are out of date,</li>
+ * <li>closing or removing a project evicts it as well.</li>
+ * </ul>
+ * Reviews lease a loader with {@link #classLoaderFor(IProject, ClassLoader)}
+ * and hand it back with {@link #release(ClassLoader)}. An evicted or replaced
+ * loader is closed, releasing its jar handles, as soon as the last review
+ * that leased it is done; a loader nobody holds is closed right away.
+ */
+public class JavaProjectClassLoaderPool implements IElementChangedListener {
+
+    private static final Logger log = Logger.getLogger(JavaProjectClassLoaderPool.class);
+
+    private static final int CLASSPATH_CHANGED = IJavaElementDelta.F_CLASSPATH_CHANGED
+            | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED;
+
+    private final Map<String, Entry> entriesByProject = new HashMap<String, Entry>();
+
+    /** The entries whose loader is leased or pooled, by loader */
+    private final Map<ClassLoader, Entry> entriesByLoader = new IdentityHashMap<ClassLoader, Entry>();
+
+    /**
+     * Lease the class loader of a Java project, building it if needed. Every
+     * lease must be handed back with {@link #release(ClassLoader)} once the
+     * review is done with the loader.
+     *
+     * @param project
+     *            a Java project
+     * @param parent
+     *            the parent of a newly built loader
+     * @return the pooled loader
+     */
+    public synchronized ClassLoader classLoaderFor(IProject project, ClassLoader parent) {
+        String name = project.getName();
+        Entry entry = entriesByProject.get(name);
+
+        if (entry != null && !entry.classpathChanged) {
+            return lease(entry);
+        }
+
+        JavaProjectClassLoader loader = new JavaProjectClassLoader(parent, project);
+        if (entry != null && entry.loader.getClasspathFingerprint().equals(loader.getClasspathFingerprint())) {
+            log.debug("Classpath of " + name + " is unchanged, keeping its class loader");
+            close(loader);
+            entry.classpathChanged = false;
+            return lease(entry);
+        }
+
+        if (entry != null) {
+            log.debug("Classpath of " + name + " has changed, replacing its class loader");
+            retire(entry);
+        }
+        Entry created = new Entry(loader);
+        entriesByProject.put(name, created);
+        entriesByLoader.put(loader, created);
+        return lease(created);
+    }
+
+    /**
+     * Hand back a loader leased with
+     * {@link #classLoaderFor(IProject, ClassLoader)}. A loader that was evicted
+     * in the meantime is closed once its last lease is released. Loaders that
+     * do not come from this pool are ignored.
+     *
+     * @param loader
+     *            the leased loader, may be null
+     */
+    public synchronized void release(ClassLoader loader) {
+        Entry entry = loader == null ? null : entriesByLoader.get(loader);
+        if (entry == null || entry.leases == 0) {
+            return;
+        }
+        entry.leases--;
+        if (entry.retired && entry.leases == 0) {
+            entriesByLoader.remove(loader);
+            close(loader);
+        }
+    }
+
+    private static ClassLoader lease(Entry entry) {
+        entry.leases++;
+        return entry.loader;
+    }
+
+    /**
+     * Take an entry out of the pool, closing its loader unless a review
+     * still holds it.
+     */
+    private void retire(Entry entry) {
+        entry.retired = true;
+        if (entry.leases == 0) {
+            entriesByLoader.remove(entry.loader);
+            close(entry.loader);
+        }
+    }
+
+    /**
+     * Tell whether any rule of the rule set needs a class loader.
+     *
+     * @param ruleSet
+     *            the rules about to run
+     * @return true if at least one rule uses type resolution
+     */
+    public static boolean needsClassLoader(RuleSet ruleSet) {
+        for (Rule rule : ruleSet.getRules()) {
+            if (rule.usesTypeResolution()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of class loaders currently held
+     */
+    public synchronized int size() {
+        return entriesByProject.size();
+    }
+
+    /**
+     * Close and drop every class loader, leased or not. Only meant for
+     * shutdown, when no review is running anymore.
+     */
+    public synchronized void clear() {
+        for (ClassLoader loader : entriesByLoader.keySet()) {
+            close(loader);
+        }
+        entriesByLoader.clear();
+        entriesByProject.clear();
+    }
+
+    /**
+     * @see org.eclipse.jdt.core.IElementChangedListener#elementChanged(org.eclipse.jdt.core.ElementChangedEvent)
+     */
+    public void elementChanged(ElementChangedEvent event) {
+        if (event.getType() != ElementChangedEvent.POST_CHANGE) {
+            return;
+        }
+
+        List<String> changedProjects = new ArrayList<String>();
+        boolean classpathChanged = collectChanges(event.getDelta(), changedProjects);
+
+        synchronized (this) {
+            if (classpathChanged) {
+                for (Entry entry : entriesByProject.values()) {
+                    entry.classpathChanged = true;
+                }
+            }
+            if (!changedProjects.isEmpty()) {
+                evictUsersOf(changedProjects);
+            }
+        }
+    }
+
+    /**
+     * Walk the delta down to the project level and below.
+     *
+     * @return true if any classpath has changed
+     */
+    private static boolean collectChanges(IJavaElementDelta delta, List<String> changedProjects) {
+        IJavaElement element = delta.getElement();
+
+        if (element.getElementType() == IJavaElement.JAVA_PROJECT) {
+            boolean classpathChanged = (delta.getFlags() & CLASSPATH_CHANGED) != 0;
+            if (delta.getKind() == IJavaElementDelta.REMOVED || (delta.getFlags() & IJavaElementDelta.F_CLOSED) != 0
+                    || hasContentChanges(delta)) {
+                changedProjects.add(element.getElementName());
+            }
+            return classpathChanged;
+        }
+
+        boolean classpathChanged = false;
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            classpathChanged |= collectChanges(child, changedProjects);
+        }
+        return classpathChanged;
+    }
+
+    private static boolean hasContentChanges(IJavaElementDelta delta) {
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            int type = child.getElement().getElementType();
+            if (type == IJavaElement.COMPILATION_UNIT || type == IJavaElement.CLASS_FILE) {
+                return true;
+            }
+            if (hasContentChanges(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void evictUsersOf(List<String> changedProjects) {
+        Iterator<Map.Entry<String, Entry>> iter = entriesByProject.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<String, Entry> mapEntry = iter.next();
+            for (String changed : changedProjects) {
+                if (mapEntry.getValue().loader.getProjectNames().contains(changed)) {
+                    log.debug("Evicting class loader of " + mapEntry.getKey() + " because " + changed + " has changed");
+                    iter.remove();
+                    retire(mapEntry.getValue());
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Close a loader nobody holds. URLClassLoader is only closeable from
+     * Java 7 on.
+     */
+    private static void close(ClassLoader loader) {
+        if (loader instanceof Closeable) {
+            IOUtil.closeQuietly((Closeable) loader);
+        }
+    }
+
+    private static class Entry {
+        final JavaProjectClassLoader loader;
+        boolean classpathChanged;
+        boolean retired;
+        int leases;
+
+        Entry(JavaProjectClassLoader loader) {
+            this.loader = loader;
+        }
+    }
+}
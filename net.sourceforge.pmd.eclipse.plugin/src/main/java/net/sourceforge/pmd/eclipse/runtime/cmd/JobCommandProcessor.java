@@ -35,12 +35,10 @@
  */
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
 
 import name.herlin.command.AbstractProcessableCommand;
 import name.herlin.command.CommandException;
@@ -53,22 +51,66 @@ import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 
 /**
  * This is a particular processor for Eclipse in order to handle long running
  * commands.
  *
+ * Commands wait in a {@link CommandQueue} shared by all the processors, and
+ * start by priority class and in turn between projects. As many commands run
+ * at once as there are processors left by the other work of the machine,
+ * measured at most once per second from the system load average.
+ *
  * @author Philippe Herlin
  *
  */
 public class JobCommandProcessor implements CommandProcessor {
     private static final Logger log = Logger.getLogger(JobCommandProcessor.class);
-    private final Map<AbstractProcessableCommand, Job> jobs = Collections.synchronizedMap(new HashMap<AbstractProcessableCommand, Job>());
 
-    private static ConcurrentLinkedQueue<Job> outstanding = new ConcurrentLinkedQueue<Job>();
-    private static AtomicInteger count = new AtomicInteger();
-    
+    private static final long LIMIT_REFRESH_NANOS = 1000000000L;
+    private static final OperatingSystemMXBean OS = ManagementFactory.getOperatingSystemMXBean();
+
+    private static final Map<AbstractProcessableCommand, Job> jobs = new ConcurrentHashMap<AbstractProcessableCommand, Job>();
+
+    // the fields below are guarded by the queue
+    private static final CommandQueue<Job> outstanding = new CommandQueue<Job>();
+    private static int running;
+    private static int limit = 1;
+    private static long limitComputedAt;
+    private static boolean limitComputed;
+
+    /**
+     * @return the number of commands waiting for one of the running jobs to
+     *         finish
+     */
+    public static int getQueuedCount() {
+        synchronized (outstanding) {
+            return outstanding.size();
+        }
+    }
+
+    /**
+     * @return the number of commands running as jobs
+     */
+    public static int getRunningCount() {
+        synchronized (outstanding) {
+            return running;
+        }
+    }
+
+    /**
+     * @return the number of background commands that may currently run at
+     *         once
+     */
+    public static int getConcurrencyLimit() {
+        synchronized (outstanding) {
+            return currentLimit();
+        }
+    }
+
     /**
      * @see name.herlin.command.CommandProcessor#processCommand(name.herlin.command.AbstractProcessableCommand)
      */
@@ -93,41 +135,84 @@ public class JobCommandProcessor implements CommandProcessor {
                 } catch (CommandException e) {
                     PMDPlugin.getDefault().logError("Error executing command " + aCommand.getName(), e);
                 }
-
-                synchronized (outstanding) {
-                	count.decrementAndGet();
-                	Job job = outstanding.poll();
-                	if (job != null) {
-                		job.schedule();
-                	}
-                }
                 return Status.OK_STATUS;
             }
         };
 
+        CommandPriority priority = CommandPriority.BUILD;
+        String project = null;
         if (aCommand instanceof AbstractDefaultCommand) {
-            job.setUser(((AbstractDefaultCommand) aCommand).isUserInitiated());
+            AbstractDefaultCommand command = (AbstractDefaultCommand) aCommand;
+            job.setUser(command.isUserInitiated());
+            priority = command.getPriority();
+            project = command.getProjectName();
         }
+        job.setPriority(priority.getJobPriority());
+        job.addJobChangeListener(new JobChangeAdapter() {
+            @Override
+            public void done(IJobChangeEvent event) {
+                jobs.remove(aCommand);
+                jobFinished();
+                if (aCommand instanceof AbstractDefaultCommand) {
+                    ((AbstractDefaultCommand) aCommand).finished();
+                }
+            }
+        });
 
+        jobs.put(aCommand, job);
         synchronized (outstanding) {
-        	if (count.incrementAndGet() > 10) {
-        		//too many already running, put in a queue to run later
-        		outstanding.add(job);
-        	} else {
-        		job.schedule();
-        	}
+            outstanding.add(job, priority, project);
+            startQueuedJobs();
         }
-        this.addJob(aCommand, job);
         log.debug("Ending job command " + aCommand.getName());
     }
 
+    private static void jobFinished() {
+        synchronized (outstanding) {
+            running--;
+            startQueuedJobs();
+        }
+    }
+
+    /**
+     * Start the queued jobs that may run now. Must be called holding the
+     * queue.
+     */
+    private static void startQueuedJobs() {
+        int currentLimit = currentLimit();
+        Job job = outstanding.poll(running, currentLimit);
+        while (job != null) {
+            running++;
+            job.schedule();
+            job = outstanding.poll(running, currentLimit);
+        }
+        outstanding.notifyAll();
+    }
+
+    private static int currentLimit() {
+        long now = System.nanoTime();
+        if (!limitComputed || now - limitComputedAt >= LIMIT_REFRESH_NANOS) {
+            limit = CommandQueue.concurrencyLimit(Runtime.getRuntime().availableProcessors(),
+                    OS.getSystemLoadAverage(), running);
+            limitComputedAt = now;
+            limitComputed = true;
+        }
+        return limit;
+    }
+
     /**
      * @see name.herlin.command.CommandProcessor#waitCommandToFinish(name.herlin.command.AbstractProcessableCommand)
      */
     public void waitCommandToFinish(final AbstractProcessableCommand aCommand) throws CommandException {
-        final Job job = this.jobs.get(aCommand);
+        final Job job = jobs.get(aCommand);
         if (job != null) {
             try {
+                // a queued job is not scheduled yet, and joining it would return at once
+                synchronized (outstanding) {
+                    while (outstanding.contains(job)) {
+                        outstanding.wait();
+                    }
+                }
                 job.join();
             } catch (InterruptedException e) {
                 throw new CommandException(e);
@@ -135,23 +220,4 @@ public class JobCommandProcessor implements CommandProcessor {
         }
 
     }
-
-    /**
-     * Add a job to the map. Also, clear all finished jobs
-     * @param command for which to keep the job
-     * @param job a job to keep until it is finished
-     */
-    private void addJob(final AbstractProcessableCommand command, final Job job) {
-        this.jobs.put(command, job);
-
-        // clear terminated command
-        final Iterator<AbstractProcessableCommand> i = this.jobs.keySet().iterator();
-        while (i.hasNext()) {
-            final AbstractProcessableCommand aCommand = i.next();
-            final Job aJob = this.jobs.get(aCommand);
-            if (aJob == null || aJob.getResult() != null) {
-                this.jobs.remove(aCommand);
-            }
-        }
-    }
 }
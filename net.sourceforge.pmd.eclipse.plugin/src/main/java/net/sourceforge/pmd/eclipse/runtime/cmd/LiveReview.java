@@ -0,0 +1,222 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.PMDException;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.SourceCodeProcessor;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
+import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
+import net.sourceforge.pmd.eclipse.util.SourceBuffer;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.rule.AbstractDelegateRule;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Reviews the unsaved text of a file, for showing violations while the user
+ * types. Nothing is written to the workspace; the caller shows the result.
+ *
+ * The text goes through the same {@link SourceCodeProcessor} as
+ * {@link ReviewResourceForRuleCommand}, with the rules the project applies
+ * to the language of the file. Rules that do not use the rule chain are
+ * applied one after the other, and the remaining ones are skipped once the
+ * review got cancelled or took longer than its budget; the review then
+ * gives no result at all, as a partial one would hide violations.
+ * Violations the text marks as reviewed are left out, as they are when
+ * markers are made.
+ *
+ * The review works on private copies of the rule sets, so it may run while
+ * files are being reviewed. It is not thread-safe itself: callers run one
+ * review at a time.
+ */
+public class LiveReview {
+
+    private static final Logger log = Logger.getLogger(LiveReview.class);
+
+    /** The default time a review may take before it is given up. */
+    public static final long DEFAULT_BUDGET_MILLIS = 1000;
+
+    private static final int MAX_COPIES = 8;
+
+    private final RuleSetCopier copier = new RuleSetCopier();
+    private final Map<RuleSet, RuleSet> copies = new IdentityHashMap<RuleSet, RuleSet>();
+
+    /**
+     * @param file
+     *            the file the text belongs to
+     * @param text
+     *            the current text of the file
+     * @param budgetMillis
+     *            the time the review may take
+     * @param monitor
+     *            cancels the review
+     * @return the violations found, an empty list if the file is not
+     *         reviewed, or null if the review got cancelled, exceeded its
+     *         budget, the rules could not be copied or the text could not
+     *         be parsed
+     */
+    public List<RuleViolation> review(IFile file, String text, long budgetMillis, IProgressMonitor monitor) {
+        IProject project = file.getProject();
+        try {
+            IProjectProperties properties = PMDPlugin.getDefault().loadProjectProperties(project);
+            if (!properties.isPmdEnabled()) {
+                return Collections.emptyList();
+            }
+
+            LanguageVersion languageVersion = languageVersionFor(file);
+            File sourceCodeFile = file.getRawLocation() == null ? null : file.getRawLocation().toFile();
+            EffectiveRuleSet effectiveRuleSet = PMDPlugin.getDefault().getEffectiveRuleSets().ruleSetFor(properties);
+            if (languageVersion == null || sourceCodeFile == null
+                    || !effectiveRuleSet.getPathFilter().accepts(sourceCodeFile)) {
+                return Collections.emptyList();
+            }
+            RuleSet shared = effectiveRuleSet.ruleSetFor(languageVersion.getLanguage());
+            if (shared == null) {
+                return Collections.emptyList();
+            }
+
+            RuleSet copy = copyOf(shared);
+            if (copy == null) {
+                // the shared rule set may be in use by a running review
+                return null;
+            }
+            Guard guard = new Guard(System.nanoTime() + budgetMillis * 1000000, monitor);
+            RuleSet rules = guarded(copy, guard);
+
+            PMDConfiguration config = new PMDConfiguration();
+            config.setDefaultLanguageVersion(languageVersion);
+            RuleContext context = PMD.newRuleContext(file.getName(), sourceCodeFile);
+            context.setLanguageVersion(languageVersion);
+
+            ClassLoader leasedLoader = PMDPlugin.setJavaClassLoader(config, project, shared);
+            try {
+                new SourceCodeProcessor(config).processSourceCode(new StringReader(text), new RuleSets(rules), context);
+            } finally {
+                PMDPlugin.releaseJavaClassLoader(leasedLoader);
+            }
+
+            if (guard.stopped) {
+                log.debug("Live review of " + file.getName() + " cancelled or over budget");
+                return null;
+            }
+            ReviewIndex reviews = ReviewIndex.of(SourceBuffer.wrap(text));
+            List<RuleViolation> violations = new ArrayList<RuleViolation>(context.getReport().size());
+            for (Iterator<RuleViolation> i = context.getReport().iterator(); i.hasNext();) {
+                RuleViolation violation = i.next();
+                if (!reviews.isReviewed(violation.getRule().getName(), violation.getBeginLine())) {
+                    violations.add(violation);
+                }
+            }
+            return violations;
+
+        } catch (PMDException e) {
+            // the text is often incomplete while typing
+            log.debug("Unable to review the text of " + file.getName() + ": " + e.getMessage());
+        } catch (PropertiesException e) {
+            log.warn("Unable to read the PMD properties of " + project.getName(), e);
+        }
+        return null;
+    }
+
+    private static LanguageVersion languageVersionFor(IFile file) {
+        LanguageVersion languageVersion = new LanguageVersionDiscoverer().getDefaultLanguageVersionForFile(file
+                .getName());
+        if (languageVersion != null
+                && languageVersion.getLanguage() == LanguageRegistry.getLanguage(JavaLanguageModule.NAME)) {
+            languageVersion = PMDPlugin.javaVersionFor(file.getProject());
+        }
+        return languageVersion;
+    }
+
+    private RuleSet copyOf(RuleSet shared) {
+        RuleSet copy = copies.get(shared);
+        if (copy == null) {
+            if (copies.size() >= MAX_COPIES) {
+                // the rules changed several times; drop the copies of the old ones
+                copies.clear();
+                copier.clear();
+            }
+            copy = copier.copyOf(shared);
+            if (copy != null) {
+                copies.put(shared, copy);
+            }
+        }
+        return copy;
+    }
+
+    private static RuleSet guarded(RuleSet rules, Guard guard) {
+        RuleSet guarded = new RuleSet();
+        guarded.setName(rules.getName());
+        guarded.setFileName(rules.getFileName());
+        for (Rule rule : rules.getRules()) {
+            // rule chain rules are visited by PMD itself and cannot be wrapped
+            guarded.addRule(rule.usesRuleChain() ? rule : new GuardedRule(rule, guard));
+        }
+        return guarded;
+    }
+
+    /**
+     * Tells whether the remaining rules may still run.
+     */
+    private static final class Guard {
+        private final long deadlineNanos;
+        private final IProgressMonitor monitor;
+        boolean stopped;
+
+        Guard(long deadlineNanos, IProgressMonitor monitor) {
+            this.deadlineNanos = deadlineNanos;
+            this.monitor = monitor;
+        }
+
+        boolean mayRun() {
+            if (!stopped && (monitor.isCanceled() || System.nanoTime() - deadlineNanos > 0)) {
+                stopped = true;
+            }
+            return !stopped;
+        }
+    }
+
+    private static final class GuardedRule extends AbstractDelegateRule {
+
+        private final Guard guard;
+
+        GuardedRule(Rule rule, Guard guard) {
+            setRule(rule);
+            this.guard = guard;
+        }
+
+        @Override
+        public boolean usesRuleChain() {
+            return false;
+        }
+
+        @Override
+        public void apply(List<? extends Node> nodes, RuleContext ctx) {
+            if (guard.mayRun()) {
+                getRule().apply(nodes, ctx);
+            }
+        }
+    }
+}
@@ -1,41 +1,141 @@
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.runtime.CoreException;
 
 /**
- * 
+ * The attributes of a marker about to be created for a violation.
+ *
+ * Each attribute has a field of its own; lines and priorities are kept as
+ * ints and rule names are shared between all the records of a rule. The
+ * attribute names handed to {@link IMarker#setAttributes(String[], Object[])}
+ * are constant arrays, so creating a marker only allocates its values.
+ *
  * @author Brian Remedios
  */
 public class MarkerInfo2 {
 
+	/** Tells that the marker has no task priority. */
+	public static final int NO_PRIORITY = -1;
+
+	private static final String[] ATTRIBUTE_NAMES = new String[] {
+		IMarker.MESSAGE, IMarker.LINE_NUMBER, PMDRuntimeConstants.KEY_MARKERATT_LINE2,
+		PMDRuntimeConstants.KEY_MARKERATT_RULENAME, PMDRuntimeConstants.KEY_MARKERATT_PRIORITY, IMarker.SEVERITY };
+
+	private static final String[] ATTRIBUTE_NAMES_WITH_PRIORITY = new String[] {
+		IMarker.MESSAGE, IMarker.LINE_NUMBER, PMDRuntimeConstants.KEY_MARKERATT_LINE2,
+		PMDRuntimeConstants.KEY_MARKERATT_RULENAME, PMDRuntimeConstants.KEY_MARKERATT_PRIORITY, IMarker.SEVERITY,
+		IMarker.PRIORITY };
+
+	/** The attributes that tell whether a marker is the same as a record. */
+	private static final String[] SIGNATURE_ATTRIBUTES = ATTRIBUTE_NAMES_WITH_PRIORITY;
+
+	private static final ConcurrentMap<String, String> RULE_NAMES = new ConcurrentHashMap<String, String>();
+
 	private final String type;
-	private Map<String, Object> data;
+	private final String ruleName;
+	private final String message;
+	private final int line;
+	private final int line2;
+	private final int pmdPriority;
+	private final int severity;
+	private final int priority;
+
+	/**
+	 * @param type the marker type
+	 * @param ruleName the name of the violated rule
+	 * @param message the violation message
+	 * @param line the first line of the violation
+	 * @param line2 the last line of the violation
+	 * @param pmdPriority the priority of the rule, from 1 to 5
+	 * @param severity the marker severity
+	 * @param priority the task priority, or {@link #NO_PRIORITY}
+	 */
+	public MarkerInfo2(String type, String ruleName, String message, int line, int line2, int pmdPriority,
+			int severity, int priority) {
+		this.type = type;
+		this.ruleName = shared(ruleName);
+		this.message = message;
+		this.line = line;
+		this.line2 = line2;
+		this.pmdPriority = pmdPriority;
+		this.severity = severity;
+		this.priority = priority;
+	}
+
+	private static String shared(String ruleName) {
+		if (ruleName == null) {
+			return null;
+		}
+		String shared = RULE_NAMES.putIfAbsent(ruleName, ruleName);
+		return shared == null ? ruleName : shared;
+	}
 
-	public MarkerInfo2(String theType, int expectedSize) {
-		type = theType;
-		data = new HashMap<String, Object>(expectedSize);
+	public String getType() {
+		return type;
 	}
 
-	public void add(String name, Object value) {
-	    data.put(name, value);
+	/**
+	 * @return the names of the attributes, in the order of
+	 *         {@link #attributeValues()}; the array must not be modified
+	 */
+	public String[] attributeNames() {
+		return priority == NO_PRIORITY ? ATTRIBUTE_NAMES : ATTRIBUTE_NAMES_WITH_PRIORITY;
 	}
 
-	public void add(String name, int value) {
-		add(name, Integer.valueOf(value));
+	/**
+	 * @return the values of the attributes, in the order of
+	 *         {@link #attributeNames()}
+	 */
+	public Object[] attributeValues() {
+		if (priority == NO_PRIORITY) {
+			return new Object[] { message, Integer.valueOf(line), Integer.valueOf(line2), ruleName,
+					Integer.valueOf(pmdPriority), Integer.valueOf(severity) };
+		}
+		return new Object[] { message, Integer.valueOf(line), Integer.valueOf(line2), ruleName,
+				Integer.valueOf(pmdPriority), Integer.valueOf(severity), Integer.valueOf(priority) };
 	}
-	
+
 	public void addAsMarkerTo(IFile file) throws CoreException {
-		
-		 IMarker marker = file.createMarker(type);
-         marker.setAttributes(data.keySet().toArray(new String[data.size()]), data.values().toArray());
+
+		IMarker marker = file.createMarker(type);
+		marker.setAttributes(attributeNames(), attributeValues());
+	}
+
+	/**
+	 * @return a key equal to the {@link #signatureOf(IMarker)} of the marker
+	 *         this record creates
+	 */
+	public String signature() {
+		return signatureOf(type, new Object[] { message, Integer.valueOf(line), Integer.valueOf(line2), ruleName,
+				Integer.valueOf(pmdPriority), Integer.valueOf(severity),
+				priority == NO_PRIORITY ? null : Integer.valueOf(priority) });
+	}
+
+	/**
+	 * @param marker an existing marker
+	 * @return a key made of the type and attributes that a record sets
+	 * @throws CoreException if the marker does not exist
+	 */
+	public static String signatureOf(IMarker marker) throws CoreException {
+		return signatureOf(marker.getType(), marker.getAttributes(SIGNATURE_ATTRIBUTES));
+	}
+
+	private static String signatureOf(String type, Object[] values) {
+		StringBuilder signature = new StringBuilder(type);
+		for (Object value : values) {
+			signature.append('\0').append(value);
+		}
+		return signature.toString();
 	}
 
 	public String toString() {
-	    return "MarkerInfo2: rule=" + data.get("rulename") + ", message=" + data.get(IMarker.MESSAGE) + ", line=" + data.get(IMarker.LINE_NUMBER);
+	    return "MarkerInfo2: rule=" + ruleName + ", message=" + message + ", line=" + line;
 	}
 }
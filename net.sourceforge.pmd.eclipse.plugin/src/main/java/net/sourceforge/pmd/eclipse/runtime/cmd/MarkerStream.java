@@ -0,0 +1,236 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.MultiRule;
+
+/**
+ * Applies the markers of reviewed files in small batches while the review is
+ * still running, instead of holding every marker until the last file is done.
+ * Only the markers that changed are touched.
+ *
+ * Reviews hand over the markers of a file as soon as it is analyzed. The
+ * thread running the command flushes them, at most a batch of files per
+ * workspace operation, each operation only covering the marker rules of its
+ * files and yielding to waiting jobs before the next one, so that builders
+ * and editors are never blocked for long. Workers never flush: during a
+ * build the command thread holds the workspace rule, and a worker waiting
+ * for it would never get it.
+ *
+ * Workers that hand over markers faster than the command thread flushes
+ * them are held back: once a few batches are pending, {@link #offer} blocks
+ * on any other thread than the one that created the stream, until a flush
+ * makes room. Only the names of flushed files are kept afterwards, so memory
+ * stays bounded by the batch size, and the markers of flushed files remain
+ * when the review gets cancelled.
+ */
+public class MarkerStream {
+
+    private static final Logger log = Logger.getLogger(MarkerStream.class);
+
+    /** The default number of files whose markers are applied in one workspace operation. */
+    public static final int DEFAULT_BATCH_SIZE = 25;
+    /** The default time after which pending markers are applied even if the batch is not full. */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+
+    private static final int PENDING_BATCHES = 4;
+    private static final long WAIT_INTERVAL_MS = 200;
+
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int maxPending;
+    private final Thread commandThread;
+    private final Map<IFile, Set<MarkerInfo2>> pending = new LinkedHashMap<IFile, Set<MarkerInfo2>>();
+    private long oldestPendingNanos;
+    private final Set<IFile> flushedFiles = new HashSet<IFile>();
+    private int markerCount;
+
+    /**
+     * Must be created on the thread running the command, which is the one
+     * flushing the stream.
+     *
+     * @param batchSize
+     *            the number of files that triggers a flush
+     * @param maxDelayMillis
+     *            the time after which pending files are flushed anyway
+     */
+    public MarkerStream(int batchSize, long maxDelayMillis) {
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelayMillis * 1000000;
+        this.maxPending = batchSize * PENDING_BATCHES;
+        this.commandThread = Thread.currentThread();
+    }
+
+    /**
+     * Hand over the markers of a reviewed file. May be called from any
+     * thread; a worker waits while too many files are pending.
+     *
+     * @param file
+     *            the reviewed file
+     * @param markers
+     *            all its markers; an empty set clears the file
+     */
+    public synchronized void offer(IFile file, Set<MarkerInfo2> markers) {
+        try {
+            while (pending.size() >= maxPending && Thread.currentThread() != commandThread
+                    && !pending.containsKey(file)) {
+                wait(WAIT_INTERVAL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (pending.isEmpty()) {
+            oldestPendingNanos = System.nanoTime();
+        }
+        pending.put(file, markers);
+    }
+
+    /**
+     * Flush if the batch is full or the oldest pending file waited too long.
+     * Must be called from the thread running the command.
+     *
+     * @param monitor
+     *            the monitor of the command
+     */
+    public void flushIfDue(IProgressMonitor monitor) {
+        boolean due;
+        synchronized (this) {
+            due = pending.size() >= batchSize
+                    || !pending.isEmpty() && System.nanoTime() - oldestPendingNanos >= maxDelayNanos;
+        }
+        if (due) {
+            flush(monitor);
+        }
+    }
+
+    /**
+     * Apply every pending marker, one batch after the other. Must be called
+     * from the thread running the command.
+     *
+     * @param monitor
+     *            the monitor of the command
+     */
+    public void flush(IProgressMonitor monitor) {
+        Map<IFile, Set<MarkerInfo2>> batch = nextBatch();
+        while (batch != null) {
+            apply(batch, monitor);
+            batch = nextBatch();
+            if (batch != null) {
+                yieldToWaitingJobs(monitor);
+            }
+        }
+    }
+
+    private synchronized Map<IFile, Set<MarkerInfo2>> nextBatch() {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        Map<IFile, Set<MarkerInfo2>> batch = new LinkedHashMap<IFile, Set<MarkerInfo2>>();
+        Iterator<Map.Entry<IFile, Set<MarkerInfo2>>> i = pending.entrySet().iterator();
+        while (i.hasNext() && batch.size() < batchSize) {
+            Map.Entry<IFile, Set<MarkerInfo2>> entry = i.next();
+            batch.put(entry.getKey(), entry.getValue());
+            i.remove();
+        }
+        notifyAll();
+        return batch;
+    }
+
+    private static void yieldToWaitingJobs(IProgressMonitor monitor) {
+        Job job = Job.getJobManager().currentJob();
+        if (job != null) {
+            job.yieldRule(monitor);
+        } else {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Apply one batch in its own workspace operation, scheduled on the
+     * marker rules of its files.
+     *
+     * @param batch
+     *            the markers of at most a batch of files
+     * @param monitor
+     *            the monitor of the command
+     */
+    protected void apply(final Map<IFile, Set<MarkerInfo2>> batch, IProgressMonitor monitor) {
+        long start = System.nanoTime();
+        final int[] applied = new int[1];
+        IWorkspaceRunnable action = new IWorkspaceRunnable() {
+            public void run(IProgressMonitor monitor) throws CoreException {
+                long lockedAt = System.nanoTime();
+                try {
+                    for (Map.Entry<IFile, Set<MarkerInfo2>> entry : batch.entrySet()) {
+                        IFile file = entry.getKey();
+                        if (!file.exists()) {
+                            continue;
+                        }
+                        MarkerUtil.updateMarkersIn(file, entry.getValue());
+                        applied[0] += entry.getValue().size();
+                    }
+                } finally {
+                    PMDPlugin.getDefault().getRuntimeMetrics().markerRuleHeld(System.nanoTime() - lockedAt);
+                }
+            }
+        };
+
+        try {
+            IWorkspace workspace = ResourcesPlugin.getWorkspace();
+            workspace.run(action, schedulingRuleFor(batch.keySet()), IWorkspace.AVOID_UPDATE, monitor);
+        } catch (CoreException e) {
+            log.warn("CoreException when applying a batch of markers: " + e.getMessage());
+        } finally {
+            PMDPlugin.getDefault().getRuntimeMetrics().markersApplied(applied[0], System.nanoTime() - start);
+            synchronized (this) {
+                flushedFiles.addAll(batch.keySet());
+                markerCount += applied[0];
+            }
+        }
+    }
+
+    private static ISchedulingRule schedulingRuleFor(Set<IFile> files) {
+        IResourceRuleFactory ruleFactory = ResourcesPlugin.getWorkspace().getRuleFactory();
+        List<ISchedulingRule> rules = new ArrayList<ISchedulingRule>(files.size());
+        for (IFile file : files) {
+            ISchedulingRule rule = ruleFactory.markerRule(file);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return MultiRule.combine(rules.toArray(new ISchedulingRule[rules.size()]));
+    }
+
+    /**
+     * @return the files whose markers have been applied so far
+     */
+    public synchronized Set<IFile> getFlushedFiles() {
+        return new HashSet<IFile>(flushedFiles);
+    }
+
+    /**
+     * @return the number of markers applied so far
+     */
+    public synchronized int getMarkerCount() {
+        return markerCount;
+    }
+}
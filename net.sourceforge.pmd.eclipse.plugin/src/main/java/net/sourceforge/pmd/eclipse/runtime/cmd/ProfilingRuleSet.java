@@ -0,0 +1,80 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.AbstractDelegateRule;
+
+/**
+ * A copy of a rule set whose rules measure the time and memory they take.
+ *
+ * Rules applied through the rule chain are visited node by node from PMD's
+ * own code, so the copies do not use the rule chain; every rule visits the
+ * whole tree on its own. Profiling thus makes reviews slower, and is only
+ * done when the preferences ask for it.
+ */
+final class ProfilingRuleSet {
+
+    private final RuleSet ruleSet = new RuleSet();
+    private final List<ReviewProfile.Entry> measures = new ArrayList<ReviewProfile.Entry>();
+
+    /**
+     * @param rules
+     *            the rules to measure
+     */
+    ProfilingRuleSet(RuleSet rules) {
+        ruleSet.setName(rules.getName());
+        ruleSet.setFileName(rules.getFileName());
+        for (Rule rule : rules.getRules()) {
+            ReviewProfile.Entry measure = new ReviewProfile.Entry(rule.getName());
+            measures.add(measure);
+            ruleSet.addRule(new ProfilingRule(rule, measure));
+        }
+    }
+
+    /**
+     * @return the rule set to apply
+     */
+    RuleSet getRuleSet() {
+        return ruleSet;
+    }
+
+    /**
+     * @return the measures of the rules, once the rule set has been applied
+     */
+    List<ReviewProfile.Entry> getMeasures() {
+        return measures;
+    }
+
+    private static final class ProfilingRule extends AbstractDelegateRule {
+
+        private final ReviewProfile.Entry measure;
+
+        ProfilingRule(Rule rule, ReviewProfile.Entry measure) {
+            setRule(rule);
+            this.measure = measure;
+        }
+
+        @Override
+        public boolean usesRuleChain() {
+            return false;
+        }
+
+        @Override
+        public void apply(List<? extends Node> nodes, RuleContext ctx) {
+            long wall = System.nanoTime();
+            long cpu = ThreadClock.cpuNanos();
+            long allocated = ThreadClock.allocatedBytes();
+            try {
+                getRule().apply(nodes, ctx);
+            } finally {
+                measure.add(System.nanoTime() - wall, ThreadClock.cpuNanos() - cpu, ThreadClock.allocatedBytes()
+                        - allocated);
+            }
+        }
+    }
+}
@@ -39,7 +39,10 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import name.herlin.command.CommandException;
@@ -201,14 +204,43 @@ public class RenderReportsCmd extends AbstractProjectCommand {
         return super.isReadyToExecute() && !renderers.isEmpty();
     }
 
-    private static void classAndPackageFrom(IMarker marker, FakeRuleViolation violation) throws JavaModelException {
-    	 ICompilationUnit unit = JavaCore.createCompilationUnitFrom((IFile) marker.getResource());
+    /**
+     * @return the package and class names of the file, looked up once per file
+     */
+    private static String[] classAndPackageFrom(IFile file, Map<IFile, String[]> namesByFile) throws JavaModelException {
+        String[] names = namesByFile.get(file);
+        if (names != null) {
+            return names;
+        }
+
+        ICompilationUnit unit = JavaCore.createCompilationUnitFrom(file);
+
+        IPackageDeclaration[] packages = unit.getPackageDeclarations();
+        IType[] types = unit.getAllTypes();
+        names = new String[] {
+                packages.length > 0 ? packages[0].getElementName() : "(default)",
+                types.length > 0 ? types[0].getElementName() : file.getName()
+                };
+        namesByFile.put(file, names);
+        return names;
+    }
 
-         IPackageDeclaration[] packages = unit.getPackageDeclarations();         
-         violation.setPackageName(packages.length > 0 ? packages[0].getElementName() : "(default)");
-         
-         IType[] types = unit.getAllTypes();
-         violation.setClassName(types.length > 0 ? types[0].getElementName() : marker.getResource().getName());        
+    /**
+     * Finds the markers of a project, searching only the resources the
+     * violation index knows to be marked once it is built.
+     */
+    private static IMarker[] findAllMarkers(IProject project) throws CoreException {
+
+        ViolationIndex index = PMDPlugin.getDefault().getViolationIndex();
+        if (!index.isReady()) {
+            return MarkerUtil.findAllMarkers(project);
+        }
+
+        List<IMarker> markers = new ArrayList<IMarker>();
+        for (IResource marked : index.resourcesMarkedIn(project)) {
+            markers.addAll(Arrays.asList(MarkerUtil.findMarkers(marked, PMDRuntimeConstants.ALL_MARKER_TYPES, IResource.DEPTH_ZERO)));
+        }
+        return markers.toArray(new IMarker[markers.size()]);
     }
     
     /**
@@ -220,9 +252,10 @@ public class RenderReportsCmd extends AbstractProjectCommand {
 
         Report report = new Report();
 
-        IMarker[] markers = MarkerUtil.findAllMarkers(project);
+        IMarker[] markers = findAllMarkers(project);
         RuleSet ruleSet = PMDPlugin.getDefault().getPreferencesManager().getRuleSet();
         boolean isJavaProject = project.hasNature(JavaCore.NATURE_ID);
+        Map<IFile, String[]> namesByFile = new HashMap<IFile, String[]>();
         
         for (IMarker marker : markers) {
             String ruleName = marker.getAttribute(PMDRuntimeConstants.KEY_MARKERATT_RULENAME, "");
@@ -231,7 +264,9 @@ public class RenderReportsCmd extends AbstractProjectCommand {
             FakeRuleViolation ruleViolation = createViolation(marker, rule);
 
             if (isJavaProject && marker.getResource() instanceof IFile) {
-            	classAndPackageFrom(marker, ruleViolation);
+                String[] names = classAndPackageFrom((IFile) marker.getResource(), namesByFile);
+                ruleViolation.setPackageName(names[0]);
+                ruleViolation.setClassName(names[1]);
             }
 
             report.addRuleViolation(ruleViolation);
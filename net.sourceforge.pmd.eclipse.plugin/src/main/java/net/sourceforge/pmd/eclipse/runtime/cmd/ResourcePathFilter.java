@@ -0,0 +1,208 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The include and exclude patterns of a rule set, compiled once so that
+ * deciding whether a file gets reviewed does not mean running every regular
+ * expression against its path.
+ *
+ * The decision is the one {@link net.sourceforge.pmd.RuleSet#applies(File)}
+ * makes: a file is reviewed if its path matches an include pattern, or if it
+ * matches no exclude pattern. Paths are matched with forward slashes.
+ *
+ * Patterns that are a literal path, optionally followed by <code>.*</code>,
+ * go into a prefix trie or a set of exact paths. This covers the build path
+ * patterns and most filters. All other patterns are joined into one
+ * alternation. Decisions are remembered per path.
+ */
+public final class ResourcePathFilter {
+
+    private static final Logger log = Logger.getLogger(ResourcePathFilter.class);
+
+    /** The filter of a rule set without patterns: every file is reviewed. */
+    public static final ResourcePathFilter ACCEPT_ALL = new ResourcePathFilter(Matcher.NONE, Matcher.NONE);
+
+    private static final String ANY_SUFFIX = ".*";
+    private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final int MAX_REMEMBERED_DECISIONS = 50000;
+
+    private final Matcher includes;
+    private final Matcher excludes;
+    private final Map<String, Boolean> decisionsByPath = new ConcurrentHashMap<String, Boolean>();
+
+    private ResourcePathFilter(Matcher includes, Matcher excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * @param includePatterns
+     *            regular expressions of the paths that are always reviewed
+     * @param excludePatterns
+     *            regular expressions of the paths that are not reviewed
+     * @return the compiled filter
+     */
+    public static ResourcePathFilter compile(Collection<String> includePatterns, Collection<String> excludePatterns) {
+        if (includePatterns.isEmpty() && excludePatterns.isEmpty()) {
+            return ACCEPT_ALL;
+        }
+        return new ResourcePathFilter(Matcher.compile(includePatterns), Matcher.compile(excludePatterns));
+    }
+
+    /**
+     * @param file
+     *            the file about to be reviewed
+     * @return true if the file should be reviewed
+     */
+    public boolean accepts(File file) {
+        if (this == ACCEPT_ALL || file == null) {
+            return true;
+        }
+
+        String path = file.getPath().replace('\\', '/');
+        Boolean decision = decisionsByPath.get(path);
+        if (decision == null) {
+            decision = Boolean.valueOf(includes.matches(path) || !excludes.matches(path));
+            if (decisionsByPath.size() >= MAX_REMEMBERED_DECISIONS) {
+                decisionsByPath.clear();
+            }
+            decisionsByPath.put(path, decision);
+        }
+        return decision.booleanValue();
+    }
+
+    /**
+     * @param pattern
+     *            a regular expression
+     * @return the literal text the expression stands for, or null if it uses
+     *         any regular expression construct
+     */
+    static String literalOf(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (REGEX_META_CHARACTERS.indexOf(pattern.charAt(i)) != -1) {
+                return null;
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Matches a path against a set of patterns.
+     */
+    private static final class Matcher {
+
+        static final Matcher NONE = new Matcher(new PrefixTrie(), new HashSet<String>(), null);
+
+        private final PrefixTrie prefixes;
+        private final Set<String> exactPaths;
+        private final Pattern others;
+
+        private Matcher(PrefixTrie prefixes, Set<String> exactPaths, Pattern others) {
+            this.prefixes = prefixes;
+            this.exactPaths = exactPaths;
+            this.others = others;
+        }
+
+        static Matcher compile(Collection<String> patterns) {
+            if (patterns.isEmpty()) {
+                return NONE;
+            }
+
+            PrefixTrie prefixes = new PrefixTrie();
+            Set<String> exactPaths = new HashSet<String>();
+            List<String> others = new ArrayList<String>();
+
+            for (String pattern : patterns) {
+                String prefix = pattern.endsWith(ANY_SUFFIX)
+                        ? literalOf(pattern.substring(0, pattern.length() - ANY_SUFFIX.length())) : null;
+                String exact = prefix == null ? literalOf(pattern) : null;
+                if (prefix != null) {
+                    prefixes.add(prefix);
+                } else if (exact != null) {
+                    exactPaths.add(exact);
+                } else {
+                    others.add(pattern);
+                }
+            }
+
+            return new Matcher(prefixes, exactPaths, alternationOf(others));
+        }
+
+        private static Pattern alternationOf(List<String> patterns) {
+            if (patterns.isEmpty()) {
+                return null;
+            }
+
+            StringBuilder alternation = new StringBuilder();
+            for (String pattern : patterns) {
+                try {
+                    Pattern.compile(pattern);
+                } catch (PatternSyntaxException e) {
+                    log.warn("Ignoring invalid path pattern " + pattern, e);
+                    continue;
+                }
+                if (alternation.length() > 0) {
+                    alternation.append('|');
+                }
+                alternation.append("(?:").append(pattern).append(')');
+            }
+            return alternation.length() == 0 ? null : Pattern.compile(alternation.toString());
+        }
+
+        boolean matches(String path) {
+            return prefixes.hasPrefixOf(path) || exactPaths.contains(path)
+                    || others != null && others.matcher(path).matches();
+        }
+    }
+
+    /**
+     * A character trie telling whether any of its entries is a prefix of a
+     * given path.
+     */
+    private static final class PrefixTrie {
+
+        private final Map<Character, PrefixTrie> children = new HashMap<Character, PrefixTrie>();
+        private boolean terminal;
+
+        void add(String prefix) {
+            PrefixTrie node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                Character c = Character.valueOf(prefix.charAt(i));
+                PrefixTrie child = node.children.get(c);
+                if (child == null) {
+                    child = new PrefixTrie();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.terminal = true;
+        }
+
+        boolean hasPrefixOf(String path) {
+            PrefixTrie node = this;
+            for (int i = 0; !node.terminal; i++) {
+                if (i == path.length()) {
+                    return false;
+                }
+                node = node.children.get(Character.valueOf(path.charAt(i)));
+                if (node == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -2,34 +2,50 @@ package net.sourceforge.pmd.eclipse.runtime.cmd;
 
 import org.apache.log4j.Logger;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
 
 /**
  * This class visits all of the resources in the Eclipse
  * Workspace, and runs PMD on them if they happen to be
  * Java files.
  * 
+ * It walks the resource tree through proxies, so that no resource handle is
+ * created for folders and for files that do not get reviewed; accepted files
+ * are handed to the review as soon as they are found.
+ *
  * Any violations get tagged onto the file as problems in the tasks list.
  * @author Philippe Herlin
  *
  */
-public class ResourceVisitor extends BaseVisitor implements IResourceVisitor {
+public class ResourceVisitor extends BaseVisitor implements IResourceProxyVisitor {
     private static final Logger log = Logger.getLogger(ResourceVisitor.class);
 
+    private int fileCount;
+
     /**
-     * @see org.eclipse.core.resources.IResourceVisitor#visit(IResource)
+     * @see org.eclipse.core.resources.IResourceProxyVisitor#visit(IResourceProxy)
      */
-    public boolean visit(final IResource resource) {
-        log.debug("Visiting resource " + resource.getName());
-        boolean fVisitChildren = true;
-
+    public boolean visit(final IResourceProxy proxy) {
         if (this.isCanceled()) {
-            fVisitChildren = false;
-        } else {
-            this.reviewResource(resource);
+            return false;
+        }
+
+        if (proxy.getType() != IResource.FILE) {
+            return isInWorkingSetScope(proxy);
         }
 
-        return fVisitChildren;
+        log.debug("Visiting resource " + proxy.getName());
+        fileCount++;
+        this.reviewResource(proxy.requestResource(), proxy.isDerived());
+        return false;
+    }
+
+    /**
+     * @return the number of files walked, whether they were reviewed or not
+     */
+    public int getVisitedFileCount() {
+        return fileCount;
     }
 
 }
@@ -0,0 +1,500 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.writer.WriterException;
+import net.sourceforge.pmd.eclipse.util.IOUtil;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Remembers the violations found in each reviewed file so that a file whose
+ * content, language version and rules have not changed since its last review
+ * gets its markers back without being parsed again.
+ *
+ * Entries are keyed by the full path of the file and hold the content hash,
+ * the language version and the rule set fingerprint they were computed with;
+ * a lookup only hits when all three match. The violations are kept after
+ * review comments and the per-rule maximum have been applied, so they can be
+ * turned into markers as they are.
+ *
+ * The cache lives in memory and is saved to the plugin state location in a
+ * compact binary format: a string table shared by paths, rule names and
+ * messages, followed by the entries with variable-length integers. Once the
+ * estimated size exceeds the limit, the least recently used entries are
+ * dropped. Strings are written as length-prefixed UTF-8 bytes, so that long
+ * messages fit.
+ *
+ * Reviews ask for a save with {@link #saveLater()}, which writes the cache
+ * in the background at most once per delay; the plugin saves it once more
+ * when it stops. A save writes a snapshot of the entries, so reviews do not
+ * wait for the disk.
+ */
+public class ReviewCache {
+
+    private static final Logger log = Logger.getLogger(ReviewCache.class);
+
+    /** Default upper bound for the estimated size of the cached entries. */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private static final int MAGIC = 0x504d4443; // "PMDC"
+    private static final int FORMAT_VERSION = 2;
+    private static final long SAVE_DELAY_MILLIS = 30000;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int VIOLATION_OVERHEAD = 32;
+
+    private final File file;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(256, 0.75f, true);
+    private long estimatedBytes;
+    private boolean loaded;
+    private long changeCount;
+    private long savedChangeCount;
+    private int clearCount;
+    private final Object saveLock = new Object();
+
+    private final Job saveJob = new Job("Saving the PMD review cache") {
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            write();
+            return Status.OK_STATUS;
+        }
+    };
+
+    /**
+     * @param file
+     *            where the cache is saved
+     * @param maxBytes
+     *            the estimated size above which entries get evicted
+     */
+    public ReviewCache(File file, long maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        saveJob.setSystem(true);
+    }
+
+    /**
+     * Return the violations recorded for a file, provided they were computed
+     * from the same content, language version and rules.
+     *
+     * @param path
+     *            the full path of the file
+     * @param contentHash
+     *            the hash of the current content
+     * @param languageVersion
+     *            the terse name of the language version
+     * @param ruleSetFingerprint
+     *            the fingerprint of the rules about to be applied
+     * @return the recorded violations, or null if there is no matching entry
+     */
+    public synchronized List<Violation> lookup(String path, long contentHash, String languageVersion,
+            String ruleSetFingerprint) {
+        ensureLoaded();
+        Entry entry = entries.get(path);
+        if (entry == null || entry.contentHash != contentHash || !entry.languageVersion.equals(languageVersion)
+                || !entry.ruleSetFingerprint.equals(ruleSetFingerprint)) {
+            return null;
+        }
+        return entry.violations;
+    }
+
+    /**
+     * Record the violations found in a file, replacing any previous entry.
+     *
+     * @param path
+     *            the full path of the file
+     * @param contentHash
+     *            the hash of the reviewed content
+     * @param languageVersion
+     *            the terse name of the language version
+     * @param ruleSetFingerprint
+     *            the fingerprint of the applied rules
+     * @param violations
+     *            the violations that became markers
+     */
+    public synchronized void store(String path, long contentHash, String languageVersion, String ruleSetFingerprint,
+            List<Violation> violations) {
+        ensureLoaded();
+        put(path, new Entry(contentHash, languageVersion, ruleSetFingerprint,
+                Collections.unmodifiableList(new ArrayList<Violation>(violations))));
+        evict();
+        changeCount++;
+    }
+
+    /**
+     * Forget every entry, both in memory and on disk.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        estimatedBytes = 0;
+        loaded = true;
+        savedChangeCount = changeCount;
+        clearCount++;
+        if (file.exists() && !file.delete()) {
+            log.warn("Could not delete review cache " + file);
+        }
+    }
+
+    /**
+     * @return the number of files in the cache
+     */
+    public synchronized int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    private void put(String path, Entry entry) {
+        Entry previous = entries.put(path, entry);
+        if (previous != null) {
+            estimatedBytes -= previous.estimatedSize(path);
+        }
+        estimatedBytes += entry.estimatedSize(path);
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+        while (estimatedBytes > maxBytes && iter.hasNext()) {
+            Map.Entry<String, Entry> eldest = iter.next();
+            estimatedBytes -= eldest.getValue().estimatedSize(eldest.getKey());
+            iter.remove();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            read(in);
+            log.debug("Review cache loaded with " + entries.size() + " files");
+        } catch (IOException e) {
+            log.warn("Review cache " + file + " is unreadable and will be rebuilt", e);
+            entries.clear();
+            estimatedBytes = 0;
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unknown review cache format");
+        }
+
+        String[] strings = new String[readVarInt(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(in);
+        }
+
+        int entryCount = readVarInt(in);
+        for (int i = 0; i < entryCount; i++) {
+            String path = strings[readVarInt(in)];
+            long contentHash = in.readLong();
+            String languageVersion = strings[readVarInt(in)];
+            String ruleSetFingerprint = strings[readVarInt(in)];
+            int violationCount = readVarInt(in);
+            List<Violation> violations = new ArrayList<Violation>(violationCount);
+            for (int j = 0; j < violationCount; j++) {
+                String ruleName = strings[readVarInt(in)];
+                String message = strings[readVarInt(in)];
+                int beginLine = readVarInt(in);
+                int endLine = beginLine + readVarInt(in);
+                int priority = in.readByte();
+                violations.add(new Violation(ruleName, message, beginLine, endLine, priority));
+            }
+            put(path, new Entry(contentHash, languageVersion, ruleSetFingerprint,
+                    Collections.unmodifiableList(violations)));
+        }
+        evict();
+    }
+
+    /**
+     * Ask for the cache to be written in the background. Requests made while
+     * a save is pending are merged into it.
+     */
+    public void saveLater() {
+        saveJob.schedule(SAVE_DELAY_MILLIS);
+    }
+
+    /**
+     * Write the cache to disk now if it has changed since it was loaded or
+     * last saved, instead of waiting for a pending save.
+     */
+    public void save() {
+        saveJob.cancel();
+        write();
+    }
+
+    /**
+     * Write a snapshot of the entries. The file is replaced only once the new
+     * content is complete, and not at all if the cache got cleared meanwhile.
+     */
+    private void write() {
+        synchronized (saveLock) {
+            List<Map.Entry<String, Entry>> snapshot;
+            long snapshotChangeCount;
+            int snapshotClearCount;
+            synchronized (this) {
+                if (changeCount == savedChangeCount) {
+                    return;
+                }
+                // entries are immutable, a shallow copy is a consistent snapshot
+                snapshot = new ArrayList<Map.Entry<String, Entry>>(entries.size());
+                for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                    snapshot.add(new AbstractMap.SimpleImmutableEntry<String, Entry>(mapEntry));
+                }
+                snapshotChangeCount = changeCount;
+                snapshotClearCount = clearCount;
+            }
+
+            File tmp = new File(file.getPath() + ".tmp");
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+                write(out, snapshot);
+                out.close();
+                out = null;
+                synchronized (this) {
+                    if (clearCount != snapshotClearCount) {
+                        return;
+                    }
+                    if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+                        throw new IOException("Could not replace " + file);
+                    }
+                    savedChangeCount = snapshotChangeCount;
+                }
+                log.debug("Review cache saved with " + snapshot.size() + " files");
+            } catch (IOException e) {
+                log.warn("Unable to save the review cache", e);
+            } finally {
+                IOUtil.closeQuietly(out);
+                if (tmp.exists() && !tmp.delete()) {
+                    log.debug("Could not delete " + tmp);
+                }
+            }
+        }
+    }
+
+    private static void write(DataOutputStream out, List<Map.Entry<String, Entry>> snapshot) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        for (Map.Entry<String, Entry> mapEntry : snapshot) {
+            Entry entry = mapEntry.getValue();
+            indexOf(mapEntry.getKey(), strings);
+            indexOf(entry.languageVersion, strings);
+            indexOf(entry.ruleSetFingerprint, strings);
+            for (Violation violation : entry.violations) {
+                indexOf(violation.getRuleName(), strings);
+                indexOf(violation.getMessage(), strings);
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeVarInt(out, strings.size());
+        for (String string : strings.keySet()) {
+            writeString(out, string);
+        }
+
+        // eldest first, so that the access order survives a reload
+        writeVarInt(out, snapshot.size());
+        for (Map.Entry<String, Entry> mapEntry : snapshot) {
+            Entry entry = mapEntry.getValue();
+            writeVarInt(out, strings.get(mapEntry.getKey()));
+            out.writeLong(entry.contentHash);
+            writeVarInt(out, strings.get(entry.languageVersion));
+            writeVarInt(out, strings.get(entry.ruleSetFingerprint));
+            writeVarInt(out, entry.violations.size());
+            for (Violation violation : entry.violations) {
+                writeVarInt(out, strings.get(violation.getRuleName()));
+                writeVarInt(out, strings.get(violation.getMessage()));
+                writeVarInt(out, violation.getBeginLine());
+                writeVarInt(out, Math.max(0, violation.getEndLine() - violation.getBeginLine()));
+                out.writeByte(violation.getPriority());
+            }
+        }
+    }
+
+    /**
+     * Unlike writeUTF, which is limited to 64K bytes.
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void indexOf(String string, Map<String, Integer> strings) {
+        if (!strings.containsKey(string)) {
+            strings.put(string, Integer.valueOf(strings.size()));
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7f) != 0) {
+            out.writeByte((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed review cache");
+    }
+
+    /**
+     * Compute a fingerprint that changes whenever a rule, one of its
+     * properties, its priority or the include/exclude patterns of the rule
+     * set change. It is the MD5 digest of the rule set as it would be
+     * exported.
+     *
+     * @param ruleSet
+     *            the effective rule set
+     * @return the fingerprint, or null if the rule set could not be written
+     */
+    public static String fingerprintOf(RuleSet ruleSet) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            OutputStream out = new DigestOutputStream(new NullOutputStream(), digest);
+            PMDPlugin.getDefault().getRuleSetWriter().write(out, ruleSet);
+            out.close();
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            log.warn("Unable to fingerprint rule set " + ruleSet.getName(), e);
+        } catch (WriterException e) {
+            log.warn("Unable to fingerprint rule set " + ruleSet.getName(), e);
+        } catch (IOException e) {
+            log.warn("Unable to fingerprint rule set " + ruleSet.getName(), e);
+        }
+        return null;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * A violation as it is turned into a marker.
+     */
+    public static final class Violation {
+        private final String ruleName;
+        private final String message;
+        private final int beginLine;
+        private final int endLine;
+        private final int priority;
+
+        public Violation(String ruleName, String message, int beginLine, int endLine, int priority) {
+            this.ruleName = ruleName;
+            this.message = message == null ? "" : message;
+            this.beginLine = beginLine;
+            this.endLine = endLine;
+            this.priority = priority;
+        }
+
+        public String getRuleName() {
+            return ruleName;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public int getBeginLine() {
+            return beginLine;
+        }
+
+        public int getEndLine() {
+            return endLine;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    private static final class Entry {
+        final long contentHash;
+        final String languageVersion;
+        final String ruleSetFingerprint;
+        final List<Violation> violations;
+
+        Entry(long contentHash, String languageVersion, String ruleSetFingerprint, List<Violation> violations) {
+            this.contentHash = contentHash;
+            this.languageVersion = languageVersion;
+            this.ruleSetFingerprint = ruleSetFingerprint;
+            this.violations = violations;
+        }
+
+        long estimatedSize(String path) {
+            long size = ENTRY_OVERHEAD + 2L * path.length();
+            for (Violation violation : violations) {
+                size += VIOLATION_OVERHEAD + 2L * (violation.getRuleName().length() + violation.getMessage().length());
+            }
+            return size;
+        }
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+            // discard
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // discard
+        }
+    }
+}
@@ -38,6 +38,7 @@ package net.sourceforge.pmd.eclipse.runtime.cmd;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -53,7 +54,6 @@ import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
 import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences;
 import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
 import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
-import net.sourceforge.pmd.eclipse.ui.actions.RuleSetUtil;
 import net.sourceforge.pmd.util.StringUtil;
 
 import org.apache.log4j.Logger;
@@ -63,16 +63,13 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
-import org.eclipse.core.resources.IResourceRuleFactory;
-import org.eclipse.core.resources.IResourceVisitor;
-import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
 import org.eclipse.core.resources.IWorkspaceRoot;
-import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
-import org.eclipse.core.runtime.jobs.MultiRule;
 import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
@@ -99,17 +96,30 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     private int ruleCount;
     private int fileCount;
     private long pmdDuration;
+    private int cacheHits;
+    private int cacheMisses;
     private String onErrorIssue = null;
     /** Whether to run the review command, even if PMD is disabled in the project settings. */
     private boolean runAlways = false;
-    /**
-     * Maximum count of changed resources, that are considered to be not a full build.
-     * If more than these resources are changed, PMD will only be executed, if full build option is enabled.
-     */
-    private static final int MAXIMUM_RESOURCE_COUNT = 5;
-
+    /** Whether the command reviews files an automatic build left out; such a run has no time budget. */
+    private boolean deferred = false;
+    /** What remains of the time an automatic build may spend reviewing, in milliseconds. */
+    private long budgetLeft;
     private IProjectProperties propertyCache = null;
 
+    /** Reviews files in parallel; created on demand when more than one file is to be reviewed. */
+    private ReviewWorkerPool workerPool;
+    /** The visitors of the current run, whose statistics are collected once all reviews are done. */
+    private final List<BaseVisitor> visitors = new ArrayList<BaseVisitor>();
+    /** The progress of the current run, shared by its visitors. */
+    private ReviewProgress progress;
+    /** Where the visitors record the time of each rule and file, or null if profiling is disabled. */
+    private ReviewProfile profile;
+    /** Whether markers are applied in batches while the review runs, rather than all at the end. */
+    private boolean streamMarkers = false;
+    /** The batches of markers of the current run, or null if markers are applied at the end. */
+    private MarkerStream markerStream;
+
     private static final long serialVersionUID = 1L;
 
     private static final Logger log = Logger.getLogger(ReviewCodeCmd.class);
@@ -126,6 +136,11 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     }
 
     public Set<IFile> markedFiles() {
+        if (markerStream != null) {
+            Set<IFile> files = new HashSet<IFile>(markersByFile.keySet());
+            files.addAll(markerStream.getFlushedFiles());
+            return files;
+        }
         return markersByFile.keySet();
     }
 
@@ -178,8 +193,18 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
             fileCount = 0;
             ruleCount = 0;
             pmdDuration = 0;
-
-            beginTask("PMD checking...", getStepCount());
+            cacheHits = 0;
+            cacheMisses = 0;
+
+            // files are counted while they are walked
+            setStepCount(0);
+            IPreferences preferences = PMDPlugin.getDefault().getPreferencesManager().loadPreferences();
+            budgetLeft = preferences.getReviewLatencyBudget();
+            profile = preferences.isProfilingEnabled() ? PMDPlugin.getDefault().getReviewProfile() : null;
+            beginTask("PMD checking...", ReviewProgress.TOTAL_WORK);
+            progress = new ReviewProgress(getMonitor());
+            markerStream = streamMarkers ? new MarkerStream(MarkerStream.DEFAULT_BATCH_SIZE,
+                    MarkerStream.DEFAULT_MAX_DELAY_MILLIS) : null;
 
             // Lancer PMD
             // PMDPlugin fills resources if it's a full build and
@@ -189,6 +214,10 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
             } else {
                 processResources();
             }
+            awaitReviews();
+            if (markerStream != null) {
+                markerStream.flush(getMonitor());
+            }
 
             // do we really need to do any of the rest of this if
             // fileCount and ruleCount are both 0?
@@ -196,27 +225,7 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
             // skip the marking processing if the markersByFile set is empty
             // (avoids grabbing the "run" lock for nothing)
             if (!markersByFile.isEmpty()) {
-                // Appliquer les marqueurs
-                IWorkspaceRunnable action = new IWorkspaceRunnable() {
-                    public void run(IProgressMonitor monitor) throws CoreException {
-                        applyMarkers();
-                    }
-                };
-
-                // clear the markers here. The call to Resource.deleteMarkers
-                // will
-                // also call the Workspace.prepareOperation so do that
-                // outside the larger "applyMarkers" call to avoid doubly
-                // holding locks
-                // for too long
-                for (IFile file : markersByFile.keySet()) {
-                    if (isCanceled())
-                        break;
-                    MarkerUtil.deleteAllMarkersIn(file);
-                }
-
-                final IWorkspace workspace = ResourcesPlugin.getWorkspace();
-                workspace.run(action, getSchedulingRule(), IWorkspace.AVOID_UPDATE, getMonitor());
+                applyMarkers();
             }
 
             // Switch to the PMD perspective if required
@@ -231,6 +240,15 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         } catch (CoreException e) {
             throw new CommandException("Core exception when reviewing code", e);
         } finally {
+            awaitReviews();
+            if (markerStream != null) {
+                // keep the markers of the files reviewed before a cancel or a failure
+                markerStream.flush(getMonitor());
+            }
+            PMDPlugin.getDefault().getReviewCache().saveLater();
+            if (profile != null) {
+                profile.save();
+            }
             log.info("ReviewCode command has ended.");
             setTerminated(true);
             done();
@@ -240,7 +258,8 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
                 logInfo("Review code command terminated. " + ruleCount + " rules were executed against " + fileCount
                         + " files. Actual PMD duration is about " + pmdDuration + "ms, that is about "
                         + (float) pmdDuration / fileCount + " ms/file, " + (float) pmdDuration / ruleCount
-                        + " ms/rule, " + (float) pmdDuration / ((long) fileCount * (long) ruleCount) + " ms/filerule");
+                        + " ms/rule, " + (float) pmdDuration / ((long) fileCount * (long) ruleCount) + " ms/filerule. "
+                        + "Review cache: " + cacheHits + " hits, " + cacheMisses + " misses.");
             } else {
                 logInfo("Review code command terminated. " + ruleCount + " rules were executed against " + fileCount
                         + " files. PMD was not executed.");
@@ -284,6 +303,22 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         resources.add(resource);
     }
 
+    /**
+     * @return the resources the command reviews: the added resources, or the
+     *         changed files of its delta
+     */
+    public List<IResource> getReviewedResources() {
+        List<IResource> reviewed = new ArrayList<IResource>();
+        if (resources.isEmpty() && resourceDelta != null) {
+            reviewed.addAll(changedFilesIn(resourceDelta));
+        } else {
+            for (ISchedulingRule rule : resources) {
+                reviewed.add((IResource) rule);
+            }
+        }
+        return reviewed;
+    }
+
     /**
      * @param resourceDelta
      *            The resourceDelta to set.
@@ -304,6 +339,26 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         this.runAlways = runAlways;
     }
 
+    /**
+     * @param deferred
+     *            Tell whether the command reviews files an automatic build
+     *            left out, in which case they are all reviewed.
+     */
+    public void setDeferred(boolean deferred) {
+        this.deferred = deferred;
+    }
+
+    /**
+     * @param streamMarkers
+     *            Tell whether markers are applied in small batches while the
+     *            review is still running, so that the first results show up
+     *            early and memory stays bounded. Otherwise they are all
+     *            applied once every file has been reviewed.
+     */
+    public void setStreamMarkers(boolean streamMarkers) {
+        this.streamMarkers = streamMarkers;
+    }
+
     /**
      * @param openPmdPerspective
      *            Tell whether the PMD perspective should be opened after
@@ -320,10 +375,15 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     public void reset() {
         resources.clear();
         markersByFile = new HashMap<IFile, Set<MarkerInfo2>>();
+        visitors.clear();
+        progress = null;
         setTerminated(false);
         openPmdPerspective = false;
         onErrorIssue = null;
         runAlways = false;
+        deferred = false;
+        streamMarkers = false;
+        markerStream = null;
     }
 
     /**
@@ -335,24 +395,18 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     }
 
     /**
-     * @return the scheduling rule needed to apply markers
+     * @see net.sourceforge.pmd.eclipse.runtime.cmd.AbstractDefaultCommand#getProjectName()
      */
-    private ISchedulingRule getSchedulingRule() {
-        final IWorkspace workspace = ResourcesPlugin.getWorkspace();
-        final IResourceRuleFactory ruleFactory = workspace.getRuleFactory();
-        ISchedulingRule rule;
-
-        if (resources.isEmpty()) {
-            rule = ruleFactory.markerRule(resourceDelta.getResource().getProject());
-        } else {
-            ISchedulingRule[] rules = new ISchedulingRule[resources.size()];
-            for (int i = 0; i < rules.length; i++) {
-                rules[i] = ruleFactory.markerRule((IResource) resources.get(i));
-            }
-            rule = new MultiRule(resources.toArray(rules));
+    @Override
+    public String getProjectName() {
+        IResource resource = null;
+        if (resourceDelta != null) {
+            resource = resourceDelta.getResource();
+        } else if (!resources.isEmpty() && resources.get(0) instanceof IResource) {
+            resource = (IResource) resources.get(0);
         }
-
-        return rule;
+        IProject project = resource == null ? null : resource.getProject();
+        return project == null ? null : project.getName();
     }
 
     /**
@@ -361,9 +415,17 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
      * @throws CommandException
      */
     private void processResources() throws CommandException {
+        int expected = 0;
+        for (ISchedulingRule rule : resources) {
+            final IResource resource = (IResource) rule;
+            expected += resource instanceof IFile ? 1 : ReviewProgress.previousCount(resource);
+        }
+        progress.expect(expected);
+
         final Iterator<ISchedulingRule> i = resources.iterator();
         while (i.hasNext()) {
             final IResource resource = (IResource) i.next();
+            final int acceptedBefore = progress.getAcceptedCount();
 
             // if resource is a project, visit only its source folders
             if (resource instanceof IProject) {
@@ -371,6 +433,10 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
             } else {
                 processResource(resource);
             }
+
+            if (!(resource instanceof IFile) && !isCanceled()) {
+                ReviewProgress.rememberCount(resource, progress.getAcceptedCount() - acceptedBefore);
+            }
         }
     }
 
@@ -381,11 +447,11 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         return propertyCache;
     }
 
-    private RuleSet rulesetFrom(IResource resource) throws PropertiesException, CommandException {
+    private EffectiveRuleSet rulesetFrom(IResource resource) throws PropertiesException, CommandException {
         IProject project = resource.getProject();
         IProjectProperties properties = getProjectProperties(project);
 
-        return filteredRuleSet(properties); // properties.getProjectRuleSet();
+        return effectiveRuleSet(properties); // properties.getProjectRuleSet();
     }
 
     /**
@@ -400,42 +466,36 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
                 return;
             }
 
-            final RuleSet ruleSet = rulesetFrom(resource); // properties.getProjectRuleSet();
+            final EffectiveRuleSet ruleSet = rulesetFrom(resource); // properties.getProjectRuleSet();
 
-            // final PMDEngine pmdEngine = getPmdEngineForProject(project);
-            int targetCount = 0;
-            if (resource.exists()) {
-                targetCount = countResourceElement(resource);
+            if (!resource.exists()) {
+                log.debug("Skipping resource " + resource.getName() + " because it doesn't exist.");
+                return;
             }
-            // Could add a property that lets us set the max number to analyze
-            if (properties.isFullBuildEnabled() || isUserInitiated() || targetCount <= MAXIMUM_RESOURCE_COUNT) {
-                setStepCount(targetCount);
-                log.debug("Visiting resource " + resource.getName() + " : " + getStepCount());
-
-                if (resource.exists()) {
-                    final ResourceVisitor visitor = new ResourceVisitor();
-                    visitor.setMonitor(getMonitor());
-                    visitor.setRuleSet(ruleSet);
-                    // visitor.setPmdEngine(pmdEngine);
-                    visitor.setAccumulator(markersByFile);
-                    visitor.setUseTaskMarker(taskMarker);
-                    visitor.setProjectProperties(properties);
-                    resource.accept(visitor);
-
-                    ruleCount = ruleSet.getRules().size();
-                    fileCount += visitor.getProcessedFilesCount();
-                    pmdDuration += visitor.getActualPmdDuration();
-                } else {
-                    log.debug("Skipping resource " + resource.getName() + " because it doesn't exist.");
-                }
+
+            if (properties.isFullBuildEnabled() || isUserInitiated() || deferred) {
+                log.debug("Visiting resource " + resource.getName());
+
+                // the files are walked, classified and reviewed in a single pass
+                final ResourceVisitor visitor = new ResourceVisitor();
+                visitor.setMonitor(getMonitor());
+                visitor.setProgress(progress);
+                visitor.setProfile(profile);
+                visitor.setMarkerStream(markerStream);
+                visitor.setEffectiveRuleSet(ruleSet);
+                // visitor.setPmdEngine(pmdEngine);
+                visitor.setAccumulator(markersByFile);
+                visitor.setUseTaskMarker(taskMarker);
+                visitor.setProjectProperties(properties);
+                visitor.setWorkerPool(workerPoolFor(resource instanceof IFile ? 1 : Integer.MAX_VALUE));
+                visitors.add(visitor);
+                resource.accept(visitor, IResource.NONE);
+
+                setStepCount(getStepCount() + visitor.getVisitedFileCount());
             } else {
-                String message = "Skipping resource " + resource.getName() + " because of fullBuildEnabled flag and "
-                        + "targetCount is " + targetCount + ". This is more than " + MAXIMUM_RESOURCE_COUNT + "."
-                        + " If you want to execute PMD, please check \"Full build enabled\" in the project settings";
-                PMDPlugin.getDefault().logInformation(message);
+                reviewWithinBudget(filesIn(resource), properties, ruleSet);
             }
-
-            worked(1); // TODO - temp fix? BR
+            ruleCount = ruleSet.getRuleCount();
 
         } catch (PropertiesException e) {
             throw new CommandException(e);
@@ -449,8 +509,7 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
      */
     private void processProject(IProject project) throws CommandException {
         try {
-            setStepCount(countResourceElement(project));
-            log.debug("Visiting  project " + project.getName() + " : " + getStepCount());
+            log.debug("Visiting  project " + project.getName());
 
             if (project.hasNature(JavaCore.NATURE_ID)) {
                 processJavaProject(project);
@@ -498,41 +557,25 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
                 + Integer.toString(totalRuleCount) + " rules");
     }
 
-    private RuleSet filteredRuleSet(IProjectProperties properties) throws CommandException, PropertiesException {
+    /**
+     * Return the effective rule set of a project; it is only built again
+     * once the preferences, the project properties or the rule set change.
+     */
+    private EffectiveRuleSet effectiveRuleSet(IProjectProperties properties) throws PropertiesException {
 
-        final RuleSet ruleSet = properties.getProjectRuleSet();
-        IPreferences preferences = PMDPlugin.getDefault().getPreferencesManager().loadPreferences();
-        Set<String> onlyActiveRuleNames = preferences.getActiveRuleNames();
-
-        RuleSet filteredRuleSet = RuleSetUtil.newCopyOf(ruleSet);
-        int rulesBefore = filteredRuleSet.size();
-        if (preferences.getGlobalRuleManagement()) {
-            RuleSetUtil.retainOnly(filteredRuleSet, onlyActiveRuleNames);
-            int rulesAfter = filteredRuleSet.size();
-
-            if (rulesAfter < rulesBefore) {
-                PMDPlugin.getDefault().logWarn(
-                        "Ruleset has been filtered as Global Rule Management is active. " + rulesAfter + " of "
-                                + rulesBefore + " rules are active and are used. " + (rulesBefore - rulesAfter)
-                                + " rules will be ignored.");
-            }
-        }
-        filteredRuleSet.addExcludePatterns(preferences.activeExclusionPatterns());
-        filteredRuleSet.addIncludePatterns(preferences.activeInclusionPatterns());
-        filteredRuleSet.addExcludePatterns(properties.getBuildPathExcludePatterns());
-        filteredRuleSet.addIncludePatterns(properties.getBuildPathIncludePatterns());
+        EffectiveRuleSet ruleSet = PMDPlugin.getDefault().getEffectiveRuleSets().ruleSetFor(properties);
 
-        taskScope(filteredRuleSet.getRules().size(), ruleSet.getRules().size());
-        return filteredRuleSet;
+        taskScope(ruleSet.getRuleCount(), ruleSet.getConfiguredRuleCount());
+        return ruleSet;
     }
 
-    private RuleSet rulesetFromResourceDelta() throws PropertiesException, CommandException {
+    private EffectiveRuleSet rulesetFromResourceDelta() throws PropertiesException, CommandException {
 
         IResource resource = resourceDelta.getResource();
         final IProject project = resource.getProject();
         final IProjectProperties properties = getProjectProperties(project);
 
-        return filteredRuleSet(properties); // properties.getProjectRuleSet();
+        return effectiveRuleSet(properties); // properties.getProjectRuleSet();
     }
 
     /**
@@ -544,34 +587,32 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
             final IProject project = resource.getProject();
             final IProjectProperties properties = getProjectProperties(project);
 
-            RuleSet ruleSet = rulesetFromResourceDelta(); // properties.getProjectRuleSet();
+            EffectiveRuleSet ruleSet = rulesetFromResourceDelta(); // properties.getProjectRuleSet();
 
             // PMDEngine pmdEngine = getPmdEngineForProject(project);
-            int targetCount = countDeltaElement(resourceDelta);
-            // Could add a property that lets us set the max number to analyze
-            if (properties.isFullBuildEnabled() || isUserInitiated() || targetCount <= MAXIMUM_RESOURCE_COUNT) {
-                setStepCount(targetCount);
+            List<IFile> changedFiles = changedFilesIn(resourceDelta);
+            if (properties.isFullBuildEnabled() || isUserInitiated() || deferred) {
+                setStepCount(changedFiles.size());
+                progress.expect(changedFiles.size());
                 log.debug("Visiting delta of resource " + resource.getName() + " : " + getStepCount());
 
                 DeltaVisitor visitor = new DeltaVisitor();
                 visitor.setMonitor(getMonitor());
-                visitor.setRuleSet(ruleSet);
+                visitor.setProgress(progress);
+                visitor.setProfile(profile);
+                visitor.setMarkerStream(markerStream);
+                visitor.setEffectiveRuleSet(ruleSet);
                 // visitor.setPmdEngine(pmdEngine);
                 visitor.setAccumulator(markersByFile);
                 visitor.setUseTaskMarker(taskMarker);
                 visitor.setProjectProperties(properties);
+                visitor.setWorkerPool(workerPoolFor(changedFiles.size()));
+                visitors.add(visitor);
                 resourceDelta.accept(visitor);
-
-                ruleCount = ruleSet.getRules().size();
-                fileCount += visitor.getProcessedFilesCount();
-                pmdDuration += visitor.getActualPmdDuration();
             } else {
-                String message = "Skipping resourceDelta " + resource.getName() + " because of fullBuildEnabled flag and "
-                        + "targetCount is " + targetCount + ". This is more than " + MAXIMUM_RESOURCE_COUNT + "."
-                        + " If you want to execute PMD, please check \"Full build enabled\" in the project settings";
-                PMDPlugin.getDefault().logInformation(message);
-                log.debug(message);
+                reviewWithinBudget(changedFiles, properties, ruleSet);
             }
+            ruleCount = ruleSet.getRuleCount();
 
         } catch (PropertiesException e) {
             throw new CommandException(e);
@@ -581,83 +622,205 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     }
 
     /**
-     * Apply PMD markers after the review
+     * Review the files of an automatic build that fit in what is left of the
+     * latency budget of the preferences, and leave the others to a background
+     * job.
      *
+     * @param files
+     *            the files to review
      */
-    private void applyMarkers() {
-        log.info("Processing marker directives");
-        int violationCount = 0;
-        final Timer timer = new Timer();
+    private void reviewWithinBudget(List<IFile> files, IProjectProperties properties, EffectiveRuleSet ruleSet) {
+        if (files.isEmpty()) {
+            return;
+        }
 
-        String currentFile = ""; // for logging
+        IPreferences preferences = PMDPlugin.getDefault().getPreferencesManager().loadPreferences();
+        ReviewCostModel costModel = PMDPlugin.getDefault().getReviewCostModel();
+        List<ReviewScheduler.Task<IFile>> tasks = new ArrayList<ReviewScheduler.Task<IFile>>(files.size());
+        for (IFile file : files) {
+            long estimate = costModel.estimate(file.getFullPath().toString(), sizeOf(file));
+            tasks.add(new ReviewScheduler.Task<IFile>(file, estimate, hasViolationMarkers(file)));
+        }
 
-        beginTask("PMD Applying markers", markersByFile.size());
+        ReviewScheduler.Plan<IFile> plan = new ReviewScheduler<IFile>(budgetLeft, preferences.getReviewWorkerCount())
+                .plan(tasks);
+        budgetLeft = Math.max(0, budgetLeft - plan.getImmediateMillis());
+        List<IFile> immediate = plan.getImmediate();
+        List<IFile> left = plan.getDeferred();
+        setStepCount(getStepCount() + files.size());
+        setTaskName("PMD checking " + immediate.size() + " of " + files.size() + " changed files (about "
+                + plan.getImmediateMillis() + " ms)");
+        log.debug("Reviewing " + immediate.size() + " files now, estimated at " + plan.getImmediateMillis() + " ms, and "
+                + left.size() + " files in the background, estimated at " + plan.getDeferredMillis() + " ms");
+
+        ResourceVisitor visitor = new ResourceVisitor();
+        visitor.setMonitor(getMonitor());
+        visitor.setProgress(progress);
+        visitor.setProfile(profile);
+        visitor.setMarkerStream(markerStream);
+        visitor.setEffectiveRuleSet(ruleSet);
+        visitor.setAccumulator(markersByFile);
+        visitor.setUseTaskMarker(taskMarker);
+        visitor.setProjectProperties(properties);
+        visitor.setWorkerPool(workerPoolFor(immediate.size()));
+        visitors.add(visitor);
+        progress.expect(immediate.size());
+        for (IFile file : immediate) {
+            if (isCanceled()) {
+                break;
+            }
+            visitor.reviewResource(file);
+        }
+
+        if (!left.isEmpty()) {
+            PMDPlugin.getDefault().logInformation(left.size() + " changed files did not fit in the review time budget of "
+                    + preferences.getReviewLatencyBudget() + " ms; they are checked in the background (about "
+                    + plan.getDeferredMillis() + " ms)");
+            DeferredReviewJob.scheduleFor(left, taskMarker);
+        }
+    }
 
+    private static long sizeOf(IFile file) {
+        IPath location = file.getLocation();
+        return location == null ? 0 : location.toFile().length();
+    }
+
+    private static boolean hasViolationMarkers(IFile file) {
         try {
-            for (IFile file : markersByFile.keySet()) {
-                if (isCanceled())
-                    break;
-                currentFile = file.getName();
-                Set<MarkerInfo2> markerInfoSet = markersByFile.get(file);
-                for (MarkerInfo2 markerInfo : markerInfoSet) {
-                    markerInfo.addAsMarkerTo(file);
-                    violationCount++;
-                }
+            return MarkerUtil.findMarkers(file, PMDRuntimeConstants.RULE_MARKER_TYPES).length > 0;
+        } catch (CoreException e) {
+            return false;
+        }
+    }
 
-                worked(1);
+    /**
+     * Return the worker pool to use for reviewing the given number of files.
+     * No pool is used when there is a single file to review or when the
+     * preferences ask for one worker only.
+     *
+     * @param targetCount
+     *            the number of files about to be visited
+     * @return the worker pool, or null to review on the current thread
+     */
+    private ReviewWorkerPool workerPoolFor(int targetCount) {
+        if (workerPool == null && targetCount > 1) {
+            IPreferences preferences = PMDPlugin.getDefault().getPreferencesManager().loadPreferences();
+            int workerCount = Math.min(preferences.getReviewWorkerCount(), targetCount);
+            if (workerCount > 1) {
+                log.debug("Reviewing with " + workerCount + " workers");
+                workerPool = new ReviewWorkerPool(workerCount, flushMarkers());
             }
-        } catch (CoreException e) {
-            log.warn("CoreException when setting marker for file " + currentFile + " : " + e.getMessage()); // TODO:
-                                                                                                            // NLS
-        } finally {
-            timer.stop();
-            int count = markersByFile.size();
-            logInfo("" + violationCount + " markers applied on " + count + " files in " + timer.getDuration() + "ms.");
-            log.info("End of processing marker directives. " + violationCount + " violations for " + count + " files.");
         }
+        return workerPool;
+    }
+
+    /**
+     * @return a task flushing the due markers, for the command thread to run
+     *         while it waits for the workers, or null if markers are not
+     *         streamed
+     */
+    private Runnable flushMarkers() {
+        final MarkerStream stream = markerStream;
+        return stream == null ? null : new Runnable() {
+            public void run() {
+                stream.flushIfDue(getMonitor());
+            }
+        };
+    }
+
+    /**
+     * Wait until every queued review is done, then collect the statistics of
+     * the visitors that took part in the run.
+     */
+    private void awaitReviews() {
+        if (workerPool != null) {
+            workerPool.shutdownAndWait(getMonitor(), flushMarkers());
+            workerPool = null;
+        }
+
+        for (BaseVisitor visitor : visitors) {
+            visitor.reviewHandedBack();
+            fileCount += visitor.getProcessedFilesCount();
+            pmdDuration += visitor.getActualPmdDuration();
+            cacheHits += visitor.getCacheHits();
+            cacheMisses += visitor.getCacheMisses();
+        }
+        visitors.clear();
     }
 
     /**
-     * Count the number of sub-resources of a resource
+     * Apply PMD markers after the review, a batch of files at a time so that
+     * the marker rules are only held briefly
      *
-     * @param resource
-     *            a project
-     * @return the element count
      */
-    private int countResourceElement(IResource resource) {
+    private void applyMarkers() {
+        log.info("Processing marker directives");
+        final Timer timer = new Timer();
 
-        if (resource instanceof IFile) {
-            return 1;
+        beginTask("PMD Applying markers", markersByFile.size());
+
+        MarkerStream batches = new MarkerStream(MarkerStream.DEFAULT_BATCH_SIZE, 0);
+        for (Map.Entry<IFile, Set<MarkerInfo2>> entry : markersByFile.entrySet()) {
+            batches.offer(entry.getKey(), entry.getValue());
+        }
+        if (!isCanceled()) {
+            batches.flush(getMonitor());
         }
+        worked(markersByFile.size());
+
+        timer.stop();
+        int violationCount = batches.getMarkerCount();
+        int count = batches.getFlushedFiles().size();
+        logInfo("" + violationCount + " markers applied on " + count + " files in " + timer.getDuration() + "ms.");
+        log.info("End of processing marker directives. " + violationCount + " violations for " + count + " files.");
+    }
 
-        final CountVisitor visitor = new CountVisitor();
+    /**
+     * Return the files of a resource
+     *
+     * @param resource
+     *            a resource
+     * @return the files with an extension
+     */
+    private List<IFile> filesIn(IResource resource) {
 
+        final List<IFile> files = new ArrayList<IFile>();
         try {
-            resource.accept(visitor);
+            resource.accept(new IResourceProxyVisitor() {
+                public boolean visit(IResourceProxy proxy) {
+                    if (proxy.getType() == IResource.FILE) {
+                        if (proxy.getName().lastIndexOf('.') != -1) {
+                            files.add((IFile) proxy.requestResource());
+                        }
+                        return false;
+                    }
+                    return true;
+                }
+            }, IResource.NONE);
         } catch (CoreException e) {
-            logError("Exception when counting elements of a project", e);
+            logError("Exception when listing the files of a project", e);
         }
 
-        return visitor.count;
+        return files;
     }
 
     /**
-     * Count the number of sub-resources of a delta
+     * Return the files a delta adds or whose content it changes
      *
      * @param delta
      *            a resource delta
-     * @return the element count
+     * @return the files with an extension
      */
-    private int countDeltaElement(IResourceDelta delta) {
-        final CountVisitor visitor = new CountVisitor();
+    private List<IFile> changedFilesIn(IResourceDelta delta) {
+        final ChangedFilesVisitor visitor = new ChangedFilesVisitor();
 
         try {
             delta.accept(visitor);
         } catch (CoreException e) {
-            logError("Exception counting elements in a delta selection", e);
+            logError("Exception listing the files in a delta selection", e);
         }
 
-        return visitor.count;
+        return visitor.files;
     }
 
     /**
@@ -673,22 +836,22 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     }
 
     /**
-     * Private inner class to count the number of resources or delta elements.
-     * Only files are counted.
+     * Private inner class to list the files of a delta that the delta visitor
+     * would review.
      */
-    private final class CountVisitor implements IResourceVisitor, IResourceDeltaVisitor {
-        public int count = 0;
-
-        public boolean visit(IResource resource) {
-            if (resource instanceof IFile) {
-                count++;
-            }
-            return true;
-        }
+    private static final class ChangedFilesVisitor implements IResourceDeltaVisitor {
+        public final List<IFile> files = new ArrayList<IFile>();
 
         public boolean visit(IResourceDelta delta) {
             IResource resource = delta.getResource();
-            return visit(resource);
+            if (resource instanceof IFile && resource.getFileExtension() != null) {
+                int kind = delta.getKind();
+                if (kind == IResourceDelta.ADDED
+                        || kind == IResourceDelta.CHANGED && (delta.getFlags() & DeltaVisitor.CONTENT_CHANGES) != 0) {
+                    files.add((IFile) resource);
+                }
+            }
+            return true;
         }
     }
 
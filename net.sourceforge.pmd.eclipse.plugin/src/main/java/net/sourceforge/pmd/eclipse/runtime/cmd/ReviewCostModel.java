@@ -0,0 +1,93 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Estimates how long PMD takes to review a file, from the time earlier
+ * reviews took.
+ *
+ * The time and size of the last review of each file are kept. A file that
+ * was reviewed before is estimated by scaling its last time to its current
+ * size. Any other file is estimated from its size and the average time per
+ * byte of all the reviews recorded so far.
+ */
+public final class ReviewCostModel {
+
+    /** The assumed cost of a kilobyte before any review has been recorded. */
+    static final double DEFAULT_MILLIS_PER_KILOBYTE = 1.0d;
+
+    /** The cost of a review whatever the size of the file. */
+    static final long OVERHEAD_MILLIS = 2;
+
+    private static final int MAX_RECORDED_FILES = 10000;
+
+    private final Map<String, Sample> samplesByPath = new LinkedHashMap<String, Sample>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Sample> eldest) {
+            return size() > MAX_RECORDED_FILES;
+        }
+    };
+
+    private long totalMillis;
+    private long totalBytes;
+
+    /**
+     * Record the time a review took.
+     *
+     * @param path
+     *            the workspace path of the reviewed file
+     * @param size
+     *            the size of the file in bytes
+     * @param millis
+     *            the time PMD took to review it
+     */
+    public synchronized void record(String path, long size, long millis) {
+        samplesByPath.put(path, new Sample(size, millis));
+        totalMillis += millis;
+        totalBytes += size;
+    }
+
+    /**
+     * Estimate the time a review would take.
+     *
+     * @param path
+     *            the workspace path of the file
+     * @param size
+     *            the current size of the file in bytes
+     * @return the estimated time in milliseconds
+     */
+    public synchronized long estimate(String path, long size) {
+        Sample sample = samplesByPath.get(path);
+        if (sample != null && sample.size > 0) {
+            return Math.max(OVERHEAD_MILLIS, sample.millis * size / sample.size);
+        }
+        return OVERHEAD_MILLIS + (long) (size * millisPerByte());
+    }
+
+    private double millisPerByte() {
+        if (totalBytes == 0) {
+            return DEFAULT_MILLIS_PER_KILOBYTE / 1024;
+        }
+        return (double) totalMillis / totalBytes;
+    }
+
+    /**
+     * @return the number of files whose review time is known
+     */
+    public synchronized int size() {
+        return samplesByPath.size();
+    }
+
+    private static final class Sample {
+        final long size;
+        final long millis;
+
+        Sample(long size, long millis) {
+            this.size = size;
+            this.millis = millis;
+        }
+    }
+}
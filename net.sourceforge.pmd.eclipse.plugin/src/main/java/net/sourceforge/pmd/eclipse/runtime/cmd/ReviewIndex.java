@@ -0,0 +1,235 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.util.SourceBuffer;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * The violations a file marks as reviewed, indexed by rule name and line.
+ *
+ * A review comment <code>// @PMD:REVIEWED:RuleName: by someone on date</code>
+ * applies to the next line that is neither blank nor a line comment; several
+ * review comments may be stacked above the same line. Review comments inside
+ * block comments are ignored.
+ *
+ * The index is built by scanning the decoded characters once, without
+ * splitting them into lines. Indexes of workspace files are kept per
+ * modification stamp, so a file is only scanned again once it has changed.
+ */
+public final class ReviewIndex {
+
+    /** The index of a file without any review. */
+    public static final ReviewIndex EMPTY = new ReviewIndex(Collections.<String, Set<Integer>>emptyMap(), false);
+
+    private static final String REVIEW_COMMENT = PMDRuntimeConstants.PLUGIN_STYLE_REVIEW_COMMENT;
+    private static final String REVIEW_TOKEN = "@PMD:REVIEWED";
+    private static final String NOPMD_TOKEN = "NOPMD";
+
+    private static final int MAX_CACHED_FILES = 2000;
+
+    private static final Map<String, StampedIndex> indexByPath = new LinkedHashMap<String, StampedIndex>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StampedIndex> eldest) {
+            return size() > MAX_CACHED_FILES;
+        }
+    };
+
+    private final Map<String, Set<Integer>> linesByRule;
+    private final boolean hasReviewTokens;
+
+    private ReviewIndex(Map<String, Set<Integer>> linesByRule, boolean hasReviewTokens) {
+        this.linesByRule = linesByRule;
+        this.hasReviewTokens = hasReviewTokens;
+    }
+
+    /**
+     * Return the index of a workspace file, reading the file only if it has
+     * changed since it was last indexed.
+     *
+     * @param file
+     *            a workspace file
+     * @return its review index
+     * @throws CoreException
+     *             if the workspace cannot provide the content
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static ReviewIndex forFile(IFile file) throws CoreException, IOException {
+        ReviewIndex index = cachedIndexOf(file.getFullPath().toString(), file.getModificationStamp());
+        return index == null ? forFile(file, SourceBuffer.read(file)) : index;
+    }
+
+    /**
+     * Return the index of a workspace file whose content has already been
+     * read.
+     *
+     * @param file
+     *            a workspace file
+     * @param source
+     *            the content of that file
+     * @return its review index
+     */
+    public static ReviewIndex forFile(IFile file, SourceBuffer source) {
+        String path = file.getFullPath().toString();
+        long stamp = source.getModificationStamp();
+        ReviewIndex index = cachedIndexOf(path, stamp);
+        if (index == null) {
+            index = of(source);
+            if (stamp != IResource.NULL_STAMP) {
+                synchronized (indexByPath) {
+                    indexByPath.put(path, new StampedIndex(stamp, index));
+                }
+            }
+        }
+        return index;
+    }
+
+    private static ReviewIndex cachedIndexOf(String path, long stamp) {
+        synchronized (indexByPath) {
+            StampedIndex cached = indexByPath.get(path);
+            return cached != null && cached.stamp == stamp ? cached.index : null;
+        }
+    }
+
+    /**
+     * Scan decoded content for review comments.
+     *
+     * @param source
+     *            the content to scan
+     * @return the index of its reviews
+     */
+    public static ReviewIndex of(SourceBuffer source) {
+        int length = source.length();
+        if (indexOf(source, REVIEW_TOKEN, 0, length) == -1) {
+            return indexOf(source, NOPMD_TOKEN, 0, length) == -1 ? EMPTY : new ReviewIndex(
+                    Collections.<String, Set<Integer>>emptyMap(), true);
+        }
+
+        Map<String, Set<Integer>> linesByRule = new HashMap<String, Set<Integer>>();
+        List<String> pendingReviews = new ArrayList<String>();
+        boolean comment = false;
+        int lineNumber = 0;
+        int lineStart = 0;
+
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && source.charAt(lineEnd) != '\n' && source.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            lineNumber++;
+
+            int start = lineStart;
+            int end = lineEnd;
+            while (start < end && source.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && source.charAt(end - 1) <= ' ') {
+                end--;
+            }
+
+            if (startsWith(source, "/*", start, end)) {
+                comment = indexOf(source, "*/", start, end) == -1;
+            } else if (comment && indexOf(source, "*/", start, end) != -1) {
+                comment = false;
+            } else if (!comment && startsWith(source, REVIEW_COMMENT, start, end)) {
+                int nameStart = start + REVIEW_COMMENT.length();
+                int nameEnd = indexOf(source, ":", nameStart, end);
+                if (nameEnd != -1) {
+                    pendingReviews.add(substring(source, nameStart, nameEnd));
+                }
+            } else if (!comment && !pendingReviews.isEmpty() && start < end && !startsWith(source, "//", start, end)) {
+                for (String ruleName : pendingReviews) {
+                    Set<Integer> lines = linesByRule.get(ruleName);
+                    if (lines == null) {
+                        lines = new HashSet<Integer>();
+                        linesByRule.put(ruleName, lines);
+                    }
+                    lines.add(Integer.valueOf(lineNumber));
+                }
+                pendingReviews.clear();
+            }
+
+            // a CR LF pair ends a single line
+            if (lineEnd + 1 < length && source.charAt(lineEnd) == '\r' && source.charAt(lineEnd + 1) == '\n') {
+                lineEnd++;
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        return new ReviewIndex(linesByRule, true);
+    }
+
+    private static boolean startsWith(SourceBuffer source, String prefix, int start, int end) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (source.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(SourceBuffer source, String token, int start, int end) {
+        for (int i = start; i <= end - token.length(); i++) {
+            if (startsWith(source, token, i, end)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String substring(SourceBuffer source, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.append(source.charAt(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param ruleName
+     *            the name of a rule
+     * @param line
+     *            the line a violation was reported on
+     * @return true if a review comment covers that violation
+     */
+    public boolean isReviewed(String ruleName, int line) {
+        Set<Integer> lines = linesByRule.get(ruleName);
+        return lines != null && lines.contains(Integer.valueOf(line));
+    }
+
+    /**
+     * @return true if the content contains a plugin review comment or a
+     *         NOPMD marker, wherever they are
+     */
+    public boolean hasReviewTokens() {
+        return hasReviewTokens;
+    }
+
+    private static final class StampedIndex {
+        final long stamp;
+        final ReviewIndex index;
+
+        StampedIndex(long stamp, ReviewIndex index) {
+            this.stamp = stamp;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.eclipse.util.IOUtil;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The time PMD spends on each rule and on each file, summed over the reviews
+ * of a workspace.
+ *
+ * For each rule and each file, the store keeps the number of reviews, the
+ * wall time, the CPU time and the bytes allocated by the reviewing thread.
+ * Both tables are bounded; the entries that were not updated for the longest
+ * time are dropped first. The store is kept in a binary file that is loaded
+ * on first use and written back by {@link #save()} when it has changed.
+ */
+public class ReviewProfile {
+
+    private static final Logger log = Logger.getLogger(ReviewProfile.class);
+
+    private static final int MAGIC = 0x504d4450; // "PMDP"
+    private static final int FORMAT_VERSION = 1;
+
+    /** The default number of rules and of files the store keeps. */
+    public static final int DEFAULT_MAX_ENTRIES = 5000;
+
+    private final File file;
+    private final Map<String, Entry> rules;
+    private final Map<String, Entry> files;
+    private boolean loaded;
+    private boolean dirty;
+
+    /**
+     * @param file
+     *            where the profile is saved
+     * @param maxEntries
+     *            the number of rules and the number of files kept
+     */
+    public ReviewProfile(File file, int maxEntries) {
+        this.file = file;
+        this.rules = boundedMap(maxEntries);
+        this.files = boundedMap(maxEntries);
+    }
+
+    private static Map<String, Entry> boundedMap(final int maxEntries) {
+        return new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Add the measures of one review.
+     *
+     * @param path
+     *            the full path of the reviewed file
+     * @param fileMeasure
+     *            the measure of the whole review
+     * @param ruleMeasures
+     *            the measures of each applied rule
+     */
+    public synchronized void record(String path, Entry fileMeasure, Collection<Entry> ruleMeasures) {
+        ensureLoaded();
+        add(files, path, fileMeasure);
+        for (Entry measure : ruleMeasures) {
+            if (measure.count > 0) {
+                add(rules, measure.name, measure);
+            }
+        }
+        dirty = true;
+    }
+
+    private static void add(Map<String, Entry> entries, String name, Entry measure) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = new Entry(name);
+            entries.put(name, entry);
+        }
+        entry.add(measure);
+    }
+
+    /**
+     * @return a copy of the rule entries
+     */
+    public synchronized List<Entry> getRules() {
+        ensureLoaded();
+        return copyOf(rules.values());
+    }
+
+    /**
+     * @return a copy of the file entries
+     */
+    public synchronized List<Entry> getFiles() {
+        ensureLoaded();
+        return copyOf(files.values());
+    }
+
+    private static List<Entry> copyOf(Collection<Entry> entries) {
+        List<Entry> copy = new ArrayList<Entry>(entries.size());
+        for (Entry entry : entries) {
+            Entry snapshot = new Entry(entry.name);
+            snapshot.add(entry);
+            copy.add(snapshot);
+        }
+        return copy;
+    }
+
+    /**
+     * Forget every measure, both in memory and on disk.
+     */
+    public synchronized void clear() {
+        rules.clear();
+        files.clear();
+        loaded = true;
+        dirty = false;
+        if (file.exists() && !file.delete()) {
+            log.warn("Could not delete review profile " + file);
+        }
+    }
+
+    /**
+     * Write the profile to its file if it changed since it was loaded.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            write(out, rules.values());
+            write(out, files.values());
+            out.close();
+            out = null;
+            if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            log.warn("Unable to save the review profile", e);
+        } finally {
+            IOUtil.closeQuietly(out);
+            if (tmp.exists() && !tmp.delete()) {
+                log.debug("Could not delete " + tmp);
+            }
+        }
+    }
+
+    private static void write(DataOutputStream out, Collection<Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeUTF(entry.name);
+            out.writeLong(entry.count);
+            out.writeLong(entry.wallNanos);
+            out.writeLong(entry.cpuNanos);
+            out.writeLong(entry.allocatedBytes);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                log.info("Ignoring review profile " + file + " written in another format");
+                return;
+            }
+            read(in, rules);
+            read(in, files);
+        } catch (IOException e) {
+            log.warn("Unable to load the review profile, starting with an empty one", e);
+            rules.clear();
+            files.clear();
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    private static void read(DataInputStream in, Map<String, Entry> entries) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            Entry entry = new Entry(in.readUTF());
+            entry.count = in.readLong();
+            entry.wallNanos = in.readLong();
+            entry.cpuNanos = in.readLong();
+            entry.allocatedBytes = in.readLong();
+            entries.put(entry.name, entry);
+        }
+    }
+
+    /**
+     * Write entries as comma separated values, one line per entry after a
+     * header line. Times are in milliseconds.
+     *
+     * @param entries
+     *            the entries to write
+     * @param writer
+     *            where to write them
+     */
+    public static void writeCsv(List<Entry> entries, Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        out.println("Name,Reviews,Wall time (ms),CPU time (ms),Allocated bytes,Average wall time (ms)");
+        for (Entry entry : entries) {
+            out.print(csvQuoted(entry.name));
+            out.print(',');
+            out.print(entry.count);
+            out.print(',');
+            out.print(entry.getWallMillis());
+            out.print(',');
+            out.print(entry.getCpuMillis());
+            out.print(',');
+            out.print(entry.allocatedBytes);
+            out.print(',');
+            out.println(entry.getAverageWallMillis());
+        }
+        out.flush();
+    }
+
+    private static String csvQuoted(String value) {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * The measures of a rule or of a file.
+     */
+    public static final class Entry {
+        private final String name;
+        private long count;
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+
+        /**
+         * @param name
+         *            the name of the rule or the path of the file
+         */
+        public Entry(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Add one review.
+         *
+         * @param wall
+         *            the wall time in nanoseconds
+         * @param cpu
+         *            the CPU time in nanoseconds
+         * @param allocated
+         *            the allocated bytes
+         */
+        public void add(long wall, long cpu, long allocated) {
+            count++;
+            wallNanos += wall;
+            cpuNanos += cpu;
+            allocatedBytes += allocated;
+        }
+
+        void add(Entry other) {
+            count += other.count;
+            wallNanos += other.wallNanos;
+            cpuNanos += other.cpuNanos;
+            allocatedBytes += other.allocatedBytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getWallMillis() {
+            return wallNanos / 1000000;
+        }
+
+        public long getCpuMillis() {
+            return cpuNanos / 1000000;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public double getAverageWallMillis() {
+            return count == 0 ? 0 : (double) wallNanos / count / 1000000;
+        }
+    }
+}
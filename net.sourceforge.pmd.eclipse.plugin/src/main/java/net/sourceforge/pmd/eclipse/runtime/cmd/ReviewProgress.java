@@ -0,0 +1,118 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Reports the progress of a review whose number of files is only known once
+ * the resources have all been walked.
+ *
+ * The monitor is given a fixed amount of work up front. Visitors report each
+ * file they accept and each file they finish, and the monitor is advanced to
+ * the share of the expected files that are finished. The command announces
+ * the files it expects before walking: the changed files of a delta, or the
+ * number of files the previous review of a resource accepted. Files accepted
+ * beyond the expected ones raise the total; the share can then drop, and the
+ * monitor simply waits until it is caught up.
+ */
+public class ReviewProgress {
+
+    /** The amount of work to begin the monitor's task with. */
+    public static final int TOTAL_WORK = 10000;
+
+    private static final Map<String, Integer> previousCounts = new HashMap<String, Integer>();
+
+    private final IProgressMonitor monitor;
+    private int expected;
+    private int accepted;
+    private int finished;
+    private int reported;
+
+    /**
+     * @param monitor
+     *            the monitor of the command, may be null
+     */
+    public ReviewProgress(IProgressMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * Announce files that are about to be walked, before they are accepted.
+     * Announcements overlap rather than add up: the total is raised to at
+     * least the files accepted so far plus the announced ones.
+     *
+     * @param files
+     *            the number of files expected to be accepted from now on
+     */
+    public synchronized void expect(int files) {
+        expected = Math.max(expected, accepted + files);
+    }
+
+    /**
+     * A file has been accepted for review.
+     */
+    public synchronized void accepted() {
+        accepted++;
+    }
+
+    /**
+     * An accepted file has been reviewed.
+     */
+    public synchronized void finished() {
+        finished++;
+        int target = (int) ((long) TOTAL_WORK * finished / total());
+        if (target > reported && monitor != null) {
+            monitor.worked(target - reported);
+            reported = target;
+        }
+    }
+
+    /**
+     * @return a short description such as "12 of 340 files"
+     */
+    public synchronized String describe() {
+        return finished + " of " + total() + " files";
+    }
+
+    private int total() {
+        return Math.max(accepted, expected);
+    }
+
+    /**
+     * @return the number of files accepted so far
+     */
+    public synchronized int getAcceptedCount() {
+        return accepted;
+    }
+
+    /**
+     * @param resource
+     *            a reviewed resource
+     * @return the number of files the last complete review of the resource
+     *         accepted, or 0 if it was never reviewed
+     */
+    public static int previousCount(IResource resource) {
+        synchronized (previousCounts) {
+            Integer count = previousCounts.get(resource.getFullPath().toString());
+            return count == null ? 0 : count.intValue();
+        }
+    }
+
+    /**
+     * Remember the number of files a complete review of a resource accepted,
+     * as the estimate for its next review.
+     *
+     * @param resource
+     *            a reviewed resource
+     * @param count
+     *            the number of accepted files
+     */
+    public static void rememberCount(IResource resource, int count) {
+        synchronized (previousCounts) {
+            previousCounts.put(resource.getFullPath().toString(), Integer.valueOf(count));
+        }
+    }
+}
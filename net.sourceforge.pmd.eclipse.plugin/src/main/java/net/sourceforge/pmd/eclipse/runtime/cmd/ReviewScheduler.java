@@ -0,0 +1,134 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits the files of an automatic build into those reviewed right away and
+ * those left to a background review, so that a build with many changed files
+ * neither blocks for long nor skips the review altogether.
+ *
+ * Files that already carry violation markers come first, as their markers are
+ * the most likely to be out of date; then the cheapest files, so that as many
+ * files as possible are reviewed within the budget. In that order, a file is
+ * reviewed right away if its estimated cost, shared among the workers, still
+ * fits in the budget. The first file is always reviewed right away.
+ *
+ * @param <T> the type of the scheduled files
+ */
+public final class ReviewScheduler<T> {
+
+    private final long budgetMillis;
+    private final int workerCount;
+
+    /**
+     * @param budgetMillis
+     *            the time the immediate review may take
+     * @param workerCount
+     *            the number of files reviewed in parallel
+     */
+    public ReviewScheduler(long budgetMillis, int workerCount) {
+        this.budgetMillis = budgetMillis;
+        this.workerCount = Math.max(1, workerCount);
+    }
+
+    /**
+     * @param tasks
+     *            the files to review
+     * @return the split of the files
+     */
+    public Plan<T> plan(List<Task<T>> tasks) {
+        List<Task<T>> ordered = new ArrayList<Task<T>>(tasks);
+        Collections.sort(ordered, new Comparator<Task<T>>() {
+            public int compare(Task<T> a, Task<T> b) {
+                if (a.hasMarkers != b.hasMarkers) {
+                    return a.hasMarkers ? -1 : 1;
+                }
+                return a.estimatedMillis < b.estimatedMillis ? -1 : a.estimatedMillis == b.estimatedMillis ? 0 : 1;
+            }
+        });
+
+        Plan<T> plan = new Plan<T>();
+        long immediateMillis = 0;
+        for (Task<T> task : ordered) {
+            boolean fits = (immediateMillis + task.estimatedMillis) / workerCount <= budgetMillis;
+            if (fits || plan.immediate.isEmpty()) {
+                plan.immediate.add(task.file);
+                immediateMillis += task.estimatedMillis;
+                plan.immediateMillis = immediateMillis / workerCount;
+            } else {
+                plan.deferred.add(task.file);
+                plan.deferredMillis += task.estimatedMillis;
+            }
+        }
+        plan.deferredMillis /= workerCount;
+        return plan;
+    }
+
+    /**
+     * A file to schedule.
+     *
+     * @param <T> the type of the file
+     */
+    public static final class Task<T> {
+        final T file;
+        final long estimatedMillis;
+        final boolean hasMarkers;
+
+        /**
+         * @param file
+         *            the file to review
+         * @param estimatedMillis
+         *            the estimated time of its review
+         * @param hasMarkers
+         *            whether the file carries violation markers
+         */
+        public Task(T file, long estimatedMillis, boolean hasMarkers) {
+            this.file = file;
+            this.estimatedMillis = estimatedMillis;
+            this.hasMarkers = hasMarkers;
+        }
+    }
+
+    /**
+     * The files to review now and those to review in the background.
+     *
+     * @param <T> the type of the files
+     */
+    public static final class Plan<T> {
+        final List<T> immediate = new ArrayList<T>();
+        final List<T> deferred = new ArrayList<T>();
+        long immediateMillis;
+        long deferredMillis;
+
+        /**
+         * @return the files to review right away, in order
+         */
+        public List<T> getImmediate() {
+            return immediate;
+        }
+
+        /**
+         * @return the files left to the background review, in order
+         */
+        public List<T> getDeferred() {
+            return deferred;
+        }
+
+        /**
+         * @return the estimated time of the immediate review
+         */
+        public long getImmediateMillis() {
+            return immediateMillis;
+        }
+
+        /**
+         * @return the estimated time of the background review
+         */
+        public long getDeferredMillis() {
+            return deferredMillis;
+        }
+    }
+}
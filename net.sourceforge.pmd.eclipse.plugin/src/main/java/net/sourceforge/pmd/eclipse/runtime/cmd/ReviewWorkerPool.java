@@ -0,0 +1,209 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.pmd.RuleSet;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * A bounded pool of worker threads that review files concurrently.
+ *
+ * PMD rules keep state while they visit a file, so a rule set must never be
+ * shared between two threads. Each worker therefore gets its own copy of every
+ * rule set it is handed, made by a {@link RuleSetCopier}. Callers ask
+ * {@link #canCopy(RuleSet)} before handing a rule set to the workers, and
+ * review on their own thread with the shared rule set when it cannot be
+ * copied.
+ *
+ * When all workers are busy and the queue is full, submitting blocks until a
+ * slot becomes free, so the visitor never gets far ahead of the workers. The
+ * submitting thread keeps running a task at regular intervals meanwhile, so
+ * it can flush what the workers wait for.
+ */
+public class ReviewWorkerPool {
+
+    private static final int QUEUED_TASKS_PER_WORKER = 4;
+    private static final long WAIT_INTERVAL_MS = 200;
+
+    private final ThreadPoolExecutor executor;
+    private final Runnable whileBlocked;
+    private final RuleSetCopier copier = new RuleSetCopier();
+    private final Map<RuleSet, Boolean> copyable = new IdentityHashMap<RuleSet, Boolean>();
+
+    private final ThreadLocal<Map<RuleSet, RuleSet>> workerRuleSets = new ThreadLocal<Map<RuleSet, RuleSet>>() {
+        @Override
+        protected Map<RuleSet, RuleSet> initialValue() {
+            return new IdentityHashMap<RuleSet, RuleSet>();
+        }
+    };
+
+    /**
+     * @param workerCount
+     *            the number of worker threads, must be positive
+     */
+    public ReviewWorkerPool(int workerCount) {
+        this(workerCount, null);
+    }
+
+    /**
+     * @param workerCount
+     *            the number of worker threads, must be positive
+     * @param whileBlocked
+     *            run on the submitting thread about every 200ms while it
+     *            waits for a free queue slot, may be null
+     */
+    public ReviewWorkerPool(int workerCount, Runnable whileBlocked) {
+        this.whileBlocked = whileBlocked;
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workerCount);
+        }
+
+        executor = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(workerCount * QUEUED_TASKS_PER_WORKER), new WorkerThreadFactory(),
+                new BlockWhenFullPolicy());
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    public int getWorkerCount() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Queue a task for a worker. Blocks while the queue is full.
+     *
+     * @param task
+     *            the review task
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Tell whether the workers can make copies of a shared rule set. The
+     * first call for a rule set makes a trial copy on the calling thread.
+     *
+     * @param shared
+     *            the rule set handed to the visitor
+     * @return whether the rule set may be handed to the workers
+     */
+    public boolean canCopy(RuleSet shared) {
+        synchronized (copyable) {
+            Boolean known = copyable.get(shared);
+            if (known == null) {
+                known = Boolean.valueOf(copier.copyOf(shared) != null);
+                copyable.put(shared, known);
+            }
+            return known.booleanValue();
+        }
+    }
+
+    /**
+     * Return the private copy of a shared rule set for the calling worker.
+     * The copy is made the first time a worker asks for a given rule set.
+     *
+     * @param shared
+     *            the rule set handed to the visitor
+     * @return a copy of that rule set owned by the current thread, or null
+     *         if no copy could be made
+     */
+    public RuleSet ruleSetFor(RuleSet shared) {
+        Map<RuleSet, RuleSet> copies = workerRuleSets.get();
+        RuleSet copy = copies.get(shared);
+        if (copy == null) {
+            copy = copier.copyOf(shared);
+            if (copy != null) {
+                copies.put(shared, copy);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Wait for all queued tasks to complete, then release the workers. The
+     * pool cannot be used afterwards. If the monitor gets cancelled, queued
+     * tasks that have not started yet are dropped.
+     *
+     * @param monitor
+     *            the monitor of the running command, may be null
+     */
+    public void shutdownAndWait(IProgressMonitor monitor) {
+        shutdownAndWait(monitor, null);
+    }
+
+    /**
+     * Wait for all queued tasks to complete like
+     * {@link #shutdownAndWait(IProgressMonitor)}, running a task on the
+     * waiting thread at regular intervals.
+     *
+     * @param monitor
+     *            the monitor of the running command, may be null
+     * @param whileWaiting
+     *            run on the waiting thread about every 200ms, may be null
+     */
+    public void shutdownAndWait(IProgressMonitor monitor, Runnable whileWaiting) {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(WAIT_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                if (monitor != null && monitor.isCanceled()) {
+                    executor.getQueue().clear();
+                }
+                if (whileWaiting != null) {
+                    whileWaiting.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            copier.clear();
+        }
+    }
+
+    /**
+     * Names the worker threads so they can be told apart in thread dumps.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger poolNumber = new AtomicInteger();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+        private final String prefix = "PMD review worker " + poolNumber.incrementAndGet() + "-";
+
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Makes the submitting thread wait for a free queue slot instead of
+     * running the task itself, so rule set copies only ever live on workers.
+     */
+    private class BlockWhenFullPolicy implements RejectedExecutionHandler {
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            try {
+                do {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Review worker pool has been shut down");
+                    }
+                    if (whileBlocked != null) {
+                        whileBlocked.run();
+                    }
+                } while (!executor.getQueue().offer(task, WAIT_INTERVAL_MS, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSetNotFoundException;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.writer.WriterException;
+import net.sourceforge.pmd.eclipse.util.IOUtil;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Makes private copies of shared rule sets, for threads that apply rules
+ * while others apply the same rule set: PMD rules keep state while they
+ * visit a file. A rule set is written once to a temporary file, and every
+ * copy is read back from it.
+ */
+class RuleSetCopier {
+
+    private static final Logger log = Logger.getLogger(RuleSetCopier.class);
+
+    private final Map<RuleSet, File> ruleSetFiles = new IdentityHashMap<RuleSet, File>();
+
+    /**
+     * @param shared
+     *            a rule set
+     * @return a new copy of the rule set, or null if no copy could be made;
+     *         the shared instance is never returned
+     */
+    RuleSet copyOf(RuleSet shared) {
+        try {
+            File file = ruleSetFileFor(shared);
+            return new RuleSetFactory().createRuleSet(file.getAbsolutePath());
+        } catch (IOException e) {
+            log.warn("Unable to copy rule set " + shared.getName(), e);
+        } catch (WriterException e) {
+            log.warn("Unable to copy rule set " + shared.getName(), e);
+        } catch (RuleSetNotFoundException e) {
+            log.warn("Unable to copy rule set " + shared.getName(), e);
+        }
+        return null;
+    }
+
+    private synchronized File ruleSetFileFor(RuleSet shared) throws IOException, WriterException {
+        File file = ruleSetFiles.get(shared);
+        if (file == null) {
+            file = File.createTempFile("pmd-review", ".xml");
+            file.deleteOnExit();
+            OutputStream out = null;
+            try {
+                out = new FileOutputStream(file);
+                PMDPlugin.getDefault().getRuleSetWriter().write(out, shared);
+            } finally {
+                IOUtil.closeQuietly(out);
+            }
+            ruleSetFiles.put(shared, file);
+        }
+        return file;
+    }
+
+    /**
+     * Delete the temporary files. Copies can still be made afterwards.
+     */
+    synchronized void clear() {
+        for (File file : ruleSetFiles.values()) {
+            if (!file.delete()) {
+                log.debug("Could not delete temporary rule set file " + file);
+            }
+        }
+        ruleSetFiles.clear();
+    }
+}
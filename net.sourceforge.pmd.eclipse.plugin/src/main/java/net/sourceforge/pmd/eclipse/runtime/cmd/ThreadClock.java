@@ -0,0 +1,74 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reads the CPU time and the allocated bytes of the current thread, when the
+ * running JVM can tell them; otherwise both read as zero.
+ *
+ * Allocated bytes are only available through the HotSpot extension of
+ * {@link ThreadMXBean}, which is looked up by reflection so that the plugin
+ * does not depend on it.
+ */
+final class ThreadClock {
+
+    private static final Logger log = Logger.getLogger(ThreadClock.class);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = cpuTimeSupported();
+    private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+    private ThreadClock() {
+    }
+
+    private static boolean cpuTimeSupported() {
+        try {
+            return THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static Method allocatedBytesMethod() {
+        for (Class<?> type : THREADS.getClass().getInterfaces()) {
+            try {
+                Method method = type.getMethod("getThreadAllocatedBytes", long.class);
+                Method supported = type.getMethod("isThreadAllocatedMemorySupported");
+                Method enabled = type.getMethod("isThreadAllocatedMemoryEnabled");
+                if (((Boolean) supported.invoke(THREADS)).booleanValue() && ((Boolean) enabled.invoke(THREADS)).booleanValue()) {
+                    return method;
+                }
+            } catch (NoSuchMethodException e) {
+                // not the HotSpot interface, try the next one
+            } catch (Exception e) {
+                log.debug("Thread allocation counters are not available", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the CPU time of the current thread in nanoseconds
+     */
+    static long cpuNanos() {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * @return the number of bytes the current thread has allocated
+     */
+    static long allocatedBytes() {
+        if (ALLOCATED_BYTES == null) {
+            return 0;
+        }
+        try {
+            return ((Long) ALLOCATED_BYTES.invoke(THREADS, Long.valueOf(Thread.currentThread().getId()))).longValue();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sourceforge.pmd.RulePriority;
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IMarkerDelta;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Counts the PMD markers of the workspace by resource, priority and rule, so
+ * that decorators, reports and actions need not search the markers again.
+ *
+ * The index is built from one search of the workspace markers in a
+ * background job, and kept up to date from the marker deltas of the resource
+ * change events after that. The deltas received while the index is built are
+ * queued and applied to it once built, so changing markers does not hold
+ * the index back; opening, closing or deleting a project builds it again. Resources and rules are numbered as they are met. A resource has its
+ * rule violations counted by priority, its own and those of its members; a
+ * marked resource also has its markers counted per rule number, and the
+ * resources marked for a rule are kept as a bit set of their numbers, so
+ * they are listed in time proportional to their number. The counted markers
+ * are kept by id, so that a delta for a marker the search already found is
+ * not counted twice, and a queued delta is applied whether it came before
+ * or after the search.
+ *
+ * The index answers nothing until it is built; callers check
+ * {@link #isReady()} and search the markers themselves meanwhile.
+ */
+public class ViolationIndex implements IResourceChangeListener {
+
+    private static final Logger log = Logger.getLogger(ViolationIndex.class);
+
+    private static final int PRIORITIES = RulePriority.LOW.getPriority() + 1;
+    private static final long REBUILD_DELAY_MILLIS = 1000;
+
+    private IWorkspace workspace;
+    private Tables tables;                  // null until built
+    private final List<IMarkerDelta> queuedDeltas = new ArrayList<IMarkerDelta>();
+    private int generation;                 // counts the builds asked for
+
+    private final Job buildJob = new Job("Indexing PMD violations") {
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            return build(monitor);
+        }
+    };
+
+    public ViolationIndex() {
+        buildJob.setSystem(true);
+    }
+
+    /**
+     * Starts listening to the marker changes of a workspace, and builds the
+     * index in the background.
+     *
+     * @param theWorkspace
+     *            the workspace to index
+     */
+    public void start(IWorkspace theWorkspace) {
+        synchronized (this) {
+            workspace = theWorkspace;
+        }
+        theWorkspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+        rebuild(0);
+    }
+
+    /**
+     * Stops listening and forgets the index.
+     */
+    public void stop() {
+        IWorkspace indexed;
+        synchronized (this) {
+            indexed = workspace;
+            workspace = null;
+            tables = null;
+        }
+        if (indexed != null) {
+            indexed.removeResourceChangeListener(this);
+        }
+        buildJob.cancel();
+    }
+
+    /**
+     * @return whether the index is built and answers the queries
+     */
+    public synchronized boolean isReady() {
+        return tables != null;
+    }
+
+    /**
+     * Waits for the index to be built, if it is being built.
+     *
+     * @throws InterruptedException
+     *             if the wait is interrupted
+     */
+    public void join() throws InterruptedException {
+        buildJob.join();
+    }
+
+    private synchronized void rebuild(long delay) {
+        tables = null;
+        generation++;
+        buildJob.schedule(delay);
+    }
+
+    private IStatus build(IProgressMonitor monitor) {
+        IWorkspace indexed;
+        int built;
+        synchronized (this) {
+            indexed = workspace;
+            built = generation;
+            // the search finds what these deltas changed
+            queuedDeltas.clear();
+        }
+        if (indexed == null) {
+            return Status.CANCEL_STATUS;
+        }
+
+        final Tables found = new Tables();
+        try {
+            for (String markerType : PMDRuntimeConstants.ALL_MARKER_TYPES) {
+                final boolean isRuleMarker = isRuleMarker(markerType);
+                for (IMarker marker : indexed.getRoot().findMarkers(markerType, false, IResource.DEPTH_INFINITE)) {
+                    if (monitor.isCanceled()) {
+                        return Status.CANCEL_STATUS;
+                    }
+                    found.add(marker.getId(), marker.getResource(), MarkerUtil.ruleNameFor(marker),
+                            MarkerUtil.rulePriorityFor(marker, 0), isRuleMarker);
+                }
+            }
+        } catch (CoreException ce) {
+            log.warn("Cannot index the PMD markers", ce);
+            return Status.OK_STATUS;
+        }
+
+        synchronized (this) {
+            if (workspace != indexed || generation != built) {
+                // stopped, or asked to build again, which is already scheduled
+                return Status.CANCEL_STATUS;
+            }
+            tables = found;
+            for (IMarkerDelta delta : queuedDeltas) {
+                apply(delta);
+            }
+            queuedDeltas.clear();
+        }
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent)
+     */
+    public void resourceChanged(IResourceChangeEvent event) {
+
+        if (projectsChanged(event.getDelta())) {
+            rebuild(REBUILD_DELAY_MILLIS);
+            return;
+        }
+
+        final List<IMarkerDelta> deltas = new ArrayList<IMarkerDelta>();
+        for (String markerType : PMDRuntimeConstants.ALL_MARKER_TYPES) {
+            deltas.addAll(Arrays.asList(event.findMarkerDeltas(markerType, false)));
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            if (tables == null) {
+                queuedDeltas.addAll(deltas);
+                return;
+            }
+            for (IMarkerDelta delta : deltas) {
+                apply(delta);
+            }
+        }
+    }
+
+    /**
+     * The markers of a closed or deleted project vanish, and those of an
+     * opened one appear, without marker deltas.
+     */
+    private static boolean projectsChanged(IResourceDelta delta) {
+        if (delta == null) {
+            return false;
+        }
+        for (IResourceDelta projectDelta : delta.getAffectedChildren()) {
+            if (projectDelta.getKind() == IResourceDelta.REMOVED
+                    || (projectDelta.getFlags() & IResourceDelta.OPEN) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void apply(IMarkerDelta delta) {
+
+        final boolean isRuleMarker = isRuleMarker(delta.getType());
+
+        switch (delta.getKind()) {
+            case IResourceDelta.ADDED:
+                // the delta holds the attributes of an added marker
+                tables.add(delta.getId(), delta.getResource(),
+                        delta.getAttribute(PMDRuntimeConstants.KEY_MARKERATT_RULENAME, ""),
+                        delta.getAttribute(PMDRuntimeConstants.KEY_MARKERATT_PRIORITY, 0), isRuleMarker);
+                break;
+            case IResourceDelta.REMOVED:
+                tables.remove(delta.getId());
+                break;
+            case IResourceDelta.CHANGED:
+                final IMarker marker = delta.getMarker();
+                if (!marker.exists()) {
+                    // a queued delta of a marker removed since
+                    tables.remove(delta.getId());
+                    break;
+                }
+                tables.add(delta.getId(), delta.getResource(), MarkerUtil.ruleNameFor(marker),
+                        MarkerUtil.rulePriorityFor(marker, 0), isRuleMarker);
+                break;
+            default:
+                // no other kind of marker delta
+        }
+    }
+
+    private static boolean isRuleMarker(String markerType) {
+        for (String ruleMarkerType : PMDRuntimeConstants.RULE_MARKER_TYPES) {
+            if (ruleMarkerType.equals(markerType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param resource
+     *            any resource
+     * @return the number of rule violations in the resource and its members,
+     *         indexed by priority, with the number of all of them at index 0
+     */
+    public synchronized int[] countsOf(IResource resource) {
+        return tables == null ? new int[PRIORITIES] : tables.countsOf(resource);
+    }
+
+    /**
+     * @param resource
+     *            any resource
+     * @return the most urgent priority of the rule violations in the
+     *         resource and its members, or 0 if there are none
+     */
+    public synchronized int highestPriorityOf(IResource resource) {
+        final int[] counts = countsOf(resource);
+        for (int priority = 1; priority < counts.length; priority++) {
+            if (counts[priority] > 0) {
+                return priority;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param resource
+     *            a marked resource
+     * @param ruleName
+     *            the name of a rule
+     * @return the number of PMD markers of that rule on the resource
+     */
+    public synchronized int countOf(IResource resource, String ruleName) {
+        return tables == null ? 0 : tables.countOf(resource, ruleName);
+    }
+
+    /**
+     * @param ruleName
+     *            the name of a rule
+     * @param container
+     *            the resource to search in, or null for the whole workspace
+     * @return the resources in the container that carry PMD markers of the
+     *         rule
+     */
+    public synchronized List<IResource> resourcesMarkedFor(String ruleName, IResource container) {
+        return tables == null ? Collections.<IResource> emptyList() : tables.markedFor(ruleName, container);
+    }
+
+    /**
+     * @return the names of the rules that have PMD markers
+     */
+    public synchronized Set<String> ruleNames() {
+        return tables == null ? Collections.<String> emptySet() : tables.ruleNames();
+    }
+
+    /**
+     * @param container
+     *            the resource to search in, or null for the whole workspace
+     * @return the resources in the container that carry PMD markers
+     */
+    public synchronized List<IResource> resourcesMarkedIn(IResource container) {
+        return tables == null ? Collections.<IResource> emptyList() : tables.markedIn(container);
+    }
+
+    /**
+     * @param resources
+     *            some resources
+     * @return the files among them
+     */
+    public static List<IFile> filesAmong(List<IResource> resources) {
+        final List<IFile> files = new ArrayList<IFile>(resources.size());
+        for (IResource resource : resources) {
+            if (resource instanceof IFile) {
+                files.add((IFile) resource);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * The numbered resources and rules, and their counts.
+     */
+    private static final class Tables {
+
+        // the last count of a resource is the number of all its own PMD markers
+        private static final int OWN_MARKERS = PRIORITIES;
+
+        private final Map<IResource, Integer> idsByResource = new HashMap<IResource, Integer>();
+        private IResource[] resources = new IResource[256];
+        private int[][] countsById = new int[256][];
+        private int[][] ruleCountsById = new int[256][];    // rule number, count, rule number, count...
+        private int resourceCount;
+
+        private final Map<String, Integer> idsByRule = new HashMap<String, Integer>();
+        private final List<BitSet> markedByRule = new ArrayList<BitSet>();
+        private final BitSet marked = new BitSet();
+
+        private final MarkerMap counted = new MarkerMap();
+
+        /**
+         * Counts a marker, in place of what it was counted as before.
+         */
+        void add(long markerId, IResource resource, String ruleName, int priority, boolean isRuleMarker) {
+            remove(markerId);
+
+            final int id = idOf(resource, true);
+            final int ruleId = ruleIdOf(ruleName, true);
+            final int knownPriority = priority > 0 && priority < PRIORITIES ? priority : 0;
+            counted.put(markerId, pack(id, ruleId, knownPriority, isRuleMarker));
+            count(id, ruleId, knownPriority, isRuleMarker, 1);
+        }
+
+        /**
+         * Stops counting a marker, if it is counted.
+         */
+        void remove(long markerId) {
+            final long entry = counted.remove(markerId);
+            if (entry != MarkerMap.NONE) {
+                count((int) (entry >>> 32), (int) (entry >>> 8) & 0xFFFFFF, (int) (entry >>> 1) & 0x7F,
+                        (entry & 1) != 0, -1);
+            }
+        }
+
+        private static long pack(int id, int ruleId, int priority, boolean isRuleMarker) {
+            return (long) id << 32 | (long) ruleId << 8 | priority << 1 | (isRuleMarker ? 1 : 0);
+        }
+
+        private void count(int id, int ruleId, int priority, boolean isRuleMarker, int delta) {
+
+            markedByRule.get(ruleId).set(id, addRuleCount(id, ruleId, delta) > 0);
+
+            final int[] own = countsById[id];
+            own[OWN_MARKERS] += delta;
+            marked.set(id, own[OWN_MARKERS] > 0);
+
+            if (isRuleMarker) {
+                for (IResource resource = resources[id]; resource != null; resource = resource.getParent()) {
+                    final int[] counts = countsById[idOf(resource, true)];
+                    counts[0] += delta;
+                    if (priority > 0) {
+                        counts[priority] += delta;
+                    }
+                }
+            }
+        }
+
+        int[] countsOf(IResource resource) {
+            final int id = idOf(resource, false);
+            return id < 0 ? new int[PRIORITIES] : Arrays.copyOf(countsById[id], PRIORITIES);
+        }
+
+        int countOf(IResource resource, String ruleName) {
+            final int id = idOf(resource, false);
+            final int ruleId = ruleIdOf(ruleName, false);
+            final int[] ruleCounts = id < 0 ? null : ruleCountsById[id];
+            if (ruleId < 0 || ruleCounts == null) {
+                return 0;
+            }
+            for (int i = 0; i < ruleCounts.length; i += 2) {
+                if (ruleCounts[i] == ruleId) {
+                    return ruleCounts[i + 1];
+                }
+            }
+            return 0;
+        }
+
+        List<IResource> markedFor(String ruleName, IResource container) {
+            final int ruleId = ruleIdOf(ruleName, false);
+            return ruleId < 0 ? Collections.<IResource> emptyList() : resourcesIn(markedByRule.get(ruleId), container);
+        }
+
+        Set<String> ruleNames() {
+            final Set<String> names = new HashSet<String>();
+            for (Map.Entry<String, Integer> entry : idsByRule.entrySet()) {
+                if (!markedByRule.get(entry.getValue().intValue()).isEmpty()) {
+                    names.add(entry.getKey());
+                }
+            }
+            return names;
+        }
+
+        List<IResource> markedIn(IResource container) {
+            return resourcesIn(marked, container);
+        }
+
+        private List<IResource> resourcesIn(BitSet ids, IResource container) {
+            final List<IResource> found = new ArrayList<IResource>(ids.cardinality());
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                final IResource resource = resources[id];
+                if (container == null || container.getFullPath().isPrefixOf(resource.getFullPath())) {
+                    found.add(resource);
+                }
+            }
+            return found;
+        }
+
+        private int addRuleCount(int id, int ruleId, int delta) {
+            final int[] ruleCounts = ruleCountsById[id];
+            if (ruleCounts != null) {
+                for (int i = 0; i < ruleCounts.length; i += 2) {
+                    if (ruleCounts[i] == ruleId) {
+                        ruleCounts[i + 1] += delta;
+                        return ruleCounts[i + 1];
+                    }
+                }
+            }
+            final int length = ruleCounts == null ? 0 : ruleCounts.length;
+            final int[] grown = ruleCounts == null ? new int[2] : Arrays.copyOf(ruleCounts, length + 2);
+            grown[length] = ruleId;
+            grown[length + 1] = delta;
+            ruleCountsById[id] = grown;
+            return delta;
+        }
+
+        private int idOf(IResource resource, boolean create) {
+            final Integer id = idsByResource.get(resource);
+            if (id != null) {
+                return id.intValue();
+            }
+            if (!create) {
+                return -1;
+            }
+            if (resourceCount == resources.length) {
+                resources = Arrays.copyOf(resources, resourceCount * 2);
+                countsById = Arrays.copyOf(countsById, resourceCount * 2);
+                ruleCountsById = Arrays.copyOf(ruleCountsById, resourceCount * 2);
+            }
+            resources[resourceCount] = resource;
+            countsById[resourceCount] = new int[PRIORITIES + 1];
+            idsByResource.put(resource, Integer.valueOf(resourceCount));
+            return resourceCount++;
+        }
+
+        private int ruleIdOf(String ruleName, boolean create) {
+            final Integer id = idsByRule.get(ruleName);
+            if (id != null) {
+                return id.intValue();
+            }
+            if (!create) {
+                return -1;
+            }
+            idsByRule.put(ruleName, Integer.valueOf(markedByRule.size()));
+            markedByRule.add(new BitSet());
+            return markedByRule.size() - 1;
+        }
+    }
+
+    /**
+     * Maps the ids of the counted markers to what they are counted as, in
+     * open addressing arrays.
+     */
+    private static final class MarkerMap {
+
+        static final long NONE = -1L;
+
+        private long[] keys = newKeys(1024);
+        private long[] values = new long[1024];
+        private int size;
+
+        void put(long key, long value) {
+            int slot = slotOf(key);
+            if (keys[slot] == NONE) {
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = slotOf(key);
+                }
+                keys[slot] = key;
+            }
+            values[slot] = value;
+        }
+
+        /**
+         * @return the value the key was mapped to, or {@link #NONE}
+         */
+        long remove(long key) {
+            int slot = slotOf(key);
+            if (keys[slot] == NONE) {
+                return NONE;
+            }
+            final long removed = values[slot];
+            keys[slot] = NONE;
+            size--;
+
+            // move back the following keys that would no longer be found
+            final int mask = keys.length - 1;
+            for (int next = (slot + 1) & mask; keys[next] != NONE; next = (next + 1) & mask) {
+                final int home = hash(keys[next]) & mask;
+                if (next > slot ? home <= slot || home > next : home <= slot && home > next) {
+                    keys[slot] = keys[next];
+                    values[slot] = values[next];
+                    keys[next] = NONE;
+                    slot = next;
+                }
+            }
+            return removed;
+        }
+
+        private int slotOf(long key) {
+            final int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != NONE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final long[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new long[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != NONE) {
+                    final int slot = slotOf(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+
+        private static long[] newKeys(int length) {
+            final long[] newKeys = new long[length];
+            Arrays.fill(newKeys, NONE);
+            return newKeys;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package net.sourceforge.pmd.eclipse.runtime.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how long an operation takes: the number of times it ran, the mean
+ * and the maximum duration. Recording never locks.
+ */
+public final class LatencyRecorder {
+
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter totalNanos = new StripedCounter();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param nanos
+     *            the duration of one run, in nanoseconds
+     */
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * @return the number of recorded runs
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean duration in milliseconds, or zero if nothing was
+     *         recorded
+     */
+    public double getMeanMillis() {
+        long runs = count.sum();
+        return runs == 0 ? 0 : totalNanos.sum() / 1e6 / runs;
+    }
+
+    /**
+     * @return the longest duration in milliseconds
+     */
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+}
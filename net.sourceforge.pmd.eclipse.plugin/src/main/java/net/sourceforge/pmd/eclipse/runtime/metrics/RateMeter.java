@@ -0,0 +1,78 @@
+package net.sourceforge.pmd.eclipse.runtime.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts events and estimates their rate over the last minute.
+ *
+ * The rate is an exponentially weighted moving average updated every five
+ * seconds, by whichever thread marks or reads the meter first once the
+ * interval has elapsed; no background thread is needed and nothing locks.
+ */
+public final class RateMeter {
+
+    private static final long TICK_SECONDS = 5;
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(TICK_SECONDS);
+    private static final double ALPHA = 1 - Math.exp(-(double) TICK_SECONDS / 60);
+    /** After ten idle minutes the average is zero for all practical purposes. */
+    private static final long MAX_TICKS = 120;
+
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter uncounted = new StripedCounter();
+    private final AtomicLong lastTick = new AtomicLong(System.nanoTime());
+    private volatile double ratePerSecond;
+    private volatile boolean initialized;
+
+    /**
+     * Record events.
+     *
+     * @param events
+     *            the number of events that happened
+     */
+    public void mark(long events) {
+        tickIfNecessary();
+        count.add(events);
+        uncounted.add(events);
+    }
+
+    /**
+     * @return the number of events since the meter was created
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the average number of events per second over the last minute
+     */
+    public double getOneMinuteRate() {
+        tickIfNecessary();
+        return ratePerSecond;
+    }
+
+    private void tickIfNecessary() {
+        long previous = lastTick.get();
+        long age = System.nanoTime() - previous;
+        if (age < TICK_NANOS) {
+            return;
+        }
+        // only the thread that moves the tick forward updates the average
+        if (lastTick.compareAndSet(previous, previous + age - age % TICK_NANOS)) {
+            long ticks = Math.min(age / TICK_NANOS, MAX_TICKS);
+            for (long i = 0; i < ticks; i++) {
+                tick();
+            }
+        }
+    }
+
+    private void tick() {
+        double instantRate = (double) uncounted.sumThenReset() / TICK_SECONDS;
+        if (initialized) {
+            ratePerSecond += ALPHA * (instantRate - ratePerSecond);
+        } else {
+            ratePerSecond = instantRate;
+            initialized = true;
+        }
+    }
+}
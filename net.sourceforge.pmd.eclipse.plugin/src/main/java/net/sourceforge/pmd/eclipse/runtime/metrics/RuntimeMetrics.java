@@ -0,0 +1,192 @@
+package net.sourceforge.pmd.eclipse.runtime.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.cmd.JobCommandProcessor;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Counts what the plugin does at runtime: commands, reviewed files, applied
+ * markers, review cache lookups and failures.
+ *
+ * The counters are updated from the review threads and never lock, so they
+ * can stay enabled all the time. The metrics are registered as an MBean on
+ * the platform MBean server while the plugin runs, and are shown in the PMD
+ * Status view.
+ */
+public class RuntimeMetrics implements RuntimeMetricsMBean {
+
+    private static final Logger log = Logger.getLogger(RuntimeMetrics.class);
+
+    /** The name under which the metrics are registered. */
+    public static final String OBJECT_NAME = "net.sourceforge.pmd.eclipse:type=RuntimeMetrics";
+
+    private final RateMeter filesReviewed = new RateMeter();
+    private final LatencyRecorder markerApplications = new LatencyRecorder();
+    private final StripedCounter markersApplied = new StripedCounter();
+    private final LatencyRecorder markerRuleHolds = new LatencyRecorder();
+    private final StripedCounter reviewCacheHits = new StripedCounter();
+    private final StripedCounter reviewCacheMisses = new StripedCounter();
+    private final StripedCounter analysisErrors = new StripedCounter();
+
+    /**
+     * Record that a file has been reviewed.
+     */
+    public void fileReviewed() {
+        filesReviewed.mark(1);
+    }
+
+    /**
+     * Record that the markers of a review have been applied.
+     *
+     * @param markerCount
+     *            the number of applied markers
+     * @param nanos
+     *            the time it took, in nanoseconds
+     */
+    public void markersApplied(int markerCount, long nanos) {
+        markersApplied.add(markerCount);
+        markerApplications.record(nanos);
+    }
+
+    /**
+     * Record how long the scheduling rule of a batch of markers was held.
+     *
+     * @param nanos
+     *            the time the rule was held, in nanoseconds
+     */
+    public void markerRuleHeld(long nanos) {
+        markerRuleHolds.record(nanos);
+    }
+
+    /**
+     * Record that the review cache held the violations of a file.
+     */
+    public void reviewCacheHit() {
+        reviewCacheHits.increment();
+    }
+
+    /**
+     * Record that a file had to be analyzed as the review cache had no
+     * matching entry.
+     */
+    public void reviewCacheMiss() {
+        reviewCacheMisses.increment();
+    }
+
+    /**
+     * Record that the review of a file failed.
+     */
+    public void analysisFailed() {
+        analysisErrors.increment();
+    }
+
+    public int getQueuedCommands() {
+        return JobCommandProcessor.getQueuedCount();
+    }
+
+    public int getRunningCommands() {
+        return JobCommandProcessor.getRunningCount();
+    }
+
+    public int getCommandLimit() {
+        return JobCommandProcessor.getConcurrencyLimit();
+    }
+
+    public long getFilesReviewed() {
+        return filesReviewed.getCount();
+    }
+
+    public double getFilesPerSecond() {
+        return filesReviewed.getOneMinuteRate();
+    }
+
+    public long getMarkerApplications() {
+        return markerApplications.getCount();
+    }
+
+    public long getMarkersApplied() {
+        return markersApplied.sum();
+    }
+
+    public double getMarkerApplyMeanMillis() {
+        return markerApplications.getMeanMillis();
+    }
+
+    public double getMarkerApplyMaxMillis() {
+        return markerApplications.getMaxMillis();
+    }
+
+    public long getMarkerRuleHolds() {
+        return markerRuleHolds.getCount();
+    }
+
+    public double getMarkerRuleHoldMeanMillis() {
+        return markerRuleHolds.getMeanMillis();
+    }
+
+    public double getMarkerRuleHoldMaxMillis() {
+        return markerRuleHolds.getMaxMillis();
+    }
+
+    public long getReviewCacheHits() {
+        return reviewCacheHits.sum();
+    }
+
+    public long getReviewCacheMisses() {
+        return reviewCacheMisses.sum();
+    }
+
+    public double getReviewCacheHitRate() {
+        long hits = reviewCacheHits.sum();
+        long lookups = hits + reviewCacheMisses.sum();
+        return lookups == 0 ? 0 : 100.0 * hits / lookups;
+    }
+
+    public int getClassLoaderCount() {
+        PMDPlugin plugin = PMDPlugin.getDefault();
+        return plugin == null ? 0 : plugin.getClassLoaderPool().size();
+    }
+
+    public long getAnalysisErrors() {
+        return analysisErrors.sum();
+    }
+
+    /**
+     * Publish the metrics on the platform MBean server. Failures are logged,
+     * as the plugin works the same without them.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            log.warn("Unable to register the runtime metrics MBean", e);
+        }
+    }
+
+    /**
+     * Withdraw the metrics from the platform MBean server.
+     */
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.warn("Unable to unregister the runtime metrics MBean", e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package net.sourceforge.pmd.eclipse.runtime.metrics;
+
+/**
+ * The runtime metrics of the plugin, as published over JMX.
+ */
+public interface RuntimeMetricsMBean {
+
+    /**
+     * @return the number of commands waiting for a job slot
+     */
+    int getQueuedCommands();
+
+    /**
+     * @return the number of commands currently running as jobs
+     */
+    int getRunningCommands();
+
+    /**
+     * @return the number of background commands that may currently run at
+     *         once, from the processors and the system load
+     */
+    int getCommandLimit();
+
+    /**
+     * @return the number of files reviewed since startup, including those
+     *         restored from the review cache
+     */
+    long getFilesReviewed();
+
+    /**
+     * @return the number of files reviewed per second over the last minute
+     */
+    double getFilesPerSecond();
+
+    /**
+     * @return the number of times markers were applied after a review
+     */
+    long getMarkerApplications();
+
+    /**
+     * @return the number of markers applied since startup
+     */
+    long getMarkersApplied();
+
+    /**
+     * @return the mean time taken to apply the markers of a review, in
+     *         milliseconds
+     */
+    double getMarkerApplyMeanMillis();
+
+    /**
+     * @return the longest time taken to apply the markers of a review, in
+     *         milliseconds
+     */
+    double getMarkerApplyMaxMillis();
+
+    /**
+     * @return the number of batches of markers applied since startup, each
+     *         under its own scheduling rule
+     */
+    long getMarkerRuleHolds();
+
+    /**
+     * @return the mean time the scheduling rule of a batch of markers was
+     *         held, in milliseconds
+     */
+    double getMarkerRuleHoldMeanMillis();
+
+    /**
+     * @return the longest time the scheduling rule of a batch of markers was
+     *         held, in milliseconds
+     */
+    double getMarkerRuleHoldMaxMillis();
+
+    /**
+     * @return the number of files whose violations came from the review cache
+     */
+    long getReviewCacheHits();
+
+    /**
+     * @return the number of files that the review cache could not answer
+     */
+    long getReviewCacheMisses();
+
+    /**
+     * @return the percentage of review cache lookups that hit
+     */
+    double getReviewCacheHitRate();
+
+    /**
+     * @return the number of project class loaders currently pooled
+     */
+    int getClassLoaderCount();
+
+    /**
+     * @return the number of files whose review failed
+     */
+    long getAnalysisErrors();
+}
@@ -0,0 +1,74 @@
+package net.sourceforge.pmd.eclipse.runtime.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads can update without contending on a single
+ * value.
+ *
+ * The count is spread over cells picked from the id of the updating thread,
+ * each cell on its own cache line; reading sums the cells. Updates never
+ * lock, reads are not atomic with respect to concurrent updates.
+ */
+public final class StripedCounter {
+
+    private static final int STRIPES = stripeCount();
+    /** Cells are 8 longs apart so that two of them never share a cache line. */
+    private static final int SPACING = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+
+    private static int stripeCount() {
+        int target = Math.min(64, 2 * Runtime.getRuntime().availableProcessors());
+        int stripes = 1;
+        while (stripes < target) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    private static int cellIndex() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id ^ id >>> 16) & (STRIPES - 1)) * SPACING;
+    }
+
+    /**
+     * Add one to the count.
+     */
+    public void increment() {
+        cells.getAndIncrement(cellIndex());
+    }
+
+    /**
+     * @param delta
+     *            the amount to add to the count
+     */
+    public void add(long delta) {
+        cells.getAndAdd(cellIndex(), delta);
+    }
+
+    /**
+     * @return the current count
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += SPACING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Return the current count and start again from zero. Updates made while
+     * the cells are being read are kept for the next call.
+     *
+     * @return the count since the previous call
+     */
+    public long sumThenReset() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += SPACING) {
+            sum += cells.getAndSet(i, 0);
+        }
+        return sum;
+    }
+}
@@ -59,6 +59,10 @@ public interface IPreferences {
     boolean PMD_CHECK_AFTER_SAVE_DEFAULT = false;
     boolean PMD_USE_CUSTOM_PRIORITY_NAMES_DEFAULT = true;
     int MAX_VIOLATIONS_PFPR_DEFAULT = 5;
+    int REVIEW_WORKER_COUNT_DEFAULT = Runtime.getRuntime().availableProcessors();
+    int REVIEW_LATENCY_BUDGET_DEFAULT = 2000;
+    boolean PROFILING_ENABLED_DEFAULT = false;
+    boolean LIVE_ANALYSIS_ENABLED_DEFAULT = false;
     String REVIEW_ADDITIONAL_COMMENT_DEFAULT = "by {0} on {1}";
     boolean REVIEW_PMD_STYLE_ENABLED_DEFAULT = true;
     int MIN_TILE_SIZE_DEFAULT = 25;
@@ -143,6 +147,52 @@ public interface IPreferences {
      */
     void setMaxViolationsPerFilePerRule(int maxViolationPerFilePerRule);
     
+    /**
+     * Get the number of worker threads used to review several files at once.
+     * A value of 1 reviews the files one after the other.
+     */
+    int getReviewWorkerCount();
+    
+    /**
+     * Set the number of worker threads used to review several files at once
+     * @param workerCount
+     */
+    void setReviewWorkerCount(int workerCount);
+    
+    /**
+     * Get the time, in milliseconds, an automatic build may spend reviewing
+     * changed files. Files that do not fit are reviewed in the background.
+     */
+    int getReviewLatencyBudget();
+    
+    /**
+     * Set the time an automatic build may spend reviewing changed files
+     * @param budgetMillis
+     */
+    void setReviewLatencyBudget(int budgetMillis);
+    
+    /**
+     * Should the plugin record the time spent on each rule and file?
+     */
+    boolean isProfilingEnabled();
+    
+    /**
+     * Set whether the time spent on each rule and file is recorded
+     * @param flag
+     */
+    void setProfilingEnabled(boolean flag);
+
+    /**
+     * Should the open editors be checked while typing?
+     */
+    boolean isLiveAnalysisEnabled();
+
+    /**
+     * Set whether the open editors are checked while typing
+     * @param flag
+     */
+    void setLiveAnalysisEnabled(boolean flag);
+    
     /**
      * Get the review additional comment. This comment is a text appended to the
      * review comment that is inserted into the code when a violation is reviewed.
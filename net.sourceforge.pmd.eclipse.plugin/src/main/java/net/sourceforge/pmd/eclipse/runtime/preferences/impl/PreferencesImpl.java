@@ -69,6 +69,10 @@ class PreferencesImpl implements IPreferences {
     private boolean				checkAfterSaveEnabled;
     private boolean				useCustomPriorityNames;
     private int 				maxViolationsPerFilePerRule;
+    private int 				reviewWorkerCount;
+    private int 				reviewLatencyBudget;
+    private boolean 			profilingEnabled;
+    private boolean 			liveAnalysisEnabled;
     private String 				reviewAdditionalComment;
     private boolean 			reviewPmdStyleEnabled;
     private int 				minTileSize;
@@ -157,6 +161,62 @@ class PreferencesImpl implements IPreferences {
         this.maxViolationsPerFilePerRule = maxViolationPerFilePerRule;
     }
 
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#getReviewWorkerCount()
+     */
+    public int getReviewWorkerCount() {
+        return reviewWorkerCount;
+    }
+
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#setReviewWorkerCount(int)
+     */
+    public void setReviewWorkerCount(int workerCount) {
+        this.reviewWorkerCount = workerCount;
+    }
+
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#getReviewLatencyBudget()
+     */
+    public int getReviewLatencyBudget() {
+        return reviewLatencyBudget;
+    }
+
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#setReviewLatencyBudget(int)
+     */
+    public void setReviewLatencyBudget(int budgetMillis) {
+        this.reviewLatencyBudget = budgetMillis;
+    }
+
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#isProfilingEnabled()
+     */
+    public boolean isProfilingEnabled() {
+        return profilingEnabled;
+    }
+
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#setProfilingEnabled(boolean)
+     */
+    public void setProfilingEnabled(boolean flag) {
+        this.profilingEnabled = flag;
+    }
+
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#isLiveAnalysisEnabled()
+     */
+    public boolean isLiveAnalysisEnabled() {
+        return liveAnalysisEnabled;
+    }
+
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#setLiveAnalysisEnabled(boolean)
+     */
+    public void setLiveAnalysisEnabled(boolean flag) {
+        this.liveAnalysisEnabled = flag;
+    }
+
     /**
      * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#getReviewAdditionalComment()
      */
@@ -100,6 +100,10 @@ class PreferencesManagerImpl implements IPreferencesManager {
     private static final String PMD_PERSPECTIVE_ENABLED     	= PMDPlugin.PLUGIN_ID + ".pmd_perspective_enabled";
     private static final String PMD_CHECK_AFTER_SAVE_ENABLED	= PMDPlugin.PLUGIN_ID + ".pmd_check_after_save_enabled";
     private static final String MAX_VIOLATIONS_PFPR         	= PMDPlugin.PLUGIN_ID + ".max_violations_pfpr";
+    private static final String REVIEW_WORKER_COUNT         	= PMDPlugin.PLUGIN_ID + ".review_worker_count";
+    private static final String REVIEW_LATENCY_BUDGET       	= PMDPlugin.PLUGIN_ID + ".review_latency_budget";
+    private static final String PROFILING_ENABLED           	= PMDPlugin.PLUGIN_ID + ".profiling_enabled";
+    private static final String LIVE_ANALYSIS_ENABLED       	= PMDPlugin.PLUGIN_ID + ".live_analysis_enabled";
     private static final String REVIEW_ADDITIONAL_COMMENT 		= PMDPlugin.PLUGIN_ID + ".review_additional_comment";
     private static final String REVIEW_PMD_STYLE_ENABLED    	= PMDPlugin.PLUGIN_ID + ".review_pmd_style_enabled";
     private static final String PMD_USE_CUSTOM_PRIORITY_NAMES   = PMDPlugin.PLUGIN_ID + ".use_custom_priority_names";
@@ -164,6 +168,10 @@ class PreferencesManagerImpl implements IPreferencesManager {
         loadCheckAfterSaveEnabled();
         loadUseCustomPriorityNames();
         loadMaxViolationsPerFilePerRule();
+        loadReviewWorkerCount();
+        loadReviewLatencyBudget();
+        loadProfilingEnabled();
+        loadLiveAnalysisEnabled();
         loadReviewAdditionalComment();
         loadReviewPmdStyleEnabled();
         loadMinTileSize();
@@ -228,6 +236,10 @@ class PreferencesManagerImpl implements IPreferencesManager {
         storeCheckAfterSaveEnabled();
         storeUseCustomPriorityNames();
         storeMaxViolationsPerFilePerRule();
+        storeReviewWorkerCount();
+        storeReviewLatencyBudget();
+        storeProfilingEnabled();
+        storeLiveAnalysisEnabled();
         storeReviewAdditionalComment();
         storeReviewPmdStyleEnabled();
         storeMinTileSize();
@@ -239,6 +251,8 @@ class PreferencesManagerImpl implements IPreferencesManager {
         storeActiveExclusions();
         storeActiveInclusions();
         storePriorityDescriptors();
+
+        PMDPlugin.getDefault().getEffectiveRuleSets().invalidateAll();
     }
 
     /**
@@ -259,6 +273,7 @@ class PreferencesManagerImpl implements IPreferencesManager {
         updateConfiguredProjects(newRuleSet);
         ruleSet = newRuleSet;
         storeRuleSetInStateLocation(ruleSet);
+        PMDPlugin.getDefault().getEffectiveRuleSets().invalidateAll();
     }
 
     private void loadProjectBuildPathEnabled() {
@@ -286,6 +301,26 @@ class PreferencesManagerImpl implements IPreferencesManager {
         preferences.setMaxViolationsPerFilePerRule(loadPreferencesStore.getInt(MAX_VIOLATIONS_PFPR));
     }
 
+    private void loadReviewWorkerCount() {
+        loadPreferencesStore.setDefault(REVIEW_WORKER_COUNT, IPreferences.REVIEW_WORKER_COUNT_DEFAULT);
+        preferences.setReviewWorkerCount(loadPreferencesStore.getInt(REVIEW_WORKER_COUNT));
+    }
+
+    private void loadReviewLatencyBudget() {
+        loadPreferencesStore.setDefault(REVIEW_LATENCY_BUDGET, IPreferences.REVIEW_LATENCY_BUDGET_DEFAULT);
+        preferences.setReviewLatencyBudget(loadPreferencesStore.getInt(REVIEW_LATENCY_BUDGET));
+    }
+
+    private void loadProfilingEnabled() {
+        loadPreferencesStore.setDefault(PROFILING_ENABLED, IPreferences.PROFILING_ENABLED_DEFAULT);
+        preferences.setProfilingEnabled(loadPreferencesStore.getBoolean(PROFILING_ENABLED));
+    }
+
+    private void loadLiveAnalysisEnabled() {
+        loadPreferencesStore.setDefault(LIVE_ANALYSIS_ENABLED, IPreferences.LIVE_ANALYSIS_ENABLED_DEFAULT);
+        preferences.setLiveAnalysisEnabled(loadPreferencesStore.getBoolean(LIVE_ANALYSIS_ENABLED));
+    }
+
     private void loadReviewAdditionalComment() {
         loadPreferencesStore.setDefault(REVIEW_ADDITIONAL_COMMENT, IPreferences.REVIEW_ADDITIONAL_COMMENT_DEFAULT);
         preferences.setReviewAdditionalComment(loadPreferencesStore.getString(REVIEW_ADDITIONAL_COMMENT));
@@ -412,6 +447,22 @@ class PreferencesManagerImpl implements IPreferencesManager {
         storePreferencesStore.setValue(MAX_VIOLATIONS_PFPR, preferences.getMaxViolationsPerFilePerRule());
     }
 
+    private void storeReviewWorkerCount() {
+        storePreferencesStore.setValue(REVIEW_WORKER_COUNT, preferences.getReviewWorkerCount());
+    }
+
+    private void storeReviewLatencyBudget() {
+        storePreferencesStore.setValue(REVIEW_LATENCY_BUDGET, preferences.getReviewLatencyBudget());
+    }
+
+    private void storeProfilingEnabled() {
+        storePreferencesStore.setValue(PROFILING_ENABLED, preferences.isProfilingEnabled());
+    }
+
+    private void storeLiveAnalysisEnabled() {
+        storePreferencesStore.setValue(LIVE_ANALYSIS_ENABLED, preferences.isLiveAnalysisEnabled());
+    }
+
     private void storeReviewAdditionalComment() {
         storePreferencesStore.setValue(REVIEW_ADDITIONAL_COMMENT, preferences.getReviewAdditionalComment());
     }
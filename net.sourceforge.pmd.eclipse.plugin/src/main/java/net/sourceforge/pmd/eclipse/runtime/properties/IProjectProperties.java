@@ -184,4 +184,10 @@ public interface IProjectProperties {
      * @return include patterns
      */
     Set<String> getBuildPathIncludePatterns();
+
+    /**
+     * Determine the build path include and exclude patterns again, after the
+     * classpath of the project has changed.
+     */
+    void refreshBuildPathPatterns();
 }
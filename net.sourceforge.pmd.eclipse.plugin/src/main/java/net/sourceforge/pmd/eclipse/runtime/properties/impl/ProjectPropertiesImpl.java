@@ -179,6 +179,7 @@ public class ProjectPropertiesImpl implements IProjectProperties {
 
         this.needRebuild |= !this.projectRuleSet.getRules().equals(projectRuleSet.getRules());
         this.projectRuleSet = projectRuleSet;
+        PMDPlugin.getDefault().getEffectiveRuleSets().invalidate(project);
         if (this.ruleSetStoredInProject) {
         	File f = getResolvedRuleSetFile();
         	if (f != null) {
@@ -458,4 +459,14 @@ public class ProjectPropertiesImpl implements IProjectProperties {
 	public Set<String> getBuildPathIncludePatterns() {
 	    return buildPathIncludePatterns;
 	}
+
+	/**
+	 * @see net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties#refreshBuildPathPatterns()
+	 */
+	public void refreshBuildPathPatterns() {
+	    log.debug("Refresh build path patterns for project " + project.getName());
+	    buildPathExcludePatterns = new HashSet<String>();
+	    buildPathIncludePatterns = new HashSet<String>();
+	    determineBuildPathIncludesExcludes();
+	}
 }
\ No newline at end of file
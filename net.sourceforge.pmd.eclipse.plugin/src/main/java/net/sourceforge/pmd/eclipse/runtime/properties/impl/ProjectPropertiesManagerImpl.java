@@ -143,6 +143,7 @@ public class ProjectPropertiesManagerImpl implements IProjectPropertiesManager {
 
             writeProjectProperties(projectProperties.getProject(), fillTransferObject(projectProperties));
             projectsProperties.put(projectProperties.getProject(), projectProperties);
+            PMDPlugin.getDefault().getEffectiveRuleSets().invalidate(projectProperties.getProject());
 
         } catch (CoreException e) {
             throw new PropertiesException("Core Exception when storing project properties for project " + projectProperties.getProject().getName(), e);
@@ -153,6 +154,7 @@ public class ProjectPropertiesManagerImpl implements IProjectPropertiesManager {
     @Override
     public void removeProjectProperties(IProject project) {
         this.projectsProperties.remove(project);
+        PMDPlugin.getDefault().getEffectiveRuleSets().invalidate(project);
     }
 
     /**
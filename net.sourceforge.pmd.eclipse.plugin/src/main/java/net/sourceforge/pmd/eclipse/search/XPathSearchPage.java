@@ -0,0 +1,192 @@
+package net.sourceforge.pmd.eclipse.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sourceforge.pmd.eclipse.ui.views.ast.XPathEvaluator;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRuleQuery;
+import net.sourceforge.pmd.util.StringUtil;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.jface.dialogs.DialogPage;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.search.ui.ISearchPage;
+import org.eclipse.search.ui.ISearchPageContainer;
+import org.eclipse.search.ui.NewSearchUI;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Combo;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Text;
+import org.eclipse.ui.IWorkingSet;
+import org.jaxen.JaxenException;
+
+/**
+ * Searches the Java files of the chosen scope for the nodes matching an
+ * XPath query, to try a candidate rule on a whole code base.
+ */
+public class XPathSearchPage extends DialogPage implements ISearchPage {
+
+	private static final String[] XPATH_VERSIONS = { XPathRuleQuery.XPATH_1_0, XPathRuleQuery.XPATH_2_0 };
+
+	private ISearchPageContainer container;
+	private Text queryText;
+	private Combo versionCombo;
+	private Label errorLabel;
+
+	public void setContainer(ISearchPageContainer container) {
+		this.container = container;
+	}
+
+	public void createControl(Composite parent) {
+
+		Composite panel = new Composite(parent, SWT.NONE);
+		panel.setLayout(new GridLayout(2, false));
+
+			Label label = new Label(panel, SWT.NONE);
+			label.setText("XPath query:");
+			label.setLayoutData(new GridData(GridData.BEGINNING, GridData.BEGINNING, false, false, 2, 1));
+
+			queryText = new Text(panel, SWT.BORDER | SWT.MULTI | SWT.V_SCROLL | SWT.WRAP);
+			GridData gridData = new GridData(GridData.FILL, GridData.FILL, true, true, 2, 1);
+			gridData.heightHint = 80;
+			gridData.widthHint = 400;
+			queryText.setLayoutData(gridData);
+			queryText.addModifyListener(new ModifyListener() {
+				public void modifyText(ModifyEvent event) {
+					validateQuery();
+				}
+			});
+
+			Label versionLabel = new Label(panel, SWT.NONE);
+			versionLabel.setText("XPath version:");
+
+			versionCombo = new Combo(panel, SWT.READ_ONLY);
+			for (String version : XPATH_VERSIONS) {
+				versionCombo.add(version);
+			}
+			versionCombo.select(0);
+			versionCombo.addModifyListener(new ModifyListener() {
+				public void modifyText(ModifyEvent event) {
+					validateQuery();
+				}
+			});
+
+			errorLabel = new Label(panel, SWT.NONE);
+			errorLabel.setLayoutData(new GridData(GridData.FILL, GridData.BEGINNING, true, false, 2, 1));
+
+		setControl(panel);
+	}
+
+	@Override
+	public void setVisible(boolean visible) {
+		super.setVisible(visible);
+		if (visible) {
+			validateQuery();
+			queryText.setFocus();
+		}
+	}
+
+	private String selectedVersion() {
+		return XPATH_VERSIONS[Math.max(0, versionCombo.getSelectionIndex())];
+	}
+
+	/**
+	 * XPath 1.0 queries are compiled while typed, through the cache the
+	 * search uses; XPath 2.0 queries are only checked when run.
+	 */
+	private void validateQuery() {
+
+		String message = null;
+		if (StringUtil.isEmpty(queryText.getText())) {
+			message = "";
+		} else {
+			try {
+				XPathEvaluator.instance.compile(queryText.getText(), selectedVersion());
+			} catch (JaxenException je) {
+				message = je.getMessage();
+			}
+		}
+
+		errorLabel.setText(message == null ? "" : message);
+		if (container != null) {
+			container.setPerformActionEnabled(message == null);
+		}
+	}
+
+	public boolean performAction() {
+
+		List<IResource> roots = new ArrayList<IResource>();
+		String scope = scopeRoots(roots);
+		if (roots.isEmpty()) return false;
+
+		NewSearchUI.runQueryInBackground(new XPathSearchQuery(
+				queryText.getText(), selectedVersion(), roots.toArray(new IResource[roots.size()]), scope
+				));
+		return true;
+	}
+
+	/**
+	 * @return a description of the scope chosen in the dialog
+	 */
+	private String scopeRoots(List<IResource> roots) {
+
+		IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
+
+		switch (container.getSelectedScope()) {
+			case ISearchPageContainer.SELECTED_PROJECTS_SCOPE:
+				String[] names = container.getSelectedProjectNames();
+				if (names != null) {
+					for (String name : names) {
+						roots.add(workspaceRoot.getProject(name));
+					}
+				}
+				return "selected projects";
+
+			case ISearchPageContainer.WORKING_SET_SCOPE:
+				IWorkingSet[] workingSets = container.getSelectedWorkingSets();
+				StringBuilder workingSetNames = new StringBuilder();
+				if (workingSets != null) {
+					for (IWorkingSet workingSet : workingSets) {
+						addResources(workingSet.getElements(), roots);
+						if (workingSetNames.length() > 0) workingSetNames.append(", ");
+						workingSetNames.append(workingSet.getLabel());
+					}
+				}
+				return "working set " + workingSetNames;
+
+			case ISearchPageContainer.SELECTION_SCOPE:
+				ISelection selection = container.getSelection();
+				if (selection instanceof IStructuredSelection) {
+					addResources(((IStructuredSelection) selection).toArray(), roots);
+				}
+				return "selected resources";
+
+			default:
+				for (IProject project : workspaceRoot.getProjects()) {
+					roots.add(project);
+				}
+				return "workspace";
+		}
+	}
+
+	private static void addResources(Object[] elements, List<IResource> roots) {
+
+		for (Object element : elements) {
+			IResource resource = element instanceof IResource ? (IResource) element
+					: element instanceof IAdaptable ? (IResource) ((IAdaptable) element).getAdapter(IResource.class) : null;
+			if (resource != null) {
+				roots.add(resource);
+			}
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package net.sourceforge.pmd.eclipse.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ASTCache;
+import net.sourceforge.pmd.eclipse.ui.views.ast.XPathEvaluator;
+import net.sourceforge.pmd.eclipse.ui.views.ast.XPathEvaluator.CompiledQuery;
+import net.sourceforge.pmd.eclipse.util.SourceBuffer;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.ParseException;
+import net.sourceforge.pmd.lang.ast.TokenMgrError;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.search.ui.ISearchQuery;
+import org.eclipse.search.ui.ISearchResult;
+import org.eclipse.search.ui.text.Match;
+import org.jaxen.JaxenException;
+
+/**
+ * Runs an XPath query over the Java files below some resources and reports
+ * every matching node as a match of the Search view.
+ *
+ * The files are searched by one worker per processor. A file open in an
+ * editor is searched as shown there, through the AST cache the AST view
+ * uses; the others are read and parsed by the worker and dropped once
+ * searched. Matches are added file by file while the search runs, and the
+ * label of the result shows the files searched per second. Files that cannot
+ * be read, parsed or searched are skipped and listed in the returned status.
+ */
+public class XPathSearchQuery implements ISearchQuery {
+
+	private static final Logger log = Logger.getLogger(XPathSearchQuery.class);
+
+	private static final long PROGRESS_INTERVAL_MS = 200;
+
+	private final String xpathQuery;
+	private final String xpathVersion;
+	private final IResource[] roots;
+	private final String scopeDescription;
+	private XPathSearchResult result;
+
+	/**
+	 * @param xpathQuery the query
+	 * @param xpathVersion the XPath version of the query
+	 * @param roots the resources whose Java files are searched
+	 * @param scopeDescription what the roots are, for the label
+	 */
+	public XPathSearchQuery(String xpathQuery, String xpathVersion, IResource[] roots, String scopeDescription) {
+		this.xpathQuery = xpathQuery;
+		this.xpathVersion = xpathVersion;
+		this.roots = roots;
+		this.scopeDescription = scopeDescription;
+	}
+
+	public String getXPathQuery() {
+		return xpathQuery;
+	}
+
+	public String getLabel() {
+		return "XPath search in " + scopeDescription;
+	}
+
+	public boolean canRerun() {
+		return true;
+	}
+
+	public boolean canRunInBackground() {
+		return true;
+	}
+
+	public synchronized ISearchResult getSearchResult() {
+		if (result == null) {
+			result = new XPathSearchResult(this);
+		}
+		return result;
+	}
+
+	public IStatus run(final IProgressMonitor monitor) throws OperationCanceledException {
+
+		final XPathSearchResult searchResult = (XPathSearchResult) getSearchResult();
+		searchResult.removeAll();
+
+		final CompiledQuery shared;
+		final List<IFile> files = new ArrayList<IFile>();
+		final List<LanguageVersion> versions = new ArrayList<LanguageVersion>();
+		try {
+			shared = XPathEvaluator.instance.compile(xpathQuery, xpathVersion);
+			collectJavaFiles(files, versions);
+		} catch (JaxenException je) {
+			return new Status(IStatus.ERROR, PMDPlugin.PLUGIN_ID, "Invalid XPath query: " + je.getMessage(), je);
+		} catch (CoreException ce) {
+			return ce.getStatus();
+		}
+
+		monitor.beginTask("Searching " + files.size() + " files", files.size());
+
+		final long start = System.nanoTime();
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger searched = new AtomicInteger();
+		final List<IStatus> skipped = Collections.synchronizedList(new ArrayList<IStatus>());
+		int workers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), files.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(workers, new WorkerThreadFactory());
+		for (int w = 0; w < workers; w++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					CompiledQuery query = queryForWorker(shared);
+					for (int i = next.getAndIncrement(); i < files.size() && !monitor.isCanceled(); i = next.getAndIncrement()) {
+						IStatus failure = search(files.get(i), versions.get(i), query, searchResult);
+						if (failure != null) skipped.add(failure);
+						searched.incrementAndGet();
+					}
+				}
+			});
+		}
+		executor.shutdown();
+
+		try {
+			int reported = 0;
+			while (!executor.awaitTermination(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+				reported = reportProgress(searched.get(), reported, start, monitor, searchResult);
+			}
+			reportProgress(searched.get(), reported, start, monitor, searchResult);
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		monitor.done();
+
+		if (monitor.isCanceled()) return Status.CANCEL_STATUS;
+		if (skipped.isEmpty()) return Status.OK_STATUS;
+		return new MultiStatus(PMDPlugin.PLUGIN_ID, IStatus.OK, skipped.toArray(new IStatus[skipped.size()]),
+				skipped.size() + " of " + files.size() + " files could not be searched", null);
+	}
+
+	private static int reportProgress(int done, int reported, long start, IProgressMonitor monitor, XPathSearchResult searchResult) {
+		monitor.worked(done - reported);
+		searchResult.setProgress(done, (System.nanoTime() - start) / 1000000);
+		return done;
+	}
+
+	/**
+	 * Evaluations of queries that are not thread-safe wait for each other,
+	 * so such workers get a query of their own.
+	 */
+	private CompiledQuery queryForWorker(CompiledQuery shared) {
+		if (shared.isThreadSafe()) {
+			return shared;
+		}
+		try {
+			return XPathEvaluator.instance.compileNew(xpathQuery, xpathVersion);
+		} catch (JaxenException je) {
+			return shared;	// compiled fine before
+		}
+	}
+
+	private void collectJavaFiles(final List<IFile> files, final List<LanguageVersion> versions) throws CoreException {
+
+		final Map<IProject, LanguageVersion> versionsByProject = new HashMap<IProject, LanguageVersion>();
+		final Set<IFile> seen = new HashSet<IFile>();	// roots may overlap
+		final LanguageVersion defaultVersion = LanguageRegistry.getLanguage(JavaLanguageModule.NAME).getDefaultVersion();
+
+		IResourceProxyVisitor visitor = new IResourceProxyVisitor() {
+			public boolean visit(IResourceProxy proxy) {
+				if (proxy.getType() == IResource.FILE) {
+					if (proxy.getName().endsWith(".java")) {
+						IFile file = (IFile) proxy.requestResource();
+						if (!seen.add(file)) return false;
+						IProject project = file.getProject();
+						LanguageVersion version = versionsByProject.get(project);
+						if (version == null) {
+							version = PMDPlugin.javaVersionFor(project);
+							if (version == null) version = defaultVersion;
+							versionsByProject.put(project, version);
+						}
+						files.add(file);
+						versions.add(version);
+					}
+					return false;
+				}
+				return true;
+			}
+		};
+
+		for (IResource root : roots) {
+			if (root.isAccessible()) {
+				root.accept(visitor, IResource.NONE);
+			}
+		}
+	}
+
+	/**
+	 * @return why the file was skipped, or null if it was searched
+	 */
+	private static IStatus search(IFile file, LanguageVersion version, CompiledQuery query, XPathSearchResult searchResult) {
+
+		try {
+			ASTCache.Entry parsed = parse(file, version);
+			List<Node> nodes = query.evaluate(parsed.withSymbols());
+			if (!nodes.isEmpty()) {
+				searchResult.addMatches(matchesIn(file, parsed.getSource(), nodes));
+			}
+			return null;
+		} catch (ParseException pe) {
+			return skipped(file, "cannot be parsed", pe);
+		} catch (TokenMgrError tme) {
+			return skipped(file, "cannot be parsed", tme);
+		} catch (CoreException ce) {
+			return skipped(file, "cannot be read", ce);
+		} catch (IOException ioe) {
+			return skipped(file, "cannot be read", ioe);
+		} catch (RuntimeException re) {
+			// a failing query or symbol facade must not end the worker
+			return skipped(file, "cannot be searched", re);
+		}
+	}
+
+	private static IStatus skipped(IFile file, String reason, Throwable cause) {
+
+		log.debug("Skipping " + file.getFullPath() + ", which " + reason + ": " + cause.getMessage());
+		return new Status(IStatus.WARNING, PMDPlugin.PLUGIN_ID, file.getFullPath() + " " + reason + ": " + cause.getMessage(), cause);
+	}
+
+	private static ASTCache.Entry parse(IFile file, LanguageVersion version) throws CoreException, IOException {
+
+		ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+		IDocument document = buffer == null ? null : buffer.getDocument();
+		if (document != null) {
+			return PMDPlugin.getDefault().getASTCache().get(document, version);
+		}
+		return ASTCache.parse(SourceBuffer.read(file).asString(), version);
+	}
+
+	private static Match[] matchesIn(IFile file, String source, List<Node> nodes) {
+
+		int[] lineOffsets = lineOffsets(source);
+		Match[] matches = new Match[nodes.size()];
+		for (int i = 0; i < matches.length; i++) {
+			Node node = nodes.get(i);
+			int offset = offsetOf(lineOffsets, source.length(), node.getBeginLine(), node.getBeginColumn() - 1);
+			int end = offsetOf(lineOffsets, source.length(), node.getEndLine(), node.getEndColumn());
+			matches[i] = new Match(file, offset, Math.max(0, end - offset));
+		}
+		return matches;
+	}
+
+	/**
+	 * The offsets the lines start at; lines end with \n, \r\n or \r, as
+	 * for the parser.
+	 */
+	private static int[] lineOffsets(String source) {
+
+		int lines = 1;
+		for (int i = 1; i <= source.length(); i++) {
+			if (startsLine(source, i)) lines++;
+		}
+		int[] offsets = new int[lines];
+		int line = 1;
+		for (int i = 1; i <= source.length(); i++) {
+			if (startsLine(source, i)) offsets[line++] = i;
+		}
+		return offsets;
+	}
+
+	private static boolean startsLine(String source, int index) {
+
+		char previous = source.charAt(index - 1);
+		return previous == '\n' || previous == '\r' && (index == source.length() || source.charAt(index) != '\n');
+	}
+
+	private static int offsetOf(int[] lineOffsets, int length, int line, int column) {
+
+		if (line < 1) return 0;
+		if (line > lineOffsets.length) return length;
+		return Math.min(length, lineOffsets[line - 1] + Math.max(0, column));
+	}
+
+	/**
+	 * Names the worker threads so they can be told apart in thread dumps.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+		private static final AtomicInteger searchNumber = new AtomicInteger();
+		private final AtomicInteger threadNumber = new AtomicInteger();
+		private final String prefix = "PMD XPath search worker " + searchNumber.incrementAndGet() + "-";
+
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, prefix + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
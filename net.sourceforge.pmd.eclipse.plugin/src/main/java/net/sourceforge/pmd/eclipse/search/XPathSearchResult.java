@@ -0,0 +1,97 @@
+package net.sourceforge.pmd.eclipse.search;
+
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.search.ui.ISearchQuery;
+import org.eclipse.search.ui.SearchResultEvent;
+import org.eclipse.search.ui.text.AbstractTextSearchResult;
+import org.eclipse.search.ui.text.IEditorMatchAdapter;
+import org.eclipse.search.ui.text.IFileMatchAdapter;
+import org.eclipse.search.ui.text.Match;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorPart;
+
+/**
+ * The nodes matched by an {@link XPathSearchQuery}, one match per node, with
+ * the files as elements.
+ */
+public class XPathSearchResult extends AbstractTextSearchResult implements IEditorMatchAdapter, IFileMatchAdapter {
+
+	private final XPathSearchQuery query;
+
+	private volatile int filesSearched;
+	private volatile long elapsedMillis;
+
+	public XPathSearchResult(XPathSearchQuery query) {
+		this.query = query;
+	}
+
+	/**
+	 * Updates the progress shown in the label of the result.
+	 *
+	 * @param files the number of files searched so far
+	 * @param millis the time spent so far
+	 */
+	void setProgress(int files, long millis) {
+		filesSearched = files;
+		elapsedMillis = millis;
+		fireChange(new SearchResultEvent(this) {
+			private static final long serialVersionUID = 1L;
+		});
+	}
+
+	public String getLabel() {
+		StringBuilder label = new StringBuilder();
+		label.append("XPath '").append(query.getXPathQuery()).append("' - ");
+		label.append(getMatchCount()).append(" matches in ").append(filesSearched).append(" files");
+		if (elapsedMillis > 0) {
+			label.append(" (").append(filesSearched * 1000L / elapsedMillis).append(" files/s)");
+		}
+		return label.toString();
+	}
+
+	public String getTooltip() {
+		return getLabel();
+	}
+
+	public ImageDescriptor getImageDescriptor() {
+		return PMDPlugin.getImageDescriptor("icons/pmd-icon-16.gif");
+	}
+
+	public ISearchQuery getQuery() {
+		return query;
+	}
+
+	public IEditorMatchAdapter getEditorMatchAdapter() {
+		return this;
+	}
+
+	public IFileMatchAdapter getFileMatchAdapter() {
+		return this;
+	}
+
+	public boolean isShownInEditor(Match match, IEditorPart editor) {
+		IFile file = fileOf(editor);
+		return file != null && file.equals(match.getElement());
+	}
+
+	public Match[] computeContainedMatches(AbstractTextSearchResult result, IEditorPart editor) {
+		IFile file = fileOf(editor);
+		return file == null ? new Match[0] : result.getMatches(file);
+	}
+
+	public Match[] computeContainedMatches(AbstractTextSearchResult result, IFile file) {
+		return result.getMatches(file);
+	}
+
+	public IFile getFile(Object element) {
+		return element instanceof IFile ? (IFile) element : null;
+	}
+
+	private static IFile fileOf(IEditorPart editor) {
+		IEditorInput input = editor.getEditorInput();
+		return input == null ? null : (IFile) input.getAdapter(IFile.class);
+	}
+}
@@ -0,0 +1,106 @@
+package net.sourceforge.pmd.eclipse.search;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.StructuredViewer;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.jface.viewers.ViewerComparator;
+import org.eclipse.search.ui.text.AbstractTextSearchResult;
+import org.eclipse.search.ui.text.AbstractTextSearchViewPage;
+import org.eclipse.search.ui.text.Match;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.ide.IDE;
+import org.eclipse.ui.model.WorkbenchLabelProvider;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+/**
+ * Shows the files an {@link XPathSearchQuery} found matches in, as a flat
+ * list; the matches themselves are shown in the editors.
+ */
+public class XPathSearchResultPage extends AbstractTextSearchViewPage {
+
+	public XPathSearchResultPage() {
+		super(FLAG_LAYOUT_FLAT);
+	}
+
+	protected void configureTableViewer(TableViewer viewer) {
+		viewer.setUseHashlookup(true);
+		viewer.setContentProvider(new ResultContentProvider());
+		viewer.setLabelProvider(new ResultLabelProvider());
+		viewer.setComparator(new ViewerComparator());
+	}
+
+	protected void configureTreeViewer(TreeViewer viewer) {
+		throw new IllegalStateException("Only the flat layout is supported");
+	}
+
+	protected void elementsChanged(Object[] elements) {
+		StructuredViewer viewer = getViewer();
+		AbstractTextSearchResult result = getInput();
+		if (!(viewer instanceof TableViewer) || result == null) return;
+
+		TableViewer table = (TableViewer) viewer;
+		for (Object element : elements) {
+			if (result.getMatchCount(element) == 0) {
+				table.remove(element);
+			} else if (table.testFindItem(element) == null) {
+				table.add(element);
+			} else {
+				table.update(element, null);
+			}
+		}
+	}
+
+	protected void clear() {
+		getViewer().refresh();
+	}
+
+	protected void showMatch(Match match, int offset, int length, boolean activate) throws PartInitException {
+		IFile file = (IFile) match.getElement();
+		IEditorPart editor = IDE.openEditor(getSite().getPage(), file, activate);
+		if (editor instanceof ITextEditor) {
+			((ITextEditor) editor).selectAndReveal(offset, length);
+		}
+	}
+
+	private static class ResultContentProvider implements IStructuredContentProvider {
+
+		public Object[] getElements(Object input) {
+			return input instanceof AbstractTextSearchResult ? ((AbstractTextSearchResult) input).getElements() : new Object[0];
+		}
+
+		public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		}
+
+		public void dispose() {
+		}
+	}
+
+	private class ResultLabelProvider extends LabelProvider {
+
+		private final WorkbenchLabelProvider workbenchLabels = new WorkbenchLabelProvider();
+
+		public String getText(Object element) {
+			if (!(element instanceof IFile)) return super.getText(element);
+
+			IFile file = (IFile) element;
+			AbstractTextSearchResult result = getInput();
+			int count = result == null ? 0 : result.getMatchCount(file);
+			return file.getName() + " - " + file.getParent().getFullPath().makeRelative() + " (" + count + (count == 1 ? " match)" : " matches)");
+		}
+
+		public Image getImage(Object element) {
+			return workbenchLabels.getImage(element);
+		}
+
+		public void dispose() {
+			workbenchLabels.dispose();
+			super.dispose();
+		}
+	}
+}
@@ -127,6 +127,8 @@ public class PMDUiConstants {
     public static final String ID_DATAFLOWVIEW = PLUGIN_ID + ".views.dataflowView";
     public static final String ID_CPDVIEW = PLUGIN_ID + ".views.CPDView";
     public static final String ID_CPDVIEW2 = PLUGIN_ID + ".views.br.CPDView2";
+    public static final String ID_PROFILEVIEW = PLUGIN_ID + ".views.profileView";
+    public static final String ID_STATUSVIEW = PLUGIN_ID + ".views.statusView";
     
     public static final String MEMENTO_OUTLINE_FILE = "/violationOutline_memento.xml";
     public static final String MEMENTO_OVERVIEW_FILE = "/violationOverview_memento.xml";
@@ -5,9 +5,11 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.plugin.UISettings;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
 import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ViolationIndex;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
@@ -69,6 +71,14 @@ public class RuleLabelDecorator implements ILightweightLabelDecorator {
 		
 		IResource resource = (IResource)element;
 		
+		ViolationIndex index = PMDPlugin.getDefault().getViolationIndex();
+		if (index.isReady()) {
+			int priority = index.highestPriorityOf(resource);
+			if (priority > 0) decoration.addOverlay(overlaysByPriority.get(priority));
+			return;
+		}
+		
+		// the index is being built, search the markers meanwhile
 		Set<Integer> range = null;
 		try {
 			range = MarkerUtil.priorityRangeOf(resource, PMDRuntimeConstants.RULE_MARKER_TYPES, 5);
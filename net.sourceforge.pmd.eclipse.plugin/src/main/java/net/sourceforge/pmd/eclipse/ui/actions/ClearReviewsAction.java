@@ -44,6 +44,7 @@ import java.util.Iterator;
 
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
 import net.sourceforge.pmd.eclipse.runtime.cmd.AbstractDefaultCommand;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewIndex;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 import net.sourceforge.pmd.eclipse.util.IOUtil;
 
@@ -235,6 +236,25 @@ public class ClearReviewsAction extends AbstractUIAction implements IResourceVis
     	return file.getName().toLowerCase().endsWith(".jsp");
     }
     
+    /**
+     * Tell whether a file contains anything to remove, using the review index
+     * so that files which have not changed since they were last indexed are
+     * not read again.
+     *
+     * @param file
+     * @return false if the file has no review comment and no NOPMD marker
+     */
+    private boolean hasReviewTokens(IFile file) {
+        try {
+            return ReviewIndex.forFile(file).hasReviewTokens();
+        } catch (CoreException e) {
+            logError(StringKeys.ERROR_CORE_EXCEPTION, e);
+        } catch (IOException e) {
+            logError(StringKeys.ERROR_IO_EXCEPTION, e);
+        }
+        return false;
+    }
+
     /**
      * remove reviews from file content
      *
@@ -243,7 +263,7 @@ public class ClearReviewsAction extends AbstractUIAction implements IResourceVis
      */
     private String removeReviews(IFile file) {
     	
-    	if (!isReviewable(file)) return null;
+    	if (!isReviewable(file) || !hasReviewTokens(file)) return null;
     	
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PrintWriter out = null;
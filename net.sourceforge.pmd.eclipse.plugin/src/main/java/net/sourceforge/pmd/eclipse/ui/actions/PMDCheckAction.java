@@ -37,17 +37,13 @@ import java.util.Iterator;
 
 import name.herlin.command.CommandException;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
-import net.sourceforge.pmd.eclipse.runtime.cmd.AbstractDefaultCommand;
 import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewCodeCmd;
 import net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 import org.eclipse.ui.IWorkingSet;
 
 import org.apache.log4j.Logger;
-import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IResourceVisitor;
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.viewers.ISelection;
@@ -121,16 +117,16 @@ public class PMDCheckAction extends AbstractUIAction {
         ReviewCodeCmd cmd = new ReviewCodeCmd();
         cmd.addResource(resource);
 
-        setupAndExecute(cmd, 1);
+        setupAndExecute(cmd);
     }
 
-    private void setupAndExecute(ReviewCodeCmd cmd, int count) throws CommandException {
-    	cmd.setStepCount(count);
+    private void setupAndExecute(ReviewCodeCmd cmd) throws CommandException {
     	cmd.setTaskMarker(true);
         cmd.setOpenPmdPerspective(PMDPlugin.getDefault().loadPreferences().isPmdPerspectiveEnabled());
         cmd.setUserInitiated(true);
         cmd.setRunAlways(true);
-        cmd.performExecute();
+        cmd.setStreamMarkers(true);
+        PMDPlugin.getDefault().getAnalysisBroker().review(cmd);
     }
     
     /**
@@ -168,7 +164,7 @@ public class PMDCheckAction extends AbstractUIAction {
 		}
 
 		// Run the command
-		setupAndExecute(cmd, countElements(selection));
+		setupAndExecute(cmd);
 	}
 
 	private void addAdaptable(ReviewCodeCmd cmd, IAdaptable adaptable) {
@@ -180,56 +176,4 @@ public class PMDCheckAction extends AbstractUIAction {
 			log.debug("   -> selected object : " + adaptable);
 		}
 	}
-	
-    /**
-     * Count the number of resources of a selection
-     *
-     * @param selection a selection
-     * @return the element count
-     */
-    private int countElements(IStructuredSelection selection) {
-        CountVisitor visitor = new CountVisitor();
-
-        for (Iterator<?> i = selection.iterator(); i.hasNext();) {
-            Object element = i.next();
-
-            try {
-                if (element instanceof IAdaptable) {
-                    IAdaptable adaptable = (IAdaptable) element;
-                    IResource resource = (IResource) adaptable.getAdapter(IResource.class);
-                    if (resource != null) {
-                        resource.accept(visitor);
-                    } else {
-                        log.warn("The selected object cannot adapt to a resource");
-                        log.debug("   -> selected object : " + element);
-                    }
-                } else {
-                    log.warn("The selected object is not adaptable");
-                    log.debug("   -> selected object : " + element);
-                }
-            } catch (CoreException e) {
-                // Ignore any exception
-                logError("Exception when counting the number of impacted elements when running PMD from menu", e);
-            }
-        }
-
-        return visitor.count;
-    }
-
-    // Inner visitor to count number of children of a resource
-    private class CountVisitor implements IResourceVisitor {
-        public int count = 0;
-
-        public boolean visit(IResource resource) {
-            boolean fVisitChildren = true;
-            count++;
-
-            if (resource instanceof IFile && AbstractDefaultCommand.isJavaFile((IFile) resource)) {
-
-                fVisitChildren = false;
-            }
-
-            return fVisitChildren;
-        }
-    }
 }
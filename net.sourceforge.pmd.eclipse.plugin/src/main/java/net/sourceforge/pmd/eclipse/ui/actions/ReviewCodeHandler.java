@@ -81,6 +81,7 @@ public class ReviewCodeHandler extends AbstractHandler {
 				cmd.reset();
 				
 				for (IResource rsc : fResources) cmd.addResource(rsc);
+				cmd.setStreamMarkers(true);
 				
 				try {
 					cmd.performExecute();
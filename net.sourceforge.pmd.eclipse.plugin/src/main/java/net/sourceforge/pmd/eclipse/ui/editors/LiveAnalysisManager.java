@@ -0,0 +1,174 @@
+package net.sourceforge.pmd.eclipse.ui.editors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sourceforge.pmd.eclipse.runtime.cmd.LiveReview;
+
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+/**
+ * Checks the open text editors while the user types, when the preferences
+ * ask for it. Each editor gets a {@link LiveEditorSession}; the sessions
+ * share one {@link LiveReview} and review one editor at a time.
+ *
+ * All methods must be called from the UI thread, except {@link #start()}
+ * and {@link #stop()}.
+ */
+public class LiveAnalysisManager implements IWindowListener, IPartListener2 {
+
+    /** Lets one live review run at a time. */
+    static final ISchedulingRule ONE_AT_A_TIME = new ISchedulingRule() {
+        public boolean contains(ISchedulingRule rule) {
+            return rule == this;
+        }
+
+        public boolean isConflicting(ISchedulingRule rule) {
+            return rule == this;
+        }
+    };
+
+    private final LiveReview review = new LiveReview();
+    private final Map<IWorkbenchPartReference, LiveEditorSession> sessions = new HashMap<IWorkbenchPartReference, LiveEditorSession>();
+
+    /**
+     * Start following the editors of every workbench window.
+     */
+    public void start() {
+        if (!PlatformUI.isWorkbenchRunning()) {
+            return;
+        }
+        final IWorkbench workbench = PlatformUI.getWorkbench();
+        workbench.getDisplay().asyncExec(new Runnable() {
+            public void run() {
+                workbench.addWindowListener(LiveAnalysisManager.this);
+                for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+                    windowOpened(window);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop following the editors and remove the annotations shown so far.
+     */
+    public void stop() {
+        if (!PlatformUI.isWorkbenchRunning()) {
+            return;
+        }
+        final IWorkbench workbench = PlatformUI.getWorkbench();
+        workbench.getDisplay().asyncExec(new Runnable() {
+            public void run() {
+                workbench.removeWindowListener(LiveAnalysisManager.this);
+                for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+                    window.getPartService().removePartListener(LiveAnalysisManager.this);
+                }
+                for (LiveEditorSession session : sessions.values()) {
+                    session.dispose();
+                }
+                sessions.clear();
+            }
+        });
+    }
+
+    LiveReview getReview() {
+        return review;
+    }
+
+    private void attach(IWorkbenchPartReference partRef) {
+        if (sessions.containsKey(partRef)) {
+            return;
+        }
+        IWorkbenchPart part = partRef.getPart(false);
+        if (part instanceof ITextEditor) {
+            LiveEditorSession session = LiveEditorSession.attach(this, (ITextEditor) part);
+            if (session != null) {
+                sessions.put(partRef, session);
+            }
+        }
+    }
+
+    private void detach(IWorkbenchPartReference partRef) {
+        LiveEditorSession session = sessions.remove(partRef);
+        if (session != null) {
+            session.dispose();
+        }
+    }
+
+    /**
+     * @see org.eclipse.ui.IWindowListener#windowOpened(org.eclipse.ui.IWorkbenchWindow)
+     */
+    public void windowOpened(IWorkbenchWindow window) {
+        window.getPartService().addPartListener(this);
+        for (IWorkbenchPage page : window.getPages()) {
+            for (IEditorReference editorRef : page.getEditorReferences()) {
+                attach(editorRef);
+            }
+        }
+    }
+
+    /**
+     * @see org.eclipse.ui.IWindowListener#windowClosed(org.eclipse.ui.IWorkbenchWindow)
+     */
+    public void windowClosed(IWorkbenchWindow window) {
+        window.getPartService().removePartListener(this);
+    }
+
+    public void windowActivated(IWorkbenchWindow window) {
+    }
+
+    public void windowDeactivated(IWorkbenchWindow window) {
+    }
+
+    /**
+     * @see org.eclipse.ui.IPartListener2#partOpened(org.eclipse.ui.IWorkbenchPartReference)
+     */
+    public void partOpened(IWorkbenchPartReference partRef) {
+        attach(partRef);
+    }
+
+    /**
+     * @see org.eclipse.ui.IPartListener2#partActivated(org.eclipse.ui.IWorkbenchPartReference)
+     */
+    public void partActivated(IWorkbenchPartReference partRef) {
+        // editors restored at startup are only created once activated
+        attach(partRef);
+    }
+
+    /**
+     * @see org.eclipse.ui.IPartListener2#partClosed(org.eclipse.ui.IWorkbenchPartReference)
+     */
+    public void partClosed(IWorkbenchPartReference partRef) {
+        detach(partRef);
+    }
+
+    /**
+     * @see org.eclipse.ui.IPartListener2#partInputChanged(org.eclipse.ui.IWorkbenchPartReference)
+     */
+    public void partInputChanged(IWorkbenchPartReference partRef) {
+        detach(partRef);
+        attach(partRef);
+    }
+
+    public void partBroughtToTop(IWorkbenchPartReference partRef) {
+    }
+
+    public void partDeactivated(IWorkbenchPartReference partRef) {
+    }
+
+    public void partHidden(IWorkbenchPartReference partRef) {
+    }
+
+    public void partVisible(IWorkbenchPartReference partRef) {
+    }
+}
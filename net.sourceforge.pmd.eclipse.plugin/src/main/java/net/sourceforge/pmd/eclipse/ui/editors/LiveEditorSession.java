@@ -0,0 +1,198 @@
+package net.sourceforge.pmd.eclipse.ui.editors;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.eclipse.runtime.cmd.LiveReview;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelExtension;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.texteditor.IDocumentProvider;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+/**
+ * Checks the text of one editor after each typing pause and shows the
+ * violations as annotations, replacing those of the previous check.
+ *
+ * A keystroke cancels the check in progress, whose result would be stale
+ * anyway. A result is only shown if the text did not change since it was
+ * taken. A file whose checks exceed their budget is given longer pauses,
+ * so that checking never takes more than a third of the time.
+ */
+final class LiveEditorSession implements IDocumentListener {
+
+    /** The annotation type of live violations, declared in plugin.xml. */
+    static final String ANNOTATION_TYPE = "net.sourceforge.pmd.eclipse.plugin.liveViolation";
+
+    private static final long TYPING_PAUSE_MILLIS = 500;
+
+    private final LiveAnalysisManager manager;
+    private final IFile file;
+    private final IDocument document;
+    private final IAnnotationModel annotationModel;
+    private final Display display;
+    private final Job job;
+
+    // accessed from the UI thread only
+    private int version;
+    private Annotation[] annotations = new Annotation[0];
+    private boolean disposed;
+
+    private volatile long pauseMillis = TYPING_PAUSE_MILLIS;
+
+    private LiveEditorSession(LiveAnalysisManager manager, IFile file, IDocument document,
+            IAnnotationModel annotationModel, Display display) {
+        this.manager = manager;
+        this.file = file;
+        this.document = document;
+        this.annotationModel = annotationModel;
+        this.display = display;
+        job = new Job("PMD live check of " + file.getName()) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                check(monitor);
+                return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.setPriority(Job.SHORT);
+        job.setRule(LiveAnalysisManager.ONE_AT_A_TIME);
+    }
+
+    /**
+     * @return a session following the editor, or null if the editor does not
+     *         show a workspace file
+     */
+    static LiveEditorSession attach(LiveAnalysisManager manager, ITextEditor editor) {
+        IEditorInput input = editor.getEditorInput();
+        IFile file = input == null ? null : (IFile) input.getAdapter(IFile.class);
+        IDocumentProvider provider = editor.getDocumentProvider();
+        if (file == null || provider == null) {
+            return null;
+        }
+        IDocument document = provider.getDocument(input);
+        IAnnotationModel annotationModel = provider.getAnnotationModel(input);
+        if (document == null || annotationModel == null) {
+            return null;
+        }
+
+        LiveEditorSession session = new LiveEditorSession(manager, file, document, annotationModel, editor.getSite()
+                .getShell().getDisplay());
+        document.addDocumentListener(session);
+        session.job.schedule(session.pauseMillis);
+        return session;
+    }
+
+    /**
+     * Stop following the editor and remove the annotations.
+     */
+    void dispose() {
+        disposed = true;
+        document.removeDocumentListener(this);
+        job.cancel();
+        showAnnotations(new HashMap<Annotation, Position>());
+    }
+
+    /**
+     * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+     */
+    public void documentAboutToBeChanged(DocumentEvent event) {
+    }
+
+    /**
+     * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+     */
+    public void documentChanged(DocumentEvent event) {
+        version++;
+        job.cancel();
+        job.schedule(pauseMillis);
+    }
+
+    private void check(IProgressMonitor monitor) {
+        final String[] text = new String[1];
+        final int[] checkedVersion = new int[1];
+        if (display.isDisposed()) {
+            return;
+        }
+        display.syncExec(new Runnable() {
+            public void run() {
+                if (!disposed) {
+                    text[0] = document.get();
+                    checkedVersion[0] = version;
+                }
+            }
+        });
+        if (text[0] == null || monitor.isCanceled()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        final List<RuleViolation> violations = manager.getReview().review(file, text[0],
+                LiveReview.DEFAULT_BUDGET_MILLIS, monitor);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        pauseMillis = Math.max(TYPING_PAUSE_MILLIS, 2 * elapsedMillis);
+        if (violations == null) {
+            return;
+        }
+
+        display.asyncExec(new Runnable() {
+            public void run() {
+                if (!disposed && version == checkedVersion[0]) {
+                    showAnnotations(annotationsFor(violations));
+                }
+            }
+        });
+    }
+
+    private Map<Annotation, Position> annotationsFor(List<RuleViolation> violations) {
+        Map<Annotation, Position> positions = new HashMap<Annotation, Position>();
+        for (RuleViolation violation : violations) {
+            try {
+                int line = Math.max(0, violation.getBeginLine() - 1);
+                int offset = document.getLineOffset(line);
+                int end = offset + document.getLineLength(line);
+                String delimiter = document.getLineDelimiter(line);
+                if (delimiter != null) {
+                    end -= delimiter.length();
+                }
+                while (offset < end && Character.isWhitespace(document.getChar(offset))) {
+                    offset++;
+                }
+                String message = violation.getRule().getName() + ": " + violation.getDescription();
+                positions.put(new Annotation(ANNOTATION_TYPE, false, message), new Position(offset, end - offset));
+            } catch (BadLocationException e) {
+                // the violation lies beyond the text; skip it
+            }
+        }
+        return positions;
+    }
+
+    private void showAnnotations(Map<Annotation, Position> positions) {
+        if (annotationModel instanceof IAnnotationModelExtension) {
+            ((IAnnotationModelExtension) annotationModel).replaceAnnotations(annotations, positions);
+        } else {
+            for (Annotation annotation : annotations) {
+                annotationModel.removeAnnotation(annotation);
+            }
+            for (Map.Entry<Annotation, Position> entry : positions.entrySet()) {
+                annotationModel.addAnnotation(entry.getKey(), entry.getValue());
+            }
+        }
+        annotations = positions.keySet().toArray(new Annotation[positions.size()]);
+    }
+}
@@ -40,6 +40,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import net.sourceforge.pmd.RulePriority;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
+
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
 
@@ -49,6 +52,11 @@ import org.eclipse.core.resources.IResource;
  * implemented in classes to construct the model. The standard PMD-Model
  * contains: the Root -> Project(s) -> Package(s) -> File(s)
  *
+ * Projects, Packages and Files create their children when these are first
+ * asked for, and count their violations with a single marker search, so
+ * that a collapsed element costs neither Java model walks nor Records for
+ * its markers.
+ *
  * @author SebastianRaffel ( 16.05.2005 ), Philippe Herlin, Sven Jacob
  *
  */
@@ -60,6 +68,9 @@ public abstract class AbstractPMDRecord {
     public static final int TYPE_MARKER = 16;
 
     public static final AbstractPMDRecord[] EMPTY_RECORDS = new AbstractPMDRecord[0];
+
+    private volatile int[] counts;
+
     /**
      * @return the Name of the Element
      */
@@ -149,13 +160,86 @@ public abstract class AbstractPMDRecord {
     public abstract int getNumberOfMethods();
 
     /**
-     * Creates the children Elements. This method should be called in every
-     * Constructor to create a Model recursively.
+     * Creates the children Elements. Called when the children are first
+     * needed, so that the Model is built as far as it is shown.
      *
      * @return an Array of child-Records for the Element.
      */
     protected abstract AbstractPMDRecord[] createChildren();
 
+    /**
+     * Forgets the counted violations of this Element and its parents, after
+     * the markers below it changed.
+     */
+    protected void forgetCounts() {
+        counts = null;
+
+        final AbstractPMDRecord parent = getParent();
+        if (parent != null && parent != this) {
+            parent.forgetCounts();
+        }
+    }
+
+    /**
+     * Counts the violations of this Element by priority. The markers are
+     * searched once, and counted again after {@link #forgetCounts()}.
+     *
+     * @return the number of violations of each priority, indexed by
+     *         priority, and the number of all violations at index 0
+     */
+    protected final int[] countViolations() {
+        int[] counted = counts;
+        if (counted == null) {
+            counted = countByPriority(findMarkersToCount());
+            counts = counted;
+        }
+        return counted;
+    }
+
+    /**
+     * Finds the markers counted by {@link #countViolations()}. Elements
+     * that create their children lazily overwrite this to search their
+     * Resource instead of their children.
+     *
+     * @return an Array of Markers, never null
+     */
+    protected IMarker[] findMarkersToCount() {
+        final IMarker[] markers = findMarkers();
+        return markers == null ? MarkerUtil.EMPTY_MARKERS : markers;
+    }
+
+    /**
+     * Counts the given markers by priority.
+     *
+     * @param markers the markers to count
+     * @return the number of markers of each priority, indexed by priority,
+     *         and the number of all markers at index 0
+     */
+    protected static int[] countByPriority(IMarker[] markers) {
+        final int[] counts = new int[RulePriority.LOW.getPriority() + 1];
+        counts[0] = markers.length;
+
+        for (IMarker marker : markers) {
+            final int priority = MarkerUtil.rulePriorityFor(marker, 0);
+            if (priority > 0 && priority < counts.length) {
+                counts[priority]++;
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Gets a count from an Array made by {@link #countByPriority(IMarker[])}.
+     *
+     * @param counts the counted markers
+     * @param prio the priority
+     * @return the number of markers of the given priority
+     */
+    protected static int countOf(int[] counts, int prio) {
+        return prio > 0 && prio < counts.length ? counts[prio] : 0;
+    }
+
     /**
      * Checks, if this Element has Error-Markers in it. Calls the underlying
      * children (Recursion) to also check for Markers. The Recursion needs to be
@@ -249,8 +333,9 @@ public abstract class AbstractPMDRecord {
 
             // if it is not the current children, but the Type are different
             // it could be one of the grand children
-            // check this childs children recursively
-            else if (thisChild.getResourceType() != resource.getType()) {
+            // check this childs children recursively, if it may contain the Resource,
+            // so that the children of other Elements are not created
+            else if (thisChild.getResourceType() != resource.getType() && mayContain(thisChild, resource)) {
                 final AbstractPMDRecord grandChild = thisChild.findResource(resource);
                 if (grandChild != null) {
                     record = grandChild;
@@ -261,6 +346,11 @@ public abstract class AbstractPMDRecord {
         return record;
     }
 
+    private static boolean mayContain(AbstractPMDRecord record, IResource resource) {
+        final IResource container = record.getResource();
+        return container == null || container.getFullPath().isPrefixOf(resource.getFullPath());
+    }
+
     /**
      * Finds a Resource with a given Name and Type. Checks children recursively
      * (needs to be stopped by overwriting).
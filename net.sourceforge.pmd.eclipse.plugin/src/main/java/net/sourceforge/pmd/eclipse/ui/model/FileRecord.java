@@ -36,9 +36,6 @@
 
 package net.sourceforge.pmd.eclipse.ui.model;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -52,8 +49,9 @@ import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
 import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
-import net.sourceforge.pmd.eclipse.util.IOUtil;
+import net.sourceforge.pmd.eclipse.util.SourceBuffer;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
@@ -93,7 +91,6 @@ public class FileRecord extends AbstractPMDRecord {
         this.parent = null;
         this.numberOfLOC = 0;
         this.numberOfMethods = 0;
-        this.children = createChildren();
     }
     
     /**
@@ -113,7 +110,6 @@ public class FileRecord extends AbstractPMDRecord {
         this.parent = record;
         this.numberOfLOC = 0;
         this.numberOfMethods = 0;
-        this.children = createChildren();
     }
     
     /**
@@ -133,7 +129,6 @@ public class FileRecord extends AbstractPMDRecord {
         this.parent = record;
         this.numberOfLOC = 0;
         this.numberOfMethods = 0;
-        this.children = createChildren();
     }
 
     public long getTimestamp() {
@@ -152,7 +147,10 @@ public class FileRecord extends AbstractPMDRecord {
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#getChildren()
      */
     @Override
-    public AbstractPMDRecord[] getChildren() {
+    public synchronized AbstractPMDRecord[] getChildren() {
+        if (children == null) {
+            children = createChildren();
+        }
         return children;  // NOPMD by Sven on 13.11.06 11:57
     }
 
@@ -165,11 +163,13 @@ public class FileRecord extends AbstractPMDRecord {
     }
 
     /**
-     * Updates all children.
+     * Updates all children. They are created again from the markers when
+     * next asked for.
      *
      */
-    public void updateChildren() {
-        children = createChildren();
+    public synchronized void updateChildren() {
+        children = null;
+        forgetCounts();
     }
 
     /**
@@ -219,8 +219,7 @@ public class FileRecord extends AbstractPMDRecord {
      */
     @Override
     public boolean hasMarkers() {
-        final IMarker[] markers = findMarkers();
-        return markers != null && markers.length > 0;
+        return countViolations()[0] > 0;
     }
 
     /**
@@ -365,26 +364,22 @@ public class FileRecord extends AbstractPMDRecord {
      * @return a String which is the Files Content
      */
     protected String resourceToString(IResource resource) {
-        final StringBuilder fileContents = new StringBuilder();
-        BufferedReader bReader = null;
-        try {
-            // we create a FileReader
-            bReader = new BufferedReader(new FileReader(resource.getRawLocation().toFile()));
+        IFile file = (IFile) resource.getAdapter(IFile.class);
+        if (file == null) {
+            return "";
+        }
 
-            // ... and read the File line by line
-            while (bReader.ready()) {
-                fileContents.append(bReader.readLine()).append('\n');
-            }
-        } catch (FileNotFoundException fnfe) {
+        try {
+            // read and decode the file in one go, with its own charset
+            return SourceBuffer.read(file).asString();
+        } catch (CoreException ce) {
             PMDPlugin.getDefault().logError(
-                    StringKeys.ERROR_FILE_NOT_FOUND + resource.toString() + " in " + this.toString(), fnfe);
+                    StringKeys.ERROR_FILE_NOT_FOUND + resource.toString() + " in " + this.toString(), ce);
         } catch (IOException ioe) {
             PMDPlugin.getDefault().logError(StringKeys.ERROR_IO_EXCEPTION + this.toString(), ioe);
-        } finally {
-        	IOUtil.closeQuietly(bReader);
         }
 
-        return fileContents.toString();
+        return "";
     }
 
     /**
@@ -470,11 +465,6 @@ public class FileRecord extends AbstractPMDRecord {
      */
     @Override
     public int getNumberOfViolationsToPriority(int prio, boolean invertMarkerAndFileRecords) {
-        int number = 0;
-
-        for (AbstractPMDRecord element : children) {
-            number += element.getNumberOfViolationsToPriority(prio, false);
-        }
-        return number;
+        return countOf(countViolations(), prio);
     }
 }
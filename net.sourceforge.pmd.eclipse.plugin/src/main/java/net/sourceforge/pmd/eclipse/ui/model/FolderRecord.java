@@ -39,10 +39,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 
 public class FolderRecord extends AbstractPMDRecord {
@@ -63,7 +66,6 @@ public class FolderRecord extends AbstractPMDRecord {
 
         this.folder = folder;
         this.parent = record;
-        this.children = createChildren();
     }
 
     /**
@@ -78,10 +80,20 @@ public class FolderRecord extends AbstractPMDRecord {
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#getChildren()
      */
     @Override
-    public AbstractPMDRecord[] getChildren() {
+    public synchronized AbstractPMDRecord[] getChildren() {
+        if (children == null) {
+            children = createChildren();
+        }
         return children; // NOPMD by Herlin on 09/10/06 00:22
     }
 
+    /**
+     * @return the children created so far, without creating them
+     */
+    private synchronized AbstractPMDRecord[] createdChildren() {
+        return children == null ? EMPTY_RECORDS : children;
+    }
+
     /**
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#getResource()
      */
@@ -127,10 +139,20 @@ public class FolderRecord extends AbstractPMDRecord {
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#addResource(org.eclipse.core.resources.IResource)
      */
     @Override
-    public AbstractPMDRecord addResource(IResource resource) {
+    public synchronized AbstractPMDRecord addResource(IResource resource) {
         //final ICompilationUnit unit = this.packageFragment.getCompilationUnit(resource.getName());
         FileRecord file;
 
+        // children created after the File appeared already contain it
+        if (children == null) {
+            for (AbstractPMDRecord created : getChildren()) {
+                if (created.getResource().equals(resource)) {
+                    forgetCounts();
+                    return created;
+                }
+            }
+        }
+
         // TODO This should be more question of whether PMD is interested in the File!
         // we want the File to be a java-File
 //        if (unit != null) {
@@ -143,6 +165,7 @@ public class FolderRecord extends AbstractPMDRecord {
             files.toArray(this.children);
 //        }
 
+        forgetCounts();
         return file;
     }
 
@@ -150,7 +173,7 @@ public class FolderRecord extends AbstractPMDRecord {
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#removeResource(org.eclipse.core.resources.IResource)
      */
     @Override
-    public AbstractPMDRecord removeResource(IResource resource) {
+    public synchronized AbstractPMDRecord removeResource(IResource resource) {
         final List<AbstractPMDRecord> files = getChildrenAsList();
         AbstractPMDRecord removedFile = null;
         boolean removed = false;
@@ -171,6 +194,7 @@ public class FolderRecord extends AbstractPMDRecord {
                 files.toArray(this.children);
                 removed = true;
                 removedFile = file;
+                forgetCounts();
             }
         }
 
@@ -214,12 +238,33 @@ public class FolderRecord extends AbstractPMDRecord {
      */
     @Override
     public int getNumberOfViolationsToPriority(int prio, boolean invertMarkerAndFileRecords) {
-        int number = 0;
-        for (AbstractPMDRecord element : children) {
-            number += element.getNumberOfViolationsToPriority(prio, false);
-        }
+        return countOf(countViolations(), prio);
+    }
 
-        return number;
+    /**
+     * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#hasMarkers()
+     */
+    @Override
+    public boolean hasMarkers() {
+        return countViolations()[0] > 0;
+    }
+
+    /**
+     * Searches the Folder and its members, so that the Files need not be created.
+     *
+     * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#findMarkersToCount()
+     */
+    @Override
+    protected IMarker[] findMarkersToCount() {
+        final IResource resource = getResource();
+        if (resource != null && resource.isAccessible()) {
+            try {
+                return MarkerUtil.findMarkers(resource, PMDRuntimeConstants.RULE_MARKER_TYPES, IResource.DEPTH_INFINITE);
+            } catch (CoreException ce) {
+                PMDPlugin.getDefault().logError(StringKeys.ERROR_FIND_MARKER + this.toString(), ce);
+            }
+        }
+        return MarkerUtil.EMPTY_MARKERS;
     }
 
     /* (non-Javadoc)
@@ -227,8 +272,9 @@ public class FolderRecord extends AbstractPMDRecord {
      */
     @Override
     public int getLOC() {
+        // the lines are counted when the Package is expanded, after the Files are created
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : createdChildren()) {
             number += element.getLOC();
         }
 
@@ -241,7 +287,7 @@ public class FolderRecord extends AbstractPMDRecord {
     @Override
     public int getNumberOfMethods() {
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : createdChildren()) {
             number += element.getNumberOfMethods();
         }
 
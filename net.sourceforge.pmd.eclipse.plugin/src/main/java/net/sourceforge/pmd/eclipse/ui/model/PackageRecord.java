@@ -40,8 +40,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 
+import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jdt.core.ICompilationUnit;
@@ -49,7 +52,7 @@ import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.JavaModelException;
 
 /**
- * AbstractPMDRecord for a Package creates Files when instantiated
+ * AbstractPMDRecord for a Package creates Files when first asked for them
  *
  * @author SebastianRaffel ( 16.05.2005 ), Philippe Herlin, Sven Jacob
  *
@@ -78,7 +81,6 @@ public class PackageRecord extends AbstractPMDRecord {
 
         this.packageFragment = fragment;
         this.parent = record;
-        this.children = createChildren();
     }
 
     /**
@@ -93,10 +95,20 @@ public class PackageRecord extends AbstractPMDRecord {
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#getChildren()
      */
     @Override
-    public AbstractPMDRecord[] getChildren() {
+    public synchronized AbstractPMDRecord[] getChildren() {
+        if (children == null) {
+            children = createChildren();
+        }
         return children; // NOPMD by Herlin on 09/10/06 00:22
     }
 
+    /**
+     * @return the children created so far, without creating them
+     */
+    private synchronized AbstractPMDRecord[] createdChildren() {
+        return children == null ? EMPTY_RECORDS : children;
+    }
+
     /**
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#getResource()
      */
@@ -150,10 +162,20 @@ public class PackageRecord extends AbstractPMDRecord {
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#addResource(org.eclipse.core.resources.IResource)
      */
     @Override
-    public AbstractPMDRecord addResource(IResource resource) {
+    public synchronized AbstractPMDRecord addResource(IResource resource) {
         //final ICompilationUnit unit = this.packageFragment.getCompilationUnit(resource.getName());
         FileRecord file;
 
+        // children created after the File appeared already contain it
+        if (children == null) {
+            for (AbstractPMDRecord created : getChildren()) {
+                if (created.getResource().equals(resource)) {
+                    forgetCounts();
+                    return created;
+                }
+            }
+        }
+
         // TODO This should be more question of whether PMD is interested in the File!
         // we want the File to be a java-File
 //        if (unit != null) {
@@ -166,6 +188,7 @@ public class PackageRecord extends AbstractPMDRecord {
             files.toArray(this.children);
 //        }
 
+        forgetCounts();
         return file;
     }
 
@@ -173,7 +196,7 @@ public class PackageRecord extends AbstractPMDRecord {
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#removeResource(org.eclipse.core.resources.IResource)
      */
     @Override
-    public AbstractPMDRecord removeResource(IResource resource) {
+    public synchronized AbstractPMDRecord removeResource(IResource resource) {
         final List<AbstractPMDRecord> files = getChildrenAsList();
         AbstractPMDRecord removedFile = null;
         boolean removed = false;
@@ -194,6 +217,7 @@ public class PackageRecord extends AbstractPMDRecord {
                 files.toArray(this.children);
                 removed = true;
                 removedFile = file;
+                forgetCounts();
             }
         }
 
@@ -244,12 +268,33 @@ public class PackageRecord extends AbstractPMDRecord {
      */
     @Override
     public int getNumberOfViolationsToPriority(int prio, boolean invertMarkerAndFileRecords) {
-        int number = 0;
-        for (AbstractPMDRecord element : children) {
-            number += element.getNumberOfViolationsToPriority(prio, false);
-        }
+        return countOf(countViolations(), prio);
+    }
 
-        return number;
+    /**
+     * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#hasMarkers()
+     */
+    @Override
+    public boolean hasMarkers() {
+        return countViolations()[0] > 0;
+    }
+
+    /**
+     * Searches the folder of the Package, without its sub-packages, so that the Files need not be created.
+     *
+     * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#findMarkersToCount()
+     */
+    @Override
+    protected IMarker[] findMarkersToCount() {
+        final IResource resource = getResource();
+        if (resource != null && resource.isAccessible()) {
+            try {
+                return MarkerUtil.findMarkers(resource, PMDRuntimeConstants.RULE_MARKER_TYPES, IResource.DEPTH_ONE);
+            } catch (CoreException ce) {
+                PMDPlugin.getDefault().logError(StringKeys.ERROR_FIND_MARKER + this.toString(), ce);
+            }
+        }
+        return MarkerUtil.EMPTY_MARKERS;
     }
 
     /* (non-Javadoc)
@@ -257,8 +302,9 @@ public class PackageRecord extends AbstractPMDRecord {
      */
     @Override
     public int getLOC() {
+        // the lines are counted when the Package is expanded, after the Files are created
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : createdChildren()) {
             number += element.getLOC();
         }
 
@@ -271,7 +317,7 @@ public class PackageRecord extends AbstractPMDRecord {
     @Override
     public int getNumberOfMethods() {
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : createdChildren()) {
             number += element.getNumberOfMethods();
         }
 
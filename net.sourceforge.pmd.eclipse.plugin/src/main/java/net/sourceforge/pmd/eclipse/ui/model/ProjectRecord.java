@@ -41,10 +41,13 @@ import java.util.List;
 import java.util.Set;
 
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceVisitor;
@@ -56,7 +59,7 @@ import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 
 /**
- * AbstractPMDRecord for Projects creates Packages when instantiated
+ * AbstractPMDRecord for Projects creates Packages when first asked for them
  *
  * @author SebastianRaffel ( 16.05.2005 ), Philippe Herlin, Sven Jacob
  *
@@ -95,13 +98,6 @@ public class ProjectRecord extends AbstractPMDRecord {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
-
-        if (project.isAccessible()) {
-            children = createChildren();
-        } else {
-            children = EMPTY_RECORDS;
-        }
-
     }
 
     /**
@@ -116,10 +112,20 @@ public class ProjectRecord extends AbstractPMDRecord {
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#getChildren()
      */
     @Override
-    public AbstractPMDRecord[] getChildren() {
+    public synchronized AbstractPMDRecord[] getChildren() {
+        if (children == null) {
+            children = project.isAccessible() ? createChildren() : EMPTY_RECORDS;
+        }
         return children; // NOPMD by Herlin on 09/10/06 00:43
     }
 
+    /**
+     * @return the children created so far, without creating them
+     */
+    private synchronized AbstractPMDRecord[] createdChildren() {
+        return children == null ? EMPTY_RECORDS : children;
+    }
+
     /**
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#getResource()
      */
@@ -277,7 +283,7 @@ public class ProjectRecord extends AbstractPMDRecord {
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#addResource(org.eclipse.core.resources.IResource)
      */
     @Override
-    public AbstractPMDRecord addResource(IResource resource) {
+    public synchronized AbstractPMDRecord addResource(IResource resource) {
         AbstractPMDRecord added = null;
 
         // we only care about Files
@@ -288,6 +294,7 @@ public class ProjectRecord extends AbstractPMDRecord {
         	else {
         		added = addToOtherProject(resource);
         	}
+        	forgetCounts();
         }
 
         return added;
@@ -297,7 +304,7 @@ public class ProjectRecord extends AbstractPMDRecord {
      * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#removeResource(org.eclipse.core.resources.IResource)
      */
     @Override
-    public AbstractPMDRecord removeResource(IResource resource) {
+    public synchronized AbstractPMDRecord removeResource(IResource resource) {
         AbstractPMDRecord removed = null;
 
         // we only care about Files
@@ -308,6 +315,7 @@ public class ProjectRecord extends AbstractPMDRecord {
         	else {
         		removed = removeFromOtherProject(resource);
         	}
+        	forgetCounts();
         }
 
         return removed;
@@ -329,6 +337,7 @@ public class ProjectRecord extends AbstractPMDRecord {
         PackageRecord packageRec;
 
         // like above we compare Fragments to find the right Package
+        getChildren();
         for (int k = 0; k < children.length && removedResource == null; k++) {
             packageRec = (PackageRecord) children[k];
             if (packageRec.getFragment().equals(fragment)) {
@@ -365,6 +374,7 @@ public class ProjectRecord extends AbstractPMDRecord {
         FolderRecord folderRec;
 
         // like above we compare Fragments to find the right Package
+        getChildren();
         for (int k = 0; k < children.length && removedResource == null; k++) {
         	folderRec = (FolderRecord) children[k];
             if (folderRec.getFolder().equals(folder)) {
@@ -406,6 +416,7 @@ public class ProjectRecord extends AbstractPMDRecord {
 
         // we search int the children Packages for the File's Package
         // by comparing their Fragments
+        getChildren();
         for (int k = 0; k < children.length && addedResource == null; k++) {
     		final PackageRecord packageRec = (PackageRecord) children[k];
 			if (packageRec.getFragment().equals(fragment)) {
@@ -438,6 +449,7 @@ public class ProjectRecord extends AbstractPMDRecord {
 
         // we search int the children Packages for the File's Package
         // by comparing their Fragments
+        getChildren();
         for (int k = 0; k < children.length && addedResource == null; k++) {
     		final FolderRecord folderRec = (FolderRecord) children[k];
 			if (folderRec.getFolder().equals(folder)) {
@@ -467,12 +479,32 @@ public class ProjectRecord extends AbstractPMDRecord {
      */
     @Override
     public int getNumberOfViolationsToPriority(int prio, boolean invertMarkerAndFileRecords) {
-        int number = 0;
-        for (AbstractPMDRecord element : children) {
-            number += element.getNumberOfViolationsToPriority(prio, invertMarkerAndFileRecords);
-        }
+        return countOf(countViolations(), prio);
+    }
 
-        return number;
+    /**
+     * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#hasMarkers()
+     */
+    @Override
+    public boolean hasMarkers() {
+        return countViolations()[0] > 0;
+    }
+
+    /**
+     * Searches the whole Project, so that its Packages need not be created.
+     *
+     * @see net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord#findMarkersToCount()
+     */
+    @Override
+    protected IMarker[] findMarkersToCount() {
+        if (project.isAccessible()) {
+            try {
+                return MarkerUtil.findMarkers(project, PMDRuntimeConstants.RULE_MARKER_TYPES, IResource.DEPTH_INFINITE);
+            } catch (CoreException ce) {
+                PMDPlugin.getDefault().logError(StringKeys.ERROR_FIND_MARKER + this.toString(), ce);
+            }
+        }
+        return MarkerUtil.EMPTY_MARKERS;
     }
 
     /*
@@ -483,7 +515,7 @@ public class ProjectRecord extends AbstractPMDRecord {
     @Override
     public int getLOC() {
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : createdChildren()) {
             number += element.getLOC();
         }
 
@@ -498,7 +530,7 @@ public class ProjectRecord extends AbstractPMDRecord {
     @Override
     public int getNumberOfMethods() {
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : createdChildren()) {
             number += element.getNumberOfMethods();
         }
 
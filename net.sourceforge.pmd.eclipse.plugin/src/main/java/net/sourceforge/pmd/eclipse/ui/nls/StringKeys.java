@@ -70,6 +70,14 @@ public class StringKeys {
     public static final String PREF_GENERAL_LABEL_USE_PROJECT_BUILD_PATH = "preference.pmd.label.use_project_build_path";
     public static final String PREF_GENERAL_LABEL_MAX_VIOLATIONS_PFPR = "preference.pmd.label.max_violations_pfpr";
     public static final String PREF_GENERAL_TOOLTIP_MAX_VIOLATIONS_PFPR = "preference.pmd.tooltip.max_violations_pfpr";
+    public static final String PREF_GENERAL_LABEL_REVIEW_WORKER_COUNT = "preference.pmd.label.review_worker_count";
+    public static final String PREF_GENERAL_TOOLTIP_REVIEW_WORKER_COUNT = "preference.pmd.tooltip.review_worker_count";
+    public static final String PREF_GENERAL_LABEL_REVIEW_LATENCY_BUDGET = "preference.pmd.label.review_latency_budget";
+    public static final String PREF_GENERAL_TOOLTIP_REVIEW_LATENCY_BUDGET = "preference.pmd.tooltip.review_latency_budget";
+    public static final String PREF_GENERAL_LABEL_PROFILING_ENABLED = "preference.pmd.label.profiling_enabled";
+    public static final String PREF_GENERAL_TOOLTIP_PROFILING_ENABLED = "preference.pmd.tooltip.profiling_enabled";
+    public static final String PREF_GENERAL_LABEL_LIVE_ANALYSIS_ENABLED = "preference.pmd.label.live_analysis_enabled";
+    public static final String PREF_GENERAL_TOOLTIP_LIVE_ANALYSIS_ENABLED = "preference.pmd.tooltip.live_analysis_enabled";
     public static final String PREF_GENERAL_MESSAGE_INVALID_NUMERIC_VALUE ="preference.pmd.message.invalid_numeric_value";
     public static final String PREF_GENERAL_REVIEW_PMD_STYLE = "preference.pmd.label.review_pmd_style";
     public static final String PREF_GENERAL_GROUP_LOGGING = "preference.pmd.group.logging";
@@ -197,6 +205,7 @@ public class StringKeys {
     public static final String VIEW_OVERVIEW_COLUMN_VIO_TOTAL = "view.overview.column_vio_total";
     public static final String VIEW_OVERVIEW_COLUMN_VIO_KLOC = "view.overview.column_vio_loc";
     public static final String VIEW_OVERVIEW_COLUMN_VIO_METHOD = "view.overview.column_vio_method";
+    public static final String VIEW_OVERVIEW_PENDING = "view.overview.pending";
     public static final String VIEW_OVERVIEW_COLUMN_PROJECT = "view.overview.column_project";
     public static final String VIEW_DATAFLOW_DEFAULT_TEXT = "view.dataflow.default_text";
     public static final String VIEW_DATAFLOW_CHOOSE_METHOD = "view.dataflow.choose_method";
@@ -215,6 +224,36 @@ public class StringKeys {
     public static final String VIEW_DATAFLOW_TABLE_COLUMN_TYPE_TOOLTIP = "view.dataflow.table.column_type.tooltip";
     
     public static final String VIEW_AST_DEFAULT_TEXT = "view.ast.default_text";
+    public static final String VIEW_AST_STATUS_EVALUATING = "view.ast.status.evaluating";
+    public static final String VIEW_AST_STATUS_RESULTS = "view.ast.status.results";
+    
+    public static final String VIEW_PROFILE_COLUMN_NAME = "view.profile.column_name";
+    public static final String VIEW_PROFILE_COLUMN_COUNT = "view.profile.column_count";
+    public static final String VIEW_PROFILE_COLUMN_WALL = "view.profile.column_wall";
+    public static final String VIEW_PROFILE_COLUMN_CPU = "view.profile.column_cpu";
+    public static final String VIEW_PROFILE_COLUMN_ALLOCATED = "view.profile.column_allocated";
+    public static final String VIEW_PROFILE_COLUMN_AVERAGE = "view.profile.column_average";
+    public static final String VIEW_PROFILE_ACTION_RULES = "view.profile.action.rules";
+    public static final String VIEW_PROFILE_ACTION_FILES = "view.profile.action.files";
+    public static final String VIEW_PROFILE_ACTION_REFRESH = "view.profile.action.refresh";
+    public static final String VIEW_PROFILE_ACTION_EXPORT = "view.profile.action.export";
+    public static final String VIEW_PROFILE_ACTION_CLEAR = "view.profile.action.clear";
+    
+    public static final String VIEW_STATUS_COLUMN_METRIC = "view.status.column_metric";
+    public static final String VIEW_STATUS_COLUMN_VALUE = "view.status.column_value";
+    public static final String VIEW_STATUS_QUEUED_COMMANDS = "view.status.queued_commands";
+    public static final String VIEW_STATUS_RUNNING_COMMANDS = "view.status.running_commands";
+    public static final String VIEW_STATUS_COMMAND_LIMIT = "view.status.command_limit";
+    public static final String VIEW_STATUS_FILES_REVIEWED = "view.status.files_reviewed";
+    public static final String VIEW_STATUS_FILES_PER_SECOND = "view.status.files_per_second";
+    public static final String VIEW_STATUS_MARKERS_APPLIED = "view.status.markers_applied";
+    public static final String VIEW_STATUS_MARKER_APPLY_MEAN = "view.status.marker_apply_mean";
+    public static final String VIEW_STATUS_MARKER_APPLY_MAX = "view.status.marker_apply_max";
+    public static final String VIEW_STATUS_MARKER_RULE_HOLD_MEAN = "view.status.marker_rule_hold_mean";
+    public static final String VIEW_STATUS_MARKER_RULE_HOLD_MAX = "view.status.marker_rule_hold_max";
+    public static final String VIEW_STATUS_CACHE_HIT_RATE = "view.status.cache_hit_rate";
+    public static final String VIEW_STATUS_CLASS_LOADERS = "view.status.class_loaders";
+    public static final String VIEW_STATUS_ANALYSIS_ERRORS = "view.status.analysis_errors";
     
     public static final String VIEW_FILTER_PRIORITY = "view.filter.priority";
     public static final String VIEW_FILTER_PRIORITY_1 = "view.filter.priority.1";
@@ -76,6 +76,9 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
 	
     private static final String[] LOG_LEVELS = { "OFF", "FATAL", "ERROR", "WARN", "INFO", "DEBUG", "ALL" };
     private static final RGB SHAPE_COLOR = new RGB(255,255,255);
+    private static final int MAX_REVIEW_WORKER_COUNT = 32;
+    private static final int MAX_REVIEW_LATENCY_BUDGET = 600000;
+    private static final int REVIEW_LATENCY_BUDGET_INCREMENT = 500;
     
     private Text		additionalCommentText;
     private Label		sampleLabel;
@@ -84,6 +87,10 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
     private Button		checkCodeOnSave;
     private Button		useCustomPriorityNames;    
     private Spinner		maxViolationsPerFilePerRule;
+    private Spinner		reviewWorkerCount;
+    private Spinner		reviewLatencyBudget;
+    private Button		profilingEnabled;
+    private Button		liveAnalysisEnabled;
     private Button		reviewPmdStyleBox;
     private Text		logFileNameText;
     private Scale		logLevelScale;
@@ -153,8 +160,12 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
         showPerspectiveBox = buildShowPerspectiveBoxButton(group);
         useProjectBuildPath = buildUseProjectBuildPathButton(group);
         checkCodeOnSave = buildCheckCodeOnSaveButton(group);
+        liveAnalysisEnabled = buildLiveAnalysisEnabledButton(group);
         Label separator = new Label(group, SWT.SEPARATOR | SWT.SHADOW_IN | SWT.HORIZONTAL);
         maxViolationsPerFilePerRule = buildMaxViolationsPerFilePerRuleText(group);
+        reviewWorkerCount = buildReviewWorkerCountText(group);
+        reviewLatencyBudget = buildReviewLatencyBudgetText(group);
+        profilingEnabled = buildProfilingEnabledButton(group);
 
         GridData data = new GridData();
         data.horizontalAlignment = GridData.FILL;
@@ -176,6 +187,16 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
         data.grabExcessHorizontalSpace = true;
         maxViolationsPerFilePerRule.setLayoutData(data);
 
+        data = new GridData();
+        data.horizontalAlignment = GridData.FILL;
+        data.grabExcessHorizontalSpace = true;
+        reviewWorkerCount.setLayoutData(data);
+
+        data = new GridData();
+        data.horizontalAlignment = GridData.FILL;
+        data.grabExcessHorizontalSpace = true;
+        reviewLatencyBudget.setLayoutData(data);
+
         return group;
     }
   
@@ -581,6 +602,32 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
         button.setSelection(preferences.isCheckAfterSaveEnabled());
         return button;
     }
+
+    /**
+     * Build the check box for checking the open editors while typing
+     * @param viewGroup the parent composite
+     *
+     */
+    private Button buildLiveAnalysisEnabledButton(Composite viewGroup) {
+        Button button = new Button(viewGroup, SWT.CHECK);
+        button.setText(getMessage(StringKeys.PREF_GENERAL_LABEL_LIVE_ANALYSIS_ENABLED));
+        button.setToolTipText(getMessage(StringKeys.PREF_GENERAL_TOOLTIP_LIVE_ANALYSIS_ENABLED));
+        button.setSelection(preferences.isLiveAnalysisEnabled());
+        return button;
+    }
+
+    /**
+     * Build the check box for recording the time spent on each rule and file
+     * @param viewGroup the parent composite
+     *
+     */
+    private Button buildProfilingEnabledButton(Composite viewGroup) {
+        Button button = new Button(viewGroup, SWT.CHECK);
+        button.setText(getMessage(StringKeys.PREF_GENERAL_LABEL_PROFILING_ENABLED));
+        button.setToolTipText(getMessage(StringKeys.PREF_GENERAL_TOOLTIP_PROFILING_ENABLED));
+        button.setSelection(preferences.isProfilingEnabled());
+        return button;
+    }
     
     /**
      * Build the check box for showing the PMD perspective
@@ -626,6 +673,54 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
         return spinner;
     }
 
+    /**
+     * Build the spinner for the number of files reviewed in parallel
+     *
+     * @param parent
+     * @return
+     */
+    private Spinner buildReviewWorkerCountText(Composite parent) {
+
+    	Composite comp = new Composite(parent, 0);
+    	comp.setLayout(new GridLayout(2, false));
+
+        Label label = buildLabel(comp, StringKeys.PREF_GENERAL_LABEL_REVIEW_WORKER_COUNT);
+        label.setLayoutData( new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING, GridData.VERTICAL_ALIGN_CENTER, false, false, 1, 1));
+
+        final Spinner spinner = new Spinner(comp, SWT.BORDER);
+        spinner.setLayoutData( new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING, GridData.VERTICAL_ALIGN_CENTER, true, false, 1, 1));
+        spinner.setMinimum(1);
+        spinner.setMaximum(Math.max(MAX_REVIEW_WORKER_COUNT, IPreferences.REVIEW_WORKER_COUNT_DEFAULT));
+        spinner.setSelection(preferences.getReviewWorkerCount());
+        spinner.setToolTipText(getMessage(StringKeys.PREF_GENERAL_TOOLTIP_REVIEW_WORKER_COUNT));
+        return spinner;
+    }
+
+    /**
+     * Build the spinner for the time an automatic build may spend reviewing
+     *
+     * @param parent
+     * @return
+     */
+    private Spinner buildReviewLatencyBudgetText(Composite parent) {
+
+    	Composite comp = new Composite(parent, 0);
+    	comp.setLayout(new GridLayout(2, false));
+
+        Label label = buildLabel(comp, StringKeys.PREF_GENERAL_LABEL_REVIEW_LATENCY_BUDGET);
+        label.setLayoutData( new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING, GridData.VERTICAL_ALIGN_CENTER, false, false, 1, 1));
+
+        final Spinner spinner = new Spinner(comp, SWT.BORDER);
+        spinner.setLayoutData( new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING, GridData.VERTICAL_ALIGN_CENTER, true, false, 1, 1));
+        spinner.setMinimum(0);
+        spinner.setMaximum(MAX_REVIEW_LATENCY_BUDGET);
+        spinner.setIncrement(REVIEW_LATENCY_BUDGET_INCREMENT);
+        spinner.setPageIncrement(REVIEW_LATENCY_BUDGET_INCREMENT * 10);
+        spinner.setSelection(preferences.getReviewLatencyBudget());
+        spinner.setToolTipText(getMessage(StringKeys.PREF_GENERAL_TOOLTIP_REVIEW_LATENCY_BUDGET));
+        return spinner;
+    }
+
     /**
      * Build the check box for enabling PMD review style
      * @param viewGroup the parent composite
@@ -658,6 +753,8 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
 
         setSelection(showPerspectiveBox, 	IPreferences.PMD_PERSPECTIVE_ENABLED_DEFAULT);
         setSelection(checkCodeOnSave , 		IPreferences.PMD_CHECK_AFTER_SAVE_DEFAULT);        
+        setSelection(profilingEnabled, 		IPreferences.PROFILING_ENABLED_DEFAULT);
+        setSelection(liveAnalysisEnabled, 	IPreferences.LIVE_ANALYSIS_ENABLED_DEFAULT);
         setSelection(useCustomPriorityNames,IPreferences.PMD_USE_CUSTOM_PRIORITY_NAMES_DEFAULT);        
         setSelection(useProjectBuildPath, 	IPreferences.PROJECT_BUILD_PATH_ENABLED_DEFAULT);
         setSelection(reviewPmdStyleBox, 	IPreferences.REVIEW_PMD_STYLE_ENABLED_DEFAULT);
@@ -666,6 +763,14 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
             maxViolationsPerFilePerRule.setMinimum(IPreferences.MAX_VIOLATIONS_PFPR_DEFAULT);
         }
 
+        if (reviewWorkerCount != null) {
+            reviewWorkerCount.setSelection(IPreferences.REVIEW_WORKER_COUNT_DEFAULT);
+        }
+
+        if (reviewLatencyBudget != null) {
+            reviewLatencyBudget.setSelection(IPreferences.REVIEW_LATENCY_BUDGET_DEFAULT);
+        }
+
         setText(logFileNameText, IPreferences.LOG_FILENAME_DEFAULT);
 
         if (logLevelScale != null) {
@@ -775,6 +880,24 @@ System.out.println("updating icons");
             preferences.setMaxViolationsPerFilePerRule(Integer.valueOf(maxViolationsPerFilePerRule.getText()).intValue());
         }
 
+        if (reviewWorkerCount != null) {
+            preferences.setReviewWorkerCount(reviewWorkerCount.getSelection());
+        }
+
+        if (reviewLatencyBudget != null) {
+            preferences.setReviewLatencyBudget(reviewLatencyBudget.getSelection());
+        }
+
+        if (profilingEnabled != null) {
+            preferences.setProfilingEnabled(profilingEnabled.getSelection());
+        }
+
+        if (liveAnalysisEnabled != null) {
+            boolean live = liveAnalysisEnabled.getSelection();
+            preferences.setLiveAnalysisEnabled(live);
+            PMDPlugin.getDefault().liveAnalysisEnabled(live);
+        }
+
         if (reviewPmdStyleBox != null) {
             preferences.setReviewPmdStyleEnabled(reviewPmdStyleBox.getSelection());
         }
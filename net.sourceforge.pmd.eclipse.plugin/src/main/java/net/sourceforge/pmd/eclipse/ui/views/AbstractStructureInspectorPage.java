@@ -1,26 +1,20 @@
 package net.sourceforge.pmd.eclipse.ui.views;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import net.sourceforge.pmd.PMDConfiguration;
-import net.sourceforge.pmd.PMDException;
-import net.sourceforge.pmd.RuleContext;
-import net.sourceforge.pmd.RuleSet;
-import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
-import net.sourceforge.pmd.SourceCodeProcessor;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ASTCache;
 import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 import net.sourceforge.pmd.eclipse.ui.views.ast.ASTUtil;
-import net.sourceforge.pmd.lang.dfa.DFAGraphMethod;
-import net.sourceforge.pmd.lang.dfa.DFAGraphRule;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.ast.ParseException;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
-import net.sourceforge.pmd.lang.java.dfa.JavaDFAGraphRule;
 import net.sourceforge.pmd.util.StringUtil;
 
 import org.eclipse.core.resources.IResource;
@@ -55,7 +49,7 @@ public abstract class AbstractStructureInspectorPage extends Page implements IPr
 
 	private Combo						methodSelector;
 	private FileRecord					resourceRecord;
-	private List<ASTMethodDeclaration> 	pmdMethodList;
+	private List<ASTMethodDeclaration> 	pmdMethodList = Collections.emptyList();
 	private ITextEditor 				textEditor;
 	
 	protected AbstractStructureInspectorPage(IWorkbenchPart part, FileRecord record) {
@@ -217,15 +211,42 @@ public abstract class AbstractStructureInspectorPage extends Page implements IPr
 	 * @see #getPMDMethods(IResource)
 	 */
 	protected void refreshPMDMethods() {
+		setPMDMethods(getPMDMethods());
+	}
+
+	/**
+	 * Fills the combobox with methods found elsewhere, such as in the
+	 * background.
+	 * @param methods the methods to choose from
+	 */
+	protected void setPMDMethods(List<ASTMethodDeclaration> methods) {
 	
 		methodSelector.removeAll();
-		pmdMethodList = getPMDMethods();
+		pmdMethodList = methods;
 	
 		for (ASTMethodDeclaration pmdMethod : pmdMethodList) {
 			methodSelector.add(ASTUtil.getMethodLabel(pmdMethod, false));
 		}
 	}
 
+	/**
+	 * @return the index of the method selected in the combobox, or -1
+	 */
+	protected int getSelectedMethodIndex() {
+		return methodSelector.getSelectionIndex();
+	}
+
+	/**
+	 * Selects a method in the combobox and shows it.
+	 * @param index index position of the combobox
+	 */
+	protected void selectMethod(int index) {
+		if (index >= 0 && index < pmdMethodList.size()) {
+			methodSelector.select(index);
+			showMethod(index);
+		}
+	}
+
 	public void showFirstMethod() {
 		methodSelector.select(0);
 		showMethod(0);
@@ -294,41 +315,35 @@ public abstract class AbstractStructureInspectorPage extends Page implements IPr
 		
 		List<ASTMethodDeclaration> methodList = new ArrayList<ASTMethodDeclaration>();
 	
-		// we need PMD to run over the given Resource
-		// with the DFAGraphRule to get the Methods;
-		// PMD needs this Resource as a String
+		// the dataflow pass gives each method its graph
 		try {
-			DFAGraphRule dfaGraphRule = new JavaDFAGraphRule();
-			RuleSet rs = new RuleSet();
-			rs.addRule(dfaGraphRule);
-	
-			RuleContext ctx = new RuleContext();
-			ctx.setSourceCodeFilename("[scratchpad]");
-	
-		//	StringReader reader = new StringReader(getDocument().get());
-			// run PMD using the DFAGraphRule and the Text of the Resource
-		//	new PMDEngine().processFile(reader, rs, ctx);
-	
-			byte[] bytes = getDocument().get().getBytes();
-			InputStream input = new ByteArrayInputStream(bytes);
-			
-			RuleSets rSets = new RuleSets(rs);
-			new SourceCodeProcessor(new PMDConfiguration()).processSourceCode(input, rSets, ctx);
-			
-			// the Rule then can give us the Methods
-			for (DFAGraphMethod m : dfaGraphRule.getMethods()) {
-			    if (m instanceof ASTMethodDeclaration) {
-			        methodList.add((ASTMethodDeclaration)m);
-			    }
-			}
+			methodList.addAll(getParsedDocument().withDataFlow().findDescendantsOfType(ASTMethodDeclaration.class));
 			Collections.sort(methodList, ASTUtil.MethodComparator);
-		} catch (PMDException pmde) {
-			logError(StringKeys.ERROR_PMD_EXCEPTION + toString(), pmde);
+		} catch (ParseException pe) {
+			logError(StringKeys.ERROR_PMD_EXCEPTION + toString(), pe);
 		}
 	
 		return methodList;
 	}
 
+	/**
+	 * Gets the AST of the current text of the document, shared with the
+	 * other pages showing it.
+	 *
+	 * @return the cache entry of the document
+	 */
+	protected ASTCache.Entry getParsedDocument() {
+		return PMDPlugin.getDefault().getASTCache().get(getDocument(), getLanguageVersion());
+	}
+
+	private LanguageVersion getLanguageVersion() {
+		LanguageVersion version = null;
+		if (resourceRecord != null && resourceRecord.getResource() != null) {
+			version = PMDPlugin.javaVersionFor(resourceRecord.getResource().getProject());
+		}
+		return version == null ? LanguageRegistry.getLanguage(JavaLanguageModule.NAME).getDefaultVersion() : version;
+	}
+
 	protected void enableMethodSelector(boolean flag) {
 		methodSelector.setEnabled( flag );
 	}
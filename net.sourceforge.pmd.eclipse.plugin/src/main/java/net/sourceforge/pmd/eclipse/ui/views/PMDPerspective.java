@@ -2,6 +2,7 @@ package net.sourceforge.pmd.eclipse.ui.views;
 
 import net.sourceforge.pmd.eclipse.ui.PMDUiConstants;
 
+import org.eclipse.ui.IFolderLayout;
 import org.eclipse.ui.IPageLayout;
 import org.eclipse.ui.IPerspectiveFactory;
 
@@ -22,7 +23,11 @@ public class PMDPerspective implements IPerspectiveFactory {
 		
 		layout.addView(explorerAreaId, IPageLayout.LEFT, 0.25f, editorAreaId);
 		layout.addView(outlineAreaId, IPageLayout.BOTTOM, 0.6f, explorerAreaId);
-		layout.addView(overviewAreaId, IPageLayout.BOTTOM, 0.65f, editorAreaId);
+		IFolderLayout bottomFolder = layout.createFolder("bottom", IPageLayout.BOTTOM, 0.65f, editorAreaId);
+		bottomFolder.addView(overviewAreaId);
+		bottomFolder.addPlaceholder(PMDUiConstants.ID_PROFILEVIEW);
+		layout.addShowViewShortcut(PMDUiConstants.ID_PROFILEVIEW);
+		layout.addView(PMDUiConstants.ID_STATUSVIEW, IPageLayout.BOTTOM, 0.7f, outlineAreaId);
 	}
 }
 
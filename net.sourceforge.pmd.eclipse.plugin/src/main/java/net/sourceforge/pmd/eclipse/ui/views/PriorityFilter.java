@@ -69,6 +69,9 @@ public class PriorityFilter extends ViewerFilter {
             }
         } else if (element instanceof FileToMarkerRecord) {
             select = true;
+        } else if (element == ViolationOverviewContentProvider.PENDING) {
+            // ViolationOverview, while its records are built
+            select = true;
         }
         return select;
     }
@@ -89,9 +92,9 @@ public class PriorityFilter extends ViewerFilter {
 
     private boolean hasMarkersToShow(AbstractPMDRecord record) {
         boolean hasMarkers = false;
+        // the counts are kept by the records, so the Files of a Package are not created to filter it
         for (Integer priority : priorityList) {
-            final IMarker[] markers = record.findMarkersByAttribute(PMDUiConstants.KEY_MARKERATT_PRIORITY, priority);
-            if (markers.length > 0) {
+            if (record.getNumberOfViolationsToPriority(priority.intValue(), false) > 0) {
                 hasMarkers = true;
                 break;
             }
@@ -0,0 +1,265 @@
+package net.sourceforge.pmd.eclipse.ui.views;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewProfile;
+import net.sourceforge.pmd.eclipse.ui.PMDUiConstants;
+import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
+import net.sourceforge.pmd.eclipse.util.IOUtil;
+
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.action.Separator;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Shows the time PMD spent on each rule or on each file, as recorded in the
+ * review profile, slowest first. Columns can be sorted by clicking their
+ * header, and the shown entries exported as CSV.
+ */
+public class ProfileView extends ViewPart {
+
+    private static final String[] COLUMN_KEYS = { StringKeys.VIEW_PROFILE_COLUMN_NAME,
+            StringKeys.VIEW_PROFILE_COLUMN_COUNT, StringKeys.VIEW_PROFILE_COLUMN_WALL,
+            StringKeys.VIEW_PROFILE_COLUMN_CPU, StringKeys.VIEW_PROFILE_COLUMN_ALLOCATED,
+            StringKeys.VIEW_PROFILE_COLUMN_AVERAGE };
+    private static final int[] COLUMN_WIDTHS = { 320, 70, 100, 100, 110, 100 };
+    private static final int WALL_COLUMN = 2;
+
+    private TableViewer tableViewer;
+    private List<ReviewProfile.Entry> entries = new ArrayList<ReviewProfile.Entry>();
+    private boolean showFiles;
+    private int sortColumn = WALL_COLUMN;
+    private boolean ascending;
+
+    /*
+     * @see org.eclipse.ui.part.WorkbenchPart#createPartControl(org.eclipse.swt.widgets.Composite)
+     */
+    @Override
+    public void createPartControl(Composite parent) {
+        tableViewer = new TableViewer(parent, SWT.H_SCROLL | SWT.V_SCROLL | SWT.MULTI | SWT.FULL_SELECTION);
+        Table table = tableViewer.getTable();
+        table.setHeaderVisible(true);
+        table.setLinesVisible(true);
+
+        for (int i = 0; i < COLUMN_KEYS.length; i++) {
+            final int columnIndex = i;
+            TableColumn column = new TableColumn(table, i == 0 ? SWT.LEFT : SWT.RIGHT);
+            column.setText(getString(COLUMN_KEYS[i]));
+            column.setWidth(COLUMN_WIDTHS[i]);
+            column.addSelectionListener(new SelectionAdapter() {
+                @Override
+                public void widgetSelected(SelectionEvent e) {
+                    ascending = sortColumn == columnIndex ? !ascending : columnIndex == 0;
+                    sortColumn = columnIndex;
+                    showEntries();
+                }
+            });
+        }
+
+        tableViewer.setContentProvider(new ArrayContentProvider());
+        tableViewer.setLabelProvider(new ProfileLabelProvider());
+
+        createActions(getViewSite().getActionBars().getToolBarManager());
+        refresh();
+    }
+
+    private void createActions(IToolBarManager toolBar) {
+        Action rulesAction = new Action(getString(StringKeys.VIEW_PROFILE_ACTION_RULES), Action.AS_RADIO_BUTTON) {
+            @Override
+            public void run() {
+                if (isChecked()) {
+                    showFiles = false;
+                    refresh();
+                }
+            }
+        };
+        rulesAction.setChecked(true);
+
+        Action filesAction = new Action(getString(StringKeys.VIEW_PROFILE_ACTION_FILES), Action.AS_RADIO_BUTTON) {
+            @Override
+            public void run() {
+                if (isChecked()) {
+                    showFiles = true;
+                    refresh();
+                }
+            }
+        };
+
+        Action refreshAction = new Action(getString(StringKeys.VIEW_PROFILE_ACTION_REFRESH)) {
+            @Override
+            public void run() {
+                refresh();
+            }
+        };
+        refreshAction.setImageDescriptor(PMDPlugin.getImageDescriptor(PMDUiConstants.ICON_BUTTON_REFRESH));
+
+        Action exportAction = new Action(getString(StringKeys.VIEW_PROFILE_ACTION_EXPORT)) {
+            @Override
+            public void run() {
+                exportCsv();
+            }
+        };
+        exportAction.setImageDescriptor(PMDPlugin.getImageDescriptor(PMDUiConstants.ICON_BUTTON_EXPORT));
+
+        Action clearAction = new Action(getString(StringKeys.VIEW_PROFILE_ACTION_CLEAR)) {
+            @Override
+            public void run() {
+                PMDPlugin.getDefault().getReviewProfile().clear();
+                refresh();
+            }
+        };
+        clearAction.setImageDescriptor(PMDPlugin.getImageDescriptor(PMDUiConstants.ICON_BUTTON_DELETE));
+
+        toolBar.add(rulesAction);
+        toolBar.add(filesAction);
+        toolBar.add(new Separator());
+        toolBar.add(refreshAction);
+        toolBar.add(exportAction);
+        toolBar.add(clearAction);
+    }
+
+    /**
+     * Read the profile again and show it.
+     */
+    public void refresh() {
+        ReviewProfile profile = PMDPlugin.getDefault().getReviewProfile();
+        entries = showFiles ? profile.getFiles() : profile.getRules();
+        showEntries();
+    }
+
+    private void showEntries() {
+        Collections.sort(entries, new EntryComparator(sortColumn, ascending));
+        Table table = tableViewer.getTable();
+        table.setSortColumn(table.getColumn(sortColumn));
+        table.setSortDirection(ascending ? SWT.UP : SWT.DOWN);
+        tableViewer.setInput(entries);
+    }
+
+    private void exportCsv() {
+        FileDialog dialog = new FileDialog(getSite().getShell(), SWT.SAVE);
+        dialog.setFilterExtensions(new String[] { "*.csv" });
+        dialog.setFileName(showFiles ? "pmd-file-profile.csv" : "pmd-rule-profile.csv");
+        dialog.setOverwrite(true);
+        String fileName = dialog.open();
+        if (fileName == null) {
+            return;
+        }
+
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8");
+            ReviewProfile.writeCsv(entries, writer);
+        } catch (IOException e) {
+            PMDPlugin.getDefault().showError(getString(StringKeys.ERROR_IO_EXCEPTION), e);
+        } finally {
+            IOUtil.closeQuietly(writer);
+        }
+    }
+
+    /*
+     * @see org.eclipse.ui.part.WorkbenchPart#setFocus()
+     */
+    @Override
+    public void setFocus() {
+        tableViewer.getTable().setFocus();
+    }
+
+    /**
+     * Helper method to return an NLS string from its key
+     */
+    private static String getString(String key) {
+        return PMDPlugin.getDefault().getStringTable().getString(key);
+    }
+
+    /**
+     * Orders entries by one of the columns.
+     */
+    private static final class EntryComparator implements Comparator<ReviewProfile.Entry> {
+        private final int column;
+        private final boolean ascending;
+
+        EntryComparator(int column, boolean ascending) {
+            this.column = column;
+            this.ascending = ascending;
+        }
+
+        public int compare(ReviewProfile.Entry a, ReviewProfile.Entry b) {
+            int result;
+            switch (column) {
+            case 0:
+                result = a.getName().compareTo(b.getName());
+                break;
+            case 1:
+                result = compareLongs(a.getCount(), b.getCount());
+                break;
+            case 3:
+                result = compareLongs(a.getCpuMillis(), b.getCpuMillis());
+                break;
+            case 4:
+                result = compareLongs(a.getAllocatedBytes(), b.getAllocatedBytes());
+                break;
+            case 5:
+                result = Double.compare(a.getAverageWallMillis(), b.getAverageWallMillis());
+                break;
+            default:
+                result = compareLongs(a.getWallMillis(), b.getWallMillis());
+            }
+            return ascending ? result : -result;
+        }
+
+        private static int compareLongs(long a, long b) {
+            return a < b ? -1 : a == b ? 0 : 1;
+        }
+    }
+
+    /**
+     * Label provider of the profile table.
+     */
+    private static final class ProfileLabelProvider extends LabelProvider implements ITableLabelProvider {
+
+        public Image getColumnImage(Object element, int columnIndex) {
+            return null;
+        }
+
+        public String getColumnText(Object element, int columnIndex) {
+            ReviewProfile.Entry entry = (ReviewProfile.Entry) element;
+            switch (columnIndex) {
+            case 0:
+                return entry.getName();
+            case 1:
+                return Long.toString(entry.getCount());
+            case 2:
+                return Long.toString(entry.getWallMillis());
+            case 3:
+                return Long.toString(entry.getCpuMillis());
+            case 4:
+                return Long.toString(entry.getAllocatedBytes() / 1024);
+            case 5:
+                return String.format("%.2f", Double.valueOf(entry.getAverageWallMillis()));
+            default:
+                return "";
+            }
+        }
+    }
+}
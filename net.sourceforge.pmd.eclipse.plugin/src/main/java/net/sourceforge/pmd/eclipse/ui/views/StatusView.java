@@ -0,0 +1,98 @@
+package net.sourceforge.pmd.eclipse.ui.views;
+
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.metrics.RuntimeMetrics;
+import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Shows the runtime metrics of the plugin, refreshed every two seconds.
+ */
+public class StatusView extends ViewPart {
+
+    private static final int REFRESH_MILLIS = 2000;
+
+    private static final String[] ROW_KEYS = { StringKeys.VIEW_STATUS_QUEUED_COMMANDS,
+            StringKeys.VIEW_STATUS_RUNNING_COMMANDS, StringKeys.VIEW_STATUS_COMMAND_LIMIT,
+            StringKeys.VIEW_STATUS_FILES_REVIEWED, StringKeys.VIEW_STATUS_FILES_PER_SECOND,
+            StringKeys.VIEW_STATUS_MARKERS_APPLIED,
+            StringKeys.VIEW_STATUS_MARKER_APPLY_MEAN, StringKeys.VIEW_STATUS_MARKER_APPLY_MAX,
+            StringKeys.VIEW_STATUS_MARKER_RULE_HOLD_MEAN, StringKeys.VIEW_STATUS_MARKER_RULE_HOLD_MAX,
+            StringKeys.VIEW_STATUS_CACHE_HIT_RATE, StringKeys.VIEW_STATUS_CLASS_LOADERS,
+            StringKeys.VIEW_STATUS_ANALYSIS_ERRORS };
+
+    private Table table;
+
+    private final Runnable refresher = new Runnable() {
+        public void run() {
+            if (table != null && !table.isDisposed()) {
+                refresh();
+                table.getDisplay().timerExec(REFRESH_MILLIS, this);
+            }
+        }
+    };
+
+    /*
+     * @see org.eclipse.ui.part.WorkbenchPart#createPartControl(org.eclipse.swt.widgets.Composite)
+     */
+    @Override
+    public void createPartControl(Composite parent) {
+        table = new Table(parent, SWT.H_SCROLL | SWT.V_SCROLL | SWT.SINGLE | SWT.FULL_SELECTION);
+        table.setHeaderVisible(true);
+        table.setLinesVisible(true);
+
+        TableColumn metricColumn = new TableColumn(table, SWT.LEFT);
+        metricColumn.setText(getString(StringKeys.VIEW_STATUS_COLUMN_METRIC));
+        metricColumn.setWidth(260);
+        TableColumn valueColumn = new TableColumn(table, SWT.RIGHT);
+        valueColumn.setText(getString(StringKeys.VIEW_STATUS_COLUMN_VALUE));
+        valueColumn.setWidth(120);
+
+        for (String key : ROW_KEYS) {
+            new TableItem(table, SWT.NONE).setText(0, getString(key));
+        }
+
+        refresher.run();
+    }
+
+    private void refresh() {
+        RuntimeMetrics metrics = PMDPlugin.getDefault().getRuntimeMetrics();
+        String[] values = { Integer.toString(metrics.getQueuedCommands()),
+                Integer.toString(metrics.getRunningCommands()), Integer.toString(metrics.getCommandLimit()),
+                Long.toString(metrics.getFilesReviewed()),
+                decimal(metrics.getFilesPerSecond()), Long.toString(metrics.getMarkersApplied()),
+                decimal(metrics.getMarkerApplyMeanMillis()), decimal(metrics.getMarkerApplyMaxMillis()),
+                decimal(metrics.getMarkerRuleHoldMeanMillis()), decimal(metrics.getMarkerRuleHoldMaxMillis()),
+                decimal(metrics.getReviewCacheHitRate()) + " %", Integer.toString(metrics.getClassLoaderCount()),
+                Long.toString(metrics.getAnalysisErrors()) };
+
+        for (int i = 0; i < values.length; i++) {
+            table.getItem(i).setText(1, values[i]);
+        }
+    }
+
+    private static String decimal(double value) {
+        return String.format("%.1f", Double.valueOf(value));
+    }
+
+    /*
+     * @see org.eclipse.ui.part.WorkbenchPart#setFocus()
+     */
+    @Override
+    public void setFocus() {
+        table.setFocus();
+    }
+
+    /**
+     * Helper method to return an NLS string from its key
+     */
+    private static String getString(String key) {
+        return PMDPlugin.getDefault().getStringTable().getString(key);
+    }
+}
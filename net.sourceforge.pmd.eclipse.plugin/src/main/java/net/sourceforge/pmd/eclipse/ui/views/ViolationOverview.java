@@ -50,6 +50,7 @@ import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
 import net.sourceforge.pmd.eclipse.ui.model.FileToMarkerRecord;
 import net.sourceforge.pmd.eclipse.ui.model.MarkerRecord;
 import net.sourceforge.pmd.eclipse.ui.model.PackageRecord;
+import net.sourceforge.pmd.eclipse.ui.model.ProjectRecord;
 import net.sourceforge.pmd.eclipse.ui.model.RootRecord;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 import net.sourceforge.pmd.util.NumericConstants;
@@ -57,6 +58,10 @@ import net.sourceforge.pmd.util.NumericConstants;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.ISelectionProvider;
@@ -97,6 +102,7 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
 
     private RootRecord 		root;
     private ViewMemento 	memento;
+    private Job				rootJob;
 
     protected final Integer[] 	columnWidths = new Integer[5];
     protected final int[] 		columnSortOrder = { 1, -1, -1, -1, 1 };
@@ -122,7 +128,6 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
 
         // init the View, create Content-, LabelProvider and Filters
         // this is called before createPartControl()
-        root = (RootRecord) getInitialInput();
         contentProvider = new ViolationOverviewContentProvider(this);
         labelProvider = new ViolationOverviewLabelProvider(this);
         priorityFilter = new PriorityFilter();
@@ -163,8 +168,9 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
         menuManager.createDropDownMenu(getViewSite().getActionBars().getMenuManager());
         menuManager.createContextMenu();
 
-        // put in the Input and add Listeners
-        treeViewer.setInput(root);
+        // put in the Input and add Listeners; the records are shown once built
+        treeViewer.setInput(ViolationOverviewContentProvider.PENDING);
+        buildRootLater();
         treeViewer.addDoubleClickListener(doubleClickListener);
         getSite().setSelectionProvider(this);
 
@@ -179,18 +185,24 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
      */
     @Override
     public void dispose() {
+        if (rootJob != null) {
+            rootJob.cancel();
+        }
+
         memento.putList(PRIORITY_LIST, priorityFilter.getPriorityFilterList());
 
         // on Dispose of the View we save its State into a Memento
 
-        // we save the filtered Projects
-        List<AbstractPMDRecord> projects = projectFilter.getProjectFilterList();
-        List<String> projectNames = new ArrayList<String>();
-        for (int k = 0; k < projects.size(); k++) {
-            AbstractPMDRecord project = projects.get(k);
-            projectNames.add(project.getName());
+        // we save the filtered Projects, unless they were never read back
+        if (root != null) {
+            List<AbstractPMDRecord> projects = projectFilter.getProjectFilterList();
+            List<String> projectNames = new ArrayList<String>();
+            for (int k = 0; k < projects.size(); k++) {
+                AbstractPMDRecord project = projects.get(k);
+                projectNames.add(project.getName());
+            }
+            memento.putList(PROJECT_LIST, projectNames);
         }
-        memento.putList(PROJECT_LIST, projectNames);
 
         // ... the Columns Widths
         List<Integer> widthList = Arrays.asList(columnWidths);
@@ -222,6 +234,58 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
         return new RootRecord(ResourcesPlugin.getWorkspace().getRoot());
     }
 
+    /**
+     * Builds the records of the Workspace in the background and shows them
+     * once built. The Packages of the open Projects are created and their
+     * Violations counted; the Files of a Package are only created when it
+     * gets expanded.
+     */
+    private void buildRootLater() {
+        rootJob = new Job(getString(StringKeys.VIEW_OVERVIEW_PENDING)) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                final RootRecord newRoot = (RootRecord) getInitialInput();
+                final AbstractPMDRecord[] projects = newRoot.getChildren();
+                monitor.beginTask(getName(), projects.length);
+                for (AbstractPMDRecord project : projects) {
+                    if (monitor.isCanceled()) {
+                        return Status.CANCEL_STATUS;
+                    }
+                    if (((ProjectRecord) project).isProjectOpen()) {
+                        for (AbstractPMDRecord packageRec : project.getChildren()) {
+                            packageRec.hasMarkers();
+                        }
+                    }
+                    monitor.worked(1);
+                }
+                monitor.done();
+                showRootLater(newRoot);
+                return Status.OK_STATUS;
+            }
+        };
+        rootJob.schedule();
+    }
+
+    private void showRootLater(final RootRecord newRoot) {
+        final Tree tree = treeViewer.getTree();
+        if (tree.isDisposed()) {
+            return;
+        }
+        tree.getDisplay().asyncExec(new Runnable() {
+            public void run() {
+                if (tree.isDisposed()) {
+                    return;
+                }
+                root = newRoot;
+                if (memento != null) {
+                    rememberProjectFilter();
+                }
+                treeViewer.setInput(root);
+                refreshMenu();
+            }
+        });
+    }
+
     /**
      * Creates the Table's Columns
      *
@@ -492,24 +556,32 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
             priorityFilter.setPriorityFilterList(priorityList);
         }
 
+        Integer type = memento.getInteger(PACKAGE_SWITCH);
+        if (type != null) {
+            setShowType(type.intValue());
+        }
+    }
+
+    /**
+     * Apply the memento for the project filter, once the records are built.
+     * Before calling this private method, one must be sure memento is not
+     * null.
+     *
+     */
+    private void rememberProjectFilter() {
+
+        // the Projects are the children of the root, no need to search deeper
         List<String> projectNames = memento.getStringList(PROJECT_LIST);
         if (!projectNames.isEmpty()) {
             List<AbstractPMDRecord> projectList = new ArrayList<AbstractPMDRecord>();
-            for (int k = 0; k < projectNames.size(); k++) {
-                AbstractPMDRecord project = root.findResourceByName(projectNames.get(k),
-                        AbstractPMDRecord.TYPE_PROJECT);
-                if (project != null) {
+            for (AbstractPMDRecord project : root.getChildren()) {
+                if (projectNames.contains(project.getName())) {
                     projectList.add(project);
                 }
             }
 
             projectFilter.setProjectFilterList(projectList);
         }
-
-        Integer type = memento.getInteger(PACKAGE_SWITCH);
-        if (type != null) {
-            setShowType(type.intValue());
-        }
     }
 
     /**
@@ -71,6 +71,12 @@ import org.eclipse.jface.viewers.Viewer;
 public class ViolationOverviewContentProvider implements ITreeContentProvider, IStructuredContentProvider, IResourceChangeListener {
     
     private static final Log LOG = LogFactory.getLog(ViolationOverviewContentProvider.class);
+
+    /**
+     * The input, and only element, of the View while the records of the
+     * Workspace are built.
+     */
+    public static final Object PENDING = new Object();
     protected boolean filterPackages;
 
     private final ViolationOverview violationView;
@@ -105,6 +111,9 @@ public class ViolationOverviewContentProvider implements ITreeContentProvider, I
      * @see org.eclipse.jface.viewers.IStructuredContentProvider#getElements(java.lang.Object)
      */
     public Object[] getElements(Object inputElement) {
+        if (inputElement == PENDING) {
+            return new Object[] { PENDING };
+        }
         return getChildren(inputElement);
     }
 
@@ -223,6 +232,9 @@ public class ViolationOverviewContentProvider implements ITreeContentProvider, I
      * @see org.eclipse.jface.viewers.ITreeContentProvider#getParent(java.lang.Object)
      */
     public Object getParent(Object element) {
+        if (!(element instanceof AbstractPMDRecord)) {
+            return null;
+        }
         Object parent = null;
         AbstractPMDRecord record = (AbstractPMDRecord) element;
 
@@ -263,6 +275,9 @@ public class ViolationOverviewContentProvider implements ITreeContentProvider, I
      * @see org.eclipse.jface.viewers.ITreeContentProvider#hasChildren(java.lang.Object)
      */
     public boolean hasChildren(Object element) {
+        if (element == PENDING) {
+            return false;
+        }
         boolean hasChildren = true;
 
         // find out if this is the last level in the tree (to avaoid recursion)
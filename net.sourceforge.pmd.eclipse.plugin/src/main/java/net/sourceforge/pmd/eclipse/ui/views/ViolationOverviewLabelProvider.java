@@ -50,6 +50,7 @@ import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
 import net.sourceforge.pmd.eclipse.ui.model.FileToMarkerRecord;
 import net.sourceforge.pmd.eclipse.ui.model.MarkerRecord;
 import net.sourceforge.pmd.eclipse.ui.model.PackageRecord;
+import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 
 import org.eclipse.swt.graphics.Image;
 
@@ -137,6 +138,8 @@ public class ViolationOverviewLabelProvider extends AbstractViolationLabelProvid
             default:
                 // let the result be an empty string
             }
+        } else if (element == ViolationOverviewContentProvider.PENDING && columnIndex == 0) {
+            result = PMDPlugin.getDefault().getStringTable().getString(StringKeys.VIEW_OVERVIEW_PENDING);
         }
         return result;
     }
@@ -1,23 +1,31 @@
 package net.sourceforge.pmd.eclipse.ui.views.ast;
 
+import java.text.MessageFormat;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import net.sourceforge.pmd.eclipse.runtime.cmd.ASTCache;
 import net.sourceforge.pmd.eclipse.ui.BasicTableLabelProvider;
 import net.sourceforge.pmd.eclipse.ui.editors.SyntaxManager;
 import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
+import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 import net.sourceforge.pmd.eclipse.ui.preferences.br.BasicTableManager;
 import net.sourceforge.pmd.eclipse.ui.views.AbstractStructureInspectorPage;
 import net.sourceforge.pmd.lang.ast.AbstractNode;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.ParseException;
+import net.sourceforge.pmd.lang.ast.TokenMgrError;
 import net.sourceforge.pmd.lang.java.ast.ASTImportDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
-import net.sourceforge.pmd.lang.java.ast.ParseException;
 import net.sourceforge.pmd.lang.rule.xpath.XPathRuleQuery;
 import net.sourceforge.pmd.util.StringUtil;
 
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.viewers.IStructuredContentProvider;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.TreeViewer;
@@ -43,7 +51,6 @@ import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.Tree;
 import org.eclipse.swt.widgets.TreeItem;
 import org.eclipse.ui.IWorkbenchPart;
-import org.jaxen.BaseXPath;
 import org.jaxen.JaxenException;
 import org.jaxen.XPathSyntaxException;
 
@@ -62,9 +69,19 @@ public class ASTViewPage extends AbstractStructureInspectorPage {
 	private StyledText			xpathField;
 	private TableViewer 		resultsViewer;
 	private Button				goButton;
-	private Node			 	classNode;
+	private Label				statusLabel;
 	private ASTPainterHelper	helper;
 	private ASTContentProvider 	contentProvider;
+
+	private Job					evaluation;
+	private int					evaluationCount;	// tells stale result pages apart
+	private ASTCache.Entry		lastParsed;
+	private XPathEvaluator.CompiledQuery lastQuery;
+	private List<Node>			lastResults;
+	private long				lastMillis;
+
+	/** The number of result rows added to the table at once. */
+	private static final int RESULT_PAGE_SIZE = 200;
 	
 //	private static Set<String> keywords = new HashSet<String>();
 
@@ -202,6 +219,11 @@ public class ASTViewPage extends AbstractStructureInspectorPage {
 		    
 		    resultsViewer.setLabelProvider(labelProvider);
 		    resultsViewer.setContentProvider(contentProvider);
+
+		    statusLabel = new Label(xpathTestPanel, SWT.NONE);
+		    gridData = new GridData(GridData.FILL_HORIZONTAL);
+		    gridData.horizontalSpan = 2;
+		    statusLabel.setLayoutData(gridData);
 					
 			registerListeners();
 			
@@ -222,7 +244,8 @@ public class ASTViewPage extends AbstractStructureInspectorPage {
 	private void validateXPath(String xpathString) {
 		
 		try {
-			new BaseXPath(xpathString, null);
+			// not kept: partial queries would push the evaluated ones out of the cache
+			XPathEvaluator.instance.compileNew(xpathString, XPathRuleQuery.XPATH_1_0);
 			} catch (XPathSyntaxException ex) {
 				System.out.println(ex.getPosition() + "  " + ex.getMessage());	// TODO add error marker to editor, red-underlining on offending text
 				goButton.setEnabled(false);
@@ -239,19 +262,78 @@ public class ASTViewPage extends AbstractStructureInspectorPage {
 
 		if (! setupTest() ) return;
 		
-		List<Node> results = null;
+		final XPathEvaluator.CompiledQuery query;
 		try {
-			results = XPathEvaluator.instance.evaluate( 
-					getDocument().get(), 
+			query = XPathEvaluator.instance.compile(
 					xpathField.getText(),
 					XPathRuleQuery.XPATH_1_0	// TODO derive from future combo widget
 					);
-		} catch (ParseException pe) {
-			showError(pe.fillInStackTrace().getMessage());
+		} catch (JaxenException je) {
+			showError(je.getMessage());
+			return;
+		}
+		
+		final ASTCache.Entry parsed = getParsedDocument();
+		final int count = ++evaluationCount;
+		if (evaluation != null) evaluation.cancel();
+		
+		if (parsed == lastParsed && query == lastQuery) {
+			// neither the text nor the query changed
+			show(count, lastResults, lastMillis);
 			return;
 		}
 		
-		show(results);
+		statusLabel.setText(getString(StringKeys.VIEW_AST_STATUS_EVALUATING));
+		evaluation = new Job("XPath evaluation") {
+			protected IStatus run(IProgressMonitor monitor) {
+				evaluate(count, parsed, query, monitor);
+				return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+			}
+		};
+		evaluation.setSystem(true);
+		evaluation.schedule();
+	}
+
+	/**
+	 * Runs in the evaluation job; the results go back to the UI thread.
+	 */
+	private void evaluate(final int count, final ASTCache.Entry parsed, final XPathEvaluator.CompiledQuery query, IProgressMonitor monitor) {
+		
+		String error = null;
+		List<Node> found = null;
+		long millis = 0;
+		try {
+			Node root = parsed.withTypes();
+			if (monitor.isCanceled()) return;
+			long start = System.nanoTime();
+			found = query.evaluate(root);
+			millis = (System.nanoTime() - start) / 1000000;
+		} catch (ParseException pe) {
+			error = pe.getMessage();
+		} catch (TokenMgrError tme) {
+			error = tme.getMessage();
+		} catch (IllegalArgumentException iae) {
+			error = iae.getMessage();
+		}
+		if (monitor.isCanceled()) return;
+		
+		final String message = error;
+		final List<Node> results = found;
+		final long elapsed = millis;
+		resultsViewer.getControl().getDisplay().asyncExec(new Runnable() {
+			public void run() {
+				if (count != evaluationCount || resultsViewer.getControl().isDisposed()) return;
+				if (message != null) {
+					showError(message);
+					return;
+				}
+				lastParsed = parsed;
+				lastQuery = query;
+				lastResults = results;
+				lastMillis = elapsed;
+				show(count, results, elapsed);
+			}
+		});
 	}
 
 	private boolean setupTest() {
@@ -268,24 +350,34 @@ public class ASTViewPage extends AbstractStructureInspectorPage {
 	}
 	
 	private void showError(String message) {
-		//outputField.setText(message);
+		statusLabel.setText(message == null ? "" : message);
 	}
 	
-	private void show(List<Node> results) {
+	private void show(int count, List<Node> results, long millis) {
 		
-		if (results.isEmpty()) {
-			//outputField.setText("No matching nodes found");
-			return;
-		}
+		statusLabel.setText(MessageFormat.format(getString(StringKeys.VIEW_AST_STATUS_RESULTS), results.size(), millis));
+		resultsViewer.setInput( new Node[0] );
+		showPage(count, results, 0);
+	}
+	
+	/**
+	 * Adds a page of results to the table, and the next one after the UI
+	 * handled its pending events, so that large results do not block it.
+	 */
+	private void showPage(final int count, final List<Node> results, int from) {
 		
-//		StringBuilder sb = new StringBuilder();
-//		for (int i=0; i<results.size(); i++) {
-//			displayOn(results.get(i), i+1, sb);
-//			sb.append('\n');
-//		}
-//		outputField.setText( sb.toString() );
+		if (from >= results.size()) return;
 		
-		resultsViewer.setInput( results.toArray(new Node[results.size()]) );
+		final int to = Math.min(results.size(), from + RESULT_PAGE_SIZE);
+		resultsViewer.add( results.subList(from, to).toArray() );
+		
+		resultsViewer.getControl().getDisplay().asyncExec(new Runnable() {
+			public void run() {
+				if (count == evaluationCount && !resultsViewer.getControl().isDisposed()) {
+					showPage(count, results, to);
+				}
+			}
+		});
 	}
 
 	private void setupListeners(Tree tree) {
@@ -327,6 +419,7 @@ public class ASTViewPage extends AbstractStructureInspectorPage {
 	public void dispose() {
 		super.dispose();
 		
+		if (evaluation != null) evaluation.cancel();
 		helper.dispose();
 	}
 
@@ -336,9 +429,15 @@ public class ASTViewPage extends AbstractStructureInspectorPage {
 
 	protected void showClass() {
 		
-		if (classNode == null) {
-			String source = getDocument().get();
-			classNode = XPathEvaluator.instance.getCompilationUnit(source);
+		Node classNode;
+		try {
+			classNode = getParsedDocument().withTypes();
+		} catch (ParseException pe) {
+			showError(pe.getMessage());
+			return;
+		} catch (TokenMgrError tme) {
+			showError(tme.getMessage());
+			return;
 		}
 		
 		astViewer.setInput(classNode);
@@ -399,8 +498,6 @@ public class ASTViewPage extends AbstractStructureInspectorPage {
 		
 		super.refresh(newResource);
 
-		classNode = null;
-		
 		//        if (isTableShown) {
 		//            refreshDFATable(newResource);
 		//        } else {
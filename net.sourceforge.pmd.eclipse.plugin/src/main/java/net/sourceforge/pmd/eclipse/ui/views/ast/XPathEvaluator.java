@@ -2,32 +2,57 @@ package net.sourceforge.pmd.eclipse.ui.views.ast;
 
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionHandler;
 import net.sourceforge.pmd.lang.Parser;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.xpath.DocumentNavigator;
 import net.sourceforge.pmd.lang.java.JavaLanguageModule;
 import net.sourceforge.pmd.lang.java.ast.ParseException;
 import net.sourceforge.pmd.lang.rule.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.XPathRuleQuery;
+import net.sourceforge.pmd.lang.xpath.Initializer;
+
+import org.jaxen.BaseXPath;
+import org.jaxen.JaxenException;
 
 /**
- * 
+ * Evaluates XPath queries against Java ASTs. Queries are compiled once and
+ * the most recently used ones are kept, so that evaluating a query again
+ * reuses the compiled expression. Queries only checked while they are typed
+ * are compiled with {@link #compileNew(String, String)}, which keeps nothing.
+ *
  * @author Brian Remedios
  */
 public class XPathEvaluator {
 
 	public static final XPathEvaluator instance = new XPathEvaluator();
-	
-	private XPathEvaluator() {}
-	
+
+	private static final int MAX_COMPILED_QUERIES = 32;
+
+	private final Map<String, CompiledQuery> compiledQueries = new LinkedHashMap<String, CompiledQuery>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		protected boolean removeEldestEntry(Map.Entry<String, CompiledQuery> eldest) {
+			return size() > MAX_COMPILED_QUERIES;
+		}
+	};
+
+	private XPathEvaluator() {
+		// the PMD functions, such as pmd:matches, for queries compiled here
+		Initializer.initialize();
+	}
+
 	public Node getCompilationUnit(String source) {
-		
+
 		LanguageVersionHandler languageVersionHandler = getLanguageVersionHandler();
 		Parser parser = languageVersionHandler.getParser(languageVersionHandler.getDefaultParserOptions());
 		Node node = parser.parse(null, new StringReader(source));
@@ -41,50 +66,190 @@ public class XPathEvaluator {
 		return languageVersion.getLanguageVersionHandler();
 	}
 
-	private LanguageVersion getLanguageVersion() {
+	private static LanguageVersion getLanguageVersion() {
 	    return LanguageRegistry.getLanguage(JavaLanguageModule.NAME).getDefaultVersion();
 	}
 
 	/**
-	 * Builds a temporary XPathRule using the query provided and executes it against
-	 * the source. Returns a list of nodes detailing any issues found with it.
-	 * 
+	 * Returns the compiled form of a query, compiling it unless it was
+	 * recently compiled already.
+	 *
+	 * @param xpathQuery
+	 * @param xpathVersion
+	 * @return the compiled query
+	 * @throws JaxenException if an XPath 1.0 query is not valid; XPath 2.0
+	 *         queries are only checked on their first evaluation
+	 */
+	public CompiledQuery compile(String xpathQuery, String xpathVersion) throws JaxenException {
+
+		String key = xpathVersion + '\n' + xpathQuery;
+		synchronized (compiledQueries) {
+			CompiledQuery query = compiledQueries.get(key);
+			if (query == null) {
+				query = compileNew(xpathQuery, xpathVersion);
+				compiledQueries.put(key, query);
+			}
+			return query;
+		}
+	}
+
+	/**
+	 * Compiles a query that is not shared with other callers, for threads
+	 * that cannot share a query that is not thread-safe.
+	 *
+	 * @param xpathQuery
+	 * @param xpathVersion
+	 * @return the compiled query
+	 * @throws JaxenException if an XPath 1.0 query is not valid
+	 * @see CompiledQuery#isThreadSafe()
+	 */
+	public CompiledQuery compileNew(String xpathQuery, String xpathVersion) throws JaxenException {
+
+		return XPathRuleQuery.XPATH_1_0.equals(xpathVersion) ?
+			new JaxenQuery(xpathQuery) : new RuleQuery(xpathQuery, xpathVersion);
+	}
+
+	/**
+	 * Parses the source and evaluates the query against it.
+	 *
 	 * @param source
 	 * @param xpathQuery
 	 * @param xpathVersion
-	 * @return
+	 * @return the matching nodes
 	 * @throws ParseException
 	 */
 	public List<Node> evaluate(String source, String xpathQuery, String xpathVersion) throws ParseException {
 
-		Node c = getCompilationUnit(source);
+		return evaluate(getCompilationUnit(source), xpathQuery, xpathVersion);
+	}
 
-		final List<Node> results = new ArrayList<Node>();
+	/**
+	 * Evaluates the query against an AST parsed before, such as one kept by
+	 * the ASTCache.
+	 *
+	 * @param compilationUnit
+	 * @param xpathQuery
+	 * @param xpathVersion
+	 * @return the matching nodes
+	 * @throws IllegalArgumentException if the query is not valid
+	 */
+	public List<Node> evaluate(Node compilationUnit, String xpathQuery, String xpathVersion) {
 
-		XPathRule xpathRule = new XPathRule() {
-			public void addViolation(Object data, Node node, String arg) {
-				results.add(node);
+		try {
+			return compile(xpathQuery, xpathVersion).evaluate(compilationUnit);
+		} catch (JaxenException je) {
+			throw new IllegalArgumentException("Invalid XPath query: " + je.getMessage(), je);
+		}
+	}
+
+	/**
+	 * A compiled query, which may be evaluated against any number of ASTs.
+	 */
+	public abstract static class CompiledQuery {
+
+		private final String query;
+
+		CompiledQuery(String query) {
+			this.query = query;
+		}
+
+		public String getQuery() {
+			return query;
+		}
+
+		/**
+		 * @return whether evaluations may run concurrently; if not, they
+		 *         wait for each other
+		 */
+		public abstract boolean isThreadSafe();
+
+		/**
+		 * @param compilationUnit
+		 * @return the matching nodes, in document order
+		 */
+		public abstract List<Node> evaluate(Node compilationUnit);
+	}
+
+	/**
+	 * An XPath 1.0 query, compiled by Jaxen with the navigator PMD uses for
+	 * its own XPath rules. Evaluations may run concurrently.
+	 */
+	private static final class JaxenQuery extends CompiledQuery {
+
+		private final BaseXPath xpath;
+
+		JaxenQuery(String query) throws JaxenException {
+			super(query);
+			xpath = new BaseXPath(query, new DocumentNavigator());
+		}
+
+		public boolean isThreadSafe() {
+			return true;
+		}
+
+		public List<Node> evaluate(Node compilationUnit) {
+
+			List<Node> results = new ArrayList<Node>();
+			try {
+				for (Object selected : xpath.selectNodes(compilationUnit)) {
+					if (selected instanceof Node) {
+						results.add((Node) selected);
+					}
+				}
+			} catch (JaxenException je) {
+				throw new IllegalArgumentException("Unable to evaluate the XPath query: " + je.getMessage(), je);
 			}
-		};
-		
-		xpathRule.setMessage("");
-		xpathRule.setLanguage(getLanguageVersion().getLanguage());
-		xpathRule.setProperty(XPathRule.XPATH_DESCRIPTOR, xpathQuery);
-		xpathRule.setProperty(XPathRule.VERSION_DESCRIPTOR, xpathVersion);
+			return results;
+		}
+	}
+
+	/**
+	 * A query run by an XPathRule, which compiles it on its first use; one
+	 * evaluation runs at a time.
+	 */
+	private static final class RuleQuery extends CompiledQuery {
+
+		private final Language language = getLanguageVersion().getLanguage();
+		private final RuleSets ruleSets;
+		private List<Node> results;
+
+		RuleQuery(String query, String xpathVersion) {
+			super(query);
+
+			XPathRule xpathRule = new XPathRule() {
+				public void addViolation(Object data, Node node, String arg) {
+					results.add(node);
+				}
+			};
+			xpathRule.setMessage("");
+			xpathRule.setLanguage(language);
+			xpathRule.setProperty(XPathRule.XPATH_DESCRIPTOR, query);
+			xpathRule.setProperty(XPathRule.VERSION_DESCRIPTOR, xpathVersion);
+
+			RuleSet ruleSet = new RuleSet();
+			ruleSet.addRule(xpathRule);
+			ruleSets = new RuleSets(ruleSet);
+		}
+
+		public boolean isThreadSafe() {
+			return false;
+		}
+
+		public synchronized List<Node> evaluate(Node compilationUnit) {
 
-		RuleSet ruleSet = new RuleSet();
-		ruleSet.addRule(xpathRule);
+			results = new ArrayList<Node>();
 
-		RuleSets ruleSets = new RuleSets(ruleSet);
+			RuleContext ruleContext = new RuleContext();
+			ruleContext.setLanguageVersion(getLanguageVersion());
 
-		RuleContext ruleContext = new RuleContext();
-		ruleContext.setLanguageVersion(getLanguageVersion());
+			List<Node> nodes = new ArrayList<Node>(1);
+			nodes.add(compilationUnit);
 
-		List<Node> nodes = new ArrayList<Node>(1);
-		nodes.add(c);
-		
-		ruleSets.apply(nodes, ruleContext, xpathRule.getLanguage());
+			ruleSets.apply(nodes, ruleContext, language);
 
-		return results;
+			List<Node> found = results;
+			results = null;
+			return found;
+		}
 	}
 }
@@ -0,0 +1,120 @@
+package net.sourceforge.pmd.eclipse.ui.views.dataflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ASTCache;
+import net.sourceforge.pmd.eclipse.ui.views.ast.ASTUtil;
+import net.sourceforge.pmd.lang.dfa.pathfinder.CurrentPath;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.JavaParserTreeConstants;
+import net.sourceforge.pmd.lang.java.rule.controversial.DataflowAnomalyAnalysisRule;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * The dataflow graphs and anomalies of one version of a document, computed
+ * from the AST the {@link ASTCache} keeps for it.
+ *
+ * The graphs of all methods come from one dataflow pass over the AST. The
+ * anomalies are searched per method, when the method is shown, and kept;
+ * a search can be cancelled between two paths.
+ */
+class DataflowAnalysis {
+
+	private final ASTCache.Entry source;
+	private volatile List<ASTMethodDeclaration> methods;
+	private final Map<ASTMethodDeclaration, List<RuleViolation>> anomaliesByMethod = new HashMap<ASTMethodDeclaration, List<RuleViolation>>();
+
+	DataflowAnalysis(ASTCache.Entry source) {
+		this.source = source;
+	}
+
+	ASTCache.Entry getSource() {
+		return source;
+	}
+
+	/**
+	 * @return whether the methods are known, so that asking for them does not wait
+	 */
+	boolean hasMethods() {
+		return methods != null;
+	}
+
+	/**
+	 * @return the methods, sorted, with their dataflow graphs
+	 * @throws net.sourceforge.pmd.lang.ast.ParseException if the text cannot be parsed
+	 */
+	synchronized List<ASTMethodDeclaration> getMethods() {
+
+		if (methods == null) {
+			List<ASTMethodDeclaration> found = new ArrayList<ASTMethodDeclaration>(
+					source.withDataFlow().findDescendantsOfType(ASTMethodDeclaration.class));
+			Collections.sort(found, ASTUtil.MethodComparator);
+			methods = found;
+		}
+		return methods;
+	}
+
+	/**
+	 * @param method one of the methods
+	 * @param monitor cancels the search
+	 * @return the anomalies found in the method
+	 * @throws OperationCanceledException if the search got cancelled
+	 */
+	List<RuleViolation> getAnomalies(ASTMethodDeclaration method, IProgressMonitor monitor) {
+
+		synchronized (this) {
+			List<RuleViolation> anomalies = anomaliesByMethod.get(method);
+			if (anomalies != null) return anomalies;
+		}
+		getMethods();	// the graphs
+
+		RuleContext context = new RuleContext();
+		context.setSourceCodeFilename("[dataflow]");
+		context.setLanguageVersion(source.getLanguageVersion());
+
+		CancellableAnomalyRule rule = new CancellableAnomalyRule(monitor);
+		rule.setUsesDFA();
+		// sets up the per-file state of the rule without visiting the whole file
+		rule.visit(new ASTCompilationUnit(JavaParserTreeConstants.JJTCOMPILATIONUNIT), context);
+		method.jjtAccept(rule, context);
+
+		List<RuleViolation> anomalies = new ArrayList<RuleViolation>(context.getReport().size());
+		for (Iterator<RuleViolation> i = context.getReport().iterator(); i.hasNext();) {
+			anomalies.add(i.next());
+		}
+		synchronized (this) {
+			anomaliesByMethod.put(method, anomalies);
+		}
+		return anomalies;
+	}
+
+	/**
+	 * Checks the monitor before following each path through the method.
+	 */
+	private static final class CancellableAnomalyRule extends DataflowAnomalyAnalysisRule {
+
+		private final IProgressMonitor monitor;
+
+		CancellableAnomalyRule(IProgressMonitor monitor) {
+			this.monitor = monitor;
+		}
+
+		@Override
+		public void execute(CurrentPath path) {
+			if (monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			super.execute(path);
+		}
+	}
+}
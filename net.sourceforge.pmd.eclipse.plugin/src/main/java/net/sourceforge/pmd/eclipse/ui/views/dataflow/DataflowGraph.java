@@ -1,36 +1,106 @@
 package net.sourceforge.pmd.eclipse.ui.views.dataflow;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.dfa.DataFlowNode;
 import net.sourceforge.pmd.lang.dfa.VariableAccess;
 
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.events.MouseAdapter;
-import org.eclipse.swt.events.MouseEvent;
-import org.eclipse.swt.events.MouseListener;
+import org.eclipse.swt.events.ControlAdapter;
+import org.eclipse.swt.events.ControlEvent;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.graphics.Color;
-import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.ScrollBar;
 
 
 /**
  * Builds a Dataflow Graph
+ * <br>The whole graph is drawn on one canvas. Nodes and paths are kept in
+ * arrays, one row per node, and the paths are indexed by the rows they
+ * cross, so that a paint only draws what lies in the area to repaint and
+ * marking a path does not depend on the size of the graph.
+ * <br>In a DataflowGraphTable the canvas is the table's body: it draws the
+ * other columns of the rows in view as well. The canvas keeps the size of
+ * the view and scrolls by an offset, as native widgets cannot be taller
+ * than about 32767 pixels.
  *
  * @author SebastianRaffel  ( 08.06.2005 )
  */
-public class DataflowGraph extends Composite {
-
-	private List<NodeCanvas> nodes;
-	private List<PathCanvas> paths;
+public class DataflowGraph extends Canvas implements PaintListener {
+
+	// how a node or path is marked
+	private static final byte UNMARKED = 0;
+	private static final byte MARKED = 1;
+	private static final byte STOPOVER = 2;
+	private static final byte SELECTED = 3;
+
+	// the number of rows in one bucket of the path index
+	private static final int BUCKET_ROWS = 16;
+
+	private static final int ARROW_WIDTH = 4;
+	private static final int ARROW_HEIGHT = 7;
+
+	// the space between the text of a cell and its borders
+	private static final int CELL_PADDING = 5;
+
+	// the nodes, one per row, in the order of the flow
+	private int nodeCount;
+	private DataFlowNode[] flowNodes;
+	private int[] nodeLines;
+	private byte[] nodeMarks;
+	private String[] nodeLabels;
+
+	// the extents of the labels, measured when first painted
+	private Font labelFont;
+	private int labelHeight;
+	private int[] labelWidths;
+
+	// the paths, sorted by their first node: the paths leaving node n are
+	// firstPath[n] to firstPath[n+1]-1; the bounds are relative to the nodes' x-position
+	private int pathCount;
+	private int[] firstPath;
+	private int[] pathFrom;
+	private int[] pathTo;
+	private int[] pathLeft;
+	private int[] pathTop;
+	private int[] pathRight;
+	private int[] pathBottom;
+	private byte[] pathMarks;
+
+	// the paths crossing bucket b are bucketPaths[bucketStart[b]] to bucketPaths[bucketStart[b+1]-1]
+	private int[] bucketStart;
+	private int[] bucketPaths;
+	// the paint that drew a path last, as a path may be in several buckets
+	private int[] pathPainted;
+	private int paintCount;
+
+	// the table: the graph is drawn in the graph column, the other
+	// columns show the cells of the rows; no columns means graph only
+	private int[] columnWidths;
+	private int graphColumn;
+	private DataflowGraphTableData[][] cells;
+	private int[][] cellWidths;
+	protected Color cellColor;
+	protected Color gridColor;
+
+	// how far the table is scrolled
+	private int originX;
+	private int originY;
 
 	protected int nodeRadius = 12;
 	protected int lineLength = 25;
@@ -39,442 +109,154 @@ public class DataflowGraph extends Composite {
 	protected Color bgColor;
 	protected Color nodeColor;
 	protected Color textColor;
+	protected Color lineColor;
 	protected boolean marked;
 	protected Color markColor;
 	protected Color markColor2;
     protected Color markColor3;
 
 	/**
-	 * Inner class for creating Nodes,
-	 * each Node is a Label and has its own PaintListener
+	 * Constructor
 	 *
-	 * @author SebastianRaffel  ( 08.06.2005 )
+	 * @param parent
+	 * @param node
+	 * @param radius
+	 * @param length
 	 */
-	private class NodeCanvas extends Canvas implements PaintListener {
-
-		private DataFlowNode node;
-		private int radius;
-		private Color bgColor;
-		private Color nodeColor;
-		private Color textColor;
-
-		protected boolean marked;
-		protected Color markColor;
-
-		/**
-		 * Constructor
-		 *
-		 * @param parent, the parent Composite
-		 * @param inode, the DataFlowNode
-		 * @param coordinates, where to put the Label
-		 * @param nodeRadius, radius of the Node
-		 */
-		public NodeCanvas(Composite parent, DataFlowNode inode, Point coordinates, int nodeRadius) {
-			super(parent, SWT.NONE);
-
-			node = inode;
-			radius = nodeRadius;
-			
-			Display display = parent.getDisplay();
-			// Default Colors
-			bgColor = display.getSystemColor(SWT.COLOR_WHITE);	//new Color(null,255,255,255);
-			nodeColor = display.getSystemColor(SWT.COLOR_GRAY);	//new Color(null,128,128,128);
-			textColor = display.getSystemColor(SWT.COLOR_WHITE);	//new Color(null,255,255,255);
-			markColor = display.getSystemColor(SWT.COLOR_RED);	//new Color(null,192,0,0);
-
-			// set location and size of the Label
-			setLocation(coordinates);
-			setSize((2*radius)+1, (2*radius)+1);	// +1 to avoid cropping on right & bottom
-			setBackground(bgColor);
-
-			// we have our own Paint Listener
-			addPaintListener(this);
-		}
-
-//		/**
-//		 * Set the Color for the Background, Node and Text in the Node
-//		 *
-//		 * @param backGround
-//		 * @param node
-//		 * @param text
-//		 */
-//		public void setColors(Color backGround, Color node, Color text) {
-//			if (backGround != null) {
-//				bgColor = backGround;
-//				setBackground(bgColor);
-//			}
-//			nodeColor = node;
-//			textColor = text;
-//		}
-
-		/**
-		 * Returns the Text-Line of the Node,
-		 * different Nodes can have the same Line
-		 *
-		 * @return line
-		 */
-		public int getLine() {
-			return node.getLine();
-		}
-
-		/**
-		 * Gets the Dataflow-Index of the Node
-		 *
-		 * @return index
-		 */
-		public int getIndex() {
-			return node.getIndex();
-		}
-
-		/**
-		 * Checks, if this Node contains a variable of the given name
-		 *
-		 * @param varName
-		 * @return true, if the Name of the Variable is found,
-		 * false otherwise
-		 */
-		public boolean containsVariable(String varName) {
-			List<VariableAccess> vars = node.getVariableAccess();
-			if (vars == null) return false;
-
-			for (VariableAccess va : vars) {
-				if (va.getVariableName().equalsIgnoreCase(varName))
-					return true;
-				}
-			return false;
-		}
+	public DataflowGraph(Composite parent, Node node, int radius, int length, int height) {
+		super(parent, SWT.NO_BACKGROUND | SWT.DOUBLE_BUFFERED | SWT.H_SCROLL | SWT.V_SCROLL);
 
-		/**
-		 * @return the DataFlowNode
-		 */
-		public DataFlowNode getINode() {
-			return node;
-		}
+		nodeRadius = radius;
+		lineLength = length;
+		rowHeight = height;
 
-		/**
-		 * Checks, if this Node has been marked
-		 * during painting a Path
-		 *
-		 * @return true if the Node has been marked,
-		 * false otherwise
-		 */
-		public boolean isMarked() {
-			return marked;
-		}
+		Display display = parent.getDisplay();
+		// Default Colors
+		bgColor = display.getSystemColor(SWT.COLOR_WHITE);
+		nodeColor = display.getSystemColor(SWT.COLOR_GRAY);
+		textColor = display.getSystemColor(SWT.COLOR_WHITE);
+		lineColor = display.getSystemColor(SWT.COLOR_BLACK);
+		markColor = new Color(display,192,0,0);
+		markColor2 = new Color(display,128,0,128);
+        markColor3 = new Color(display,0,0,96);
+
+		addDisposeListener(new DisposeListener() {
+			public void widgetDisposed(DisposeEvent e) {
+				markColor.dispose();
+				markColor2.dispose();
+				markColor3.dispose();
+			}
+		});
+		addPaintListener(this);
+		addControlListener(new ControlAdapter() {
+			@Override
+			public void controlResized(ControlEvent e) {
+				updateScrollBars();
+			}
+		});
+		initScrollBars();
 
+		setSize(parent.getSize());
+		setBackground(bgColor);
 
-		/* @see org.eclipse.swt.events.PaintListener#paintControl(org.eclipse.swt.events.PaintEvent) */
-		public void paintControl(PaintEvent e) {
-			// when we want to mark the Node,
-			// we change the Drawing-Background
-			e.gc.setBackground(marked ? markColor : nodeColor);
-			
-			// an area is filled with this BG-Color
-			e.gc.fillArc(0, 0, 2*radius, 2*radius, 0, 360);
-			// now outline it
-			e.gc.drawArc(0, 0, 2*radius, 2*radius, 0, 360);
-	
-			// draw the Node's Index
-			String indexString = String.valueOf(node.getIndex());
-			int xPos = radius-2-4*(indexString.length()/2);
-			int yPos = radius/2;
-
-			e.gc.setForeground(textColor);
-			e.gc.drawString(indexString, xPos-1, yPos-1);
+		if (node != null) {
+			createDataflowGraph(node);
 		}
+		updateScrollBars();
+	}
 
-		/**
-		 * Sets a Node as being marked
-		 * and paints is in a different - marking - Color
-		 *
-		 * @param isMarked
-		 * @param color
-		 */
-		public void mark(boolean isMarked, Color color) {
-			marked = isMarked;
-			markColor = color;
-			redraw();
-		}
+	private void initScrollBars() {
+		SelectionAdapter scrolled = new SelectionAdapter() {
+			@Override
+			public void widgetSelected(SelectionEvent e) {
+				originX = getHorizontalBar().getSelection();
+				originY = getVerticalBar().getSelection();
+				redraw();
+			}
+		};
+		getHorizontalBar().addSelectionListener(scrolled);
+		getVerticalBar().addSelectionListener(scrolled);
 	}
 
 	/**
-	 * Inner class for creating Paths,
-	 * we don't create our own labels here,
-	 * because SWT doesn't support transparency,
-	 * so we can't overlay paths
+	 * Shows the other Columns of a Table around the Graph;
+	 * the Cells are drawn on this Canvas as well
 	 *
-	 * @author SebastianRaffel  ( 08.06.2005 )
+	 * @param widths the Widths of the Columns
+	 * @param graphPos the Column the Graph is drawn in
+	 * @param data the Cells of each Row, null where empty
+	 * @param textColor the Color of the Cells' Text
+	 * @param background
+	 * @param line the Color of the Table's Lines
 	 */
-	private class PathCanvas implements PaintListener {
-
-		private int index1;
-		private int index2;
-		private int radius;
-		private Rectangle bounds;
-		private Color lineColor;
-		private int arrowWidth;
-		private int arrowHeight;
-
-		protected boolean marked;
-		protected Color markColor;
-
-
-		/**
-		 * Constructor,
-		 * Indexes can be twisted (first index > second Index)
-		 * as well as y-Positions
-		 *
-		 * @param parent, the parent composite
-		 * @param nodeIndex1, the first Index
-		 * @param nodeIndex2, the second Index
-		 * @param x, the x-Position
-		 * @param y1, the upper y-Position
-		 * @param y2, the lower y Position
-		 * @param nodeRadius, the radius of the Node
-		 */
-		public PathCanvas(Composite parent, int nodeIndex1, int nodeIndex2,	int x, int y1, int y2, int nodeRadius) {
-
-			index1 = nodeIndex1;
-			index2 = nodeIndex2;
-			radius = nodeRadius;
-
-			arrowWidth = 4;
-			arrowHeight = 7;
-			
-			Display disp = parent.getDisplay();
-			
-			lineColor = disp.getSystemColor(SWT.COLOR_BLACK);
-			markColor = new Color(null,192,0,0);
-
-			// set the bounds to put the Path into
-			bounds = calculateBounds(x, y1, y2);
-			parent.addPaintListener(this);
-		}
-
-		/**
-		 * @return the first Index
-		 */
-		public int getIndex1() {
-			return index1;
-		}
-
-		/**
-		 * @return the second Index
-		 */
-		public int getIndex2() {
-			return index2;
-		}
-
-//		/**
-//		 * Sets the Paths Color
-//		 *
-//		 * @param color
-//		 */
-//		public void setColor(Color color) {
-//			lineColor = color;
-//		}
-
-		/**
-		 * calculate the bounds, where to put the Path,
-		 * this bounds are absolute to the parent Element
-		 * (e.g. we don't put it on 50,75 and draw from 0,0,
-		 * but we draw from 50,75)
-		 *
-		 * @param x
-		 * @param y1
-		 * @param y2
-		 * @return a Rectangle of coordinates
-		 */
-		private Rectangle calculateBounds(int x, int y1, int y2) {
-			int newX1 = 0;
-			int newX2 = 0;
-			int newY1 = 0;
-			int newY2 = 0;
-
-			// calculate by comparing the Nodes Indexes
-
-	        if (index1 < index2) {
-	            if (index2-index1 == 1) {
-		        	// 1 -> 2
-	                newX1 = x+radius-arrowWidth;
-	                newX2 = x+radius+arrowWidth;
-	                newY1 = y1+2*radius;
-	                newY2 = y2;
-	            } else if (index2-index1 > 1) {
-	            	// 1 --\
-	            	//     |
-	            	// 2 <-/
-	                newY1 = y1+radius-1;
-	                newY2 = y2+radius;
-	                int n = (index2-index1) * 3 + 10;
-	                	n += Math.random()*5;
-	                newX1 = x-n;
-	                newX2 = x;
-	            }
-	        } else {
-	            if (index1-index2 == 1) {
-		        	// 1 <- 2
-	                newX1 = x+radius-arrowWidth;
-	                newX2 = x+radius+arrowWidth;
-	                newY1 = y2+2*radius;
-	                newY2 = y1;
-	            } else if (index1-index2 > 1) {
-	            	// 1 <-\
-	            	//     |
-	            	// 2 --/
-	                newY1 = y2+radius-1;
-	                newY2 = y1+radius;
-	                int n = (index1-index2) * 3 + 10;
-	                	n += Math.random()*5;
-	                newX1 = x+2*radius;
-	                newX2 = x+2*radius+n;
-	            }
-	        }
-
-            return new Rectangle(newX1, newY1, newX2, newY2);
-		}
-
+	public void setTable(int[] widths, int graphPos, List<List<DataflowGraphTableData>> data, Color textColor, Color background, Color line) {
+		columnWidths = widths.clone();
+		graphColumn = graphPos;
+		cellColor = textColor;
+		bgColor = background;
+		gridColor = line;
+		setBackground(bgColor);
 
-		/* @see org.eclipse.swt.events.PaintListener#paintControl(org.eclipse.swt.events.PaintEvent) */
-		public void paintControl(PaintEvent e) {
-			// change Back- and Foreground
-			// because the line in drawn with the FG-Color,
-			// and the triangle is filled with the BG-Color
-			if (marked) {
-				e.gc.setForeground(markColor);
-				e.gc.setBackground(markColor);
-			} else {
-				e.gc.setForeground(lineColor);
-				e.gc.setBackground(lineColor);
+		cells = new DataflowGraphTableData[nodeCount][];
+		cellWidths = new int[nodeCount][];
+		for (int row=0; row<nodeCount; row++) {
+			List<DataflowGraphTableData> rowData = data != null && row < data.size() ? data.get(row) : null;
+			cells[row] = new DataflowGraphTableData[columnWidths.length];
+			cellWidths[row] = new int[columnWidths.length];
+			Arrays.fill(cellWidths[row], -1);
+			for (int col=0; rowData != null && col<columnWidths.length && col<rowData.size(); col++) {
+				cells[row][col] = rowData.get(col);
 			}
-
-			int width = bounds.width-bounds.x;
-
-			if (index1 < index2) {
-				if (index2-index1 == 1) {
-					// 1 -> 2
-					e.gc.drawLine(
-						bounds.x+width/2, bounds.y,
-						bounds.x+width/2, bounds.height);
-					e.gc.fillPolygon(new int[] {
-						bounds.x, bounds.height-arrowHeight,
-						bounds.width, bounds.height-arrowHeight,
-						bounds.x+width/2, bounds.height
-					});
-				} else if (index2-index1 > 1) {
-	            	// 1 --\
-	            	//     |
-	            	// 2 <-/
-					e.gc.drawPolyline(new int[] {
-						bounds.x+width, bounds.y,
-						bounds.x, bounds.y+width,
-						bounds.x, bounds.height-width,
-						bounds.width, bounds.height
-					});
-					e.gc.fillPolygon(new int[] {
-						bounds.width, bounds.height,
-						bounds.width-arrowHeight-arrowWidth/2+1,
-						bounds.height-arrowWidth,
-						bounds.width-arrowWidth,
-						bounds.height-arrowHeight-arrowWidth/2
-					});
-				}
-			} else {
-				if (index1-index2 == 1) {
-					// 1 <- 2
-					e.gc.drawLine(
-						bounds.x+width/2, bounds.y,
-						bounds.x+width/2, bounds.height);
-					e.gc.fillPolygon(new int[] {
-						bounds.x+arrowWidth, bounds.y,
-						bounds.x, bounds.y+arrowHeight,
-						bounds.x+2*arrowWidth, bounds.y+arrowHeight
-					});
-				} else if (index1-index2 > 1) {
-	            	// 1 <-\
-	            	//     |
-	            	// 2 --/
-					e.gc.drawPolyline(new int[] {
-						bounds.x, bounds.y,
-						bounds.width, bounds.y+width,
-						bounds.x+width, bounds.height-width,
-						bounds.x, bounds.height
-					});
-					e.gc.fillPolygon(new int[] {
-						bounds.x, bounds.y,
-						bounds.x+arrowWidth, bounds.y+arrowHeight+arrowWidth/2,
-						bounds.x+arrowHeight+arrowWidth/2, bounds.y+arrowWidth
-					});
-	            }
-	        }
 		}
 
-		/**
-		 * Sets a Path a marked and color it
-		 *
-		 * @param isMarked
-		 * @param color
-		 */
-		public void mark(boolean isMarked, Color color) {
-			marked = isMarked;
-			markColor = color;
-		}
+		updateScrollBars();
+		redraw();
 	}
 
-
 	/**
-	 * Constructor
-	 *
-	 * @param parent
-	 * @param node
-	 * @param radius
-	 * @param length
+	 * Fits the Scrollbars to the Table and the View, and keeps the
+	 * Table's Offset within the Bars' Range
 	 */
-	public DataflowGraph(Composite parent, Node node, int radius, int length, int height) {
-		super(parent, SWT.NONE);
-
-		if (node == null) return;
-
-		nodeRadius = radius;
-		lineLength = length;
-		rowHeight = height;
+	private void updateScrollBars() {
+		Rectangle view = getClientArea();
+		originX = updateScrollBar(getHorizontalBar(), tableWidth(), view.width, 20);
+		originY = updateScrollBar(getVerticalBar(), nodeCount*rowHeight, view.height, rowHeight);
+	}
 
-		nodes = new ArrayList<NodeCanvas>();
-		paths = new ArrayList<PathCanvas>();
+	private static int updateScrollBar(ScrollBar bar, int content, int view, int increment) {
+		bar.setMaximum(Math.max(1, content));
+		bar.setThumb(Math.max(1, Math.min(content, view)));
+		bar.setPageIncrement(Math.max(1, view));
+		bar.setIncrement(increment);
+		bar.setEnabled(content > view);
+		if (content <= view) {
+			bar.setSelection(0);
+		}
+		return bar.getSelection();
+	}
 
-		Display display = parent.getDisplay();
-		// Default Colors
-		bgColor = display.getSystemColor(SWT.COLOR_WHITE);		//new Color(null,255,255,255);
-		nodeColor = display.getSystemColor(SWT.COLOR_GRAY);		//new Color(null,192,192,192);
-		textColor = display.getSystemColor(SWT.COLOR_BLACK);	//new Color(null,0,0,0);
-		markColor = new Color(null,192,0,0);
-		markColor2 = new Color(null,128,0,128);
-        markColor3 = new Color(null,0,0,96);
+	private int tableWidth() {
+		if (columnWidths == null) return getClientArea().width;
 
-		setSize(parent.getSize());
-		setBackground(bgColor);
+		int width = 0;
+		for (int w : columnWidths) width += w;
+		return width;
+	}
 
-		createDataflowGraph(node);
+	/**
+	 * @return the x-position of the Graph's Column in the Table
+	 */
+	private int graphLeft() {
+		int left = 0;
+		for (int col=0; columnWidths != null && col<graphColumn; col++) {
+			left += columnWidths[col];
+		}
+		return left;
 	}
 
-    @Override
-    public void addMouseListener(final MouseListener listener) {
-        if (nodes != null) {
-            Iterator<NodeCanvas> nodeIterator = nodes.iterator();
-            for (int i=0; nodeIterator.hasNext(); i++) {
-                final int row = i;
-                NodeCanvas node = nodeIterator.next();
-                node.addMouseListener(new MouseAdapter() {
-                    @Override
-                    public void mouseDown(MouseEvent e) {
-                        e.y += row * DataflowGraphViewer.ROW_HEIGHT;
-                        listener.mouseDown(e);
-                    }
-                });
-            }
-        }
-        super.addMouseListener(listener);
-    }
+	private int graphWidth() {
+		return columnWidths == null ? getClientArea().width : columnWidths[graphColumn];
+	}
 
 	/**
 	 * Set the Graph Node-Radius, and Length of the
@@ -498,72 +280,418 @@ public class DataflowGraph extends Composite {
 	private void createDataflowGraph(Node node) {
 		List<DataFlowNode> flow = node.getDataFlowNode().getFlow();
 
+		nodeCount = flow.size();
+		flowNodes = flow.toArray(new DataFlowNode[nodeCount]);
+		nodeLines = new int[nodeCount];
+		nodeMarks = new byte[nodeCount];
+		nodeLabels = new String[nodeCount];
+		labelWidths = new int[nodeCount];
+
+		// DataFlowNode.getIndex() looks the node up in the flow, so the rows are mapped once
+		Map<DataFlowNode, Integer> rows = new IdentityHashMap<DataFlowNode, Integer>(nodeCount * 2);
+		int childCount = 0;
+		for (int i=0; i<nodeCount; i++) {
+			rows.put(flowNodes[i], Integer.valueOf(i));
+			nodeLines[i] = flowNodes[i].getLine();
+			nodeLabels[i] = String.valueOf(i);
+			childCount += flowNodes[i].getChildren().size();
+		}
+
+		firstPath = new int[nodeCount+1];
+		pathFrom = new int[childCount];
+		pathTo = new int[childCount];
+		pathLeft = new int[childCount];
+		pathTop = new int[childCount];
+		pathRight = new int[childCount];
+		pathBottom = new int[childCount];
+		pathMarks = new byte[childCount];
+		pathPainted = new int[childCount];
+
 		// the Data-Flow gives us all the Nodes
 		// every Node has children, for which we can build Paths
-		for (int i=0; i<flow.size(); i++) {
-			DataFlowNode inode = flow.get(i);
-
-			// create a new Node and add it to the List
-			Point location = new Point(
-				(getSize().x-2*nodeRadius)/2,
-				i*rowHeight + lineLength/2);
-			NodeCanvas nod = new NodeCanvas(this, inode, location, nodeRadius);
-			nodes.add(nod);
-
-			// get the Nodes children and build Paths between them
-			List<DataFlowNode> children = inode.getChildren();
-			for (DataFlowNode dfNode : children) {
-
-				// create a new Path and add it to the List
-				int x = (getSize().x-2*nodeRadius)/2;
-				int y1 = inode.getIndex()*rowHeight + lineLength/2;
-				int y2 = dfNode.getIndex()*rowHeight + lineLength/2;
-
-				PathCanvas path = new PathCanvas(this,
-					inode.getIndex(), dfNode.getIndex(),
-					x, y1, y2, nodeRadius);
-				paths.add(path);
+		for (int i=0; i<nodeCount; i++) {
+			firstPath[i] = pathCount;
+			for (DataFlowNode child : flowNodes[i].getChildren()) {
+				Integer row = rows.get(child);
+				if (row != null) {
+					addPath(i, row.intValue());
+				}
 			}
 		}
+		firstPath[nodeCount] = pathCount;
+
+		indexPaths();
 	}
 
 	/**
-	 * Returns the graphical Node of the given Index
+	 * Calculates the bounds of a path, relative to the x-position of the
+	 * nodes; rows can be twisted (first row > second row)
 	 *
-	 * @param index
-	 * @return the NodeCanvas
+	 * @param from
+	 * @param to
+	 */
+	private void addPath(int from, int to) {
+		int p = pathCount++;
+		pathFrom[p] = from;
+		pathTo[p] = to;
+
+		int y1 = nodeY(Math.min(from, to));
+		int y2 = nodeY(Math.max(from, to));
+		int distance = Math.abs(to-from);
+		// long paths are set apart a little, so that they don't overlay
+		int n = distance * 3 + 10 + (from + to) % 5;
+
+		if (distance == 1) {
+			// 1 -> 2  or  1 <- 2
+			pathLeft[p] = nodeRadius-ARROW_WIDTH;
+			pathRight[p] = nodeRadius+ARROW_WIDTH;
+			pathTop[p] = y1+2*nodeRadius;
+			pathBottom[p] = y2;
+		} else if (distance > 1) {
+			pathTop[p] = y1+nodeRadius-1;
+			pathBottom[p] = y2+nodeRadius;
+			if (from < to) {
+				// 1 --\
+				//     |
+				// 2 <-/
+				pathLeft[p] = -n;
+				pathRight[p] = 0;
+			} else {
+				// 1 <-\
+				//     |
+				// 2 --/
+				pathLeft[p] = 2*nodeRadius;
+				pathRight[p] = 2*nodeRadius+n;
+			}
+		}
+		// a path from a node to itself has empty bounds and is not drawn
+	}
+
+	/**
+	 * Puts every path into the buckets of the rows it crosses
 	 */
-	private NodeCanvas getNode(int index) {
-		if (nodes == null)
-			return null;
+	private void indexPaths() {
+		int bucketCount = nodeCount / BUCKET_ROWS + 1;
+		bucketStart = new int[bucketCount+1];
 
-		for (NodeCanvas node : nodes) {
-			if (node.getIndex() == index)
-				return node;
+		for (int p=0; p<pathCount; p++) {
+			for (int b=firstBucket(p); b<=lastBucket(p); b++) {
+				bucketStart[b+1]++;
+			}
+		}
+		for (int b=0; b<bucketCount; b++) {
+			bucketStart[b+1] += bucketStart[b];
 		}
 
-		return null;
+		bucketPaths = new int[bucketStart[bucketCount]];
+		int[] filled = new int[bucketCount];
+		for (int p=0; p<pathCount; p++) {
+			for (int b=firstBucket(p); b<=lastBucket(p); b++) {
+				bucketPaths[bucketStart[b] + filled[b]++] = p;
+			}
+		}
+	}
+
+	private int firstBucket(int path) {
+		return bucketOf(pathTop[path] - ARROW_HEIGHT);
+	}
+
+	private int lastBucket(int path) {
+		return pathFrom[path] == pathTo[path] ? -1 : bucketOf(pathBottom[path] + ARROW_HEIGHT);
+	}
+
+	private int bucketOf(int y) {
+		int row = Math.max(0, Math.min(nodeCount-1, y / rowHeight));
+		return row / BUCKET_ROWS;
+	}
+
+	/**
+	 * @return the x-position of the nodes in the Table
+	 */
+	private int nodeX() {
+		return graphLeft() + (graphWidth()-2*nodeRadius)/2;
+	}
+
+	private int nodeY(int row) {
+		return row*rowHeight + lineLength/2;
+	}
+
+	/**
+	 * Returns the node in the row at the given y-position
+	 *
+	 * @param y the y-position on the canvas
+	 * @return the row of the node, or -1 if there is no node at y
+	 */
+	public int nodeAt(int y) {
+		if (y < 0 || nodeCount == 0) return -1;
+		int row = (y + originY) / rowHeight;
+		return row < nodeCount ? row : -1;
+	}
+
+	/* @see org.eclipse.swt.events.PaintListener#paintControl(org.eclipse.swt.events.PaintEvent) */
+	public void paintControl(PaintEvent e) {
+		GC gc = e.gc;
+		gc.setBackground(bgColor);
+		gc.fillRectangle(e.x, e.y, e.width, e.height);
+
+		// the area to repaint, in the Table
+		int left = e.x + originX;
+		int right = left + e.width;
+		int top = e.y + originY;
+		int bottom = top + e.height;
+		if (columnWidths != null) {
+			paintTable(gc, left, right, top, bottom);
+		}
+		if (nodeCount == 0) return;
+
+		int x = nodeX() - originX;
+
+		// the paths first, the nodes are drawn over their ends
+		paintCount++;
+		int lastBucket = bucketOf(bottom);
+		for (int b=bucketOf(top); b<=lastBucket; b++) {
+			for (int i=bucketStart[b]; i<bucketStart[b+1]; i++) {
+				int p = bucketPaths[i];
+				if (pathPainted[p] == paintCount) continue;
+				pathPainted[p] = paintCount;
+
+				if (pathBottom[p] + ARROW_HEIGHT < top || pathTop[p] - ARROW_HEIGHT > bottom) continue;
+				if (x + pathRight[p] + ARROW_WIDTH < e.x || x + pathLeft[p] - ARROW_WIDTH > e.x + e.width) continue;
+				paintPath(gc, p, x, originY);
+			}
+		}
+
+		int firstRow = Math.max(0, (top - lineLength/2 - 2*nodeRadius) / rowHeight);
+		int lastRow = Math.min(nodeCount-1, Math.max(0, bottom - lineLength/2) / rowHeight);
+		if (x + 2*nodeRadius < e.x || x > e.x + e.width) return;
+
+		for (int row=firstRow; row<=lastRow; row++) {
+			paintNode(gc, row, x, originY);
+		}
+	}
+
+	/**
+	 * Draws the Lines and the Cells of the Table in the area to repaint;
+	 * the row Lines go on below the last Row, like in other Eclipse Views
+	 *
+	 * @param gc
+	 * @param left
+	 * @param right
+	 * @param top
+	 * @param bottom
+	 */
+	private void paintTable(GC gc, int left, int right, int top, int bottom) {
+		int graphLeft = graphLeft();
+		int graphRight = graphLeft + columnWidths[graphColumn] - 1;
+
+		gc.setForeground(gridColor);
+		for (int y=top/rowHeight*rowHeight; y<=bottom; y+=rowHeight) {
+			// the Graph's Column has no row Lines
+			if (left < graphLeft) {
+				gc.drawLine(left-originX, y-originY, Math.min(right, graphLeft)-originX, y-originY);
+			}
+			if (right > graphRight) {
+				gc.drawLine(Math.max(left, graphRight)-originX, y-originY, right-originX, y-originY);
+			}
+		}
+		int columnRight = 0;
+		for (int col=0; col<columnWidths.length; col++) {
+			columnRight += columnWidths[col];
+			if (columnRight-1 >= left && columnRight-1 <= right) {
+				gc.drawLine(columnRight-1-originX, top-originY, columnRight-1-originX, bottom-originY);
+			}
+		}
+
+		if (nodeCount == 0) return;
+		measureLabels(gc);
+		gc.setForeground(cellColor);
+		int firstRow = Math.max(0, top / rowHeight);
+		int lastRow = Math.min(nodeCount-1, bottom / rowHeight);
+		Rectangle clipping = gc.getClipping();
+		int columnLeft = 0;
+		for (int col=0; col<columnWidths.length; col++) {
+			int width = columnWidths[col];
+			if (col != graphColumn && columnLeft < right && columnLeft+width > left) {
+				// the text is cut at the Cell's border
+				gc.setClipping(clipping.intersection(new Rectangle(
+					columnLeft+CELL_PADDING-originX, top-originY, width-2*CELL_PADDING, bottom-top)));
+				for (int row=firstRow; row<=lastRow; row++) {
+					paintCell(gc, row, col, columnLeft, width);
+				}
+			}
+			columnLeft += width;
+		}
+		gc.setClipping(clipping);
+	}
+
+	/**
+	 * Draws the Text of a Cell, centered or left aligned as its style says
+	 *
+	 * @param gc
+	 * @param row
+	 * @param col
+	 * @param columnLeft
+	 * @param width
+	 */
+	private void paintCell(GC gc, int row, int col, int columnLeft, int width) {
+		DataflowGraphTableData data = cells[row][col];
+		if (data == null || data.getData() == null) return;
+
+		String text = data.getData().toString();
+		int x = columnLeft + CELL_PADDING;
+		if ((data.getStyle() & SWT.CENTER) != 0) {
+			if (cellWidths[row][col] < 0) {
+				cellWidths[row][col] = gc.textExtent(text, SWT.DRAW_TAB).x;
+			}
+			x = columnLeft + (width - cellWidths[row][col]) / 2;
+		}
+		int y = row*rowHeight + (rowHeight - labelHeight) / 2;
+		gc.drawText(text, x-originX, y-originY, SWT.DRAW_TRANSPARENT | SWT.DRAW_TAB);
+	}
+
+	/**
+	 * Draws a path,
+	 * the line in drawn with the FG-Color,
+	 * and the triangle is filled with the BG-Color
+	 *
+	 * @param gc
+	 * @param p
+	 * @param x the x-position of the nodes on the canvas
+	 * @param scrolled how far the Table is scrolled down
+	 */
+	private void paintPath(GC gc, int p, int x, int scrolled) {
+		Color color = pathMarks[p] == UNMARKED ? lineColor : markColor;
+		gc.setForeground(color);
+		gc.setBackground(color);
+
+		int x1 = x + pathLeft[p];
+		int x2 = x + pathRight[p];
+		int y1 = pathTop[p] - scrolled;
+		int y2 = pathBottom[p] - scrolled;
+		int width = x2-x1;
+		int distance = pathTo[p]-pathFrom[p];
+
+		if (distance == 1) {
+			// 1 -> 2
+			gc.drawLine(x1+width/2, y1, x1+width/2, y2);
+			gc.fillPolygon(new int[] {
+				x1, y2-ARROW_HEIGHT,
+				x2, y2-ARROW_HEIGHT,
+				x1+width/2, y2
+			});
+		} else if (distance > 1) {
+			// 1 --\
+			//     |
+			// 2 <-/
+			gc.drawPolyline(new int[] {
+				x1+width, y1,
+				x1, y1+width,
+				x1, y2-width,
+				x2, y2
+			});
+			gc.fillPolygon(new int[] {
+				x2, y2,
+				x2-ARROW_HEIGHT-ARROW_WIDTH/2+1, y2-ARROW_WIDTH,
+				x2-ARROW_WIDTH, y2-ARROW_HEIGHT-ARROW_WIDTH/2
+			});
+		} else if (distance == -1) {
+			// 1 <- 2
+			gc.drawLine(x1+width/2, y1, x1+width/2, y2);
+			gc.fillPolygon(new int[] {
+				x1+ARROW_WIDTH, y1,
+				x1, y1+ARROW_HEIGHT,
+				x1+2*ARROW_WIDTH, y1+ARROW_HEIGHT
+			});
+		} else if (distance < -1) {
+			// 1 <-\
+			//     |
+			// 2 --/
+			gc.drawPolyline(new int[] {
+				x1, y1,
+				x2, y1+width,
+				x1+width, y2-width,
+				x1, y2
+			});
+			gc.fillPolygon(new int[] {
+				x1, y1,
+				x1+ARROW_WIDTH, y1+ARROW_HEIGHT+ARROW_WIDTH/2,
+				x1+ARROW_HEIGHT+ARROW_WIDTH/2, y1+ARROW_WIDTH
+			});
+		}
+	}
+
+	/**
+	 * Draws a node and its index,
+	 * a marked node is filled with its marking color
+	 *
+	 * @param gc
+	 * @param row
+	 * @param x the x-position of the nodes on the canvas
+	 * @param scrolled how far the Table is scrolled down
+	 */
+	private void paintNode(GC gc, int row, int x, int scrolled) {
+		int y = nodeY(row) - scrolled;
+
+		gc.setBackground(markColorOf(nodeMarks[row]));
+		gc.fillArc(x, y, 2*nodeRadius, 2*nodeRadius, 0, 360);
+		gc.setForeground(lineColor);
+		gc.drawArc(x, y, 2*nodeRadius, 2*nodeRadius, 0, 360);
+
+		measureLabels(gc);
+		if (labelWidths[row] < 0) {
+			labelWidths[row] = gc.stringExtent(nodeLabels[row]).x;
+		}
+		gc.setForeground(textColor);
+		gc.drawString(nodeLabels[row], x+nodeRadius-labelWidths[row]/2, y+nodeRadius-labelHeight/2, true);
 	}
 
 	/**
-	 * Returns the Path between the given Indexes
+	 * Forgets the measured labels and cells when the font changed
 	 *
-	 * @param index1
-	 * @param index2
-	 * @return the Path
+	 * @param gc
 	 */
-	private PathCanvas getPath(int index1, int index2) {
-		if (paths == null)
-			return null;
-
-		for (PathCanvas path : paths) {
-			if (path.getIndex1() == index1
-				&& path.getIndex2() == index2) {
-				return path;
+	private void measureLabels(GC gc) {
+		Font font = gc.getFont();
+		if (font.equals(labelFont)) return;
+
+		labelFont = font;
+		labelHeight = gc.getFontMetrics().getHeight();
+		if (labelWidths != null) {
+			Arrays.fill(labelWidths, -1);
+		}
+		if (cellWidths != null) {
+			for (int[] widths : cellWidths) {
+				Arrays.fill(widths, -1);
 			}
 		}
+	}
 
-		return null;
+	private Color markColorOf(byte mark) {
+		switch (mark) {
+			case MARKED:	return markColor;
+			case STOPOVER:	return markColor2;
+			case SELECTED:	return markColor3;
+			default:		return nodeColor;
+		}
+	}
+
+	/**
+	 * Checks, if a Node contains a variable of the given name
+	 *
+	 * @param row
+	 * @param varName
+	 * @return true, if the Name of the Variable is found,
+	 * false otherwise
+	 */
+	private boolean containsVariable(int row, String varName) {
+		List<VariableAccess> vars = flowNodes[row].getVariableAccess();
+		if (vars == null) return false;
+
+		for (VariableAccess va : vars) {
+			if (va.getVariableName().equalsIgnoreCase(varName))
+				return true;
+			}
+		return false;
 	}
 
 	/**
@@ -579,12 +707,9 @@ public class DataflowGraph extends Composite {
 	 * Un-marks a path, sets all colours to normal
 	 */
 	public void demark() {
-		for (NodeCanvas node : nodes) {
-			node.mark(false, null);
-		}
-
-		for (PathCanvas path : paths) {
-			path.mark(false, null);
+		if (nodeCount > 0) {
+			Arrays.fill(nodeMarks, UNMARKED);
+			Arrays.fill(pathMarks, UNMARKED);
 		}
 		redraw();
 
@@ -596,8 +721,10 @@ public class DataflowGraph extends Composite {
      * @param index index of the node
      */
     public void markNode(int index) {
-        NodeCanvas node = getNode(index);
-        node.mark(true, markColor3);
+        if (index < 0 || index >= nodeCount) return;
+
+        nodeMarks[index] = SELECTED;
+        redraw(nodeX()-originX, nodeY(index)-originY, 2*nodeRadius+1, 2*nodeRadius+1, false);
     }
 
 	/**
@@ -612,7 +739,7 @@ public class DataflowGraph extends Composite {
 	 * @param varName
 	 */
 	public void markPath(int line1, int line2, String varName) {
-		if (nodes == null || paths == null)
+		if (nodeCount == 0)
 			return;
 
 		// twist the Lines if needed
@@ -622,64 +749,40 @@ public class DataflowGraph extends Composite {
 			line2 = temp;
 		}
 
+		// we first clear all nodes and paths ...
+		Arrays.fill(nodeMarks, UNMARKED);
+		Arrays.fill(pathMarks, UNMARKED);
+
+		// ... to mark some of them again;
 		// an Anomaly can have multiple starting points
 		// but - so we say here - only one ending point
-		List<DataFlowNode> startNodes = new ArrayList<DataFlowNode>();
-		DataFlowNode endNode = null;
-
-		for (NodeCanvas node : nodes) {			// first we clear all nodes not needed
-			
-			if (!node.containsVariable(varName)) {
-				node.mark(false, null);
-				continue;
-			}
-
-			if (node.getLine() == line1) {		// if a Node is set at the given first Line we color it and add it as starting Node
-				node.mark(true, markColor);
-				startNodes.add(node.getINode());
-			} else if (node.getLine() == line2) {
-				// ... else, if we found a Node at the ending Line, we mark it and set it as ending Node
-				node.mark(true, markColor);
-				endNode = node.getINode();
-			} else {
-				node.mark(false, null);
-			}
-		}
-
-		for (PathCanvas deMarkedPath : paths) {	// we then clear all Paths
-			deMarkedPath.mark(false, null);
-		}
-
-		// ... to mark some of them again
-		List<PathCanvas> pathsToMark = new ArrayList<PathCanvas>();
-		for (DataFlowNode start : startNodes) {
-
-			// from every starting Node we search for a Path to the ending node
-			List<PathCanvas> pathList = findPath(start, endNode, new ArrayList<DataFlowNode>());
-			if (pathList == null) continue;
-
-			// we get a List of PathCanvas, that build up the searched Path
-			for (PathCanvas currentPath : pathList) {
-				// if some PathCanvas are already found and
-				// set to mark, we don't want to mark them again
-				if (!pathsToMark.contains(currentPath))
-					pathsToMark.add(currentPath);
+		int[] startNodes = new int[nodeCount];
+		int startCount = 0;
+		int endNode = -1;
+
+		for (int row=0; row<nodeCount; row++) {
+			if (!containsVariable(row, varName)) continue;
+
+			if (nodeLines[row] == line1) {
+				nodeMarks[row] = MARKED;
+				startNodes[startCount++] = row;
+			} else if (nodeLines[row] == line2) {
+				nodeMarks[row] = MARKED;
+				endNode = row;
 			}
 		}
 
-		// now we have a clear List of Paths that we can color
-		for (int m=0; m<pathsToMark.size(); m++) {
-			PathCanvas markedPath = pathsToMark.get(m);
-			markedPath.mark(true, markColor);
-
-			// the PathList contains Paths from the beginning to end,
-			// like (1,2),(2,3),...,(12,13);  we search for the Nodes
-			// that are "visited" and mark them in another color,
-			// so we can see them as "stopovers" (like 2,3,...,12)
-			if (m<pathsToMark.size()-1) {
-				NodeCanvas markedNode = getNode(markedPath.getIndex2());
-				if (!markedNode.isMarked()) {
-					markedNode.mark(true, markColor2);
+		if (endNode >= 0) {
+			// from every starting Node we search for a Path to the ending node,
+			// and color the Nodes that are "visited" on the way as "stopovers"
+			int[] reachedBy = new int[nodeCount];
+			for (int s=0; s<startCount; s++) {
+				int last = findPath(startNodes[s], endNode, reachedBy);
+				for (int p=last; p >= 0; p = reachedBy[pathFrom[p]]) {
+					pathMarks[p] = MARKED;
+					if (pathTo[p] != endNode && nodeMarks[pathTo[p]] == UNMARKED) {
+						nodeMarks[pathTo[p]] = STOPOVER;
+					}
 				}
 			}
 		}
@@ -689,56 +792,52 @@ public class DataflowGraph extends Composite {
 	}
 
 	/**
-	 * Recursively finds a Path from the starting Node to the ending Node,
-	 * the visited-List contains Paths, that already have been visited, so
-	 * the Function does not produce Loops, the List should be a
-	 * new ArrayList() when calling this Function
+	 * Finds a Path from the starting Node to the ending Node, depth first;
+	 * a Node that leads directly to the end is taken at once. Every Node is
+	 * visited once, so the search does not produce Loops.
 	 *
 	 * @param start
 	 * @param end
-	 * @param visited
-	 * @return an List of PathCanvas, that build up the path from
-	 * Start-Node to End-Node or null, if there no such path could be found
+	 * @param reachedBy filled with the path each visited Node was reached by
+	 * @return the last path of the way from Start-Node to End-Node, which
+	 * leads back to the start through reachedBy, or -1 if there is no such way
 	 */
-	protected List<PathCanvas> findPath(DataFlowNode start, DataFlowNode end, List<DataFlowNode> visited) {
-
-		// this is the break-Condition for the Recursion
-		// if the Node's direct children contain the ending Node
-		// we return the Path from the current Node to the End
-		if (start.getChildren().contains(end)) {
-			List<PathCanvas> found = new ArrayList<PathCanvas>();
-			PathCanvas path = getPath(start.getIndex(), end.getIndex());
-			if (path != null) {
-				found.add(path);
-				return found;
-			}
-		} else {
-			// this is the Search
-			for (DataFlowNode node : start.getChildren()) {
-				// here we avoid Loops by checking the visited nodes
-				if (visited.contains(node))	continue;
-				// ... and adding the current Node
-				visited.add(node);
-
-				// the Recursion: find the Path from
-				// the current Node's children to the End
-				List<PathCanvas> isFound = findPath(node, end, visited);
-				if (isFound == null)
-					continue;
-				else {
-					// if a Path (from child to end) is found
-					// we can add the Path from this Node to the child
-					PathCanvas path2 = isFound.get(0);
-					PathCanvas path1 =
-						getPath(start.getIndex(), path2.getIndex1());
-					if (path1 != null) {
-						isFound.add(0, path1);
-						return isFound;
-					}
+	private int findPath(int start, int end, int[] reachedBy) {
+		boolean[] visited = new boolean[nodeCount];
+		int[] stack = new int[nodeCount];
+		int[] nextPath = new int[nodeCount];
+		int depth = 0;
+
+		visited[start] = true;
+		reachedBy[start] = -1;
+		stack[0] = start;
+		nextPath[0] = firstPath[start];
+
+		while (depth >= 0) {
+			int node = stack[depth];
+			if (nextPath[depth] == firstPath[node]) {
+				// if the Node's direct children contain the ending Node we are done
+				for (int p=firstPath[node]; p<firstPath[node+1]; p++) {
+					if (pathTo[p] == end) return p;
 				}
 			}
+
+			if (nextPath[depth] == firstPath[node+1]) {
+				depth--;
+				continue;
+			}
+
+			int p = nextPath[depth]++;
+			int child = pathTo[p];
+			if (visited[child]) continue;
+
+			visited[child] = true;
+			reachedBy[child] = p;
+			depth++;
+			stack[depth] = child;
+			nextPath[depth] = firstPath[child];
 		}
 
-		return null;
+		return -1;
 	}
 }
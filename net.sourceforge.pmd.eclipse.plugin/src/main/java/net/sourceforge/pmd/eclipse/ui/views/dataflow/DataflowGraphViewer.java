@@ -113,11 +113,11 @@ public class DataflowGraphViewer extends Composite {
         resourceString = resString;
 
         // set the Data for the Table
-        table.setRows(node.getDataFlowNode().getFlow().size(), ROW_HEIGHT);
         table.setTableData(createDataFields(node));
 
-        // create the Graph
+        // create the Graph, which draws the Table's Body, one Row per Node
         graph = new DataflowGraph(table.getGraphArea(), node, NODE_RADIUS, LINE_LENGTH, ROW_HEIGHT);
+        table.setGraph(graph);
     }
 
     /**
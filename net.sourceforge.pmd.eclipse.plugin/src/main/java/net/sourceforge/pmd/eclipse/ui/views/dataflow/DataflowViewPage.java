@@ -1,19 +1,23 @@
 package net.sourceforge.pmd.eclipse.ui.views.dataflow;
 
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.List;
 
-import name.herlin.command.CommandException;
 import net.sourceforge.pmd.RuleViolation;
-import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
-import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewResourceForRuleCommand;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ASTCache;
 import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 import net.sourceforge.pmd.eclipse.ui.views.AbstractStructureInspectorPage;
+import net.sourceforge.pmd.lang.ast.ParseException;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
-import net.sourceforge.pmd.lang.java.rule.controversial.DataflowAnomalyAnalysisRule;
 import net.sourceforge.pmd.util.StringUtil;
 
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.swt.SWT;
@@ -27,16 +31,19 @@ import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Label;
-import org.eclipse.ui.IPropertyListener;
 import org.eclipse.ui.IWorkbenchPart;
 
 /**
  * A page for the dataflow - view.
  *
+ * The methods and their graphs are computed in the background from the
+ * editor text, and the anomalies of a method only once it is shown with the
+ * table; showing another method cancels the search for the previous one.
+ *
  * @author Sven Jacob
  *
  */
-public class DataflowViewPage extends AbstractStructureInspectorPage implements IPropertyListener {
+public class DataflowViewPage extends AbstractStructureInspectorPage {
 	
     private Composite 					dfaFrame;
     private Button 						switchButton;
@@ -45,7 +52,11 @@ public class DataflowViewPage extends AbstractStructureInspectorPage implements
     protected DataflowAnomalyTableViewer tableViewer;
 
     private boolean isTableShown;
-    private boolean isTableRefreshed;
+
+    private DataflowAnalysis 			analysis;
+    private ASTMethodDeclaration 		shownMethod;
+    private Job 						methodsJob;
+    private Job 						anomaliesJob;
 
     /**
      * Constructor
@@ -114,7 +125,6 @@ public class DataflowViewPage extends AbstractStructureInspectorPage implements
         tableViewer.addSelectionChangedListener(this);
         tableViewer.setContentProvider(new DataflowAnomalyTableContentProvider());
         tableViewer.setLabelProvider(new DataflowAnomalyTableLabelProvider());
-        isTableRefreshed = false;
 
         GridLayout mainLayout = new GridLayout(2, true);
         mainLayout.horizontalSpacing = mainLayout.verticalSpacing = 7;
@@ -140,6 +150,7 @@ public class DataflowViewPage extends AbstractStructureInspectorPage implements
      */
     protected void showMethod(final ASTMethodDeclaration pmdMethod) {
         if (pmdMethod != null) {
+            shownMethod = pmdMethod;
 
             String resourceString = getDocument().get();
             // give the Data to the GraphViewer
@@ -148,7 +159,8 @@ public class DataflowViewPage extends AbstractStructureInspectorPage implements
             graphViewer.addMouseListener(new MouseAdapter() {
 
                 public void mouseDown(MouseEvent e) {
-                   int row = (int)((double)e.y / DataflowGraphViewer.ROW_HEIGHT);
+                   int row = graphViewer.getGraph().nodeAt(e.y);
+                   if (row < 0) return;
                    graphViewer.getGraph().demark();
                    graphViewer.getGraph().markNode(row);
                    highlightLine( pmdMethod.getDataFlowNode().getFlow().get(row).getLine()-1 );
@@ -173,10 +185,7 @@ public class DataflowViewPage extends AbstractStructureInspectorPage implements
             ((GridData) graphViewer.getLayoutData()).horizontalSpan = 1;
             switchButton.setText(getString(StringKeys.VIEW_DATAFLOW_SWITCHBUTTON_HIDE));
 
-            // refresh the table if it isn't refreshed yet.
-            if (!isTableRefreshed) {
-                refreshDFATable(getResource());
-            }
+            refreshAnomalies();
         } else {
             ((GridData) graphViewer.getLayoutData()).horizontalSpan = 2;
             switchButton.setText(getString(StringKeys.VIEW_DATAFLOW_SWITCHBUTTON_SHOW));
@@ -226,44 +235,109 @@ public class DataflowViewPage extends AbstractStructureInspectorPage implements
     public void refresh(IResource newResource) {
     	super.refresh(newResource);
 
-        if (isTableShown) {
-            refreshDFATable(newResource);
-        } else {
-            isTableRefreshed = false;
-        }
-
         refreshMethodSelector();
     }
 
     /**
-     * Executes a command to refresh the DFA table.
-     * After execution {@link #refresh(IResource)} will be called.
-     * @param newResource the new resource
+     * Finds the methods and their graphs in the background, unless the
+     * text did not change; the combobox is filled once they are known.
      */
-    public void refreshDFATable(IResource newResource) {
-        isTableRefreshed = true;
-        try {
-            ReviewResourceForRuleCommand cmd = new ReviewResourceForRuleCommand();
-            DataflowAnomalyAnalysisRule rule = new DataflowAnomalyAnalysisRule();
-            rule.setUsesDFA();
-            cmd.setUserInitiated(false);
-            cmd.setRule(rule);
-            cmd.setResource(newResource);
-            cmd.addPropertyListener(this);
-            cmd.performExecute();
-        } catch (CommandException e) {
-        	logErrorByKey(StringKeys.ERROR_PMD_EXCEPTION, e);
+    @Override
+    protected void refreshPMDMethods() {
+        ASTCache.Entry parsed = getParsedDocument();
+        if (analysis != null && analysis.getSource() == parsed) {
+            if (analysis.hasMethods()) {
+                setPMDMethods(analysis.getMethods());
+            }
+            // otherwise still being found
+            return;
+        }
+
+        final DataflowAnalysis newAnalysis = new DataflowAnalysis(parsed);
+        analysis = newAnalysis;
+        if (methodsJob != null) {
+            methodsJob.cancel();
         }
+        methodsJob = new Job("Dataflow analysis") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                List<ASTMethodDeclaration> methods;
+                try {
+                    methods = newAnalysis.getMethods();
+                } catch (ParseException pe) {
+                    logError(StringKeys.ERROR_PMD_EXCEPTION + DataflowViewPage.this, pe);
+                    methods = Collections.emptyList();
+                }
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                showMethodsLater(newAnalysis, methods);
+                return Status.OK_STATUS;
+            }
+        };
+        methodsJob.setSystem(true);
+        methodsJob.schedule();
+    }
+
+    private void showMethodsLater(final DataflowAnalysis source, final List<ASTMethodDeclaration> methods) {
+        dfaFrame.getDisplay().asyncExec(new Runnable() {
+            public void run() {
+                if (source != analysis || dfaFrame.isDisposed()) {
+                    return;
+                }
+                int index = getSelectedMethodIndex();
+                setPMDMethods(methods);
+                selectMethod(index < 0 || index >= methods.size() ? 0 : index);
+            }
+        });
     }
 
     /**
-     * If the review is ready propertyChanged with the results will be called.
+     * Searches the anomalies of the shown method in the background, and
+     * shows them in the table.
      */
-    public void propertyChanged(Object source, int propId) {
-        if (source instanceof Iterator<?>
-                && propId == PMDRuntimeConstants.PROPERTY_REVIEW) {
-            tableViewer.setInput(source);
+    private void refreshAnomalies() {
+        if (anomaliesJob != null) {
+            anomaliesJob.cancel();
+        }
+        final DataflowAnalysis source = analysis;
+        final ASTMethodDeclaration method = shownMethod;
+        if (source == null || method == null) {
+            tableViewer.setInput(null);
+            return;
         }
+
+        anomaliesJob = new Job("Dataflow anomalies") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                final List<RuleViolation> anomalies;
+                try {
+                    anomalies = source.getAnomalies(method, monitor);
+                } catch (OperationCanceledException e) {
+                    return Status.CANCEL_STATUS;
+                }
+                dfaFrame.getDisplay().asyncExec(new Runnable() {
+                    public void run() {
+                        if (method == shownMethod && !tableViewer.getControl().isDisposed()) {
+                            tableViewer.setInput(anomalies.iterator());
+                        }
+                    }
+                });
+                return Status.OK_STATUS;
+            }
+        };
+        anomaliesJob.setSystem(true);
+        anomaliesJob.schedule();
+    }
+
+    @Override
+    public void dispose() {
+        if (methodsJob != null) {
+            methodsJob.cancel();
+        }
+        if (anomaliesJob != null) {
+            anomaliesJob.cancel();
+        }
+        super.dispose();
     }
-    
 }
@@ -0,0 +1,223 @@
+package net.sourceforge.pmd.eclipse.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Platform;
+
+/**
+ * The decoded content of a workspace file, read and decoded exactly once so
+ * that the parser, the review comment scanner and the metrics can all work
+ * from the same characters.
+ *
+ * Files that are in sync with the local file system are read through a file
+ * channel; large ones are memory-mapped, except on Windows where a mapping
+ * keeps the file locked until the buffer is garbage collected. Anything else
+ * goes through {@link IFile#getContents()}.
+ */
+public final class SourceBuffer {
+
+    private static final int MAP_THRESHOLD = 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final char[] chars;
+    private final int length;
+    private final String charset;
+    private long modificationStamp = IResource.NULL_STAMP;
+    private String text;
+    private long contentHash;
+    private boolean hashed;
+
+    private SourceBuffer(char[] chars, int length, String charset) {
+        this.chars = chars;
+        this.length = length;
+        this.charset = charset;
+    }
+
+    /**
+     * Read and decode a file with its own charset.
+     *
+     * @param file
+     *            a workspace file
+     * @return the decoded content
+     * @throws CoreException
+     *             if the workspace cannot provide the content
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static SourceBuffer read(IFile file) throws CoreException, IOException {
+        long stamp = file.getModificationStamp();
+        String charset = file.getCharset();
+        ByteBuffer bytes = canReadLocally(file) ? readLocal(file.getLocation()) : readStream(file.getContents());
+        SourceBuffer source = decode(bytes, charset);
+        source.modificationStamp = stamp;
+        return source;
+    }
+
+    /**
+     * Decode bytes that have already been read. A leading byte order mark is
+     * not part of the content and is dropped.
+     *
+     * @param bytes
+     *            the raw content
+     * @param charset
+     *            the name of the charset to decode with
+     * @return the decoded content
+     */
+    public static SourceBuffer decode(ByteBuffer bytes, String charset) {
+        CharsetDecoder decoder = Charset.forName(charset).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            CharBuffer decoded = decoder.decode(bytes);
+            if (decoded.hasRemaining() && decoded.get(decoded.position()) == BYTE_ORDER_MARK) {
+                decoded.position(decoded.position() + 1);
+            }
+            if (decoded.hasArray() && decoded.arrayOffset() == 0 && decoded.position() == 0) {
+                return new SourceBuffer(decoded.array(), decoded.remaining(), charset);
+            }
+            char[] copy = new char[decoded.remaining()];
+            decoded.get(copy);
+            return new SourceBuffer(copy, copy.length, charset);
+        } catch (IOException e) {
+            // cannot happen with REPLACE actions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Wrap text that is already decoded, such as the unsaved content of an
+     * editor.
+     *
+     * @param text
+     *            the content
+     * @return the content, with no charset
+     */
+    public static SourceBuffer wrap(String text) {
+        SourceBuffer source = new SourceBuffer(text.toCharArray(), text.length(), null);
+        source.text = text;
+        return source;
+    }
+
+    private static boolean canReadLocally(IFile file) {
+        return file.getLocation() != null && file.isSynchronized(IResource.DEPTH_ZERO);
+    }
+
+    private static ByteBuffer readLocal(IPath location) throws IOException {
+        FileInputStream in = new FileInputStream(location.toFile());
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD && !Platform.OS_WIN32.equals(Platform.getOS())) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            buffer.flip();
+            return buffer;
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    private static ByteBuffer readStream(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(READ_BUFFER_SIZE);
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * @return a new reader over the decoded characters; readers do not copy
+     *         the buffer and closing them is optional
+     */
+    public Reader newReader() {
+        return new CharArrayReader(chars, 0, length);
+    }
+
+    /**
+     * @return the characters as a string, built on first use
+     */
+    public String asString() {
+        if (text == null) {
+            text = new String(chars, 0, length);
+        }
+        return text;
+    }
+
+    /**
+     * @return the number of decoded characters
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the charset the content was decoded with, or null if it was
+     *         not decoded from bytes
+     */
+    public String getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return the modification stamp the file had when it was read, or
+     *         {@link IResource#NULL_STAMP} if the content did not come from a
+     *         workspace file
+     */
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+
+    /**
+     * @param index
+     *            a position within the content
+     * @return the character at that position
+     */
+    public char charAt(int index) {
+        return chars[index];
+    }
+
+    /**
+     * @return a 64-bit FNV-1a hash of the decoded characters, computed on
+     *         first use
+     */
+    public long contentHash() {
+        if (!hashed) {
+            long hash = FNV_OFFSET_BASIS;
+            for (int i = 0; i < length; i++) {
+                hash ^= chars[i];
+                hash *= FNV_PRIME;
+            }
+            contentHash = hash;
+            hashed = true;
+        }
+        return contentHash;
+    }
+}